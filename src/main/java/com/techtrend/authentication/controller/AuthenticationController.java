@@ -3,7 +3,11 @@ package com.techtrend.authentication.controller;
 import com.techtrend.authentication.dto.AuthResponse;
 import com.techtrend.authentication.dto.LoginRequest;
 import com.techtrend.authentication.dto.UserRegistrationRequest;
+import com.techtrend.authentication.security.BoundedPasswordEncoder;
 import com.techtrend.authentication.service.AuthenticationService;
+import com.techtrend.authentication.service.PasswordRehashService;
+import com.techtrend.authentication.service.VerifiedToken;
+import com.techtrend.common.exception.PasswordHashingUnavailableException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,12 +19,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controlador REST para el microservicio de autenticación
@@ -38,6 +47,8 @@ import java.util.Map;
 public class AuthenticationController {
 
     private final AuthenticationService authenticationService;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final PasswordRehashService passwordRehashService;
 
     /**
      * Endpoint para registrar un nuevo usuario
@@ -54,6 +65,8 @@ public class AuthenticationController {
         @ApiResponse(responseCode = "201", description = "Usuario registrado exitosamente",
             content = @Content(schema = @Schema(implementation = AuthResponse.class))),
         @ApiResponse(responseCode = "400", description = "Datos de registro inválidos",
+            content = @Content(schema = @Schema(implementation = AuthResponse.class))),
+        @ApiResponse(responseCode = "503", description = "Demasiados registros simultáneos, reintentar tras Retry-After",
             content = @Content(schema = @Schema(implementation = AuthResponse.class)))
     })
     public ResponseEntity<AuthResponse> registerUser(
@@ -65,6 +78,9 @@ public class AuthenticationController {
             AuthResponse response = authenticationService.registerUser(request);
             log.info("Usuario registrado exitosamente: {}", request.getEmail());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (PasswordHashingUnavailableException e) {
+            log.warn("Registro rechazado por saturación: {}", request.getEmail());
+            return unavailable(e);
         } catch (Exception e) {
             log.error("Error en registro de usuario: {}", e.getMessage());
             AuthResponse errorResponse = AuthResponse.error(e.getMessage());
@@ -87,6 +103,8 @@ public class AuthenticationController {
         @ApiResponse(responseCode = "200", description = "Login exitoso",
             content = @Content(schema = @Schema(implementation = AuthResponse.class))),
         @ApiResponse(responseCode = "401", description = "Credenciales inválidas",
+            content = @Content(schema = @Schema(implementation = AuthResponse.class))),
+        @ApiResponse(responseCode = "503", description = "Demasiados logins simultáneos, reintentar tras Retry-After",
             content = @Content(schema = @Schema(implementation = AuthResponse.class)))
     })
     public ResponseEntity<AuthResponse> login(
@@ -98,6 +116,9 @@ public class AuthenticationController {
             AuthResponse response = authenticationService.login(request);
             log.info("Login exitoso para: {}", request.getEmail());
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingUnavailableException e) {
+            log.warn("Login rechazado por saturación: {}", request.getEmail());
+            return unavailable(e);
         } catch (Exception e) {
             log.error("Error en login: {}", e.getMessage());
             AuthResponse errorResponse = AuthResponse.error(e.getMessage());
@@ -118,13 +139,14 @@ public class AuthenticationController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            boolean isValid = authenticationService.validateToken(token);
+            Optional<VerifiedToken> verified = authenticationService.verifyToken(token);
             
-            if (isValid) {
-                String email = authenticationService.getEmailFromToken(token);
-                String role = authenticationService.getRoleFromToken(token);
+            if (verified.isPresent()) {
+                String email = verified.get().getEmail();
+                String role = verified.get().getRole();
                 
                 response.put("valid", true);
+                response.put("userId", verified.get().getUserId());
                 response.put("email", email);
                 response.put("role", role);
                 response.put("message", "Token válido");
@@ -159,10 +181,13 @@ public class AuthenticationController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            if (authenticationService.validateToken(token)) {
-                String email = authenticationService.getEmailFromToken(token);
-                String role = authenticationService.getRoleFromToken(token);
+            Optional<VerifiedToken> verified = authenticationService.verifyToken(token);
+            
+            if (verified.isPresent()) {
+                String email = verified.get().getEmail();
+                String role = verified.get().getRole();
                 
+                response.put("userId", verified.get().getUserId());
                 response.put("email", email);
                 response.put("role", role);
                 response.put("valid", true);
@@ -225,4 +250,46 @@ public class AuthenticationController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
+
+    /**
+     * Endpoint para obtener métricas de la caché de tokens verificados
+     * 
+     * @return Aciertos, fallos, rechazos y tamaño de la caché
+     */
+    @GetMapping("/token-cache/metrics")
+    public ResponseEntity<Map<String, Object>> getTokenCacheMetrics() {
+        return ResponseEntity.ok(authenticationService.getTokenCacheMetrics());
+    }
+
+    /**
+     * Endpoint con las claves públicas para verificar tokens (JWK Set)
+     * 
+     * Incluye la clave activa y las anteriores cuyos tokens aún no expiraron.
+     * 
+     * @return Conjunto de claves en formato JWK Set
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(authenticationService.getJwks());
+    }
+
+    /**
+     * Endpoint para obtener métricas del cálculo de hashes de contraseñas
+     * 
+     * @return Latencias, profundidad de cola, rechazos, timeouts y rehashes de hashes desactualizados
+     */
+    @GetMapping("/password-hashing/metrics")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingMetrics() {
+        Map<String, Object> metrics = new HashMap<>(passwordEncoder.getMetrics());
+        metrics.put("rehash", passwordRehashService.getMetrics());
+        return ResponseEntity.ok(metrics);
+    }
+
+    private static ResponseEntity<AuthResponse> unavailable(PasswordHashingUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(AuthResponse.error(e.getMessage()));
+    }
 }
@@ -2,9 +2,11 @@ package com.techtrend.authentication.repository;
 
 import com.techtrend.authentication.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -67,4 +69,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT u FROM User u WHERE u.loginAttempts >= :maxAttempts")
     java.util.List<User> findUsersWithExcessiveLoginAttempts(@Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Reemplaza el hash de la contraseña solo si no cambió desde que se leyó
+     * 
+     * @param id ID del usuario
+     * @param currentPassword Hash leído
+     * @param newPassword Hash nuevo
+     * @return 1 si se actualizó, 0 si el usuario ya no tiene el hash leído
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :currentPassword")
+    int updatePasswordIfUnchanged(@Param("id") Long id,
+                                  @Param("currentPassword") String currentPassword,
+                                  @Param("newPassword") String newPassword);
 }
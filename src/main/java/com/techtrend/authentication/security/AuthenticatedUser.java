@@ -0,0 +1,43 @@
+package com.techtrend.authentication.security;
+
+import com.techtrend.authentication.model.User;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Usuario autenticado de la solicitud en curso
+ *
+ * Se construye solo con los claims del token verificado, sin consultar la base de datos.
+ * Los controladores lo reciben con {@code @AuthenticationPrincipal}.
+ *
+ * @author TechTrend Team
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public final class AuthenticatedUser {
+
+    private final Long userId;
+    private final String email;
+    private final String role;
+
+    /**
+     * Indica si el usuario es administrador
+     *
+     * @return true si tiene el rol ADMIN
+     */
+    public boolean isAdmin() {
+        return User.UserRole.ADMIN.name().equals(role);
+    }
+
+    /**
+     * Indica si el usuario puede acceder a los datos de otro usuario
+     *
+     * @param ownerId ID del usuario dueño de los datos
+     * @return true si es el mismo usuario o un administrador
+     */
+    public boolean canAccess(Long ownerId) {
+        return userId.equals(ownerId) || isAdmin();
+    }
+}
@@ -0,0 +1,168 @@
+package com.techtrend.authentication.security;
+
+import com.techtrend.common.exception.PasswordHashingUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PasswordEncoder que calcula los hashes en un pool acotado de hilos
+ *
+ * Un hash BCrypt de coste 12 consume unos 250 ms de CPU. Con un pico de logins, hacerlo
+ * en los hilos de Tomcat ocupa toda la CPU y deja sin servicio al resto de endpoints.
+ * Aquí los hashes se ejecutan en un pool con tantos hilos como los configurados y una
+ * cola limitada: con la cola llena la solicitud se rechaza al instante con
+ * PasswordHashingUnavailableException (503), y si espera más del tiempo máximo también.
+ *
+ * upgradeEncoding no calcula ningún hash y se delega sin pasar por el pool.
+ *
+ * @author TechTrend Team
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong hashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMillis) {
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Ejecuta un cálculo de hash en el pool y espera su resultado
+     *
+     * @throws PasswordHashingUnavailableException si la cola está llena o se agota la espera
+     */
+    private <T> T execute(Callable<T> hash) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                record(waitNanos, maxWaitNanos, startedAt - submittedAt);
+                try {
+                    return hash.call();
+                } finally {
+                    hashes.incrementAndGet();
+                    record(hashNanos, maxHashNanos, System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            log.warn("Cola de hashes de contraseñas llena ({} en espera), solicitud rechazada",
+                    executor.getQueue().size());
+            throw unavailable();
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            timeouts.incrementAndGet();
+            log.warn("Hash de contraseña sin completar tras {} ms, solicitud rechazada", timeoutMillis);
+            throw unavailable();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw unavailable();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error calculando el hash de la contraseña", e.getCause());
+        }
+    }
+
+    private PasswordHashingUnavailableException unavailable() {
+        // Tiempo aproximado para vaciar la cola actual con los hilos disponibles
+        long averageMillis = Math.max(1, averageNanos(hashNanos) / 1_000_000);
+        long drainMillis = (executor.getQueue().size() + 1) * averageMillis / executor.getMaximumPoolSize();
+        return new PasswordHashingUnavailableException("Demasiadas solicitudes de autenticación, reintente en unos segundos",
+                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(drainMillis) + 1));
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    private long averageNanos(AtomicLong total) {
+        long count = hashes.get();
+        return count == 0 ? 0 : total.get() / count;
+    }
+
+    /**
+     * Obtiene métricas del cálculo de hashes
+     *
+     * @return Mapa con latencias, profundidad de cola, hilos activos, rechazos y timeouts
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("hashes", hashes.get());
+        metrics.put("avgHashMillis", averageNanos(hashNanos) / 1_000_000.0);
+        metrics.put("maxHashMillis", maxHashNanos.get() / 1_000_000.0);
+        metrics.put("avgWaitMillis", averageNanos(waitNanos) / 1_000_000.0);
+        metrics.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        metrics.put("activeThreads", executor.getActiveCount());
+        metrics.put("threads", executor.getMaximumPoolSize());
+        metrics.put("rejected", rejected.get());
+        metrics.put("timeouts", timeouts.get());
+        return metrics;
+    }
+
+    /**
+     * Detiene el pool al cerrar el contexto
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,89 @@
+package com.techtrend.authentication.security;
+
+import com.techtrend.authentication.service.JwtService;
+import com.techtrend.authentication.service.VerifiedToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filtro que autentica cada solicitud con el token JWT de la cabecera Authorization
+ *
+ * Verifica el token localmente con JwtService (con su caché de tokens verificados) y deja
+ * un AuthenticatedUser en el contexto de seguridad, sin consultar la base de datos ni
+ * llamar a /auth/validate. Si no hay token o no es válido, la solicitud sigue sin
+ * autenticar y las reglas de SecurityConfig deciden si se permite.
+ *
+ * @author TechTrend Team
+ */
+@Slf4j
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private final JwtService jwtService;
+    private final String headerName;
+    private final String prefix;
+
+    // Autoridades por rol, compartidas entre solicitudes
+    private final Map<String, List<GrantedAuthority>> authoritiesByRole = new ConcurrentHashMap<>();
+
+    public JwtAuthenticationFilter(JwtService jwtService, String headerName, String prefix) {
+        this.jwtService = jwtService;
+        this.headerName = headerName;
+        this.prefix = prefix;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = extractToken(request.getHeader(headerName));
+        if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            Optional<VerifiedToken> verified = jwtService.verify(token);
+            if (verified.isPresent() && verified.get().getUserId() != null) {
+                authenticate(verified.get());
+            } else {
+                log.debug("Token inválido o sin ID de usuario en {} {}", request.getMethod(), request.getRequestURI());
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void authenticate(VerifiedToken verified) {
+        AuthenticatedUser user = new AuthenticatedUser(verified.getUserId(), verified.getEmail(), verified.getRole());
+        List<GrantedAuthority> authorities = verified.getRole() != null
+                ? authoritiesByRole.computeIfAbsent(verified.getRole(),
+                        role -> List.of(new SimpleGrantedAuthority("ROLE_" + role)))
+                : List.of();
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(user, null, authorities));
+        SecurityContextHolder.setContext(context);
+    }
+
+    /**
+     * Extrae el token de la cabecera con el prefijo configurado (p. ej. "Bearer")
+     *
+     * @param header Valor de la cabecera
+     * @return Token, o nulo si la cabecera no tiene el prefijo
+     */
+    private String extractToken(String header) {
+        if (header == null || !header.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return null;
+        }
+        String token = header.substring(prefix.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+}
@@ -0,0 +1,53 @@
+package com.techtrend.authentication.security;
+
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * Construye el PasswordEncoder con prefijo de algoritmo para migrar hashes sin resetear
+ * contraseñas
+ *
+ * Los hashes nuevos se guardan como {id}hash con el algoritmo configurado. Los hashes
+ * existentes se verifican con el algoritmo de su prefijo; los que no tienen prefijo son
+ * BCrypt de antes de la migración. upgradeEncoding indica si un hash usa otro algoritmo
+ * u otro coste, y el login lo recalcula con la contraseña recién verificada.
+ *
+ * Argon2 y scrypt necesitan Bouncy Castle, que no está entre las dependencias; para
+ * añadirlos basta con registrarlos en el mapa de algoritmos.
+ *
+ * @author TechTrend Team
+ */
+public final class PasswordEncoderFactory {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+
+    private PasswordEncoderFactory() {
+    }
+
+    /**
+     * Crea el encoder con prefijo de algoritmo
+     *
+     * @param encodingId Algoritmo de los hashes nuevos (bcrypt o pbkdf2)
+     * @param bcryptStrength Coste de BCrypt
+     * @return PasswordEncoder con prefijo de algoritmo
+     * @throws IllegalArgumentException si el algoritmo no está soportado
+     */
+    public static PasswordEncoder create(String encodingId, int bcryptStrength) {
+        TunableBCryptPasswordEncoder bcrypt = new TunableBCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                BCRYPT, bcrypt,
+                PBKDF2, Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(encodingId)) {
+            throw new IllegalArgumentException("Algoritmo de contraseñas no soportado: " + encodingId);
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(encodingId, encoders);
+        // Hashes guardados antes de usar prefijos
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}
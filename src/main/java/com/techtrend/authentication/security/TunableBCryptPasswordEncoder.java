@@ -0,0 +1,39 @@
+package com.techtrend.authentication.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCryptPasswordEncoder que pide recalcular los hashes con un coste distinto al configurado
+ *
+ * BCryptPasswordEncoder solo marca como desactualizados los hashes de coste menor. Aquí
+ * también los de coste mayor, para poder bajar el coste en producción si el login no da
+ * abasto, y que los hashes se ajusten al nuevo coste en el siguiente login.
+ *
+ * @author TechTrend Team
+ */
+public class TunableBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern COST_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final int strength;
+
+    public TunableBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = COST_PATTERN.matcher(encodedPassword);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("El hash no tiene el formato de BCrypt");
+        }
+        return Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
@@ -9,11 +9,17 @@ import com.techtrend.common.exception.InvalidCredentialsException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 /**
@@ -21,6 +27,11 @@ import java.util.regex.Pattern;
  * 
  * Maneja el registro de usuarios, validación de credenciales y generación de tokens JWT
  * 
+ * Login y registro no abren transacción propia: el hash de la contraseña puede esperar
+ * turno en el pool acotado de hashes, y hacerlo con una conexión JDBC tomada agotaría el
+ * pool de conexiones bajo carga. La lectura del usuario y el guardado van en llamadas
+ * cortas antes y después del hash.
+ * 
  * @author TechTrend Team
  */
 @Service
@@ -32,6 +43,9 @@ public class AuthenticationService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final JwtKeyStore jwtKeyStore;
+    private final PasswordRehashService passwordRehashService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${app.authentication.max-login-attempts:3}")
     private int maxLoginAttempts;
@@ -50,6 +64,7 @@ public class AuthenticationService {
      * @param request Solicitud de registro
      * @return Respuesta de autenticación con token
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AuthResponse registerUser(UserRegistrationRequest request) {
         log.info("Iniciando registro de usuario: {}", request.getEmail());
 
@@ -78,12 +93,18 @@ public class AuthenticationService {
         user.setRole(request.getRole());
         user.setIsActive(true);
 
-        // Guardar usuario
-        User savedUser = userRepository.save(user);
+        // Guardar usuario; la restricción única sobre email cubre el registro concurrente
+        User savedUser;
+        try {
+            savedUser = transactionTemplate.execute(status -> userRepository.save(user));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Registro concurrente detectado para: {}", request.getEmail());
+            throw new InvalidCredentialsException("El usuario ya existe");
+        }
         log.info("Usuario registrado exitosamente: {}", savedUser.getEmail());
 
         // Generar token
-        String token = jwtService.generateToken(savedUser.getEmail(), savedUser.getRole().name());
+        String token = jwtService.generateToken(savedUser.getId(), savedUser.getEmail(), savedUser.getRole().name());
 
         return AuthResponse.success(token, savedUser.getEmail(), savedUser.getRole());
     }
@@ -94,6 +115,7 @@ public class AuthenticationService {
      * @param request Solicitud de login
      * @return Respuesta de autenticación con token
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AuthResponse login(LoginRequest request) {
         log.info("Iniciando login para usuario: {}", request.getEmail());
 
@@ -124,7 +146,7 @@ public class AuthenticationService {
 
         // Validar contraseña
         if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            handleFailedLogin(user);
+            transactionTemplate.execute(status -> handleFailedLogin(user));
             log.warn("Contraseña incorrecta para usuario: {}", request.getEmail());
             throw new InvalidCredentialsException("Credenciales inválidas");
         }
@@ -132,15 +154,50 @@ public class AuthenticationService {
         // Login exitoso - resetear intentos fallidos
         user.resetLoginAttempts();
         user.updateLastLogin();
-        userRepository.save(user);
+        transactionTemplate.execute(status -> {
+            User saved = userRepository.save(user);
+            // Actualizar el hash si usa otro algoritmo u otro coste; se encola tras el commit
+            passwordRehashService.rehashIfNeeded(user, request.getPassword());
+            return saved;
+        });
 
         // Generar token
-        String token = jwtService.generateToken(user.getEmail(), user.getRole().name());
+        String token = jwtService.generateToken(user.getId(), user.getEmail(), user.getRole().name());
         log.info("Login exitoso para usuario: {}", user.getEmail());
 
         return AuthResponse.success(token, user.getEmail(), user.getRole());
     }
 
+    /**
+     * Verifica un token JWT una sola vez y devuelve sus claims
+     * 
+     * @param token Token a verificar
+     * @return Claims verificados, o vacío si el token es inválido o expiró
+     */
+    public Optional<VerifiedToken> verifyToken(String token) {
+        return jwtService.verify(token);
+    }
+
+    /**
+     * Obtiene las claves públicas vigentes para verificar tokens
+     * 
+     * @return Conjunto de claves en formato JWK Set
+     */
+    public Map<String, Object> getJwks() {
+        return jwtKeyStore.getJwks();
+    }
+
+    /**
+     * Obtiene métricas de la caché de tokens verificados
+     * 
+     * @return Mapa con aciertos, fallos, rechazos y tamaño de la caché, y estado de las claves
+     */
+    public Map<String, Object> getTokenCacheMetrics() {
+        Map<String, Object> metrics = new HashMap<>(jwtService.getCacheMetrics());
+        metrics.put("signingKeys", jwtKeyStore.getMetrics());
+        return metrics;
+    }
+
     /**
      * Valida un token JWT
      * 
@@ -210,8 +267,9 @@ public class AuthenticationService {
      * Maneja un intento de login fallido
      * 
      * @param user Usuario que falló el login
+     * @return Usuario guardado
      */
-    private void handleFailedLogin(User user) {
+    private User handleFailedLogin(User user) {
         user.incrementLoginAttempts();
         
         // Bloquear cuenta si se exceden los intentos
@@ -221,7 +279,7 @@ public class AuthenticationService {
             log.warn("Cuenta bloqueada para usuario: {} hasta {}", user.getEmail(), lockUntil);
         }
         
-        userRepository.save(user);
+        return userRepository.save(user);
     }
 
     /**
@@ -0,0 +1,411 @@
+package com.techtrend.authentication.service;
+
+import com.techtrend.common.util.DataPaths;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Almacén de claves ES256 (ECDSA P-256) para firmar y verificar tokens JWT
+ *
+ * - Firma siempre con la clave más reciente; su kid (huella RFC 7638 de la clave pública)
+ *   viaja en la cabecera de cada token.
+ * - Rota la clave cada rotation-interval. Las claves anteriores se conservan solo para
+ *   verificar hasta que expiran los tokens que firmaron y después se eliminan; otra
+ *   instancia puede seguir firmando con la anterior hasta su próxima comprobación, así
+ *   que la retención cuenta también rotation-check-interval.
+ * - Guarda las claves en key-dir (una por fichero) para que sobrevivan a los reinicios
+ *   y puedan compartirse entre instancias; al comprobar la rotación vuelve a leer el
+ *   directorio y publica las claves que hayan creado otras instancias.
+ * - Un token con un kid desconocido, por ejemplo firmado con la clave que otra instancia
+ *   acaba de crear, fuerza una relectura del directorio, como mucho una vez por
+ *   unknown-kid-reload-interval para que kids inventados no lo lean en cada solicitud.
+ * - key-dir es obligatorio y, salvo en el perfil test, debe estar fuera de target/: un
+ *   mvn clean borraría las claves e invalidaría todas las sesiones.
+ *
+ * Las claves públicas vigentes se publican en un conjunto inmutable que se reemplaza en
+ * cada rotación, así que verificar un token no bloquea ni sale de la JVM.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class JwtKeyStore {
+
+    public static final String ALGORITHM = "ES256";
+
+    private static final String CURVE = "secp256r1";
+    private static final String KEY_SUFFIX = ".key";
+    private static final int COORDINATE_BYTES = 32;
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final Path keyDir;
+    private final long rotationInterval;
+    private final long rotationCheckInterval;
+    private final long tokenExpiration;
+    private final long unknownKidReloadInterval;
+    private final LongSupplier clock;
+
+    private volatile KeySet keySet = new KeySet(null, Map.of(), List.of());
+    private final AtomicLong rotations = new AtomicLong();
+    private final AtomicLong removedKeys = new AtomicLong();
+    private final AtomicLong unknownKidReloads = new AtomicLong();
+    private final AtomicLong lastReloadAt = new AtomicLong();
+
+    @Autowired
+    public JwtKeyStore(@Value("${jwt.signing.key-dir:}") String keyDir,
+                       @Value("${jwt.signing.rotation-interval:604800000}") long rotationInterval,
+                       @Value("${jwt.signing.rotation-check-interval:3600000}") long rotationCheckInterval,
+                       @Value("${jwt.expiration}") long tokenExpiration,
+                       @Value("${jwt.signing.unknown-kid-reload-interval:5000}") long unknownKidReloadInterval,
+                       Environment environment) {
+        this(requireKeyDir(keyDir, DataPaths.buildDirAllowed(environment, "test")),
+                rotationInterval, rotationCheckInterval, tokenExpiration, unknownKidReloadInterval,
+                System::currentTimeMillis);
+    }
+
+    JwtKeyStore(Path keyDir, long rotationInterval, long rotationCheckInterval, long tokenExpiration,
+                long unknownKidReloadInterval, LongSupplier clock) {
+        this.keyDir = keyDir;
+        this.rotationInterval = rotationInterval;
+        this.rotationCheckInterval = rotationCheckInterval;
+        this.tokenExpiration = tokenExpiration;
+        this.unknownKidReloadInterval = unknownKidReloadInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Valida el directorio de claves configurado
+     *
+     * @param keyDir Valor de jwt.signing.key-dir
+     * @param testProfile true si está activo el perfil test, el único que admite target/
+     * @return Directorio de claves
+     * @throws IllegalStateException si falta o, fuera del perfil test, está dentro de target/
+     */
+    static Path requireKeyDir(String keyDir, boolean testProfile) {
+        return DataPaths.requirePersistent("jwt.signing.key-dir", keyDir, testProfile,
+                "las claves JWT");
+    }
+
+    /**
+     * Carga las claves guardadas y crea la primera si no hay ninguna vigente
+     */
+    @PostConstruct
+    public void initialize() {
+        rotateIfDue();
+        log.info("Claves JWT cargadas desde {}: activa {}, {} para verificar",
+                keyDir, keySet.active().kid(), keySet.verificationKeys().size());
+    }
+
+    /**
+     * Rota la clave de firma si la activa superó el intervalo de rotación y elimina las
+     * claves cuyos tokens ya expiraron
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.rotation-check-interval:3600000}")
+    public synchronized void rotateIfDue() {
+        List<StoredKey> keys = loadKeys();
+        long now = clock.getAsLong();
+        lastReloadAt.set(now);
+        if (keys.isEmpty() || now - keys.get(keys.size() - 1).createdAt() >= rotationInterval) {
+            keys.add(generateKey(now));
+            rotations.incrementAndGet();
+        }
+        publish(prune(keys, now));
+    }
+
+    /**
+     * Crea una clave nueva y la usa para firmar desde ese momento
+     *
+     * Las claves anteriores siguen verificando los tokens que ya firmaron.
+     *
+     * @return kid de la clave nueva
+     */
+    public synchronized String rotate() {
+        List<StoredKey> keys = loadKeys();
+        long now = clock.getAsLong();
+        lastReloadAt.set(now);
+        StoredKey key = generateKey(now);
+        keys.add(key);
+        rotations.incrementAndGet();
+        publish(prune(keys, now));
+        return key.kid();
+    }
+
+    /**
+     * Clave con la que se firman los tokens nuevos
+     *
+     * @return Clave activa
+     */
+    public SigningKey getSigningKey() {
+        return keySet.active();
+    }
+
+    /**
+     * Clave pública para verificar un token firmado con el kid dado
+     *
+     * Si el kid no está publicado se vuelve a leer key-dir, como mucho una vez por
+     * unknown-kid-reload-interval entre todas las solicitudes.
+     *
+     * @param kid kid de la cabecera del token
+     * @return Clave pública, o nula si el kid no existe o ya se retiró
+     */
+    public PublicKey getVerificationKey(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        PublicKey key = keySet.verificationKeys().get(kid);
+        if (key != null) {
+            return key;
+        }
+        long now = clock.getAsLong();
+        long last = lastReloadAt.get();
+        if (now - last < unknownKidReloadInterval || !lastReloadAt.compareAndSet(last, now)) {
+            return null;
+        }
+        reload();
+        return keySet.verificationKeys().get(kid);
+    }
+
+    /**
+     * Publica las claves que haya en key-dir sin crear ninguna
+     */
+    private synchronized void reload() {
+        unknownKidReloads.incrementAndGet();
+        List<StoredKey> keys = prune(loadKeys(), clock.getAsLong());
+        if (keys.isEmpty()) {
+            log.warn("Directorio de claves JWT {} vacío al buscar un kid desconocido, se conservan las publicadas",
+                    keyDir);
+            return;
+        }
+        publish(keys);
+    }
+
+    /**
+     * Conjunto de claves públicas vigentes en formato JWK Set (RFC 7517)
+     *
+     * @return Mapa con la lista "keys"
+     */
+    public Map<String, Object> getJwks() {
+        return Map.of("keys", keySet.jwks());
+    }
+
+    /**
+     * Obtiene métricas del almacén de claves
+     *
+     * @return Mapa con la clave activa, claves publicadas, rotaciones y eliminadas
+     */
+    public Map<String, Object> getMetrics() {
+        KeySet current = keySet;
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("activeKid", current.active() != null ? current.active().kid() : null);
+        metrics.put("publishedKeys", current.verificationKeys().size());
+        metrics.put("rotations", rotations.get());
+        metrics.put("removedKeys", removedKeys.get());
+        metrics.put("unknownKidReloads", unknownKidReloads.get());
+        metrics.put("rotationInterval", rotationInterval);
+        return metrics;
+    }
+
+    /**
+     * Elimina las claves retiradas cuyos tokens ya expiraron
+     *
+     * Una clave se retira cuando se crea la siguiente, pero las instancias que comparten
+     * key-dir no la ven hasta su próxima comprobación de rotación y mientras tanto siguen
+     * firmando con la anterior. Sus tokens expiran como tarde rotationCheckInterval +
+     * tokenExpiration después de crearse la siguiente.
+     */
+    private List<StoredKey> prune(List<StoredKey> keys, long now) {
+        List<StoredKey> retained = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            StoredKey key = keys.get(i);
+            boolean expired = i < keys.size() - 1
+                    && keys.get(i + 1).createdAt() + rotationCheckInterval + tokenExpiration < now;
+            if (!expired) {
+                retained.add(key);
+                continue;
+            }
+            try {
+                Files.deleteIfExists(key.file());
+                removedKeys.incrementAndGet();
+                log.info("Clave JWT {} retirada: sus tokens ya expiraron", key.kid());
+            } catch (IOException e) {
+                // Se intentará de nuevo en la próxima comprobación; mientras, no se publica
+                log.warn("No se pudo eliminar la clave JWT {}: {}", key.kid(), e.getMessage());
+            }
+        }
+        return retained;
+    }
+
+    private void publish(List<StoredKey> keys) {
+        Map<String, PublicKey> verificationKeys = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            StoredKey key = keys.get(i);
+            verificationKeys.put(key.kid(), key.keyPair().getPublic());
+            jwks.add(toJwk(key.kid(), (ECPublicKey) key.keyPair().getPublic()));
+        }
+        StoredKey newest = keys.get(keys.size() - 1);
+        SigningKey active = new SigningKey(newest.kid(), newest.keyPair().getPrivate());
+        if (keySet.active() != null && !keySet.active().kid().equals(active.kid())) {
+            log.info("Clave JWT activa rotada de {} a {}", keySet.active().kid(), active.kid());
+        }
+        keySet = new KeySet(active, Map.copyOf(verificationKeys), List.copyOf(jwks));
+    }
+
+    /**
+     * Lee las claves de keyDir ordenadas por fecha de creación
+     */
+    private List<StoredKey> loadKeys() {
+        List<StoredKey> keys = new ArrayList<>();
+        if (!Files.isDirectory(keyDir)) {
+            return keys;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(keyDir, "*" + KEY_SUFFIX)) {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            for (Path file : files) {
+                try {
+                    List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+                    PrivateKey privateKey = keyFactory.generatePrivate(
+                            new PKCS8EncodedKeySpec(Base64.getDecoder().decode(lines.get(0))));
+                    PublicKey publicKey = keyFactory.generatePublic(
+                            new X509EncodedKeySpec(Base64.getDecoder().decode(lines.get(1))));
+                    String kid = thumbprint((ECPublicKey) publicKey);
+                    keys.add(new StoredKey(kid, new KeyPair(publicKey, privateKey),
+                            Files.getLastModifiedTime(file).toMillis(), file));
+                } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                    log.warn("Clave JWT inválida ignorada en {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el directorio de claves JWT " + keyDir, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Algoritmo EC no disponible", e);
+        }
+        keys.sort(Comparator.comparingLong(StoredKey::createdAt).thenComparing(StoredKey::kid));
+        return keys;
+    }
+
+    /**
+     * Genera un par de claves P-256 y lo guarda como keyDir/kid.key
+     *
+     * El fichero se escribe con otro nombre y se renombra al terminar, así que otra
+     * instancia nunca lee una clave a medias.
+     */
+    private StoredKey generateKey(long now) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair keyPair = generator.generateKeyPair();
+            String kid = thumbprint((ECPublicKey) keyPair.getPublic());
+
+            Files.createDirectories(keyDir);
+            Path file = keyDir.resolve(kid + KEY_SUFFIX);
+            Path partial = keyDir.resolve(kid + KEY_SUFFIX + ".partial");
+            Files.write(partial, List.of(
+                    Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()),
+                    Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())), StandardCharsets.US_ASCII);
+            restrictToOwner(partial);
+            Files.setLastModifiedTime(partial, FileTime.fromMillis(now));
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Nueva clave JWT {} creada en {}", kid, file);
+            return new StoredKey(kid, keyPair, now, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar la clave JWT en " + keyDir, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo generar la clave JWT", e);
+        }
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Sistema de ficheros sin permisos POSIX
+        }
+    }
+
+    private static Map<String, Object> toJwk(String kid, ECPublicKey publicKey) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+        jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", ALGORITHM);
+        return jwk;
+    }
+
+    /**
+     * Huella JWK de la clave pública (RFC 7638), usada como kid
+     */
+    static String thumbprint(ECPublicKey publicKey) {
+        String canonical = "{\"crv\":\"P-256\",\"kty\":\"EC\",\"x\":\"" + coordinate(publicKey.getW().getAffineX())
+                + "\",\"y\":\"" + coordinate(publicKey.getW().getAffineY()) + "\"}";
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return BASE64_URL.encodeToString(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Coordenada de la curva en base64url con longitud fija de 32 bytes
+     */
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[COORDINATE_BYTES];
+        int length = Math.min(bytes.length, COORDINATE_BYTES);
+        System.arraycopy(bytes, bytes.length - length, fixed, COORDINATE_BYTES - length, length);
+        return BASE64_URL.encodeToString(fixed);
+    }
+
+    /**
+     * Clave privada activa y su kid
+     */
+    public record SigningKey(String kid, PrivateKey privateKey) {
+    }
+
+    private record StoredKey(String kid, KeyPair keyPair, long createdAt, Path file) {
+    }
+
+    private record KeySet(SigningKey active, Map<String, PublicKey> verificationKeys,
+                          List<Map<String, Object>> jwks) {
+    }
+}
@@ -1,176 +1,300 @@
 package com.techtrend.authentication.service;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
  * Servicio para manejo de JWT (JSON Web Tokens)
- * 
- * Proporciona funcionalidades para generar y validar tokens de autenticación
- * 
+ *
+ * Proporciona funcionalidades para generar y validar tokens de autenticación.
+ * Los tokens se firman con ES256 y la clave activa de JwtKeyStore, cuyo kid va en la
+ * cabecera; al verificar, la clave pública se busca por kid en el conjunto en memoria,
+ * sin secreto compartido ni llamadas de red.
+ * El parser se construye una sola vez, y los tokens ya verificados
+ * se guardan en una caché acotada indexada por el hash SHA-256 del token, de modo que
+ * validar el mismo token en solicitudes sucesivas no vuelve a comprobar la firma.
+ * Una entrada nunca sobrevive a la expiración del token.
+ *
  * @author TechTrend Team
  */
 @Service
+@Slf4j
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private static final String ROLE_CLAIM = "role";
+    private static final String USER_ID_CLAIM = "userId";
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    private final JwtKeyStore keyStore;
+    private final JwtParser parser;
+    private final long expiration;
+    private final int cacheMaxEntries;
+    private final long cacheTtlMillis;
+    private final LongSupplier clock;
+
+    // Tokens verificados por hash del token; los inválidos no se guardan
+    private final Map<String, CachedToken> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong rejectedTokens = new AtomicLong();
+
+    @Autowired
+    public JwtService(JwtKeyStore keyStore,
+                      @Value("${jwt.expiration}") long expiration,
+                      @Value("${jwt.cache.max-entries:10000}") int cacheMaxEntries,
+                      @Value("${jwt.cache.ttl:600000}") long cacheTtlMillis) {
+        this(keyStore, expiration, cacheMaxEntries, cacheTtlMillis, System::currentTimeMillis);
+    }
+
+    JwtService(JwtKeyStore keyStore, long expiration, int cacheMaxEntries, long cacheTtlMillis, LongSupplier clock) {
+        this.keyStore = keyStore;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new KidKeyResolver())
+                .setClock(() -> new Date(clock.getAsLong()))
+                .build();
+        this.expiration = expiration;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.clock = clock;
+    }
 
     /**
      * Genera un token JWT para un usuario
-     * 
+     *
+     * El ID del usuario viaja en el token para que los servicios identifiquen al usuario
+     * sin consultar la base de datos.
+     *
+     * @param userId ID del usuario
      * @param email Email del usuario
      * @param role Rol del usuario
      * @return Token JWT generado
      */
-    public String generateToken(String email, String role) {
+    public String generateToken(Long userId, String email, String role) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("role", role);
+        claims.put(USER_ID_CLAIM, userId);
+        claims.put(ROLE_CLAIM, role);
         return createToken(claims, email);
     }
 
     /**
      * Crea un token JWT con claims específicos
-     * 
+     *
      * @param claims Claims del token
      * @param subject Subject del token (email del usuario)
      * @return Token JWT generado
      */
     private String createToken(Map<String, Object> claims, String subject) {
-        Date now = new Date();
+        Date now = new Date(clock.getAsLong());
         Date expiryDate = new Date(now.getTime() + expiration);
+        JwtKeyStore.SigningKey signingKey = keyStore.getSigningKey();
 
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.kid())
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey.privateKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
     /**
-     * Extrae el email del usuario del token
-     * 
+     * Verifica firma y expiración del token una sola vez y devuelve sus claims
+     *
      * @param token Token JWT
-     * @return Email del usuario
+     * @return Claims verificados, o vacío si el token es inválido o expiró
      */
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            rejectedTokens.incrementAndGet();
+            return Optional.empty();
+        }
 
-    /**
-     * Extrae la fecha de expiración del token
-     * 
-     * @param token Token JWT
-     * @return Fecha de expiración
-     */
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+        long now = clock.getAsLong();
+        String key = hash(token);
+        CachedToken cached = cache.get(key);
+        if (cached != null) {
+            if (now < cached.cachedUntil()) {
+                cacheHits.incrementAndGet();
+                return Optional.of(cached.token());
+            }
+            cache.remove(key, cached);
+        }
 
-    /**
-     * Extrae un claim específico del token
-     * 
-     * @param token Token JWT
-     * @param claimsResolver Función para resolver el claim
-     * @return Valor del claim
-     */
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        cacheMisses.incrementAndGet();
+        VerifiedToken verified;
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                rejectedTokens.incrementAndGet();
+                return Optional.empty();
+            }
+            verified = new VerifiedToken(
+                    claims.get(USER_ID_CLAIM, Long.class),
+                    claims.getSubject(),
+                    claims.get(ROLE_CLAIM, String.class),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                    claims.getExpiration().toInstant());
+        } catch (JwtException | IllegalArgumentException e) {
+            rejectedTokens.incrementAndGet();
+            log.debug("Token JWT rechazado: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (verified.isExpiredAt(now)) {
+            rejectedTokens.incrementAndGet();
+            return Optional.empty();
+        }
+
+        long cachedUntil = Math.min(verified.getExpiresAt().toEpochMilli(), now + cacheTtlMillis);
+        cachePut(key, new CachedToken(verified, cachedUntil));
+        return Optional.of(verified);
     }
 
     /**
-     * Extrae todos los claims del token
-     * 
+     * Extrae el email del usuario del token
+     *
      * @param token Token JWT
-     * @return Claims del token
+     * @return Email del usuario, o nulo si el token es inválido
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public String extractEmail(String token) {
+        return verify(token).map(VerifiedToken::getEmail).orElse(null);
     }
 
     /**
-     * Obtiene la clave de firma para el token
-     * 
-     * @return Clave de firma
+     * Extrae la fecha de expiración del token
+     *
+     * @param token Token JWT
+     * @return Fecha de expiración, o nula si el token es inválido
      */
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    public Date extractExpiration(String token) {
+        return verify(token).map(verified -> Date.from(verified.getExpiresAt())).orElse(null);
     }
 
     /**
      * Verifica si el token ha expirado
-     * 
+     *
      * @param token Token JWT
-     * @return true si ha expirado, false en caso contrario
+     * @return true si ha expirado o es inválido, false en caso contrario
      */
     public Boolean isTokenExpired(String token) {
-        try {
-            return extractExpiration(token).before(new Date());
-        } catch (Exception e) {
-            return true;
-        }
+        return verify(token).isEmpty();
     }
 
     /**
      * Valida un token JWT
-     * 
+     *
      * @param token Token JWT a validar
      * @param email Email del usuario
      * @return true si el token es válido, false en caso contrario
      */
     public Boolean validateToken(String token, String email) {
-        try {
-            final String extractedEmail = extractEmail(token);
-            return (email.equals(extractedEmail) && !isTokenExpired(token));
-        } catch (Exception e) {
-            return false;
-        }
+        return verify(token).map(verified -> verified.getEmail().equals(email)).orElse(false);
     }
 
     /**
      * Extrae el rol del usuario del token
-     * 
+     *
      * @param token Token JWT
-     * @return Rol del usuario
+     * @return Rol del usuario, o nulo si el token es inválido
      */
     public String extractRole(String token) {
-        try {
-            Claims claims = extractAllClaims(token);
-            return claims.get("role", String.class);
-        } catch (Exception e) {
-            return null;
-        }
+        return verify(token).map(VerifiedToken::getRole).orElse(null);
     }
 
     /**
      * Verifica si un token es válido sin verificar el email
-     * 
+     *
      * @param token Token JWT
      * @return true si el token es válido, false en caso contrario
      */
     public Boolean isTokenValid(String token) {
+        return verify(token).isPresent();
+    }
+
+    /**
+     * Obtiene métricas de la caché de tokens verificados
+     *
+     * @return Mapa con aciertos, fallos, rechazos y tamaño de la caché
+     */
+    public Map<String, Object> getCacheMetrics() {
+        long hits = cacheHits.get();
+        long misses = cacheMisses.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("rejected", rejectedTokens.get());
+        metrics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        metrics.put("size", cache.size());
+        metrics.put("maxEntries", cacheMaxEntries);
+        return metrics;
+    }
+
+    private void cachePut(String key, CachedToken cachedToken) {
+        if (cache.size() >= cacheMaxEntries) {
+            Iterator<String> keys = cache.keySet().iterator();
+            int toEvict = Math.max(1, cacheMaxEntries / 10);
+            while (keys.hasNext() && toEvict-- > 0) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        cache.put(key, cachedToken);
+    }
+
+    /**
+     * Calcula la clave de caché de un token, para no retener los tokens en memoria
+     *
+     * @param token Token JWT
+     * @return Hash SHA-256 en hexadecimal
+     */
+    private static String hash(String token) {
         try {
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private record CachedToken(VerifiedToken token, long cachedUntil) {
+    }
+
+    /**
+     * Resuelve la clave pública por el kid de la cabecera
+     *
+     * Solo acepta ES256: un token con otro algoritmo (p. ej. HS256 firmado con la clave
+     * pública como secreto) se rechaza antes de comprobar la firma.
+     */
+    private class KidKeyResolver extends SigningKeyResolverAdapter {
+
+        // jjwt 0.11 declara JwsHeader sin parametrizar en esta firma y JwsHeader<?> no la sobrescribe
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            if (!JwtKeyStore.ALGORITHM.equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Algoritmo de firma no admitido: " + header.getAlgorithm());
+            }
+            Key key = keyStore.getVerificationKey(header.getKeyId());
+            if (key == null) {
+                throw new UnsupportedJwtException("Clave de firma desconocida: " + header.getKeyId());
+            }
+            return key;
         }
     }
 }
@@ -0,0 +1,142 @@
+package com.techtrend.authentication.service;
+
+import com.techtrend.authentication.model.User;
+import com.techtrend.authentication.repository.UserRepository;
+import com.techtrend.common.exception.PasswordHashingUnavailableException;
+import com.techtrend.common.transaction.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio que recalcula en segundo plano los hashes de contraseñas desactualizados
+ *
+ * Tras un login correcto, si el hash guardado usa otro algoritmo u otro coste que los
+ * configurados, se recalcula con la contraseña recién verificada y se guarda. Así se
+ * puede cambiar el algoritmo o ajustar el coste sin forzar cambios de contraseña.
+ *
+ * - El rehash se encola tras el commit del login y lo hace un único hilo, que usa el
+ *   mismo pool acotado de hashes que el login: nunca ocupa más de un hilo de ese pool.
+ * - Si la cola está llena o el pool está saturado se omite; se intentará en el
+ *   siguiente login del usuario.
+ * - El hash se reemplaza solo si no cambió desde el login, para no pisar un cambio de
+ *   contraseña concurrente.
+ *
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class PasswordRehashService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final UserRepository userRepository;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public PasswordRehashService(PasswordEncoder passwordEncoder,
+                                 UserRepository userRepository,
+                                 @Value("${security.password.rehash-queue-capacity:100}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.userRepository = userRepository;
+        this.executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-rehash");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Programa el rehash de la contraseña si su hash está desactualizado
+     *
+     * Debe llamarse después de verificar la contraseña. El rehash se encola cuando la
+     * transacción actual confirma, para que el guardado del login no lo sobrescriba.
+     *
+     * @param user Usuario que acaba de iniciar sesión
+     * @param rawPassword Contraseña verificada
+     * @return true si se programó el rehash
+     */
+    public boolean rehashIfNeeded(User user, String rawPassword) {
+        String currentHash = user.getPassword();
+        if (!passwordEncoder.upgradeEncoding(currentHash)) {
+            return false;
+        }
+        Long userId = user.getId();
+        TransactionHooks.runAfterCommit(() -> submit(userId, currentHash, rawPassword));
+        return true;
+    }
+
+    private void submit(Long userId, String currentHash, String rawPassword) {
+        try {
+            executor.execute(() -> rehash(userId, currentHash, rawPassword));
+            scheduled.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            skipped.incrementAndGet();
+            log.debug("Cola de rehash llena, el usuario {} se actualizará en otro login", userId);
+        }
+    }
+
+    /**
+     * Recalcula el hash y lo guarda si el usuario sigue teniendo el anterior
+     *
+     * @param userId ID del usuario
+     * @param currentHash Hash verificado en el login
+     * @param rawPassword Contraseña verificada
+     */
+    void rehash(Long userId, String currentHash, String rawPassword) {
+        try {
+            String newHash = passwordEncoder.encode(rawPassword);
+            if (userRepository.updatePasswordIfUnchanged(userId, currentHash, newHash) == 1) {
+                rehashed.incrementAndGet();
+                log.info("Hash de la contraseña del usuario {} actualizado", userId);
+            } else {
+                conflicts.incrementAndGet();
+                log.info("La contraseña del usuario {} cambió durante el rehash, se conserva la nueva", userId);
+            }
+        } catch (PasswordHashingUnavailableException e) {
+            skipped.incrementAndGet();
+            log.debug("Pool de hashes saturado, el usuario {} se actualizará en otro login", userId);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Error actualizando el hash de la contraseña del usuario {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene métricas del rehash de contraseñas
+     *
+     * @return Mapa con rehashes programados, completados, omitidos, en conflicto y fallidos
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("scheduled", scheduled.get());
+        metrics.put("rehashed", rehashed.get());
+        metrics.put("skipped", skipped.get());
+        metrics.put("conflicts", conflicts.get());
+        metrics.put("failed", failed.get());
+        metrics.put("queueDepth", executor.getQueue().size());
+        return metrics;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
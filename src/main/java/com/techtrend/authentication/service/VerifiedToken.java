@@ -0,0 +1,39 @@
+package com.techtrend.authentication.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Claims de un token JWT cuya firma y expiración ya se verificaron
+ *
+ * El ID de usuario es nulo en los tokens emitidos antes de incluirlo como claim.
+ *
+ * Es inmutable, por lo que la misma instancia se comparte entre todas las solicitudes
+ * que presentan el mismo token mientras siga en la caché de JwtService.
+ *
+ * @author TechTrend Team
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public final class VerifiedToken {
+
+    private final Long userId;
+    private final String email;
+    private final String role;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    /**
+     * Indica si el token ya expiró en el instante dado
+     *
+     * @param nowMillis Instante actual en milisegundos
+     * @return true si expiró
+     */
+    public boolean isExpiredAt(long nowMillis) {
+        return expiresAt.toEpochMilli() <= nowMillis;
+    }
+}
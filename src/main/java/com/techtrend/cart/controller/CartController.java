@@ -2,12 +2,16 @@ package com.techtrend.cart.controller;
 
 import com.techtrend.cart.dto.CartItemRequest;
 import com.techtrend.cart.dto.CartItemResponse;
+import com.techtrend.cart.dto.CartRevalidationResponse;
+import com.techtrend.cart.dto.RelatedProductResponse;
+import com.techtrend.cart.dto.TrendingProductResponse;
 import com.techtrend.cart.service.CartService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -34,13 +38,13 @@ public class CartController {
     /**
      * Endpoint para agregar un producto al carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @param request Solicitud con información del producto
      * @return Item del carrito creado o actualizado
      */
     @PostMapping("/items")
     public ResponseEntity<CartItemResponse> addProductToCart(
-            @RequestParam Long userId,
+            @AuthenticationPrincipal(expression = "userId") Long userId,
             @Valid @RequestBody CartItemRequest request) {
         log.info("Solicitud para agregar producto al carrito: usuario {}, producto {}", 
                 userId, request.getProductId());
@@ -59,14 +63,14 @@ public class CartController {
     /**
      * Endpoint para actualizar la cantidad de un item del carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @param itemId ID del item
      * @param quantity Nueva cantidad
      * @return Item del carrito actualizado
      */
     @PutMapping("/items/{itemId}")
     public ResponseEntity<CartItemResponse> updateCartItemQuantity(
-            @RequestParam Long userId,
+            @AuthenticationPrincipal(expression = "userId") Long userId,
             @PathVariable Long itemId,
             @RequestParam int quantity) {
         log.info("Solicitud para actualizar cantidad: usuario {}, item {}, cantidad {}", 
@@ -89,11 +93,11 @@ public class CartController {
     /**
      * Endpoint para obtener todos los items del carrito de un usuario
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @return Lista de items del carrito
      */
     @GetMapping("/items")
-    public ResponseEntity<List<CartItemResponse>> getCartItems(@RequestParam Long userId) {
+    public ResponseEntity<List<CartItemResponse>> getCartItems(@AuthenticationPrincipal(expression = "userId") Long userId) {
         log.info("Solicitud para obtener items del carrito: usuario {}", userId);
         
         try {
@@ -110,13 +114,13 @@ public class CartController {
     /**
      * Endpoint para obtener un item específico del carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @param itemId ID del item
      * @return Item del carrito
      */
     @GetMapping("/items/{itemId}")
     public ResponseEntity<CartItemResponse> getCartItem(
-            @RequestParam Long userId,
+            @AuthenticationPrincipal(expression = "userId") Long userId,
             @PathVariable Long itemId) {
         log.info("Solicitud para obtener item del carrito: usuario {}, item {}", userId, itemId);
         
@@ -136,13 +140,13 @@ public class CartController {
     /**
      * Endpoint para eliminar un item del carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @param itemId ID del item a eliminar
      * @return Respuesta de confirmación
      */
     @DeleteMapping("/items/{itemId}")
     public ResponseEntity<Map<String, Object>> removeCartItem(
-            @RequestParam Long userId,
+            @AuthenticationPrincipal(expression = "userId") Long userId,
             @PathVariable Long itemId) {
         log.info("Solicitud para eliminar item del carrito: usuario {}, item {}", userId, itemId);
         
@@ -177,11 +181,11 @@ public class CartController {
     /**
      * Endpoint para vaciar el carrito de un usuario
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @return Respuesta de confirmación
      */
     @DeleteMapping("/items")
-    public ResponseEntity<Map<String, Object>> clearCart(@RequestParam Long userId) {
+    public ResponseEntity<Map<String, Object>> clearCart(@AuthenticationPrincipal(expression = "userId") Long userId) {
         log.info("Solicitud para vaciar carrito: usuario {}", userId);
         
         Map<String, Object> response = new HashMap<>();
@@ -210,11 +214,11 @@ public class CartController {
     /**
      * Endpoint para obtener el total del carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @return Total del carrito
      */
     @GetMapping("/total")
-    public ResponseEntity<Map<String, Object>> getCartTotal(@RequestParam Long userId) {
+    public ResponseEntity<Map<String, Object>> getCartTotal(@AuthenticationPrincipal(expression = "userId") Long userId) {
         log.info("Solicitud para obtener total del carrito: usuario {}", userId);
         
         Map<String, Object> response = new HashMap<>();
@@ -235,14 +239,34 @@ public class CartController {
         }
     }
 
+    /**
+     * Endpoint para revalidar el carrito contra los precios vigentes antes del pago
+     * 
+     * @param userId ID del usuario autenticado
+     * @return Carrito revalidado con su total actualizado
+     */
+    @PostMapping("/revalidate")
+    public ResponseEntity<CartRevalidationResponse> revalidateCart(@AuthenticationPrincipal(expression = "userId") Long userId) {
+        log.info("Solicitud para revalidar carrito: usuario {}", userId);
+        
+        try {
+            CartRevalidationResponse response = cartService.revalidateCart(userId);
+            log.info("Carrito revalidado: usuario {}, total {}", userId, response.getTotal());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error revalidando carrito: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Endpoint para obtener el número de items en el carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @return Número de items
      */
     @GetMapping("/count")
-    public ResponseEntity<Map<String, Object>> getCartItemCount(@RequestParam Long userId) {
+    public ResponseEntity<Map<String, Object>> getCartItemCount(@AuthenticationPrincipal(expression = "userId") Long userId) {
         log.info("Solicitud para obtener cantidad de items del carrito: usuario {}", userId);
         
         Map<String, Object> response = new HashMap<>();
@@ -265,13 +289,13 @@ public class CartController {
     /**
      * Endpoint para verificar si un producto está en el carrito
      * 
-     * @param userId ID del usuario
+     * @param userId ID del usuario autenticado
      * @param productId ID del producto
      * @return Respuesta indicando si el producto está en el carrito
      */
     @GetMapping("/check-product")
     public ResponseEntity<Map<String, Object>> checkProductInCart(
-            @RequestParam Long userId,
+            @AuthenticationPrincipal(expression = "userId") Long userId,
             @RequestParam Long productId) {
         log.info("Solicitud para verificar producto en carrito: usuario {}, producto {}", 
                 userId, productId);
@@ -295,6 +319,62 @@ public class CartController {
         }
     }
 
+    /**
+     * Endpoint para obtener cuántos usuarios tienen un producto en su carrito
+     * 
+     * @param productId ID del producto
+     * @return Número de usuarios con el producto en el carrito
+     */
+    @GetMapping("/products/{productId}/popularity")
+    public ResponseEntity<Map<String, Object>> getProductPopularity(@PathVariable Long productId) {
+        log.info("Solicitud para obtener popularidad del producto: {}", productId);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("usersWithProduct", cartService.getUsersWithProductInCart(productId));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Endpoint para obtener los productos que otros clientes también agregaron
+     * 
+     * @param productId ID del producto
+     * @param limit Número máximo de productos
+     * @return Productos relacionados ordenados por carritos compartidos
+     */
+    @GetMapping("/products/{productId}/also-added")
+    public ResponseEntity<List<RelatedProductResponse>> getRelatedProducts(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "5") int limit) {
+        log.info("Solicitud para obtener productos relacionados: producto {}, límite {}", productId, limit);
+        
+        try {
+            return ResponseEntity.ok(cartService.getRelatedProducts(productId, limit));
+        } catch (Exception e) {
+            log.error("Error obteniendo productos relacionados: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener los productos en tendencia en carritos
+     * 
+     * @param limit Número máximo de productos
+     * @return Productos con más agregados recientes
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingProductResponse>> getTrendingProducts(
+            @RequestParam(defaultValue = "10") int limit) {
+        log.info("Solicitud para obtener productos en tendencia: límite {}", limit);
+        
+        try {
+            return ResponseEntity.ok(cartService.getTrendingProducts(limit));
+        } catch (Exception e) {
+            log.error("Error obteniendo productos en tendencia: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Endpoint de health check para el microservicio
      * 
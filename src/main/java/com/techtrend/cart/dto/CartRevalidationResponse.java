@@ -0,0 +1,34 @@
+package com.techtrend.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO con el resultado de revalidar un carrito contra los precios vigentes del catálogo
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartRevalidationResponse {
+
+    private Long userId;
+    private List<CartItemResponse> items;
+    private BigDecimal total;
+    private int repricedItems;
+    private List<Long> unavailableProductIds;
+
+    /**
+     * Indica si el carrito puede pasar a pago tal como está
+     * 
+     * @return true si todos los productos siguen disponibles
+     */
+    public boolean isCheckoutReady() {
+        return unavailableProductIds == null || unavailableProductIds.isEmpty();
+    }
+}
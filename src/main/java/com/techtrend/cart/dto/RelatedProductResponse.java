@@ -0,0 +1,19 @@
+package com.techtrend.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para los productos que suelen estar en el mismo carrito que otro
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedProductResponse {
+
+    private Long productId;
+    private long sharedCarts;
+}
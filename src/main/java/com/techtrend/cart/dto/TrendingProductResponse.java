@@ -0,0 +1,20 @@
+package com.techtrend.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para los productos con más actividad reciente en carritos
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingProductResponse {
+
+    private Long productId;
+    private long recentAdds;
+    private long usersWithProduct;
+}
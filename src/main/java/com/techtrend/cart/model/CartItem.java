@@ -16,7 +16,10 @@ import java.time.LocalDateTime;
  * @author TechTrend Team
  */
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items",
+       uniqueConstraints = @UniqueConstraint(name = "uk_cart_items_active_product",
+                                             columnNames = {"user_id", "product_id", "active_slot"}),
+       indexes = @Index(name = "idx_cart_items_product_active_id", columnList = "product_id, is_active, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -60,6 +63,15 @@ public class CartItem {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    /**
+     * Marca de unicidad: 1 mientras el item está activo y NULL cuando se desactiva.
+     * Como los NULL no colisionan en un índice único, la restricción
+     * (user_id, product_id, active_slot) permite un único item activo por producto
+     * y cualquier número de items históricos inactivos.
+     */
+    @Column(name = "active_slot")
+    private Integer activeSlot = 1;
+
     /**
      * Calcula el precio total del item
      * 
@@ -99,6 +111,7 @@ public class CartItem {
      */
     public void deactivate() {
         this.isActive = false;
+        this.activeSlot = null;
         this.updatedAt = LocalDateTime.now();
     }
 
@@ -107,6 +120,7 @@ public class CartItem {
      */
     public void activate() {
         this.isActive = true;
+        this.activeSlot = 1;
         this.updatedAt = LocalDateTime.now();
     }
 
@@ -124,12 +138,14 @@ public class CartItem {
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
+        this.activeSlot = isItemActive() ? 1 : null;
         this.calculateTotalPrice();
     }
 
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
+        this.activeSlot = isItemActive() ? 1 : null;
         this.calculateTotalPrice();
     }
 }
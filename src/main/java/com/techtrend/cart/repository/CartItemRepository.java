@@ -1,14 +1,19 @@
 package com.techtrend.cart.repository;
 
 import com.techtrend.cart.model.CartItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad CartItem
@@ -114,6 +119,34 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      */
     List<CartItem> findByProductIdAndIsActiveTrue(Long productId);
 
+    /**
+     * Busca items activos del carrito por producto a partir de un ID (paginación por clave)
+     * 
+     * Con el pageable ordenado por id, cada página cuesta lo mismo sin importar cuántas
+     * se hayan leído antes, a diferencia de un OFFSET
+     * 
+     * @param productId ID del producto
+     * @param lastId Último ID de la página anterior (0 para la primera)
+     * @param pageable Tamaño de página y orden por id
+     * @return Items que contienen el producto con ID mayor a lastId
+     */
+    List<CartItem> findByProductIdAndIsActiveTrueAndIdGreaterThan(Long productId, Long lastId, Pageable pageable);
+
+    /**
+     * Actualiza en bloque el precio unitario y total de items activos
+     * 
+     * @param ids IDs de los items a actualizar
+     * @param unitPrice Nuevo precio unitario
+     * @param updatedAt Fecha de actualización
+     * @return Número de items actualizados
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CartItem ci SET ci.unitPrice = :unitPrice, ci.totalPrice = ci.quantity * :unitPrice, " +
+           "ci.updatedAt = :updatedAt WHERE ci.id IN :ids AND ci.isActive = true")
+    int repriceItems(@Param("ids") Collection<Long> ids,
+                     @Param("unitPrice") BigDecimal unitPrice,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
     /**
      * Cuenta cuántos usuarios tienen un producto específico en su carrito
      * 
@@ -122,4 +155,31 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      */
     @Query("SELECT COUNT(DISTINCT ci.userId) FROM CartItem ci WHERE ci.productId = :productId AND ci.isActive = true")
     long countUsersWithProductInCart(@Param("productId") Long productId);
+
+    /**
+     * Cuenta cuántos usuarios tienen cada producto en su carrito
+     * 
+     * @return Filas [productId, número de usuarios]
+     */
+    @Query("SELECT ci.productId, COUNT(DISTINCT ci.userId) FROM CartItem ci WHERE ci.isActive = true GROUP BY ci.productId")
+    List<Object[]> countUsersPerProduct();
+
+    /**
+     * Obtiene los IDs de producto del carrito activo de un usuario
+     * 
+     * @param userId ID del usuario
+     * @return IDs de los productos en el carrito
+     */
+    @Query("SELECT ci.productId FROM CartItem ci WHERE ci.userId = :userId AND ci.isActive = true")
+    List<Long> findActiveProductIdsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Recorre los pares usuario-producto de todos los carritos activos agrupados por usuario
+     * 
+     * Debe consumirse dentro de una transacción y cerrarse al terminar
+     * 
+     * @return Flujo de filas [userId, productId] ordenadas por usuario
+     */
+    @Query("SELECT ci.userId, ci.productId FROM CartItem ci WHERE ci.isActive = true ORDER BY ci.userId")
+    Stream<Object[]> streamActiveUserProducts();
 }
@@ -0,0 +1,101 @@
+package com.techtrend.cart.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Contador en memoria de items activos por carrito
+ *
+ * Evita ejecutar countByUserIdAndIsActiveTrue en cada agregado: el valor se carga desde la
+ * base de datos la primera vez y luego se ajusta con cada inserción o desactivación
+ * confirmada. La caché está acotada; una entrada desalojada simplemente se vuelve a
+ * cargar en la siguiente consulta.
+ *
+ * Los ajustes deben aplicarse después del commit y con el lock del usuario tomado
+ * (ver {@link CartLockManager}) para que el contador nunca se adelante a la base de datos.
+ *
+ * @author TechTrend Team
+ */
+@Component
+public class CartItemCounter {
+
+    private final ConcurrentHashMap<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private final int maxTrackedUsers;
+
+    public CartItemCounter(@Value("${app.cart.counter-max-users:100000}") int maxTrackedUsers) {
+        this.maxTrackedUsers = maxTrackedUsers;
+    }
+
+    /**
+     * Obtiene el número de items activos de un usuario
+     *
+     * @param userId ID del usuario
+     * @param loader Consulta a la base de datos usada si el valor no está en caché
+     * @return Número de items activos
+     */
+    public int get(Long userId, IntSupplier loader) {
+        AtomicInteger count = counts.get(userId);
+        if (count == null) {
+            evictIfFull();
+            count = counts.computeIfAbsent(userId, id -> new AtomicInteger(loader.getAsInt()));
+        }
+        return count.get();
+    }
+
+    /**
+     * Ajusta el contador de un usuario si está en caché
+     *
+     * @param userId ID del usuario
+     * @param delta Variación del número de items
+     */
+    public void adjust(Long userId, int delta) {
+        AtomicInteger count = counts.get(userId);
+        if (count != null) {
+            count.updateAndGet(value -> Math.max(0, value + delta));
+        }
+    }
+
+    /**
+     * Marca el carrito de un usuario como vacío
+     *
+     * @param userId ID del usuario
+     */
+    public void reset(Long userId) {
+        counts.put(userId, new AtomicInteger());
+    }
+
+    /**
+     * Descarta el valor en caché de un usuario
+     *
+     * @param userId ID del usuario
+     */
+    public void invalidate(Long userId) {
+        counts.remove(userId);
+    }
+
+    /**
+     * Número de usuarios con contador en caché
+     *
+     * @return Tamaño de la caché
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    private void evictIfFull() {
+        if (counts.size() < maxTrackedUsers) {
+            return;
+        }
+        Iterator<Long> keys = counts.keySet().iterator();
+        int toEvict = Math.max(1, maxTrackedUsers / 10);
+        while (keys.hasNext() && toEvict-- > 0) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
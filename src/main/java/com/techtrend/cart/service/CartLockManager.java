@@ -0,0 +1,117 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.common.transaction.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Locks por usuario para serializar las mutaciones de un mismo carrito
+ *
+ * Usa lock striping: un arreglo fijo de locks indexado por el hash del userId. Dos
+ * usuarios distintos solo compiten si caen en la misma franja, de modo que no hay
+ * contención global ni crecimiento de memoria con el número de usuarios.
+ *
+ * @author TechTrend Team
+ */
+@Component
+public class CartLockManager {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public CartLockManager(@Value("${app.cart.lock-stripes:64}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Ejecuta una acción con el lock del usuario tomado
+     *
+     * Si hay una transacción activa el lock se libera al terminar la transacción y no al
+     * salir del método, así la siguiente mutación del mismo usuario ya ve los datos confirmados.
+     *
+     * @param userId ID del usuario
+     * @param action Acción a ejecutar
+     * @return Resultado de la acción
+     */
+    public <T> T executeLocked(Long userId, Supplier<T> action) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        boolean releaseOnCompletion = false;
+        try {
+            releaseOnCompletion = TransactionHooks.registerAfterCompletion(lock::unlock);
+            return action.get();
+        } finally {
+            if (!releaseOnCompletion) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una acción con los locks de varios usuarios tomados
+     *
+     * Cada franja se toma una sola vez y siempre en orden de índice, así dos llamadas
+     * concurrentes con usuarios solapados no se bloquean mutuamente. Los locks se liberan
+     * al salir del método: debe llamarse fuera de una transacción, con la acción
+     * confirmando la suya antes de devolver.
+     *
+     * @param userIds IDs de los usuarios
+     * @param action Acción a ejecutar
+     * @return Resultado de la acción
+     */
+    public <T> T executeLocked(Collection<Long> userIds, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long userId : userIds) {
+            indexes.add(stripeIndex(userId));
+        }
+        Deque<ReentrantLock> acquired = new ArrayDeque<>(indexes.size());
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                acquired.push(stripes[index]);
+            }
+            return action.get();
+        } finally {
+            while (!acquired.isEmpty()) {
+                acquired.pop().unlock();
+            }
+        }
+    }
+
+    /**
+     * Obtiene el lock asignado a un usuario
+     *
+     * @param userId ID del usuario
+     * @return Lock de la franja del usuario
+     */
+    ReentrantLock lockFor(Long userId) {
+        return stripes[stripeIndex(userId)];
+    }
+
+    private int stripeIndex(Long userId) {
+        int hash = Long.hashCode(userId);
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+
+    /**
+     * Número de franjas de locks
+     *
+     * @return Cantidad de locks
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+}
@@ -0,0 +1,151 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.model.CartItem;
+import com.techtrend.cart.repository.CartItemRepository;
+import com.techtrend.catalog.dto.ProductResponse;
+import com.techtrend.catalog.event.ProductPriceChangedEvent;
+import com.techtrend.catalog.service.CatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio que mantiene los carritos activos alineados con los precios del catálogo
+ * 
+ * Cuando cambia el precio de un producto recorre por páginas (por clave, id > último id)
+ * los items activos que lo contienen y actualiza unit_price/total_price con un UPDATE
+ * por página
+ * 
+ * CartItem no tiene versión: una mutación del carrito que cargó el item antes del UPDATE
+ * lo guardaría entero con el precio viejo. Por eso cada UPDATE se ejecuta con los locks
+ * de los usuarios de la página tomados ({@link CartLockManager}) y en su propia
+ * transacción, confirmada antes de liberarlos
+ * 
+ * El precio que se aplica no es el del evento sino el vigente en el catálogo, leído
+ * dentro de esa transacción: dos cambios de precio seguidos pueden recalcularse en
+ * paralelo y el evento más antiguo no debe pisar el precio más reciente
+ * 
+ * @author TechTrend Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartRepricingService {
+
+    private final CartItemRepository cartItemRepository;
+    private final CatalogService catalogService;
+    private final CartLockManager cartLockManager;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.cart.reprice-page-size:500}")
+    private int pageSize;
+
+    /**
+     * Recalcula los carritos una vez confirmado el cambio de precio
+     * 
+     * @param event Evento de cambio de precio
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onProductPriceChanged(ProductPriceChangedEvent event) {
+        log.info("Cambio de precio del producto {}: {} -> {}", event.getProductId(), event.getPreviousPrice(),
+                event.getNewPrice());
+        repriceProduct(event.getProductId());
+    }
+
+    /**
+     * Actualiza los items activos de un producto al precio vigente en el catálogo
+     * 
+     * Se ejecuta fuera de una transacción: cada página confirma la suya mientras tiene
+     * tomados los locks de sus usuarios
+     * 
+     * @param productId ID del producto
+     * @return Número de items actualizados
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int repriceProduct(Long productId) {
+        LocalDateTime now = LocalDateTime.now();
+        Pageable pageable = PageRequest.of(0, pageSize, Sort.by("id"));
+        long lastId = 0;
+        int updated = 0;
+        int pages = 0;
+        List<CartItem> page;
+
+        do {
+            page = cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(productId, lastId, pageable);
+            if (page.isEmpty()) {
+                break;
+            }
+            BigDecimal price = currentPrice(productId);
+            if (price == null) {
+                log.warn("Producto {} inexistente o inactivo: no se recalculan sus carritos", productId);
+                break;
+            }
+            List<CartItem> staleItems = page.stream()
+                    .filter(item -> item.getUnitPrice() == null || item.getUnitPrice().compareTo(price) != 0)
+                    .toList();
+
+            if (!staleItems.isEmpty()) {
+                updated += repriceLocked(productId, staleItems, now);
+            }
+            lastId = page.get(page.size() - 1).getId();
+            pages++;
+        } while (page.size() == pageSize);
+
+        log.info("Carritos recalculados para producto {}: {} items en {} páginas", productId, updated, pages);
+
+        return updated;
+    }
+
+    /**
+     * Ejecuta el UPDATE de una página con los locks de sus usuarios tomados
+     * 
+     * El precio se vuelve a leer dentro de la transacción: si otro recálculo del mismo
+     * producto tomó antes los locks, este aplica el precio que haya quedado vigente
+     * 
+     * @param productId ID del producto
+     * @param items Items con precio desactualizado
+     * @param now Fecha de actualización
+     * @return Número de items actualizados
+     */
+    private int repriceLocked(Long productId, List<CartItem> items, LocalDateTime now) {
+        Set<Long> userIds = items.stream()
+                .map(CartItem::getUserId)
+                .collect(Collectors.toSet());
+        List<Long> ids = items.stream()
+                .map(CartItem::getId)
+                .toList();
+
+        Integer updated = cartLockManager.executeLocked(userIds, () ->
+                transactionTemplate.execute(status -> {
+                    BigDecimal price = currentPrice(productId);
+                    return price != null ? cartItemRepository.repriceItems(ids, price, now) : 0;
+                }));
+        return updated != null ? updated : 0;
+    }
+
+    /**
+     * Obtiene el precio vigente de un producto
+     * 
+     * @param productId ID del producto
+     * @return Precio actual, o null si el producto no existe o está inactivo
+     */
+    private BigDecimal currentPrice(Long productId) {
+        ProductResponse product = catalogService.getProductsByIds(Set.of(productId)).get(productId);
+        return product != null ? product.getPrice() : null;
+    }
+}
@@ -2,21 +2,32 @@ package com.techtrend.cart.service;
 
 import com.techtrend.cart.dto.CartItemRequest;
 import com.techtrend.cart.dto.CartItemResponse;
+import com.techtrend.cart.dto.CartRevalidationResponse;
+import com.techtrend.cart.dto.RelatedProductResponse;
+import com.techtrend.cart.dto.TrendingProductResponse;
 import com.techtrend.cart.model.CartItem;
 import com.techtrend.cart.repository.CartItemRepository;
 import com.techtrend.catalog.dto.ProductResponse;
 import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.CartLimitExceededException;
 import com.techtrend.common.exception.InsufficientStockException;
 import com.techtrend.common.exception.ProductNotFoundException;
+import com.techtrend.common.transaction.TransactionHooks;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +45,11 @@ public class CartService {
 
     private final CartItemRepository cartItemRepository;
     private final CatalogService catalogService;
+    private final CartLockManager cartLockManager;
+    private final CartItemCounter cartItemCounter;
+    private final ProductPopularityTracker popularityTracker;
+    private final ProductCooccurrenceIndex cooccurrenceIndex;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${app.cart.max-items-per-cart:50}")
     private int maxItemsPerCart;
@@ -41,14 +57,41 @@ public class CartService {
     /**
      * Agrega un producto al carrito de un usuario
      * 
+     * El lock del usuario solo serializa las peticiones de esta instancia. Si otra instancia
+     * inserta el mismo producto entre la lectura y la inserción, la restricción única
+     * rechaza la fila duplicada; esa transacción se revierte y se reintenta una vez, ya
+     * como incremento de la fila existente. Por eso cada intento usa su propia transacción.
+     * 
      * @param userId ID del usuario
      * @param request Solicitud con información del producto
      * @return Item del carrito creado o actualizado
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CartItemResponse addProductToCart(Long userId, CartItemRequest request) {
         log.info("Agregando producto {} al carrito del usuario {}: cantidad {}", 
                 request.getProductId(), userId, request.getQuantity());
 
+        // Serializar con otras mutaciones del mismo usuario (doble clic, reintentos móviles)
+        return cartLockManager.executeLocked(userId, () -> {
+            try {
+                return transactionTemplate.execute(status -> addOrIncrementItem(userId, request));
+            } catch (DataIntegrityViolationException e) {
+                log.info("Producto {} agregado en paralelo al carrito del usuario {}, se suma a la fila existente",
+                        request.getProductId(), userId);
+                return transactionTemplate.execute(status -> addOrIncrementItem(userId, request));
+            }
+        });
+    }
+
+    /**
+     * Inserta el producto en el carrito o incrementa su cantidad si ya existe.
+     * Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @param request Solicitud con información del producto
+     * @return Item del carrito creado o actualizado
+     */
+    private CartItemResponse addOrIncrementItem(Long userId, CartItemRequest request) {
         // Validar que el producto existe y tiene stock
         ProductResponse product = validateProductAndStock(request.getProductId(), request.getQuantity());
 
@@ -63,6 +106,8 @@ public class CartService {
             // Validar stock nuevamente con la cantidad total
             validateProductAndStock(request.getProductId(), newQuantity);
             
+            // Tomar el precio vigente para no pisar un recálculo con un precio viejo
+            item.setUnitPrice(product.getPrice());
             item.updateQuantity(newQuantity);
             CartItem savedItem = cartItemRepository.save(item);
             
@@ -71,6 +116,12 @@ public class CartService {
             
             return convertToResponse(savedItem);
         } else {
+            // Validar el límite de items con el contador en memoria (sin consulta COUNT)
+            if (countActiveItems(userId) >= maxItemsPerCart) {
+                log.warn("Carrito del usuario {} alcanzó el límite de {} items", userId, maxItemsPerCart);
+                throw new CartLimitExceededException(userId, maxItemsPerCart);
+            }
+
             // Crear nuevo item en el carrito
             CartItem newItem = new CartItem();
             newItem.setUserId(userId);
@@ -81,7 +132,14 @@ public class CartService {
             newItem.setProductSku(product.getSku());
             newItem.setIsActive(true);
 
+            // El índice de co-ocurrencia solo necesita los IDs, y solo si el item se inserta
+            List<Long> productsInCart = cartItemRepository.findActiveProductIdsByUserId(userId);
             CartItem savedItem = cartItemRepository.save(newItem);
+            TransactionHooks.runAfterCommit(() -> {
+                cartItemCounter.adjust(userId, 1);
+                popularityTracker.onItemAdded(request.getProductId());
+                cooccurrenceIndex.onItemAdded(request.getProductId(), productsInCart);
+            });
             
             log.info("Producto agregado al carrito: usuario {}, producto {}, cantidad {}", 
                     userId, request.getProductId(), request.getQuantity());
@@ -107,6 +165,18 @@ public class CartService {
             throw new IllegalArgumentException("La cantidad debe ser mayor a cero");
         }
 
+        return cartLockManager.executeLocked(userId, () -> changeItemQuantity(userId, itemId, newQuantity));
+    }
+
+    /**
+     * Cambia la cantidad de un item del carrito. Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @param itemId ID del item del carrito
+     * @param newQuantity Nueva cantidad
+     * @return Item del carrito actualizado
+     */
+    private CartItemResponse changeItemQuantity(Long userId, Long itemId, int newQuantity) {
         CartItem item = cartItemRepository.findById(itemId)
                 .orElseThrow(() -> {
                     log.warn("Item del carrito no encontrado: {}", itemId);
@@ -163,7 +233,24 @@ public class CartService {
     public boolean removeCartItem(Long userId, Long itemId) {
         log.info("Eliminando item {} del carrito del usuario {}", itemId, userId);
 
-        CartItem item = cartItemRepository.findById(itemId)
+        return cartLockManager.executeLocked(userId, () -> deactivateItem(userId, itemId));
+    }
+
+    /**
+     * Desactiva un item del carrito. Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @param itemId ID del item a eliminar
+     * @return true si se eliminó correctamente
+     */
+    private boolean deactivateItem(Long userId, Long itemId) {
+        // Un item activo se toma del carrito cargado, que también alimenta el índice de
+        // co-ocurrencia; solo se busca por ID si no está (inactivo o de otro usuario)
+        List<CartItem> activeItems = cartItemRepository.findByUserIdAndIsActiveTrue(userId);
+        CartItem item = activeItems.stream()
+                .filter(activeItem -> activeItem.getId().equals(itemId))
+                .findFirst()
+                .or(() -> cartItemRepository.findById(itemId))
                 .orElseThrow(() -> {
                     log.warn("Item del carrito no encontrado: {}", itemId);
                     return new IllegalArgumentException("Item del carrito no encontrado");
@@ -174,8 +261,19 @@ public class CartService {
             throw new IllegalArgumentException("Item no pertenece al usuario");
         }
 
+        boolean wasActive = item.isItemActive();
+        List<Long> productsInCart = activeItems.stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toList());
         item.deactivate();
         cartItemRepository.save(item);
+        if (wasActive) {
+            TransactionHooks.runAfterCommit(() -> {
+                cartItemCounter.adjust(userId, -1);
+                popularityTracker.onItemRemoved(item.getProductId());
+                cooccurrenceIndex.onItemRemoved(item.getProductId(), productsInCart);
+            });
+        }
         
         log.info("Item eliminado del carrito: usuario {}, item {}", userId, itemId);
         
@@ -191,6 +289,16 @@ public class CartService {
     public boolean clearCart(Long userId) {
         log.info("Vaciando carrito del usuario: {}", userId);
 
+        return cartLockManager.executeLocked(userId, () -> deactivateAllItems(userId));
+    }
+
+    /**
+     * Desactiva todos los items activos del usuario. Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @return true si se vació correctamente
+     */
+    private boolean deactivateAllItems(Long userId) {
         List<CartItem> items = cartItemRepository.findByUserIdAndIsActiveTrue(userId);
         
         for (CartItem item : items) {
@@ -198,12 +306,84 @@ public class CartService {
         }
         
         cartItemRepository.saveAll(items);
+        TransactionHooks.runAfterCommit(() -> {
+            cartItemCounter.reset(userId);
+            items.forEach(item -> popularityTracker.onItemRemoved(item.getProductId()));
+            cooccurrenceIndex.onCartCleared(items.stream()
+                    .map(CartItem::getProductId)
+                    .collect(Collectors.toList()));
+        });
         
         log.info("Carrito vaciado para usuario {}: {} items desactivados", userId, items.size());
         
         return true;
     }
 
+    /**
+     * Quita del carrito las unidades compradas en un checkout confirmado
+     * 
+     * Solo se descuentan los productos y cantidades del checkout: lo que el usuario agregó
+     * mientras el pago se procesaba se conserva. Un item con más unidades que las
+     * compradas se queda con la diferencia.
+     * 
+     * @param userId ID del usuario
+     * @param purchasedQuantities Mapa de ID de producto a cantidad comprada
+     * @return Número de items desactivados
+     */
+    public int removeCheckedOutItems(Long userId, Map<Long, Integer> purchasedQuantities) {
+        log.info("Quitando del carrito del usuario {} los productos comprados: {}", userId, purchasedQuantities);
+
+        return cartLockManager.executeLocked(userId, () -> deactivatePurchasedItems(userId, purchasedQuantities));
+    }
+
+    /**
+     * Descuenta las unidades compradas de los items activos. Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @param purchasedQuantities Mapa de ID de producto a cantidad comprada
+     * @return Número de items desactivados
+     */
+    private int deactivatePurchasedItems(Long userId, Map<Long, Integer> purchasedQuantities) {
+        List<CartItem> activeItems = cartItemRepository.findByUserIdAndIsActiveTrue(userId);
+        List<Long> productsInCart = activeItems.stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toList());
+        List<CartItem> changed = new ArrayList<>();
+        List<Long> removedProducts = new ArrayList<>();
+
+        for (CartItem item : activeItems) {
+            Integer purchased = purchasedQuantities.get(item.getProductId());
+            if (purchased == null) {
+                continue;
+            }
+            if (item.getQuantity() > purchased) {
+                item.updateQuantity(item.getQuantity() - purchased);
+            } else {
+                item.deactivate();
+                removedProducts.add(item.getProductId());
+            }
+            changed.add(item);
+        }
+
+        cartItemRepository.saveAll(changed);
+        if (!removedProducts.isEmpty()) {
+            TransactionHooks.runAfterCommit(() -> {
+                cartItemCounter.adjust(userId, -removedProducts.size());
+                List<Long> remaining = new ArrayList<>(productsInCart);
+                for (Long productId : removedProducts) {
+                    popularityTracker.onItemRemoved(productId);
+                    cooccurrenceIndex.onItemRemoved(productId, List.copyOf(remaining));
+                    remaining.remove(productId);
+                }
+            });
+        }
+
+        log.info("Productos comprados quitados del carrito del usuario {}: {} items desactivados, {} conservados",
+                userId, removedProducts.size(), activeItems.size() - removedProducts.size());
+
+        return removedProducts.size();
+    }
+
     /**
      * Obtiene el total del carrito de un usuario
      * 
@@ -220,6 +400,68 @@ public class CartService {
         return total != null ? total : BigDecimal.ZERO;
     }
 
+    /**
+     * Revalida el carrito contra los precios vigentes del catálogo antes del pago
+     * 
+     * Obtiene todos los productos del carrito con una sola consulta al catálogo y
+     * actualiza solo los items cuyo precio cambió
+     * 
+     * @param userId ID del usuario
+     * @return Carrito revalidado con su total actualizado
+     */
+    public CartRevalidationResponse revalidateCart(Long userId) {
+        log.info("Revalidando precios del carrito del usuario: {}", userId);
+
+        return cartLockManager.executeLocked(userId, () -> repriceCartItems(userId));
+    }
+
+    /**
+     * Recalcula los precios de los items activos del usuario. Debe ejecutarse con el lock del usuario tomado.
+     * 
+     * @param userId ID del usuario
+     * @return Carrito revalidado
+     */
+    private CartRevalidationResponse repriceCartItems(Long userId) {
+        List<CartItem> items = cartItemRepository.findActiveCartItemsByUserId(userId);
+        Set<Long> productIds = items.stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, ProductResponse> products = catalogService.getProductsByIds(productIds);
+
+        List<CartItem> repriced = new ArrayList<>();
+        List<Long> unavailable = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+
+        for (CartItem item : items) {
+            ProductResponse product = products.get(item.getProductId());
+            if (product == null) {
+                unavailable.add(item.getProductId());
+                continue;
+            }
+            if (item.getUnitPrice() == null || item.getUnitPrice().compareTo(product.getPrice()) != 0) {
+                item.setUnitPrice(product.getPrice());
+                item.calculateTotalPrice();
+                repriced.add(item);
+            }
+            total = total.add(item.getTotalPrice());
+        }
+
+        if (!repriced.isEmpty()) {
+            cartItemRepository.saveAll(repriced);
+        }
+
+        log.info("Carrito revalidado para usuario {}: {} items recalculados, {} no disponibles, total {}", 
+                userId, repriced.size(), unavailable.size(), total);
+
+        return new CartRevalidationResponse(
+            userId,
+            items.stream().map(this::convertToResponse).collect(Collectors.toList()),
+            total,
+            repriced.size(),
+            unavailable
+        );
+    }
+
     /**
      * Obtiene el número de items en el carrito de un usuario
      * 
@@ -229,7 +471,7 @@ public class CartService {
     public long getCartItemCount(Long userId) {
         log.info("Contando items del carrito para usuario: {}", userId);
 
-        long count = cartItemRepository.countByUserIdAndIsActiveTrue(userId);
+        long count = countActiveItems(userId);
         
         log.info("Items en carrito para usuario {}: {}", userId, count);
         
@@ -253,6 +495,41 @@ public class CartService {
         return exists;
     }
 
+    /**
+     * Obtiene cuántos usuarios tienen un producto en su carrito
+     * 
+     * @param productId ID del producto
+     * @return Número de usuarios, según los contadores en memoria
+     */
+    public long getUsersWithProductInCart(Long productId) {
+        return popularityTracker.getUsersWithProduct(productId);
+    }
+
+    /**
+     * Obtiene los productos con más agregados recientes a carritos
+     * 
+     * @param limit Número máximo de productos
+     * @return Productos en tendencia
+     */
+    public List<TrendingProductResponse> getTrendingProducts(int limit) {
+        log.info("Obteniendo {} productos en tendencia en carritos", limit);
+
+        return popularityTracker.getTrending(Math.max(1, limit));
+    }
+
+    /**
+     * Obtiene los productos que más carritos activos comparten con un producto
+     * 
+     * @param productId ID del producto
+     * @param limit Número máximo de productos
+     * @return Productos relacionados, según el índice de co-ocurrencia en memoria
+     */
+    public List<RelatedProductResponse> getRelatedProducts(Long productId, int limit) {
+        log.info("Obteniendo productos agregados junto al producto {}: límite {}", productId, limit);
+
+        return cooccurrenceIndex.getRelatedProducts(productId, Math.max(1, limit));
+    }
+
     /**
      * Obtiene información de un item específico del carrito
      * 
@@ -282,6 +559,17 @@ public class CartService {
         return convertToResponse(item);
     }
 
+    /**
+     * Obtiene el número de items activos desde el contador en memoria,
+     * cargándolo desde la base de datos solo si no está en caché
+     * 
+     * @param userId ID del usuario
+     * @return Número de items activos
+     */
+    private int countActiveItems(Long userId) {
+        return cartItemCounter.get(userId, () -> (int) cartItemRepository.countByUserIdAndIsActiveTrue(userId));
+    }
+
     /**
      * Valida que un producto existe y tiene suficiente stock
      * 
@@ -0,0 +1,278 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.dto.RelatedProductResponse;
+import com.techtrend.cart.repository.CartItemRepository;
+import com.techtrend.common.util.LongLongHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice incremental de co-ocurrencia de productos en carritos activos
+ *
+ * Para cada producto guarda una fila dispersa con cuántos carritos lo comparten con cada
+ * otro producto ("clientes que también agregaron"). Las filas son mapas primitivos
+ * long → long, sin boxing por par, y se actualizan con los eventos de CartService tras
+ * cada commit. La memoria está acotada por fila: cuando una fila supera el doble de
+ * {@code maxRowSize} se poda y conserva solo los pares más frecuentes.
+ *
+ * El índice se reconstruye periódicamente desde los carritos activos para corregir la
+ * deriva introducida por la poda, otras instancias o reinicios. Los eventos que llegan
+ * mientras se recorren los carritos se registran y se aplican al índice nuevo antes de
+ * publicarlo, para no perderlos.
+ *
+ * Error aceptado, el mismo que en {@link ProductPopularityTracker}: un evento confirmado
+ * antes de que la consulta de carritos tome su snapshot pero recibido después de abrir el
+ * registro ya está en el recorrido y se aplica otra vez. Cada par se desvía como mucho en
+ * los eventos suyos recibidos en ese intervalo, y la siguiente reconstrucción lo descarta.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class ProductCooccurrenceIndex {
+
+    private final CartItemRepository cartItemRepository;
+    private final int maxRowSize;
+    private volatile ConcurrentHashMap<Long, LongLongHashMap> rows = new ConcurrentHashMap<>();
+
+    /**
+     * Los eventos toman el lock de lectura; la reconstrucción toma el de escritura solo
+     * para abrir y cerrar el registro de eventos, no mientras recorre los carritos
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private Queue<PendingEvent> pendingEvents;
+
+    /**
+     * Evento recibido durante una reconstrucción
+     */
+    private record PendingEvent(Long productId, List<Long> productsInCart, boolean added) {
+    }
+
+    public ProductCooccurrenceIndex(CartItemRepository cartItemRepository,
+                                    @Value("${app.cart.cooccurrence.max-row-size:100}") int maxRowSize) {
+        this.cartItemRepository = cartItemRepository;
+        this.maxRowSize = Math.max(1, maxRowSize);
+    }
+
+    /**
+     * Registra que un producto se agregó a un carrito que ya contenía otros productos
+     *
+     * @param productId ID del producto agregado
+     * @param productsInCart Productos activos del carrito (puede incluir al agregado)
+     */
+    public void onItemAdded(Long productId, Collection<Long> productsInCart) {
+        apply(productId, productsInCart, true);
+    }
+
+    /**
+     * Registra que un producto se quitó de un carrito
+     *
+     * @param productId ID del producto quitado
+     * @param productsInCart Productos activos del carrito (puede incluir al quitado)
+     */
+    public void onItemRemoved(Long productId, Collection<Long> productsInCart) {
+        apply(productId, productsInCart, false);
+    }
+
+    /**
+     * Registra que se vació un carrito completo
+     *
+     * @param productsInCart Productos que tenía el carrito
+     */
+    public void onCartCleared(List<Long> productsInCart) {
+        for (int i = 0; i < productsInCart.size(); i++) {
+            onItemRemoved(productsInCart.get(i), productsInCart.subList(i + 1, productsInCart.size()));
+        }
+    }
+
+    /**
+     * Obtiene los productos que más carritos comparten con un producto
+     *
+     * @param productId ID del producto
+     * @param limit Número máximo de productos
+     * @return Productos relacionados ordenados por carritos compartidos
+     */
+    public List<RelatedProductResponse> getRelatedProducts(Long productId, int limit) {
+        LongLongHashMap row = rows.get(productId);
+        if (row == null) {
+            return new ArrayList<>();
+        }
+
+        long[] others;
+        long[] counts;
+        int[] filled = {0};
+        synchronized (row) {
+            others = new long[row.size()];
+            counts = new long[row.size()];
+            row.forEach((other, count) -> {
+                others[filled[0]] = other;
+                counts[filled[0]++] = count;
+            });
+        }
+
+        // Selección parcial: solo se ordenan las primeras posiciones pedidas
+        int resultSize = Math.min(limit, others.length);
+        List<RelatedProductResponse> related = new ArrayList<>(resultSize);
+        for (int i = 0; i < resultSize; i++) {
+            int best = i;
+            for (int j = i + 1; j < others.length; j++) {
+                if (counts[j] > counts[best]) {
+                    best = j;
+                }
+            }
+            related.add(new RelatedProductResponse(others[best], counts[best]));
+            others[best] = others[i];
+            counts[best] = counts[i];
+        }
+        return related;
+    }
+
+    /**
+     * Número de productos con fila en el índice
+     *
+     * @return Cantidad de filas
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Reconstruye el índice desde los carritos activos y lo reemplaza atómicamente
+     */
+    @Scheduled(fixedDelayString = "${app.cart.cooccurrence.rebuild-interval:3600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Queue<PendingEvent> events = new ConcurrentLinkedQueue<>();
+        ConcurrentHashMap<Long, LongLongHashMap> fresh = new ConcurrentHashMap<>();
+        int carts = 0;
+
+        // Abrir el registro justo antes de la consulta acota la ventana de doble conteo
+        swapEvents(events);
+        try (Stream<Object[]> stream = cartItemRepository.streamActiveUserProducts()) {
+            Iterator<Object[]> iterator = stream.iterator();
+            List<Long> cart = new ArrayList<>();
+            Long currentUser = null;
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Long userId = (Long) row[0];
+                if (!userId.equals(currentUser)) {
+                    carts += addCart(fresh, cart);
+                    cart.clear();
+                    currentUser = userId;
+                }
+                cart.add((Long) row[1]);
+            }
+            carts += addCart(fresh, cart);
+        } catch (RuntimeException e) {
+            swapEvents(null);
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            // Aplicar los eventos recibidos mientras se recorrían los carritos antes de publicar
+            for (PendingEvent event : events) {
+                applyTo(fresh, event.productId(), event.productsInCart(), event.added());
+            }
+            pendingEvents = null;
+            rows = fresh;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        log.info("Índice de co-ocurrencia reconstruido: {} carritos, {} productos", carts, fresh.size());
+    }
+
+    /**
+     * Agrega al índice todos los pares de un carrito completo
+     *
+     * @param productsInCart Productos del carrito
+     */
+    void addCart(List<Long> productsInCart) {
+        addCart(rows, productsInCart);
+    }
+
+    private void swapEvents(Queue<PendingEvent> events) {
+        swapLock.writeLock().lock();
+        try {
+            pendingEvents = events;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Long productId, Collection<Long> productsInCart, boolean added) {
+        swapLock.readLock().lock();
+        try {
+            applyTo(rows, productId, productsInCart, added);
+            if (pendingEvents != null) {
+                pendingEvents.add(new PendingEvent(productId, List.copyOf(productsInCart), added));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void applyTo(ConcurrentHashMap<Long, LongLongHashMap> target, Long productId,
+                         Collection<Long> productsInCart, boolean added) {
+        for (Long other : productsInCart) {
+            if (!other.equals(productId)) {
+                if (added) {
+                    increment(target, productId, other);
+                    increment(target, other, productId);
+                } else {
+                    decrement(target, productId, other);
+                    decrement(target, other, productId);
+                }
+            }
+        }
+    }
+
+    private int addCart(ConcurrentHashMap<Long, LongLongHashMap> target, List<Long> productsInCart) {
+        if (productsInCart.isEmpty()) {
+            return 0;
+        }
+        for (int i = 0; i < productsInCart.size(); i++) {
+            for (int j = i + 1; j < productsInCart.size(); j++) {
+                increment(target, productsInCart.get(i), productsInCart.get(j));
+                increment(target, productsInCart.get(j), productsInCart.get(i));
+            }
+        }
+        return 1;
+    }
+
+    private void increment(ConcurrentHashMap<Long, LongLongHashMap> target, Long productId, Long other) {
+        LongLongHashMap row = target.computeIfAbsent(productId, id -> new LongLongHashMap());
+        synchronized (row) {
+            row.addTo(other, 1);
+            if (row.size() > maxRowSize * 2) {
+                row.retainTop(maxRowSize);
+            }
+        }
+    }
+
+    private void decrement(ConcurrentHashMap<Long, LongLongHashMap> target, Long productId, Long other) {
+        LongLongHashMap row = target.get(productId);
+        if (row == null) {
+            return;
+        }
+        synchronized (row) {
+            // El par pudo haberse podado: no se crean cuentas negativas
+            if (row.containsKey(other) && row.addTo(other, -1) <= 0) {
+                row.remove(other);
+            }
+        }
+    }
+}
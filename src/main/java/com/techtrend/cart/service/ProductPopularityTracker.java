@@ -0,0 +1,167 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.dto.TrendingProductResponse;
+import com.techtrend.cart.repository.CartItemRepository;
+import com.techtrend.common.util.SpaceSavingCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Contadores en memoria de popularidad de productos en carritos
+ *
+ * Mantiene por producto el número de usuarios que lo tienen en su carrito, actualizado
+ * por los eventos de CartService (agregar, eliminar, vaciar) tras cada commit. Como
+ * cada usuario tiene a lo sumo un item activo por producto, contar items equivale a
+ * contar usuarios distintos.
+ *
+ * Una reconciliación periódica reemplaza los contadores con una única consulta agrupada
+ * y corrige cualquier deriva (otras instancias, reinicios). Los eventos que llegan
+ * mientras corre la consulta se guardan también como deltas y se suman a los contadores
+ * nuevos antes de publicarlos, para no perderlos. Los agregados recientes alimentan un
+ * {@link SpaceSavingCounter} para el ranking de tendencias.
+ *
+ * Error aceptado: los eventos llegan después del commit y no hay forma de saber si la
+ * consulta ya vio su fila. Un evento confirmado antes de que la consulta tome su snapshot
+ * pero recibido después de abrir el registro de deltas se cuenta dos veces. Tras cada
+ * reconciliación un producto se desvía como mucho en el número de eventos suyos recibidos
+ * durante ese intervalo; la desviación no se acumula, porque la siguiente reconciliación
+ * la descarta. Es preferible a perder los eventos, que afectan a todos los recibidos
+ * durante la consulta y no solo a los del borde.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class ProductPopularityTracker {
+
+    private final CartItemRepository cartItemRepository;
+    private final SpaceSavingCounter recentAdds;
+    private volatile Map<Long, AtomicLong> usersPerProduct = new ConcurrentHashMap<>();
+
+    /**
+     * Los eventos toman el lock de lectura; la reconciliación toma el de escritura solo
+     * para abrir y cerrar el registro de deltas, no durante la consulta
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private Map<Long, AtomicLong> pendingDeltas;
+
+    public ProductPopularityTracker(CartItemRepository cartItemRepository,
+                                    @Value("${app.cart.popularity.trending-capacity:200}") int trendingCapacity) {
+        this.cartItemRepository = cartItemRepository;
+        this.recentAdds = new SpaceSavingCounter(trendingCapacity);
+    }
+
+    /**
+     * Registra que un usuario agregó un producto nuevo a su carrito
+     *
+     * @param productId ID del producto
+     */
+    public void onItemAdded(Long productId) {
+        apply(productId, 1);
+        recentAdds.offer(productId);
+    }
+
+    /**
+     * Registra que un usuario quitó un producto de su carrito
+     *
+     * @param productId ID del producto
+     */
+    public void onItemRemoved(Long productId) {
+        apply(productId, -1);
+    }
+
+    private void apply(Long productId, long delta) {
+        swapLock.readLock().lock();
+        try {
+            adjust(usersPerProduct, productId, delta);
+            if (pendingDeltas != null) {
+                pendingDeltas.computeIfAbsent(productId, id -> new AtomicLong()).addAndGet(delta);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static void adjust(Map<Long, AtomicLong> counts, Long productId, long delta) {
+        AtomicLong count = delta > 0
+                ? counts.computeIfAbsent(productId, id -> new AtomicLong())
+                : counts.get(productId);
+        if (count != null) {
+            count.updateAndGet(value -> Math.max(0, value + delta));
+        }
+    }
+
+    /**
+     * Obtiene el número de usuarios con un producto en su carrito
+     *
+     * @param productId ID del producto
+     * @return Número de usuarios
+     */
+    public long getUsersWithProduct(Long productId) {
+        AtomicLong count = usersPerProduct.get(productId);
+        return count != null ? count.get() : 0L;
+    }
+
+    /**
+     * Obtiene los productos con más agregados recientes
+     *
+     * @param limit Número máximo de productos
+     * @return Productos en tendencia
+     */
+    public List<TrendingProductResponse> getTrending(int limit) {
+        return recentAdds.top(limit).stream()
+                .map(hitter -> new TrendingProductResponse(
+                        hitter.getItem(), hitter.getCount(), getUsersWithProduct(hitter.getItem())))
+                .collect(Collectors.toList());
+    }
+
+    private void swapDeltas(Map<Long, AtomicLong> deltas) {
+        swapLock.writeLock().lock();
+        try {
+            pendingDeltas = deltas;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reemplaza los contadores con el estado de la base de datos y envejece el ranking de tendencias
+     */
+    @Scheduled(fixedDelayString = "${app.cart.popularity.reconcile-interval:300000}")
+    public void reconcile() {
+        Map<Long, AtomicLong> deltas = new ConcurrentHashMap<>();
+        Map<Long, AtomicLong> fresh = new ConcurrentHashMap<>();
+        // Abrir el registro justo antes de la consulta acota la ventana de doble conteo
+        swapDeltas(deltas);
+        try {
+            for (Object[] row : cartItemRepository.countUsersPerProduct()) {
+                fresh.put((Long) row[0], new AtomicLong(((Number) row[1]).longValue()));
+            }
+        } catch (RuntimeException e) {
+            swapDeltas(null);
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            // Sumar los eventos recibidos durante la consulta antes de publicar
+            deltas.forEach((productId, delta) -> adjust(fresh, productId, delta.get()));
+            pendingDeltas = null;
+            usersPerProduct = fresh;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        recentAdds.decay();
+
+        log.debug("Popularidad de productos reconciliada: {} productos en carritos", fresh.size());
+    }
+}
@@ -2,6 +2,7 @@ package com.techtrend.catalog.controller;
 
 import com.techtrend.catalog.dto.ProductResponse;
 import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.ProductNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -129,6 +130,35 @@ public class CatalogController {
         }
     }
 
+    /**
+     * Endpoint para actualizar el precio de un producto
+     * 
+     * @param id ID del producto
+     * @param price Nuevo precio
+     * @return Producto actualizado
+     */
+    @PutMapping("/products/{id}/price")
+    public ResponseEntity<ProductResponse> updateProductPrice(
+            @PathVariable Long id,
+            @RequestParam BigDecimal price) {
+        log.info("Solicitud para actualizar precio del producto {}: {}", id, price);
+        
+        try {
+            ProductResponse product = catalogService.updateProductPrice(id, price);
+            log.info("Precio actualizado exitosamente para producto {}", id);
+            return ResponseEntity.ok(product);
+        } catch (ProductNotFoundException e) {
+            log.warn("Producto no encontrado: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Precio inválido para producto {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error actualizando precio del producto {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Endpoint para obtener detalles de un producto
      * 
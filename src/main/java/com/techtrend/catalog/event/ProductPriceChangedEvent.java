@@ -0,0 +1,20 @@
+package com.techtrend.catalog.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Evento publicado cuando cambia el precio de un producto del catálogo
+ * 
+ * @author TechTrend Team
+ */
+@Getter
+@AllArgsConstructor
+public class ProductPriceChangedEvent {
+
+    private final Long productId;
+    private final BigDecimal previousPrice;
+    private final BigDecimal newPrice;
+}
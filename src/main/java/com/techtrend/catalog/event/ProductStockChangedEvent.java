@@ -0,0 +1,34 @@
+package com.techtrend.catalog.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento registrado en la outbox cuando cambia el stock de un producto
+ * 
+ * Lleva la variación y no la cantidad resultante, porque las reservas se aplican con
+ * UPDATE condicionales que no releen la fila; aplicadas en orden reconstruyen el stock.
+ * 
+ * @author TechTrend Team
+ */
+@Getter
+@AllArgsConstructor
+public class ProductStockChangedEvent {
+
+    private final Long productId;
+    private final int delta;
+    private final Reason reason;
+    private final LocalDateTime occurredAt;
+
+    /**
+     * Operación que cambió el stock
+     */
+    public enum Reason {
+        REDUCED,
+        INCREASED,
+        RESERVED,
+        RELEASED
+    }
+}
@@ -4,11 +4,13 @@ import com.techtrend.catalog.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -137,4 +139,37 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     @Query("SELECT p FROM Product p WHERE p.category IN :categories AND p.isActive = true")
     List<Product> findByCategories(@Param("categories") List<String> categories);
+
+    /**
+     * Descuenta stock de un producto activo solo si alcanza para la cantidad pedida
+     * 
+     * La condición se evalúa en la misma sentencia UPDATE, así dos reservas concurrentes
+     * sobre el mismo producto nunca dejan el stock en negativo
+     * 
+     * @param productId ID del producto
+     * @param quantity Cantidad a descontar
+     * @param updatedAt Fecha de actualización del stock
+     * @return 1 si se descontó, 0 si el producto no existe, está inactivo o no tiene stock
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :quantity, p.lastStockUpdate = :updatedAt " +
+           "WHERE p.id = :productId AND p.isActive = true AND p.quantity >= :quantity")
+    int decrementStockIfAvailable(@Param("productId") Long productId,
+                                  @Param("quantity") int quantity,
+                                  @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Devuelve stock a un producto, esté activo o no
+     * 
+     * @param productId ID del producto
+     * @param quantity Cantidad a devolver
+     * @param updatedAt Fecha de actualización del stock
+     * @return Número de productos actualizados
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity + :quantity, p.lastStockUpdate = :updatedAt " +
+           "WHERE p.id = :productId")
+    int incrementStock(@Param("productId") Long productId,
+                       @Param("quantity") int quantity,
+                       @Param("updatedAt") LocalDateTime updatedAt);
 }
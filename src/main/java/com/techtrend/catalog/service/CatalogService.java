@@ -2,13 +2,18 @@ package com.techtrend.catalog.service;
 
 import com.techtrend.catalog.dto.ProductRequest;
 import com.techtrend.catalog.dto.ProductResponse;
+import com.techtrend.catalog.event.ProductPriceChangedEvent;
+import com.techtrend.catalog.event.ProductStockChangedEvent;
 import com.techtrend.catalog.model.Product;
 import com.techtrend.catalog.repository.ProductRepository;
 import com.techtrend.common.exception.InsufficientStockException;
 import com.techtrend.common.exception.ProductNotFoundException;
+import com.techtrend.outbox.model.OutboxEvent;
+import com.techtrend.outbox.service.OutboxWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,13 +21,19 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Servicio principal de catálogo para TechTrend
  * 
- * Maneja la gestión de productos, verificación de stock y consultas del catálogo
+ * Maneja la gestión de productos, verificación de stock y consultas del catálogo.
+ * Cada cambio de stock se registra en la outbox dentro de la misma transacción.
  * 
  * @author TechTrend Team
  */
@@ -33,6 +44,8 @@ import java.util.stream.Collectors;
 public class CatalogService {
 
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxWriter outboxWriter;
 
     @Value("${app.catalog.default-page-size:20}")
     private int defaultPageSize;
@@ -97,6 +110,65 @@ public class CatalogService {
         return convertToResponse(product);
     }
 
+    /**
+     * Obtiene varios productos activos con una sola consulta
+     * 
+     * @param productIds IDs de los productos
+     * @return Mapa de ID a producto; los productos inexistentes o inactivos no se incluyen
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, ProductResponse> getProductsByIds(Collection<Long> productIds) {
+        log.info("Obteniendo {} productos por ID", productIds.size());
+        
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        
+        return productRepository.findAllById(productIds).stream()
+                .filter(Product::isProductActive)
+                .map(this::convertToResponse)
+                .collect(Collectors.toMap(ProductResponse::getId, Function.identity()));
+    }
+
+    /**
+     * Actualiza el precio de un producto
+     * 
+     * Publica un {@link ProductPriceChangedEvent} para que los carritos activos se
+     * recalculen una vez confirmada la transacción
+     * 
+     * @param productId ID del producto
+     * @param newPrice Nuevo precio
+     * @return Producto actualizado
+     * @throws ProductNotFoundException si el producto no existe
+     */
+    public ProductResponse updateProductPrice(Long productId, BigDecimal newPrice) {
+        log.info("Actualizando precio del producto {}: {}", productId, newPrice);
+        
+        if (newPrice == null || newPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            log.warn("Precio inválido para producto {}: {}", productId, newPrice);
+            throw new IllegalArgumentException("El precio debe ser mayor a cero");
+        }
+        
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> {
+                    log.warn("Producto no encontrado con ID: {}", productId);
+                    return new ProductNotFoundException(productId);
+                });
+        
+        BigDecimal previousPrice = product.getPrice();
+        if (previousPrice.compareTo(newPrice) == 0) {
+            return convertToResponse(product);
+        }
+        
+        product.setPrice(newPrice);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductPriceChangedEvent(productId, previousPrice, newPrice));
+        
+        log.info("Precio actualizado para producto {}: {} -> {}", productId, previousPrice, newPrice);
+        
+        return convertToResponse(savedProduct);
+    }
+
     /**
      * Verifica el stock disponible para un producto
      * 
@@ -188,7 +260,8 @@ public class CatalogService {
         }
         
         product.reduceStock(quantity);
-        productRepository.save(product);
+        productRepository.saveAndFlush(product);
+        recordStockChange(productId, -quantity, ProductStockChangedEvent.Reason.REDUCED);
         
         log.info("Stock reducido exitosamente para producto {}: nueva cantidad {}", 
                 productId, product.getAvailableStock());
@@ -221,12 +294,69 @@ public class CatalogService {
         }
         
         product.increaseStock(quantity);
-        productRepository.save(product);
+        productRepository.saveAndFlush(product);
+        recordStockChange(productId, quantity, ProductStockChangedEvent.Reason.INCREASED);
         
         log.info("Stock aumentado exitosamente para producto {}: nueva cantidad {}", 
                 productId, product.getAvailableStock());
     }
 
+    /**
+     * Reserva stock para varios productos en una sola transacción
+     * 
+     * Cada línea es un UPDATE condicional; los productos se recorren en orden de ID para que
+     * dos reservas con productos en común tomen los locks de fila en el mismo orden. Si
+     * alguna línea no alcanza se lanza la excepción y la transacción revierte todas las
+     * anteriores.
+     * 
+     * @param quantities Cantidad a reservar por ID de producto
+     * @throws InsufficientStockException si algún producto no existe, está inactivo o no tiene stock
+     */
+    public void reserveStock(Map<Long, Integer> quantities) {
+        log.info("Reservando stock para {} productos", quantities.size());
+        
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            Long productId = line.getKey();
+            int quantity = line.getValue();
+            if (quantity <= 0) {
+                log.warn("Cantidad inválida para reservar stock: {}", quantity);
+                throw new IllegalArgumentException("La cantidad debe ser mayor a cero");
+            }
+            
+            if (productRepository.decrementStockIfAvailable(productId, quantity, now) == 0) {
+                int available = productRepository.findById(productId)
+                        .filter(Product::isProductActive)
+                        .map(Product::getAvailableStock)
+                        .orElse(0);
+                log.warn("Stock insuficiente al reservar producto {}: disponible {}, solicitado {}", 
+                        productId, available, quantity);
+                throw new InsufficientStockException(productId, quantity, available);
+            }
+            recordStockChange(productId, -quantity, ProductStockChangedEvent.Reason.RESERVED);
+        }
+        
+        log.info("Stock reservado para {} productos", quantities.size());
+    }
+
+    /**
+     * Libera stock reservado previamente con {@link #reserveStock(Map)}
+     * 
+     * @param quantities Cantidad a devolver por ID de producto
+     */
+    public void releaseStock(Map<Long, Integer> quantities) {
+        log.info("Liberando stock de {} productos", quantities.size());
+        
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            if (productRepository.incrementStock(line.getKey(), line.getValue(), now) == 0) {
+                log.warn("No se pudo devolver stock al producto {}: no existe", line.getKey());
+                continue;
+            }
+            recordStockChange(line.getKey(), line.getValue(), ProductStockChangedEvent.Reason.RELEASED);
+        }
+    }
+
     /**
      * Busca productos por nombre
      * 
@@ -324,6 +454,21 @@ public class CatalogService {
         return stats;
     }
 
+    /**
+     * Registra un cambio de stock en la outbox
+     * 
+     * Se llama después del UPDATE del producto, con el lock de fila ya tomado, para que los
+     * eventos de un mismo producto queden en la outbox en el orden de commit
+     * 
+     * @param productId ID del producto
+     * @param delta Variación del stock
+     * @param reason Operación que lo cambió
+     */
+    private void recordStockChange(Long productId, int delta, ProductStockChangedEvent.Reason reason) {
+        outboxWriter.append(OutboxEvent.AggregateType.PRODUCT, productId, OutboxEvent.STOCK_CHANGED,
+                new ProductStockChangedEvent(productId, delta, reason, LocalDateTime.now()));
+    }
+
     /**
      * Convierte una entidad Product a ProductResponse
      * 
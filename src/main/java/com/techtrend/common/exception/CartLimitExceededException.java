@@ -0,0 +1,30 @@
+package com.techtrend.common.exception;
+
+/**
+ * Excepción lanzada cuando un carrito alcanza el número máximo de items permitidos
+ * 
+ * @author TechTrend Team
+ */
+public class CartLimitExceededException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Constructor con mensaje de error
+     * 
+     * @param message Mensaje descriptivo del error
+     */
+    public CartLimitExceededException(String message) {
+        super(message);
+    }
+    
+    /**
+     * Constructor con detalles del carrito
+     * 
+     * @param userId ID del usuario
+     * @param maxItems Límite de items por carrito
+     */
+    public CartLimitExceededException(Long userId, int maxItems) {
+        super(String.format("El carrito del usuario %d alcanzó el máximo de %d items", userId, maxItems));
+    }
+}
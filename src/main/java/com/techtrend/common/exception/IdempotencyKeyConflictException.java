@@ -0,0 +1,31 @@
+package com.techtrend.common.exception;
+
+/**
+ * Excepción lanzada cuando se reutiliza una clave de idempotencia con una solicitud distinta
+ * 
+ * @author TechTrend Team
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Constructor con mensaje de error
+     * 
+     * @param message Mensaje descriptivo del error
+     */
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+    
+    /**
+     * Constructor con la clave en conflicto
+     * 
+     * @param idempotencyKey Clave de idempotencia reutilizada
+     * @param userId ID del usuario
+     */
+    public IdempotencyKeyConflictException(String idempotencyKey, Long userId) {
+        super(String.format("La clave de idempotencia '%s' del usuario %d ya se usó con otra solicitud", 
+                           idempotencyKey, userId));
+    }
+}
@@ -0,0 +1,34 @@
+package com.techtrend.common.exception;
+
+/**
+ * Excepción lanzada cuando el cálculo de hashes de contraseñas está saturado
+ * 
+ * Se responde con 503 y Retry-After para que el cliente reintente más tarde sin ocupar
+ * un hilo del servidor mientras espera.
+ * 
+ * @author TechTrend Team
+ */
+public class PasswordHashingUnavailableException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final long retryAfterSeconds;
+    
+    /**
+     * Constructor con mensaje de error y tiempo sugerido de reintento
+     * 
+     * @param message Mensaje descriptivo del error
+     * @param retryAfterSeconds Segundos tras los que conviene reintentar
+     */
+    public PasswordHashingUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    /**
+     * @return Segundos tras los que conviene reintentar
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,83 @@
+package com.techtrend.common.exception;
+
+/**
+ * Excepción lanzada cuando la pasarela de pagos no responde o responde con error
+ * 
+ * A diferencia de un rechazo, el resultado del cobro es desconocido o transitorio,
+ * por lo que el pago puede reintentarse.
+ * 
+ * @author TechTrend Team
+ */
+public class PaymentGatewayException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+
+    private final boolean timeout;
+    private final boolean rejected;
+    
+    /**
+     * Constructor con mensaje de error
+     * 
+     * @param message Mensaje descriptivo del error
+     */
+    public PaymentGatewayException(String message) {
+        this(message, false);
+    }
+    
+    /**
+     * Constructor con indicador de timeout
+     * 
+     * @param message Mensaje descriptivo del error
+     * @param timeout true si la pasarela excedió el tiempo máximo de respuesta
+     */
+    public PaymentGatewayException(String message, boolean timeout) {
+        this(message, timeout, false);
+    }
+    
+    /**
+     * Constructor con mensaje y causa
+     * 
+     * @param message Mensaje descriptivo del error
+     * @param cause Causa original de la excepción
+     */
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+        this.timeout = false;
+        this.rejected = false;
+    }
+
+    private PaymentGatewayException(String message, boolean timeout, boolean rejected) {
+        super(message);
+        this.timeout = timeout;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Crea una excepción para una llamada rechazada sin contactar a la pasarela
+     * (circuito abierto o bulkhead lleno)
+     * 
+     * @param message Mensaje descriptivo del error
+     * @return Excepción marcada como rechazada
+     */
+    public static PaymentGatewayException rejected(String message) {
+        return new PaymentGatewayException(message, false, true);
+    }
+
+    /**
+     * Indica si el error fue un timeout
+     * 
+     * @return true si la pasarela excedió el tiempo máximo de respuesta
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Indica si la llamada se rechazó sin contactar a la pasarela
+     * 
+     * @return true si fue un rechazo rápido del circuit breaker o del bulkhead
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,76 @@
+package com.techtrend.common.resilience;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkhead por semáforo: limita las llamadas simultáneas a una dependencia
+ *
+ * Evita que una dependencia lenta ocupe todos los hilos del servicio. Una llamada que no
+ * consigue permiso dentro de {@code maxWaitMs} se rechaza de inmediato.
+ *
+ * @author TechTrend Team
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrentCalls, long maxWaitMs) {
+        if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("El número de llamadas simultáneas debe ser mayor a cero");
+        }
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Intenta ocupar un lugar en el bulkhead
+     *
+     * @return true si se obtuvo el permiso; el llamador debe liberarlo con {@link #release()}
+     */
+    public boolean tryAcquire() {
+        boolean acquired;
+        try {
+            acquired = maxWaitMs <= 0
+                    ? permits.tryAcquire()
+                    : permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCalls.incrementAndGet();
+        }
+        return acquired;
+    }
+
+    /**
+     * Libera un permiso obtenido con {@link #tryAcquire()}
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Métricas del bulkhead
+     *
+     * @return Mapa con llamadas en curso, capacidad y rechazos
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("name", name);
+        metrics.put("maxConcurrentCalls", maxConcurrentCalls);
+        metrics.put("activeCalls", maxConcurrentCalls - permits.availablePermits());
+        metrics.put("rejectedCalls", rejectedCalls.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,272 @@
+package com.techtrend.common.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker con ventanas deslizantes de errores y de llamadas lentas
+ *
+ * Las llamadas se acumulan en una ventana de {@code windowSeconds} buckets de un segundo.
+ * Con al menos {@code minimumCalls} en la ventana, el circuito se abre si la tasa de
+ * errores o la de llamadas lentas alcanza su umbral. Abierto, rechaza todas las llamadas
+ * durante {@code openDurationMs}; luego pasa a semiabierto y deja pasar
+ * {@code halfOpenCalls} llamadas de prueba, cuyo resultado decide si cierra o vuelve a abrir.
+ *
+ * Cada cambio de estado abre una nueva generación. El permiso de una llamada recuerda la
+ * generación en la que se admitió y su resultado solo cuenta en esa misma generación: una
+ * llamada lenta admitida con el circuito cerrado que termina en semiabierto no pasa por
+ * llamada de prueba.
+ *
+ * @author TechTrend Team
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * Estados del circuito
+     */
+    public enum State {
+        CLOSED,     // Llamadas permitidas
+        OPEN,       // Llamadas rechazadas sin intentar
+        HALF_OPEN   // Solo llamadas de prueba
+    }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    // Ventana circular: por bucket, segundo al que corresponde y contadores
+    private final long[] bucketSecond;
+    private final int[] bucketCalls;
+    private final int[] bucketFailures;
+    private final int[] bucketSlowCalls;
+
+    /**
+     * Permiso de una llamada admitida, con la generación del circuito en que se admitió
+     */
+    public static final class Permission {
+
+        private final long generation;
+
+        private Permission(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenCompleted;
+    private int halfOpenFailures;
+    private int halfOpenSlowCalls;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong openTransitions = new AtomicLong();
+
+    public CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold,
+                          long slowCallMs, int minimumCalls, int windowSeconds,
+                          long openDurationMs, int halfOpenCalls) {
+        this(name, failureRateThreshold, slowCallRateThreshold, slowCallMs, minimumCalls, windowSeconds,
+                openDurationMs, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold,
+                   long slowCallMs, int minimumCalls, int windowSeconds,
+                   long openDurationMs, int halfOpenCalls, LongSupplier clock) {
+        if (windowSeconds <= 0 || minimumCalls <= 0 || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("La ventana, el mínimo de llamadas y las llamadas de prueba deben ser mayores a cero");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.minimumCalls = minimumCalls;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+        this.bucketSecond = new long[windowSeconds];
+        this.bucketCalls = new int[windowSeconds];
+        this.bucketFailures = new int[windowSeconds];
+        this.bucketSlowCalls = new int[windowSeconds];
+    }
+
+    /**
+     * Solicita permiso para ejecutar una llamada
+     *
+     * Si devuelve un permiso, el llamador debe informar el resultado con {@link #onSuccess},
+     * {@link #onError} o {@link #releasePermission}.
+     *
+     * @return Permiso de la llamada, o null si el circuito la rechaza
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED:
+                return new Permission(generation);
+            case HALF_OPEN:
+                if (halfOpenInFlight + halfOpenCompleted < halfOpenCalls) {
+                    halfOpenInFlight++;
+                    return new Permission(generation);
+                }
+                break;
+            default:
+                break;
+        }
+        rejectedCalls.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Devuelve un permiso sin registrar resultado (la llamada no llegó a ejecutarse)
+     *
+     * @param permission Permiso obtenido con {@link #tryAcquirePermission()}
+     */
+    public synchronized void releasePermission(Permission permission) {
+        if (permission.generation == generation && state == State.HALF_OPEN && halfOpenInFlight > 0) {
+            halfOpenInFlight--;
+        }
+    }
+
+    /**
+     * Registra una llamada exitosa
+     *
+     * @param permission Permiso obtenido con {@link #tryAcquirePermission()}
+     * @param durationNanos Duración de la llamada
+     */
+    public synchronized void onSuccess(Permission permission, long durationNanos) {
+        record(permission, false, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Registra una llamada fallida
+     *
+     * @param permission Permiso obtenido con {@link #tryAcquirePermission()}
+     * @param durationNanos Duración de la llamada
+     */
+    public synchronized void onError(Permission permission, long durationNanos) {
+        record(permission, true, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Estado actual del circuito
+     *
+     * @return Estado
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Métricas del circuito: estado, tasas en la ventana y contadores acumulados
+     *
+     * @return Mapa con las métricas
+     */
+    public synchronized Map<String, Object> getMetrics() {
+        int[] totals = windowTotals();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("name", name);
+        metrics.put("state", state.name());
+        metrics.put("windowCalls", totals[0]);
+        metrics.put("failureRate", totals[0] == 0 ? 0.0 : (double) totals[1] / totals[0]);
+        metrics.put("slowCallRate", totals[0] == 0 ? 0.0 : (double) totals[2] / totals[0]);
+        metrics.put("rejectedCalls", rejectedCalls.get());
+        metrics.put("openTransitions", openTransitions.get());
+        return metrics;
+    }
+
+    private void record(Permission permission, boolean failure, boolean slow) {
+        if (permission.generation != generation) {
+            // Llamada admitida en un estado anterior: no altera la decisión del actual
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight > 0) {
+                halfOpenInFlight--;
+            }
+            halfOpenCompleted++;
+            halfOpenFailures += failure ? 1 : 0;
+            halfOpenSlowCalls += slow ? 1 : 0;
+            if (halfOpenCompleted >= halfOpenCalls) {
+                boolean unhealthy = exceeds(halfOpenFailures, halfOpenSlowCalls, halfOpenCompleted);
+                transitionTo(unhealthy ? State.OPEN : State.CLOSED);
+            }
+            return;
+        }
+
+        int bucket = currentBucket();
+        bucketCalls[bucket]++;
+        bucketFailures[bucket] += failure ? 1 : 0;
+        bucketSlowCalls[bucket] += slow ? 1 : 0;
+
+        int[] totals = windowTotals();
+        if (totals[0] >= minimumCalls && exceeds(totals[1], totals[2], totals[0])) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private boolean exceeds(int failures, int slowCalls, int calls) {
+        return (double) failures / calls >= failureRateThreshold
+                || (double) slowCalls / calls >= slowCallRateThreshold;
+    }
+
+    private int currentBucket() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(clock.getAsLong());
+        int bucket = (int) Math.floorMod(second, (long) bucketSecond.length);
+        if (bucketSecond[bucket] != second) {
+            bucketSecond[bucket] = second;
+            bucketCalls[bucket] = 0;
+            bucketFailures[bucket] = 0;
+            bucketSlowCalls[bucket] = 0;
+        }
+        return bucket;
+    }
+
+    private int[] windowTotals() {
+        long now = TimeUnit.NANOSECONDS.toSeconds(clock.getAsLong());
+        int[] totals = new int[3];
+        for (int i = 0; i < bucketSecond.length; i++) {
+            if (now - bucketSecond[i] < bucketSecond.length) {
+                totals[0] += bucketCalls[i];
+                totals[1] += bucketFailures[i];
+                totals[2] += bucketSlowCalls[i];
+            }
+        }
+        return totals;
+    }
+
+    private void transitionTo(State newState) {
+        if (state == newState) {
+            return;
+        }
+        log.warn("Circuit breaker {}: {} -> {}", name, state, newState);
+        state = newState;
+        generation++;
+        halfOpenInFlight = 0;
+        halfOpenCompleted = 0;
+        halfOpenFailures = 0;
+        halfOpenSlowCalls = 0;
+        if (newState == State.OPEN) {
+            openedAt = clock.getAsLong();
+            openTransitions.incrementAndGet();
+        } else if (newState == State.CLOSED) {
+            for (int i = 0; i < bucketCalls.length; i++) {
+                bucketCalls[i] = 0;
+                bucketFailures[i] = 0;
+                bucketSlowCalls[i] = 0;
+            }
+        }
+    }
+}
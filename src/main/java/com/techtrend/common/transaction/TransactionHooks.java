@@ -0,0 +1,58 @@
+package com.techtrend.common.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utilidades para enganchar acciones al ciclo de vida de la transacción actual
+ *
+ * Permite diferir efectos en memoria (locks, contadores, tareas asíncronas) hasta que
+ * la transacción de base de datos termina, para que nunca reflejen datos no confirmados
+ *
+ * @author TechTrend Team
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Registra una acción a ejecutar cuando la transacción actual termine (commit o rollback)
+     *
+     * @param action Acción a ejecutar
+     * @return true si se registró, false si no hay una transacción activa
+     */
+    public static boolean registerAfterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Ejecuta una acción tras el commit de la transacción actual, o de inmediato si no hay
+     * transacción activa. Si la transacción hace rollback la acción se descarta.
+     *
+     * @param action Acción a ejecutar
+     */
+    public static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.techtrend.common.util;
+
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.nio.file.Path;
+
+/**
+ * Validación de las rutas donde la aplicación guarda datos que no se pueden regenerar
+ *
+ * Estas rutas no tienen valor por defecto y no pueden estar dentro de target/, que
+ * mvn clean borra entero. Los perfiles de desarrollo y test pueden usar target/ en las
+ * rutas que lo indiquen.
+ *
+ * @author TechTrend Team
+ */
+public final class DataPaths {
+
+    private DataPaths() {
+    }
+
+    /**
+     * Comprueba si alguno de los perfiles indicados está activo
+     *
+     * @param environment Entorno de Spring
+     * @param profiles Perfiles que admiten rutas dentro de target/
+     * @return true si se admite target/
+     */
+    public static boolean buildDirAllowed(Environment environment, String... profiles) {
+        return profiles.length > 0 && environment.acceptsProfiles(Profiles.of(profiles));
+    }
+
+    /**
+     * Valida una ruta configurada para datos persistentes
+     *
+     * @param property Nombre de la propiedad, para los mensajes de error
+     * @param value Valor configurado
+     * @param buildDirAllowed true si se admite una ruta dentro de target/
+     * @param contents Qué se guarda en la ruta, por ejemplo "las claves JWT"
+     * @return Ruta configurada
+     * @throws IllegalStateException si falta o, sin buildDirAllowed, está dentro de target/
+     */
+    public static Path requirePersistent(String property, String value, boolean buildDirAllowed, String contents) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException(property + " es obligatorio: configure una ruta persistente para "
+                    + contents);
+        }
+        Path path = Path.of(value.trim());
+        Path buildDir = Path.of("target").toAbsolutePath().normalize();
+        if (!buildDirAllowed && path.toAbsolutePath().normalize().startsWith(buildDir)) {
+            throw new IllegalStateException(property + " no puede estar dentro de target/ (" + value
+                    + "): mvn clean borraría " + contents);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,283 @@
+package com.techtrend.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Mapa hash de claves long a valores long sin boxing
+ *
+ * Direccionamiento abierto con sondeo lineal sobre dos arreglos primitivos. La clave 0
+ * se usa como marca de celda vacía y se guarda aparte. Las eliminaciones desplazan hacia
+ * atrás los elementos del mismo grupo, por lo que no quedan lápidas.
+ *
+ * No es thread-safe: quien lo comparta debe sincronizar el acceso.
+ *
+ * @author TechTrend Team
+ */
+public class LongLongHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Obtiene el valor asociado a una clave
+     *
+     * @param key Clave
+     * @param defaultValue Valor a devolver si la clave no existe
+     * @return Valor asociado o el valor por defecto
+     */
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = slotOf(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Verifica si una clave existe
+     *
+     * @param key Clave
+     * @return true si existe
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return keys[slotOf(key)] == key;
+    }
+
+    /**
+     * Asocia un valor a una clave, reemplazando el anterior
+     *
+     * @param key Clave
+     * @param value Valor
+     */
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        growIfNeeded();
+    }
+
+    /**
+     * Suma un valor al asociado a una clave, creándola en 0 si no existe
+     *
+     * @param key Clave
+     * @param delta Valor a sumar
+     * @return Nuevo valor asociado
+     */
+    public long addTo(long key, long delta) {
+        if (key == 0) {
+            long updated = (hasZeroKey ? zeroValue : 0L) + delta;
+            put(key, updated);
+            return updated;
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            return values[slot] += delta;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        size++;
+        growIfNeeded();
+        return delta;
+    }
+
+    /**
+     * Elimina una clave
+     *
+     * @param key Clave
+     * @return true si la clave existía
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return true;
+        }
+        int slot = slotOf(key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Número de claves
+     *
+     * @return Tamaño del mapa
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Verifica si el mapa está vacío
+     *
+     * @return true si no tiene claves
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Recorre todas las entradas del mapa
+     *
+     * @param consumer Acción a ejecutar por cada entrada
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0L, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Conserva solo las {@code limit} entradas de mayor valor. Ante empates en el valor
+     * de corte se conservan entradas arbitrarias hasta completar el límite.
+     *
+     * @param limit Número máximo de entradas a conservar
+     */
+    public void retainTop(int limit) {
+        if (size <= limit) {
+            return;
+        }
+        long[] entryKeys = new long[size];
+        long[] entryValues = new long[size];
+        int count = 0;
+        if (hasZeroKey) {
+            entryValues[count++] = zeroValue;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                entryKeys[count] = keys[i];
+                entryValues[count++] = values[i];
+            }
+        }
+
+        long[] sorted = entryValues.clone();
+        Arrays.sort(sorted);
+        long threshold = limit > 0 ? sorted[sorted.length - limit] : Long.MAX_VALUE;
+        int tiesAllowed = 0;
+        for (int i = sorted.length - limit; i < sorted.length && limit > 0; i++) {
+            if (sorted[i] == threshold) {
+                tiesAllowed++;
+            }
+        }
+
+        allocate(capacityFor(limit));
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+        for (int i = 0; i < entryKeys.length; i++) {
+            if (entryValues[i] > threshold) {
+                put(entryKeys[i], entryValues[i]);
+            } else if (entryValues[i] == threshold && tiesAllowed > 0) {
+                put(entryKeys[i], entryValues[i]);
+                tiesAllowed--;
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int current = (slot + 1) & mask;
+        while (keys[current] != 0) {
+            int home = mix(keys[current]) & mask;
+            // Mover el elemento al hueco si su posición ideal no queda entre el hueco y él
+            if (((current - home) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+
+    private void growIfNeeded() {
+        if (size < keys.length * LOAD_FACTOR) {
+            return;
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int required = (int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR) + 1;
+        return Integer.highestOneBit(required - 1) << 1;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Acción sobre una entrada del mapa
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,85 @@
+package com.techtrend.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Contador de eventos y montos en una ventana deslizante de tiempo
+ *
+ * La ventana se divide en {@code buckets} intervalos guardados en un buffer circular de
+ * arreglos primitivos. Cada intervalo recuerda a qué época pertenece, de modo que los
+ * vencidos se descartan al leerlos o reutilizarlos sin barridos aparte. La precisión de
+ * la ventana es un intervalo: un evento deja de contar entre window - window/buckets y
+ * window ms después de registrarse.
+ *
+ * No es thread-safe: quien lo comparta debe sincronizar el acceso.
+ *
+ * @author TechTrend Team
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final long[] epochs;
+    private final long[] counts;
+    private final long[] sums;
+
+    public SlidingWindowCounter(long windowMillis, int buckets) {
+        if (buckets <= 0 || windowMillis < buckets) {
+            throw new IllegalArgumentException("La ventana debe tener al menos un ms por intervalo");
+        }
+        this.bucketMillis = windowMillis / buckets;
+        this.epochs = new long[buckets];
+        this.counts = new long[buckets];
+        this.sums = new long[buckets];
+        Arrays.fill(epochs, -1);
+    }
+
+    /**
+     * Suma eventos y monto al intervalo que contiene un instante
+     *
+     * @param nowMillis Instante en milisegundos
+     * @param count Eventos a sumar (negativo para deshacer un registro)
+     * @param sum Monto a sumar
+     */
+    public void add(long nowMillis, long count, long sum) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % epochs.length);
+        if (epochs[slot] != epoch) {
+            epochs[slot] = epoch;
+            counts[slot] = 0;
+            sums[slot] = 0;
+        }
+        counts[slot] += count;
+        sums[slot] += sum;
+    }
+
+    /**
+     * Eventos registrados dentro de la ventana que termina en un instante
+     *
+     * @param nowMillis Instante en milisegundos
+     * @return Total de eventos
+     */
+    public long count(long nowMillis) {
+        return total(nowMillis, counts);
+    }
+
+    /**
+     * Monto registrado dentro de la ventana que termina en un instante
+     *
+     * @param nowMillis Instante en milisegundos
+     * @return Monto total
+     */
+    public long sum(long nowMillis) {
+        return total(nowMillis, sums);
+    }
+
+    private long total(long nowMillis, long[] values) {
+        long oldest = nowMillis / bucketMillis - epochs.length + 1;
+        long total = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] >= oldest) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,224 @@
+package com.techtrend.common.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contador de elementos frecuentes (heavy hitters) con el algoritmo Space-Saving
+ *
+ * Mantiene como máximo {@code capacity} contadores sin importar cuántos elementos
+ * distintos se observen. Cuando no queda espacio, el elemento nuevo reemplaza al de
+ * menor cuenta y hereda esa cuenta como error máximo, lo que garantiza que todo
+ * elemento con frecuencia mayor a N / capacity aparece en el resultado.
+ *
+ * Los contadores se agrupan en cubetas por cuenta, enlazadas en orden ascendente
+ * (stream-summary): incrementar mueve el contador a la cubeta siguiente y el de menor
+ * cuenta está siempre en la primera, así que {@link #offer(long)} es O(1) aunque
+ * reemplace un elemento.
+ *
+ * @author TechTrend Team
+ */
+public class SpaceSavingCounter {
+
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+
+    /** Cubeta de menor cuenta */
+    private Bucket head;
+    /** Cubeta de mayor cuenta */
+    private Bucket tail;
+
+    public SpaceSavingCounter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser mayor a cero");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Registra una ocurrencia de un elemento
+     *
+     * @param item Elemento observado
+     */
+    public synchronized void offer(long item) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            increment(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter(item, 0);
+            counters.put(item, counter);
+            if (head == null || head.count != 1) {
+                linkBefore(new Bucket(1), head);
+            }
+            head.counters.add(counter);
+            counter.bucket = head;
+            return;
+        }
+
+        // Reutilizar el contador de menor cuenta para el elemento nuevo
+        Counter evicted = head.counters.iterator().next();
+        counters.remove(evicted.item);
+        evicted.item = item;
+        evicted.error = head.count;
+        counters.put(item, evicted);
+        increment(evicted);
+    }
+
+    /**
+     * Obtiene los elementos más frecuentes
+     *
+     * @param limit Número máximo de elementos
+     * @return Elementos ordenados por cuenta descendente
+     */
+    public synchronized List<HeavyHitter> top(int limit) {
+        List<HeavyHitter> result = new ArrayList<>(Math.min(limit, counters.size()));
+        for (Bucket bucket = tail; bucket != null && result.size() < limit; bucket = bucket.prev) {
+            for (Counter counter : bucket.counters) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(new HeavyHitter(counter.item, bucket.count, counter.error));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Divide a la mitad todas las cuentas para que el ranking refleje la actividad reciente
+     *
+     * Dividir conserva el orden de las cubetas; las que quedan con la misma cuenta se
+     * fusionan y las que llegan a cero se eliminan.
+     */
+    public synchronized void decay() {
+        Bucket bucket = head;
+        Bucket previous = null;
+        while (bucket != null) {
+            Bucket next = bucket.next;
+            bucket.count >>= 1;
+            for (Counter counter : bucket.counters) {
+                counter.error >>= 1;
+            }
+            if (bucket.count == 0) {
+                for (Counter counter : bucket.counters) {
+                    counters.remove(counter.item);
+                }
+                unlink(bucket);
+            } else if (previous != null && previous.count == bucket.count) {
+                for (Counter counter : bucket.counters) {
+                    counter.bucket = previous;
+                }
+                previous.counters.addAll(bucket.counters);
+                unlink(bucket);
+            } else {
+                previous = bucket;
+            }
+            bucket = next;
+        }
+    }
+
+    /**
+     * Número de elementos con contador
+     */
+    public synchronized int size() {
+        return counters.size();
+    }
+
+    /**
+     * Mueve un contador a la cubeta de la cuenta siguiente, creándola si no existe
+     */
+    private void increment(Counter counter) {
+        Bucket current = counter.bucket;
+        Bucket next = current.next;
+        if (next == null || next.count != current.count + 1) {
+            next = new Bucket(current.count + 1);
+            linkBefore(next, current.next);
+        }
+        current.counters.remove(counter);
+        next.counters.add(counter);
+        counter.bucket = next;
+        if (current.counters.isEmpty()) {
+            unlink(current);
+        }
+    }
+
+    /**
+     * Enlaza una cubeta antes de otra, o al final si es nula
+     */
+    private void linkBefore(Bucket bucket, Bucket successor) {
+        Bucket predecessor = successor != null ? successor.prev : tail;
+        bucket.prev = predecessor;
+        bucket.next = successor;
+        if (predecessor != null) {
+            predecessor.next = bucket;
+        } else {
+            head = bucket;
+        }
+        if (successor != null) {
+            successor.prev = bucket;
+        } else {
+            tail = bucket;
+        }
+    }
+
+    private void unlink(Bucket bucket) {
+        if (bucket.prev != null) {
+            bucket.prev.next = bucket.next;
+        } else {
+            head = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        } else {
+            tail = bucket.prev;
+        }
+    }
+
+    /**
+     * Contador de un elemento; la cuenta es la de su cubeta
+     */
+    private static final class Counter {
+        private long item;
+        private long error;
+        private Bucket bucket;
+
+        private Counter(long item, long error) {
+            this.item = item;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Contadores con la misma cuenta, en orden de llegada
+     */
+    private static final class Bucket {
+        private long count;
+        private final Set<Counter> counters = new LinkedHashSet<>();
+        private Bucket prev;
+        private Bucket next;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    /**
+     * Elemento frecuente con su cuenta estimada
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class HeavyHitter {
+        private final long item;
+        private final long count;
+        private final long error;
+    }
+}
@@ -0,0 +1,78 @@
+package com.techtrend.config;
+
+import com.techtrend.common.resilience.Bulkhead;
+import com.techtrend.common.resilience.CircuitBreaker;
+import com.techtrend.payment.gateway.PaymentGateway;
+import com.techtrend.payment.gateway.ResilientPaymentGateway;
+import com.techtrend.payment.gateway.StubGatewaySettings;
+import com.techtrend.payment.gateway.StubPaymentGateway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Configuración de la pasarela de pagos
+ * Selecciona la implementación de PaymentGateway según app.payment.gateway.type
+ * y la protege con circuit breaker y bulkhead
+ *
+ * No hay pasarela por defecto: la simulada solo se activa con type: stub, que fijan los
+ * perfiles dev y test. Si ninguna implementación coincide, el arranque falla.
+ */
+@Configuration
+public class PaymentGatewayConfig {
+
+    /**
+     * Pasarela simulada en proceso, solo para desarrollo y pruebas
+     * @return Pasarela simulada configurada desde app.payment.gateway.stub
+     */
+    @Bean
+    @Qualifier("gatewayClient")
+    @ConditionalOnProperty(name = "app.payment.gateway.type", havingValue = "stub")
+    public StubPaymentGateway stubPaymentGateway(
+            @Value("${app.payment.gateway.stub.approval-rate:0.9}") double approvalRate,
+            @Value("${app.payment.gateway.stub.error-rate:0.0}") double errorRate,
+            @Value("${app.payment.gateway.stub.latency-distribution:FIXED}") StubGatewaySettings.LatencyDistribution distribution,
+            @Value("${app.payment.gateway.stub.latency-ms:0}") long latencyMs,
+            @Value("${app.payment.gateway.stub.latency-p99-ms:0}") long latencyP99Ms,
+            @Value("${app.payment.gateway.stub.timeout-ms:5000}") long timeoutMs,
+            @Value("${app.payment.gateway.stub.slow-drain:false}") boolean slowDrain,
+            @Value("${app.payment.gateway.stub.drain-concurrency:4}") int drainConcurrency) {
+        return new StubPaymentGateway(new StubGatewaySettings(approvalRate, errorRate, distribution,
+                latencyMs, latencyP99Ms, timeoutMs, slowDrain, drainConcurrency));
+    }
+
+    /**
+     * Pasarela usada por los servicios: envuelve al cliente con circuit breaker y bulkhead
+     * Toda implementación de cliente debe registrarse con el calificador "gatewayClient"
+     * @return Pasarela protegida
+     * @throws IllegalStateException si app.payment.gateway.type no selecciona ninguna pasarela
+     */
+    @Bean
+    @Primary
+    public ResilientPaymentGateway resilientPaymentGateway(
+            @Qualifier("gatewayClient") ObjectProvider<PaymentGateway> gatewayClients,
+            @Value("${app.payment.gateway.type:}") String gatewayType,
+            @Value("${app.payment.gateway.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${app.payment.gateway.circuit-breaker.slow-call-rate-threshold:0.5}") double slowCallRateThreshold,
+            @Value("${app.payment.gateway.circuit-breaker.slow-call-ms:2000}") long slowCallMs,
+            @Value("${app.payment.gateway.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${app.payment.gateway.circuit-breaker.window-seconds:10}") int windowSeconds,
+            @Value("${app.payment.gateway.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+            @Value("${app.payment.gateway.circuit-breaker.half-open-calls:5}") int halfOpenCalls,
+            @Value("${app.payment.gateway.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${app.payment.gateway.bulkhead.max-wait-ms:0}") long maxWaitMs) {
+        PaymentGateway gatewayClient = gatewayClients.getIfAvailable();
+        if (gatewayClient == null) {
+            throw new IllegalStateException("No hay pasarela de pagos para app.payment.gateway.type='"
+                    + gatewayType + "': configure una pasarela real (stub solo en los perfiles dev y test)");
+        }
+        CircuitBreaker circuitBreaker = new CircuitBreaker("payment-gateway", failureRateThreshold,
+                slowCallRateThreshold, slowCallMs, minimumCalls, windowSeconds, openDurationMs, halfOpenCalls);
+        Bulkhead bulkhead = new Bulkhead("payment-gateway", maxConcurrentCalls, maxWaitMs);
+        return new ResilientPaymentGateway(gatewayClient, circuitBreaker, bulkhead);
+    }
+}
@@ -0,0 +1,15 @@
+package com.techtrend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuración de tareas programadas
+ * Habilita los métodos @Scheduled (reconciliaciones y tareas de mantenimiento)
+ * El tamaño del pool se define en spring.task.scheduling.pool.size: las tareas largas
+ * no deben bloquear al relay del outbox ni a los reintentos de pago
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,13 +1,21 @@
 package com.techtrend.config;
 
+import com.techtrend.authentication.model.User;
+import com.techtrend.authentication.security.BoundedPasswordEncoder;
+import com.techtrend.authentication.security.JwtAuthenticationFilter;
+import com.techtrend.authentication.security.PasswordEncoderFactory;
+import com.techtrend.authentication.service.JwtService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  * Configuración de seguridad para TechTrend
@@ -17,35 +25,74 @@ import org.springframework.security.web.SecurityFilterChain;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final String ADMIN = User.UserRole.ADMIN.name();
+
     /**
-     * Bean para encriptar contraseñas usando BCrypt
-     * @return PasswordEncoder configurado con BCrypt
+     * Bean para encriptar contraseñas
+     * 
+     * Los hashes se calculan en un pool acotado para que un pico de logins no ocupe los
+     * hilos de Tomcat; con el pool saturado se responde 503. Los hashes nuevos llevan el
+     * prefijo del algoritmo configurado y los existentes se recalculan en el login si usan
+     * otro algoritmo u otro coste.
+     * 
+     * @param encoder Algoritmo de los hashes nuevos (bcrypt o pbkdf2)
+     * @param strength Coste de BCrypt
+     * @param threads Hilos del pool (0 = la mitad de los núcleos)
+     * @param queueCapacity Solicitudes en espera antes de rechazar
+     * @param timeout Espera máxima de una solicitud en ms
+     * @return PasswordEncoder configurado
      */
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(@Value("${security.password.encoder:bcrypt}") String encoder,
+                                                  @Value("${security.bcrypt.strength:12}") int strength,
+                                                  @Value("${security.bcrypt.threads:0}") int threads,
+                                                  @Value("${security.bcrypt.queue-capacity:16}") int queueCapacity,
+                                                  @Value("${security.bcrypt.timeout:5000}") long timeout) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(PasswordEncoderFactory.create(encoder, strength), poolSize, queueCapacity, timeout);
     }
 
     /**
      * Configuración de seguridad HTTP
-     * Permite acceso a endpoints públicos y configura JWT
+     * 
+     * Las rutas se evalúan sin el context-path (/api). Cada solicitud se autentica con el
+     * token JWT de la cabecera Authorization mediante JwtAuthenticationFilter; el carrito y
+     * los pagos requieren usuario autenticado y las rutas de operación, rol ADMIN.
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   JwtService jwtService,
+                                                   @Value("${security.jwt.header:Authorization}") String header,
+                                                   @Value("${security.jwt.prefix:Bearer}") String prefix) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .headers(headers -> headers.frameOptions(frameOptions -> frameOptions.disable())) // Para H2 console
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .addFilterBefore(new JwtAuthenticationFilter(jwtService, header, prefix),
+                UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(auth -> auth
+                // Rutas de operación: métricas, conciliación, ledger, outbox y pasarela simulada
+                .requestMatchers("/auth/token-cache/**", "/auth/password-hashing/**").hasRole(ADMIN)
+                .requestMatchers("/outbox/**").hasRole(ADMIN)
+                .requestMatchers("/payments/ledger/**").hasRole(ADMIN)
+                .requestMatchers("/payments/settlements/**").hasRole(ADMIN)
+                .requestMatchers("/payments/revenue/**").hasRole(ADMIN)
+                .requestMatchers("/payments/gateway/**").hasRole(ADMIN)
+                .requestMatchers("/payments/retry/**", "/payments/velocity/**").hasRole(ADMIN)
+                .requestMatchers("/payments/statistics", "/payments/pending", "/payments/export").hasRole(ADMIN)
+                .requestMatchers("/payments/status/**").hasRole(ADMIN)
+                .requestMatchers(HttpMethod.PUT, "/payments/*/status").hasRole(ADMIN)
+                .requestMatchers(HttpMethod.PUT, "/catalog/**").hasRole(ADMIN)
                 // Endpoints públicos
                 .requestMatchers("/").permitAll()
                 .requestMatchers("/api").permitAll()
-                .requestMatchers("/api/").permitAll()
-                .requestMatchers("/api/auth/**").permitAll()
-                .requestMatchers("/api/catalog/**").permitAll()
-                .requestMatchers("/api/cart/**").permitAll()
-                .requestMatchers("/api/payment/**").permitAll()
-                .requestMatchers("/api/health/**").permitAll()
+                .requestMatchers("/auth/**").permitAll()
+                .requestMatchers("/catalog/**").permitAll()
+                .requestMatchers("/cart/health", "/cart/trending", "/cart/products/**").permitAll()
+                .requestMatchers("/payments/health").permitAll()
+                .requestMatchers("/health/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/h22-console/**").permitAll()
                 .requestMatchers("/actuator/**").permitAll()
@@ -53,7 +100,7 @@ public class SecurityConfig {
                 .requestMatchers("/swagger-ui.html").permitAll()
                 .requestMatchers("/v3/api-docs/**").permitAll()
                 .requestMatchers("/error").permitAll()
-                // Cualquier otra petición requiere autenticación
+                // Cualquier otra petición (carrito y pagos del usuario) requiere autenticación
                 .anyRequest().authenticated()
             );
         
@@ -1,5 +1,7 @@
 package com.techtrend.controller;
 
+import com.techtrend.payment.gateway.PaymentGateway;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,8 +16,11 @@ import java.util.Map;
  */
 @RestController
 @RequestMapping("/health")
+@RequiredArgsConstructor
 public class HealthController {
 
+    private final PaymentGateway paymentGateway;
+
     /**
      * Endpoint para verificar el estado de salud de la aplicación
      * @return Información del estado de la aplicación
@@ -28,6 +33,13 @@ public class HealthController {
         response.put("application", "TechTrend Microservice");
         response.put("version", "1.0.0");
         response.put("message", "¡TechTrend está funcionando correctamente! 🚀");
+
+        // Una pasarela con el circuito abierto degrada pagos, pero el resto del servicio sigue operativo
+        Map<String, Object> gateway = paymentGateway.getMetrics();
+        response.put("paymentGateway", gateway);
+        if (Boolean.FALSE.equals(gateway.get("available"))) {
+            response.put("status", "DEGRADED");
+        }
         
         return ResponseEntity.ok(response);
     }
@@ -0,0 +1,33 @@
+package com.techtrend.outbox.controller;
+
+import com.techtrend.outbox.service.OutboxRelay;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Controlador de la outbox de eventos de dominio
+ * 
+ * @author TechTrend Team
+ */
+@RestController
+@RequestMapping("/outbox")
+@RequiredArgsConstructor
+public class OutboxController {
+
+    private final OutboxRelay outboxRelay;
+
+    /**
+     * Endpoint para obtener las métricas del relay de la outbox
+     * 
+     * @return Eventos pendientes y publicados, throughput y fallos por destino
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(outboxRelay.getMetrics());
+    }
+}
@@ -0,0 +1,59 @@
+package com.techtrend.outbox.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad de la tabla outbox: un evento de dominio pendiente de publicar
+ * 
+ * Las filas se insertan en la misma transacción que el cambio que describen (estado de
+ * un pago, stock de un producto), de modo que un evento existe si y solo si el cambio
+ * se confirmó. El OutboxRelay las publica en orden de ID y las elimina.
+ * 
+ * @author TechTrend Team
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    public static final String PAYMENT_STATUS_CHANGED = "PAYMENT_STATUS_CHANGED";
+    public static final String STOCK_CHANGED = "STOCK_CHANGED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "aggregate_type", nullable = false, length = 20)
+    private AggregateType aggregateType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+
+    // Ya es JSON: al serializar el evento se incrusta tal cual en lugar de como texto
+    @JsonRawValue
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Tipo de entidad cuyo cambio describe el evento
+     */
+    public enum AggregateType {
+        PAYMENT,
+        PRODUCT
+    }
+}
@@ -0,0 +1,27 @@
+package com.techtrend.outbox.repository;
+
+import com.techtrend.outbox.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repositorio para la entidad OutboxEvent
+ * 
+ * @author TechTrend Team
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Obtiene el siguiente lote de eventos pendientes en orden de inserción
+     * 
+     * @param pageable Tamaño del lote
+     * @return Eventos más antiguos primero
+     */
+    @Query("SELECT e FROM OutboxEvent e ORDER BY e.id")
+    List<OutboxEvent> findBatch(Pageable pageable);
+}
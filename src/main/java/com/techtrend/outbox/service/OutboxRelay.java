@@ -0,0 +1,151 @@
+package com.techtrend.outbox.service;
+
+import com.techtrend.outbox.model.OutboxEvent;
+import com.techtrend.outbox.repository.OutboxEventRepository;
+import com.techtrend.outbox.sink.OutboxSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay de la outbox: publica los eventos pendientes en los destinos y los elimina
+ * 
+ * Un único hilo programado lee lotes en orden de ID y entrega cada lote a todos los
+ * destinos, también en orden, por lo que los eventos de un mismo agregado llegan en el
+ * orden en que se confirmaron. Si un destino falla el ciclo se detiene sin borrar el
+ * lote, que se reintenta completo en el siguiente: ningún evento se salta a uno anterior
+ * del mismo agregado, a costa de entregar duplicados (al menos una vez).
+ * 
+ * Supone una sola instancia del relay por base de datos.
+ * 
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSink> sinks;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final Map<String, AtomicLong> sinkFailures = new HashMap<>();
+    private volatile double lastRunEventsPerSecond;
+    private volatile long lastBatchMs;
+    private volatile LocalDateTime lastRunAt;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       List<OutboxSink> sinks,
+                       @Value("${app.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${app.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${app.outbox.relay.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sinks = List.copyOf(sinks);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        for (OutboxSink sink : this.sinks) {
+            sinkFailures.put(sink.getName(), new AtomicLong());
+        }
+    }
+
+    /**
+     * Publica lotes hasta vaciar la outbox, alcanzar el máximo por ciclo o fallar un destino
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.relay.interval:1000}",
+            initialDelayString = "${app.outbox.relay.interval:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int runPublished = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int count = publishBatch();
+            if (count < 0) {
+                break;
+            }
+            runPublished += count;
+            if (count < batchSize) {
+                break;
+            }
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        if (runPublished > 0) {
+            lastRunEventsPerSecond = runPublished * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            log.debug("Outbox: {} eventos publicados en {} ms", runPublished,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        lastRunAt = LocalDateTime.now();
+    }
+
+    /**
+     * Publica el siguiente lote en todos los destinos y lo elimina de la outbox
+     * 
+     * @return Eventos publicados, o -1 si algún destino falló y el lote sigue pendiente
+     */
+    int publishBatch() {
+        long start = System.nanoTime();
+        List<OutboxEvent> events = outboxEventRepository.findBatch(PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        for (OutboxSink sink : sinks) {
+            try {
+                sink.publish(events);
+            } catch (Exception e) {
+                sinkFailures.get(sink.getName()).incrementAndGet();
+                failedBatches.incrementAndGet();
+                log.warn("Destino de outbox {} falló con un lote de {} eventos desde el {}: {}",
+                        sink.getName(), events.size(), events.get(0).getId(), e.getMessage());
+                return -1;
+            }
+        }
+
+        outboxEventRepository.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+        published.addAndGet(events.size());
+        batches.incrementAndGet();
+        lastBatchMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return events.size();
+    }
+
+    /**
+     * Obtiene las métricas del relay
+     * 
+     * @return Mapa con eventos publicados, pendientes, throughput y fallos por destino
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> failures = new LinkedHashMap<>();
+        sinkFailures.forEach((name, count) -> failures.put(name, count.get()));
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("sinks", sinks.stream().map(OutboxSink::getName).toList());
+        metrics.put("pending", outboxEventRepository.count());
+        metrics.put("published", published.get());
+        metrics.put("batches", batches.get());
+        metrics.put("failedBatches", failedBatches.get());
+        metrics.put("sinkFailures", failures);
+        metrics.put("lastRunEventsPerSecond", Math.round(lastRunEventsPerSecond));
+        metrics.put("lastBatchMs", lastBatchMs);
+        metrics.put("lastRunAt", lastRunAt);
+        return metrics;
+    }
+}
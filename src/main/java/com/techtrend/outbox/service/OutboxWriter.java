@@ -0,0 +1,60 @@
+package com.techtrend.outbox.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.outbox.model.OutboxEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Escribe eventos en la tabla outbox dentro de la transacción en curso
+ * 
+ * Usa un INSERT JDBC en lugar del EntityManager: JpaTransactionManager expone la misma
+ * conexión al DataSource, así que la fila se confirma o revierte junto con el cambio de
+ * dominio, y puede llamarse desde callbacks JPA (@PostUpdate), donde la especificación no
+ * permite usar el EntityManager. Tampoco carga la entidad en el contexto de persistencia.
+ * 
+ * Solo depende del DataSource y del ObjectMapper para poder inyectarse en listeners JPA
+ * que Hibernate obtiene mientras construye el EntityManagerFactory.
+ * 
+ * @author TechTrend Team
+ */
+@Component
+public class OutboxWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO outbox_events "
+            + "(aggregate_type, aggregate_id, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registra un evento en la outbox
+     * 
+     * Debe llamarse después de la sentencia que modifica el agregado, para que el lock de
+     * fila ya esté tomado y los IDs de outbox de un mismo agregado sigan el orden de commit.
+     * 
+     * @param aggregateType Tipo de agregado
+     * @param aggregateId ID del agregado
+     * @param eventType Tipo de evento
+     * @param payload Contenido del evento, serializado a JSON
+     */
+    public void append(OutboxEvent.AggregateType aggregateType, Long aggregateId, String eventType, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento " + eventType, e);
+        }
+        jdbcTemplate.update(INSERT_SQL, aggregateType.name(), aggregateId, eventType, json,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,96 @@
+package com.techtrend.outbox.sink;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.common.util.DataPaths;
+import com.techtrend.outbox.model.OutboxEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Destino que añade los eventos de la outbox a un fichero NDJSON, uno por línea
+ * 
+ * Mantiene el fichero abierto y vuelca el buffer una vez por lote, así que el coste por
+ * evento es una escritura en memoria. Pensado para desarrollo local y para alimentar
+ * procesos que leen el fichero en streaming.
+ * 
+ * Los eventos ya publicados no se vuelven a relayar, así que el fichero no se puede
+ * regenerar: la ruta es obligatoria y solo el perfil test admite target/.
+ * 
+ * @author TechTrend Team
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.file.enabled", havingValue = "true")
+@Slf4j
+public class FileOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    private BufferedWriter writer;
+
+    @Autowired
+    public FileOutboxSink(ObjectMapper objectMapper,
+                          @Value("${app.outbox.file.path:}") String path,
+                          Environment environment) {
+        this(objectMapper, DataPaths.requirePersistent("app.outbox.file.path", path,
+                DataPaths.buildDirAllowed(environment, "test"), "los eventos de outbox publicados"));
+    }
+
+    FileOutboxSink(ObjectMapper objectMapper, Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException {
+        try {
+            if (writer == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                log.info("Publicando eventos de outbox en {}", path.toAbsolutePath());
+            }
+            for (OutboxEvent event : events) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // Se reabre en el siguiente lote; las líneas parciales se reescriben con el reintento
+            close();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Error cerrando el fichero de outbox {}: {}", path, e.getMessage());
+        }
+        writer = null;
+    }
+}
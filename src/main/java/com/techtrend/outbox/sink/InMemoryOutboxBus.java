@@ -0,0 +1,59 @@
+package com.techtrend.outbox.sink;
+
+import com.techtrend.outbox.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus en memoria que reparte los eventos de la outbox entre suscriptores del proceso
+ * 
+ * La entrega es síncrona en el hilo del relay, de modo que cada suscriptor ve los
+ * eventos en orden. Un suscriptor que falla no bloquea a los demás ni provoca el
+ * reintento del lote: el bus es un destino local y best-effort.
+ * 
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class InMemoryOutboxBus implements OutboxSink {
+
+    private final List<Consumer<OutboxEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registra un suscriptor para los eventos publicados a partir de ahora
+     * 
+     * @param subscriber Consumidor de eventos
+     */
+    public void subscribe(Consumer<OutboxEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Elimina un suscriptor
+     * 
+     * @param subscriber Consumidor registrado con {@link #subscribe(Consumer)}
+     */
+    public void unsubscribe(Consumer<OutboxEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (Consumer<OutboxEvent> subscriber : subscribers) {
+            try {
+                events.forEach(subscriber);
+            } catch (RuntimeException e) {
+                log.warn("Suscriptor del bus de outbox falló: {}", e.getMessage());
+            }
+        }
+    }
+}
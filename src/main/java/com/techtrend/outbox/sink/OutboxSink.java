@@ -0,0 +1,33 @@
+package com.techtrend.outbox.sink;
+
+import com.techtrend.outbox.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destino al que el OutboxRelay publica los eventos de la outbox
+ * 
+ * Recibe los eventos en orden de ID, lo que conserva el orden de cada agregado. La
+ * entrega es al menos una vez: si un destino falla, el lote completo se reintenta en el
+ * siguiente ciclo y los destinos que ya lo recibieron lo reciben de nuevo, por lo que los
+ * consumidores deben descartar duplicados por ID de evento.
+ * 
+ * @author TechTrend Team
+ */
+public interface OutboxSink {
+
+    /**
+     * Nombre del destino en métricas y logs
+     * 
+     * @return Nombre del destino
+     */
+    String getName();
+
+    /**
+     * Publica un lote de eventos; debe lanzar una excepción si no se entregaron todos
+     * 
+     * @param events Eventos en orden de ID
+     * @throws Exception si la publicación falla
+     */
+    void publish(List<OutboxEvent> events) throws Exception;
+}
@@ -1,15 +1,30 @@
 package com.techtrend.payment.controller;
 
+import com.techtrend.authentication.security.AuthenticatedUser;
+import com.techtrend.common.exception.IdempotencyKeyConflictException;
+import com.techtrend.payment.dto.CheckoutRequest;
+import com.techtrend.payment.dto.CheckoutResponse;
+import com.techtrend.payment.dto.PaymentPageResponse;
 import com.techtrend.payment.dto.PaymentRequest;
 import com.techtrend.payment.dto.PaymentResponse;
 import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.service.CheckoutService;
+import com.techtrend.payment.service.PaymentExportService;
+import com.techtrend.payment.service.PaymentIdempotencyService;
+import com.techtrend.payment.service.PaymentIdempotencyService.IdempotentPaymentResult;
+import com.techtrend.payment.service.PaymentRetryScheduler;
 import com.techtrend.payment.service.PaymentService;
+import com.techtrend.payment.service.PaymentVelocityGuard;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
 import java.util.List;
@@ -29,44 +44,142 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class PaymentController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String DEFAULT_PAGE_SIZE = "50";
+    private static final String NDJSON = "application/x-ndjson";
+
     private final PaymentService paymentService;
+    private final PaymentIdempotencyService paymentIdempotencyService;
+    private final PaymentExportService paymentExportService;
+    private final PaymentRetryScheduler paymentRetryScheduler;
+    private final PaymentVelocityGuard paymentVelocityGuard;
+    private final CheckoutService checkoutService;
 
     /**
      * Endpoint para procesar un pago
      * 
      * @param request Solicitud de pago
-     * @param userId ID del usuario
-     * @return Pago procesado
+     * @param userId ID del usuario autenticado
+     * @param idempotencyKey Clave de idempotencia opcional (cabecera Idempotency-Key)
+     * @return Pago procesado (201), aceptado para procesamiento asíncrono (202) o,
+     *         si la clave ya se usó, el pago original (200)
      */
     @PostMapping("/process")
     public ResponseEntity<PaymentResponse> processPayment(
             @Valid @RequestBody PaymentRequest request,
-            @RequestParam Long userId) {
+            @AuthenticationPrincipal(expression = "userId") Long userId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Solicitud para procesar pago: pedido {}, usuario {}, monto {}", 
                 request.getOrderId(), userId, request.getAmount());
         
         try {
-            PaymentResponse response = paymentService.processPayment(request, userId);
+            PaymentResponse response;
+            if (idempotencyKey != null) {
+                IdempotentPaymentResult result = paymentIdempotencyService.submitPayment(request, userId, idempotencyKey);
+                if (result.isReplayed()) {
+                    log.info("Reintento idempotente respondido con el pago: ID {}", result.getResponse().getId());
+                    return ResponseEntity.ok()
+                            .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                            .body(result.getResponse());
+                }
+                response = result.getResponse();
+            } else {
+                response = paymentService.submitPayment(request, userId);
+            }
+            if (Payment.PaymentStatus.PENDING.name().equals(response.getStatus())) {
+                // Procesamiento asíncrono: el estado final se consulta en /payments/{id}/status
+                log.info("Pago aceptado para procesamiento asíncrono: ID {}", response.getId());
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
             log.info("Pago procesado exitosamente: ID {}", response.getId());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IdempotencyKeyConflictException e) {
+            // GlobalExceptionHandler responde 422 con el detalle del conflicto
+            throw e;
         } catch (Exception e) {
             log.error("Error procesando pago: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Endpoint para pagar el carrito del usuario
+     * 
+     * El monto sale del carrito revalidado; el stock se reserva antes de registrar el pago
+     * y se libera si el pago falla. Stock insuficiente o un carrito vacío se informan como
+     * 400 con el detalle del error.
+     * 
+     * @param request Método de pago, moneda, descripción y callback
+     * @param userId ID del usuario autenticado
+     * @return Checkout con el pago completado (201) o aceptado para procesamiento asíncrono (202)
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<CheckoutResponse> checkout(
+            @Valid @RequestBody CheckoutRequest request,
+            @AuthenticationPrincipal(expression = "userId") Long userId) {
+        log.info("Solicitud de checkout: usuario {}", userId);
+        
+        CheckoutResponse response = checkoutService.checkout(userId, request);
+        if (Payment.PaymentStatus.PENDING.name().equals(response.getPayment().getStatus())) {
+            log.info("Checkout aceptado para procesamiento asíncrono: pedido {}", response.getOrderId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        }
+        log.info("Checkout procesado: pedido {}, estado {}", response.getOrderId(), response.getStatus());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Endpoint para consultar el estado de un checkout
+     * 
+     * Un usuario solo ve sus propios checkouts; el de otro usuario responde 404, igual
+     * que uno inexistente, para no revelar qué pedidos existen.
+     * 
+     * @param orderId ID del pedido
+     * @param user Usuario autenticado
+     * @return Checkout con su pago
+     */
+    @GetMapping("/checkout/{orderId}")
+    public ResponseEntity<CheckoutResponse> getCheckout(
+            @PathVariable Long orderId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        log.info("Solicitud para obtener checkout del pedido: {}", orderId);
+        
+        try {
+            CheckoutResponse checkout = checkoutService.getCheckout(orderId);
+            if (!canAccess(user, checkout.getUserId())) {
+                log.warn("Usuario {} sin acceso al checkout del pedido {}", userIdOf(user), orderId);
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(checkout);
+        } catch (IllegalArgumentException e) {
+            log.warn("Checkout no encontrado para el pedido: {}", orderId);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     /**
      * Endpoint para obtener un pago por ID
      * 
+     * Un usuario solo ve sus propios pagos; el de otro usuario responde 404.
+     * 
      * @param id ID del pago
+     * @param user Usuario autenticado
      * @return Pago encontrado
      */
     @GetMapping("/{id}")
-    public ResponseEntity<PaymentResponse> getPaymentById(@PathVariable Long id) {
+    public ResponseEntity<PaymentResponse> getPaymentById(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
         log.info("Solicitud para obtener pago con ID: {}", id);
         
         try {
             PaymentResponse payment = paymentService.getPaymentById(id);
+            if (!canAccess(user, payment.getUserId())) {
+                log.warn("Usuario {} sin acceso al pago {}", userIdOf(user), id);
+                return ResponseEntity.notFound().build();
+            }
             log.info("Pago obtenido exitosamente: ID {}", id);
             return ResponseEntity.ok(payment);
         } catch (IllegalArgumentException e) {
@@ -81,17 +194,27 @@ public class PaymentController {
     /**
      * Endpoint para obtener el estado de un pago
      * 
+     * Un usuario solo ve sus propios pagos; el de otro usuario responde 404.
+     * 
      * @param id ID del pago
+     * @param user Usuario autenticado
      * @return Estado del pago
      */
     @GetMapping("/{id}/status")
-    public ResponseEntity<Map<String, Object>> getPaymentStatus(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> getPaymentStatus(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
         log.info("Solicitud para obtener estado del pago: {}", id);
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String status = paymentService.getPaymentStatus(id);
+            PaymentResponse payment = paymentService.getPaymentById(id);
+            if (!canAccess(user, payment.getUserId())) {
+                log.warn("Usuario {} sin acceso al estado del pago {}", userIdOf(user), id);
+                return ResponseEntity.notFound().build();
+            }
+            String status = payment.getStatus();
             
             response.put("paymentId", id);
             response.put("status", status);
@@ -137,19 +260,36 @@ public class PaymentController {
     }
 
     /**
-     * Endpoint para obtener pagos por usuario
+     * Endpoint para obtener pagos por usuario, paginados por cursor
+     * 
+     * Un usuario solo puede consultar sus propios pagos; un administrador, los de cualquiera.
      * 
      * @param userId ID del usuario
-     * @return Lista de pagos del usuario
+     * @param user Usuario autenticado
+     * @param cursor Cursor de la página anterior (cabecera X-Next-Cursor), o nada para la primera
+     * @param size Tamaño de la página
+     * @return Página de pagos del usuario; si hay más, el cursor va en la cabecera X-Next-Cursor
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByUser(@PathVariable Long userId) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByUser(
+            @PathVariable Long userId,
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.info("Solicitud para obtener pagos del usuario: {}", userId);
         
+        if (user == null || !user.canAccess(userId)) {
+            log.warn("Usuario {} sin acceso a los pagos del usuario {}", user != null ? user.getUserId() : null, userId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
         try {
-            List<PaymentResponse> payments = paymentService.getPaymentsByUser(userId);
-            log.info("Pagos del usuario obtenidos exitosamente: usuario {}, {} pagos", userId, payments.size());
-            return ResponseEntity.ok(payments);
+            PaymentPageResponse page = paymentService.getPaymentsByUser(userId, cursor, size);
+            log.info("Pagos del usuario obtenidos exitosamente: usuario {}, {} pagos", userId, page.getItems().size());
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cursor inválido: {}", cursor);
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error obteniendo pagos del usuario: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -157,22 +297,27 @@ public class PaymentController {
     }
 
     /**
-     * Endpoint para obtener pagos por estado
+     * Endpoint para obtener pagos por estado, paginados por cursor
      * 
      * @param status Estado del pago
-     * @return Lista de pagos con el estado especificado
+     * @param cursor Cursor de la página anterior (cabecera X-Next-Cursor), o nada para la primera
+     * @param size Tamaño de la página
+     * @return Página de pagos con el estado; si hay más, el cursor va en la cabecera X-Next-Cursor
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByStatus(@PathVariable String status) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByStatus(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.info("Solicitud para obtener pagos con estado: {}", status);
         
         try {
             Payment.PaymentStatus paymentStatus = Payment.PaymentStatus.valueOf(status.toUpperCase());
-            List<PaymentResponse> payments = paymentService.getPaymentsByStatus(paymentStatus);
-            log.info("Pagos por estado obtenidos exitosamente: estado {}, {} pagos", status, payments.size());
-            return ResponseEntity.ok(payments);
+            PaymentPageResponse page = paymentService.getPaymentsByStatus(paymentStatus, cursor, size);
+            log.info("Pagos por estado obtenidos exitosamente: estado {}, {} pagos", status, page.getItems().size());
+            return pageResponse(page);
         } catch (IllegalArgumentException e) {
-            log.warn("Estado inválido: {}", status);
+            log.warn("Estado o cursor inválido: {}, {}", status, cursor);
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error obteniendo pagos por estado: {}", e.getMessage());
@@ -183,15 +328,24 @@ public class PaymentController {
     /**
      * Endpoint para obtener pagos por pedido
      * 
+     * Si algún pago del pedido es de otro usuario se responde 404, como si no existiera.
+     * 
      * @param orderId ID del pedido
+     * @param user Usuario autenticado
      * @return Lista de pagos del pedido
      */
     @GetMapping("/order/{orderId}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByOrder(@PathVariable Long orderId) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByOrder(
+            @PathVariable Long orderId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
         log.info("Solicitud para obtener pagos del pedido: {}", orderId);
         
         try {
             List<PaymentResponse> payments = paymentService.getPaymentsByOrder(orderId);
+            if (!payments.stream().allMatch(payment -> canAccess(user, payment.getUserId()))) {
+                log.warn("Usuario {} sin acceso a los pagos del pedido {}", userIdOf(user), orderId);
+                return ResponseEntity.notFound().build();
+            }
             log.info("Pagos del pedido obtenidos exitosamente: pedido {}, {} pagos", orderId, payments.size());
             return ResponseEntity.ok(payments);
         } catch (Exception e) {
@@ -201,24 +355,84 @@ public class PaymentController {
     }
 
     /**
-     * Endpoint para obtener pagos pendientes
+     * Endpoint para obtener pagos pendientes, los más antiguos primero, paginados por cursor
      * 
-     * @return Lista de pagos pendientes
+     * @param cursor Cursor de la página anterior (cabecera X-Next-Cursor), o nada para la primera
+     * @param size Tamaño de la página
+     * @return Página de pagos pendientes; si hay más, el cursor va en la cabecera X-Next-Cursor
      */
     @GetMapping("/pending")
-    public ResponseEntity<List<PaymentResponse>> getPendingPayments() {
+    public ResponseEntity<List<PaymentResponse>> getPendingPayments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.info("Solicitud para obtener pagos pendientes");
         
         try {
-            List<PaymentResponse> payments = paymentService.getPendingPayments();
-            log.info("Pagos pendientes obtenidos exitosamente: {} pagos", payments.size());
-            return ResponseEntity.ok(payments);
+            PaymentPageResponse page = paymentService.getPendingPayments(cursor, size);
+            log.info("Pagos pendientes obtenidos exitosamente: {} pagos", page.getItems().size());
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cursor inválido: {}", cursor);
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error obteniendo pagos pendientes: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Endpoint para exportar pagos en NDJSON (un pago por línea)
+     * 
+     * La respuesta se escribe a medida que se leen los pagos, con memoria constante.
+     * 
+     * @param status Estado a exportar (opcional)
+     * @param userId Usuario a exportar (opcional, excluyente con el estado)
+     * @return Flujo NDJSON de pagos ordenados por fecha de creación
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long userId) {
+        log.info("Solicitud para exportar pagos: estado {}, usuario {}", status, userId);
+        
+        Payment.PaymentStatus paymentStatus;
+        try {
+            paymentStatus = status != null ? Payment.PaymentStatus.valueOf(status.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Estado inválido: {}", status);
+            return ResponseEntity.badRequest().build();
+        }
+        if (paymentStatus != null && userId != null) {
+            log.warn("Exportación con estado y usuario a la vez");
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = output -> paymentExportService.exportPayments(paymentStatus, userId, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments.ndjson\"")
+                .body(body);
+    }
+
+    private static ResponseEntity<List<PaymentResponse>> pageResponse(PaymentPageResponse page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasMore()) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Un usuario accede a los datos de un dueño si es él mismo o un administrador
+     */
+    private static boolean canAccess(AuthenticatedUser user, Long ownerId) {
+        return user != null && user.canAccess(ownerId);
+    }
+
+    private static Long userIdOf(AuthenticatedUser user) {
+        return user != null ? user.getUserId() : null;
+    }
+
     /**
      * Endpoint para obtener estadísticas de pagos
      * 
@@ -238,6 +452,42 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Endpoint para obtener las métricas de la pasarela de pagos
+     * 
+     * @return Estado del circuit breaker, ocupación del bulkhead y rechazos
+     */
+    @GetMapping("/gateway/metrics")
+    public ResponseEntity<Map<String, Object>> getGatewayMetrics() {
+        log.info("Solicitud para obtener métricas de la pasarela de pagos");
+        
+        return ResponseEntity.ok(paymentService.getGatewayStatus());
+    }
+
+    /**
+     * Endpoint para obtener las métricas del planificador de reintentos
+     * 
+     * @return Reintentos encolados, pendientes recuperados y pagos en dead-letter
+     */
+    @GetMapping("/retry/metrics")
+    public ResponseEntity<Map<String, Object>> getRetryMetrics() {
+        log.info("Solicitud para obtener métricas de reintentos de pagos");
+        
+        return ResponseEntity.ok(paymentRetryScheduler.getMetrics());
+    }
+
+    /**
+     * Endpoint para obtener las métricas de los límites de velocidad
+     * 
+     * @return Verificaciones, rechazos y claves en memoria por regla
+     */
+    @GetMapping("/velocity/metrics")
+    public ResponseEntity<Map<String, Object>> getVelocityMetrics() {
+        log.info("Solicitud para obtener métricas de límites de velocidad de pagos");
+        
+        return ResponseEntity.ok(paymentVelocityGuard.getMetrics());
+    }
+
     /**
      * Endpoint de health check para el microservicio
      * 
@@ -249,6 +499,14 @@ public class PaymentController {
         response.put("status", "UP");
         response.put("service", "Payment Service");
         response.put("timestamp", java.time.LocalDateTime.now());
+        response.put("asyncProcessing", paymentService.getAsyncProcessingStatus());
+        response.put("retry", paymentRetryScheduler.getMetrics());
+
+        Map<String, Object> gateway = paymentService.getGatewayStatus();
+        response.put("gateway", gateway);
+        if (Boolean.FALSE.equals(gateway.get("available"))) {
+            response.put("status", "DEGRADED");
+        }
         
         log.info("Health check solicitado");
         return ResponseEntity.ok(response);
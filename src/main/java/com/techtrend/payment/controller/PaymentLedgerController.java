@@ -0,0 +1,95 @@
+package com.techtrend.payment.controller;
+
+import com.techtrend.payment.dto.PaymentLedgerEntryResponse;
+import com.techtrend.payment.service.PaymentLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controlador REST para el ledger de transiciones de estado de los pagos
+ *
+ * Las consultas por rango leen solo las particiones mensuales que solapan el rango.
+ *
+ * @author TechTrend Team
+ */
+@RestController
+@RequestMapping("/payments/ledger")
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentLedgerController {
+
+    private final PaymentLedgerService ledgerService;
+
+    /**
+     * Endpoint para obtener las transiciones registradas en un rango
+     *
+     * @param from Inicio del rango (ISO-8601, inclusive)
+     * @param to Fin del rango (ISO-8601, exclusivo)
+     * @param limit Transiciones máximas
+     * @return Transiciones y particiones leídas
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getEntries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("Solicitud del ledger de pagos entre {} y {}", from, to);
+
+        try {
+            List<PaymentLedgerEntryResponse> entries = ledgerService.getEntries(from, to, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("from", from);
+            response.put("to", to);
+            response.put("partitions", ledgerService.getPartitionsFor(from, to).stream()
+                    .map(YearMonth::toString)
+                    .toList());
+            response.put("entries", entries);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Consulta del ledger inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error consultando el ledger de pagos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener el historial de transiciones de un pago
+     *
+     * @param paymentId ID del pago
+     * @return Transiciones del pago en orden
+     */
+    @GetMapping("/payment/{paymentId}")
+    public ResponseEntity<List<PaymentLedgerEntryResponse>> getPaymentHistory(@PathVariable Long paymentId) {
+        log.info("Solicitud del historial del pago {} en el ledger", paymentId);
+
+        try {
+            return ResponseEntity.ok(ledgerService.getPaymentHistory(paymentId));
+        } catch (Exception e) {
+            log.error("Error obteniendo el historial del pago {}: {}", paymentId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener métricas del ledger
+     *
+     * @return Particiones, transiciones registradas y archivados
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(ledgerService.getMetrics());
+    }
+}
@@ -0,0 +1,121 @@
+package com.techtrend.payment.controller;
+
+import com.techtrend.payment.dto.RevenueBucketResponse;
+import com.techtrend.payment.dto.RevenueTotalResponse;
+import com.techtrend.payment.model.PaymentRevenueRollup;
+import com.techtrend.payment.service.PaymentRevenueRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Controlador REST para los reportes de ingresos de pagos
+ * 
+ * Las consultas se responden desde los ingresos agregados por minuto, hora y día, sin
+ * cargar los pagos individuales.
+ * 
+ * @author TechTrend Team
+ */
+@RestController
+@RequestMapping("/payments/revenue")
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRevenueController {
+
+    private final PaymentRevenueRollupService revenueRollupService;
+
+    /**
+     * Endpoint para obtener los ingresos de un rango por moneda y método de pago
+     * 
+     * @param from Inicio del rango (ISO-8601, inclusive)
+     * @param to Fin del rango (ISO-8601, exclusivo)
+     * @return Totales del rango
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Solicitud de ingresos entre {} y {}", from, to);
+        
+        try {
+            List<RevenueTotalResponse> totals = revenueRollupService.getRevenue(from, to);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("from", from);
+            response.put("to", to);
+            response.put("totals", totals);
+            response.put("baseCurrency", revenueRollupService.getBaseCurrency());
+            response.put("normalizedTotal", totals.stream()
+                    .map(RevenueTotalResponse::getNormalizedAmount)
+                    .filter(Objects::nonNull)
+                    .reduce(BigDecimal.ZERO.setScale(2), BigDecimal::add));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rango de ingresos inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error obteniendo ingresos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener la serie de ingresos de un rango
+     * 
+     * @param from Inicio del rango (ISO-8601, inclusive)
+     * @param to Fin del rango (ISO-8601, exclusivo)
+     * @param granularity MINUTE, HOUR o DAY
+     * @return Intervalos del rango
+     */
+    @GetMapping("/series")
+    public ResponseEntity<List<RevenueBucketResponse>> getRevenueSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "HOUR") PaymentRevenueRollup.Granularity granularity) {
+        log.info("Solicitud de serie de ingresos entre {} y {} por {}", from, to, granularity);
+        
+        try {
+            return ResponseEntity.ok(revenueRollupService.getRevenueSeries(from, to, granularity));
+        } catch (IllegalArgumentException e) {
+            log.warn("Serie de ingresos inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error obteniendo serie de ingresos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para reconstruir los ingresos agregados desde los pagos existentes
+     * 
+     * @param from Primer día del rango (ISO-8601)
+     * @param to Fin del rango (ISO-8601, exclusivo)
+     * @return Resumen del backfill
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Object>> backfill(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Solicitud de backfill de ingresos entre {} y {}", from, to);
+        
+        try {
+            return ResponseEntity.ok(revenueRollupService.backfill(from, to));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rango de backfill inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error en el backfill de ingresos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
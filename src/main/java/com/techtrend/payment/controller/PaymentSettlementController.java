@@ -0,0 +1,66 @@
+package com.techtrend.payment.controller;
+
+import com.techtrend.payment.dto.SettlementReconciliationResponse;
+import com.techtrend.payment.service.SettlementReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Controlador REST para la conciliación de liquidaciones de la pasarela
+ * 
+ * Los ficheros se leen del directorio de liquidaciones configurado; las discrepancias
+ * se escriben en un informe NDJSON y la respuesta contiene solo el resumen.
+ * 
+ * @author TechTrend Team
+ */
+@RestController
+@RequestMapping("/payments/settlements")
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentSettlementController {
+
+    private final SettlementReconciliationService reconciliationService;
+
+    /**
+     * Endpoint para conciliar un fichero de liquidación
+     * 
+     * @param file Nombre del fichero en el directorio de liquidaciones
+     * @param from Inicio del rango de pagos completados esperados (ISO-8601, opcional)
+     * @param to Fin del rango de pagos completados esperados (ISO-8601, opcional)
+     * @return Resumen de la conciliación
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<SettlementReconciliationResponse> reconcile(
+            @RequestParam String file,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Solicitud de conciliación de la liquidación {} ({} - {})", file, from, to);
+        
+        try {
+            return ResponseEntity.ok(reconciliationService.reconcile(file, from, to));
+        } catch (IllegalArgumentException e) {
+            log.warn("Conciliación inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error conciliando la liquidación {}: {}", file, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener métricas de las conciliaciones
+     * 
+     * @return Ejecuciones y resumen de la última conciliación
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(reconciliationService.getMetrics());
+    }
+}
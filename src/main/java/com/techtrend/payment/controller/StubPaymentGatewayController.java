@@ -0,0 +1,56 @@
+package com.techtrend.payment.controller;
+
+import com.techtrend.payment.gateway.StubGatewaySettings;
+import com.techtrend.payment.gateway.StubPaymentGateway;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controlador REST para configurar la pasarela de pagos simulada
+ * 
+ * Permite degradar la pasarela en caliente (latencia, errores, timeouts, drenaje lento)
+ * durante pruebas de carga. Solo existe cuando app.payment.gateway.type es stub.
+ * 
+ * @author TechTrend Team
+ */
+@RestController
+@RequestMapping("/payments/gateway/stub")
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "app.payment.gateway.type", havingValue = "stub")
+public class StubPaymentGatewayController {
+
+    private final StubPaymentGateway stubPaymentGateway;
+
+    /**
+     * Endpoint para obtener la configuración de la pasarela simulada
+     * 
+     * @return Configuración actual
+     */
+    @GetMapping
+    public ResponseEntity<StubGatewaySettings> getSettings() {
+        return ResponseEntity.ok(stubPaymentGateway.getSettings());
+    }
+
+    /**
+     * Endpoint para reemplazar la configuración de la pasarela simulada
+     * 
+     * @param settings Nueva configuración
+     * @return Configuración aplicada
+     */
+    @PutMapping
+    public ResponseEntity<StubGatewaySettings> updateSettings(@RequestBody StubGatewaySettings settings) {
+        log.info("Solicitud para reconfigurar la pasarela simulada: {}", settings);
+        
+        try {
+            stubPaymentGateway.updateSettings(settings);
+            return ResponseEntity.ok(stubPaymentGateway.getSettings());
+        } catch (IllegalArgumentException e) {
+            log.warn("Configuración de pasarela simulada inválida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
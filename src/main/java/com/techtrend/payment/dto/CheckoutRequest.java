@@ -0,0 +1,30 @@
+package com.techtrend.payment.dto;
+
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para iniciar el checkout del carrito
+ * 
+ * El monto y el pedido no se reciben del cliente: salen del carrito revalidado
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutRequest {
+
+    private String paymentMethod;
+
+    private String description;
+
+    private String currency = "PEN";
+
+    @Size(max = 500, message = "La URL de callback no puede superar 500 caracteres")
+    @Pattern(regexp = "^https?://.*", message = "La URL de callback debe ser http o https")
+    private String callbackUrl;
+}
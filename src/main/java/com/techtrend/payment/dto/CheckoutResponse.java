@@ -0,0 +1,25 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con el resultado de un checkout
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutResponse {
+
+    private Long orderId;
+    private Long userId;
+    private String status;
+    private BigDecimal amount;
+    private int items;
+    private PaymentResponse payment;
+}
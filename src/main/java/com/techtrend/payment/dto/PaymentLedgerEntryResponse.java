@@ -0,0 +1,33 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO con una transición de estado registrada en el ledger de pagos
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentLedgerEntryResponse {
+
+    private Long id;
+    private Long paymentId;
+    private Long orderId;
+    private Long userId;
+    /** Estado anterior; nulo en el alta del pago */
+    private String previousStatus;
+    /** Estado nuevo; nulo si el pago se eliminó */
+    private String newStatus;
+    private BigDecimal amount;
+    private String currency;
+    private String paymentMethod;
+    private String failureReason;
+    private LocalDateTime recordedAt;
+}
@@ -0,0 +1,30 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO con una página de pagos y el cursor para pedir la siguiente
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentPageResponse {
+
+    private List<PaymentResponse> items;
+    private String nextCursor;
+
+    /**
+     * Verifica si hay más pagos después de esta página
+     * 
+     * @return true si existe una página siguiente
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -1,7 +1,9 @@
 package com.techtrend.payment.dto;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -28,4 +30,8 @@ public class PaymentRequest {
     private String paymentMethod;
     private String description;
     private String currency = "PEN";
+
+    @Size(max = 500, message = "La URL de callback no puede superar 500 caracteres")
+    @Pattern(regexp = "^https?://.*", message = "La URL de callback debe ser http o https")
+    private String callbackUrl;
 }
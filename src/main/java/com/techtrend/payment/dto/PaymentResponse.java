@@ -26,6 +26,7 @@ public class PaymentResponse {
     private LocalDateTime updatedAt;
     private LocalDateTime processedAt;
     private String failureReason;
+    private Boolean retryable;
 
     /**
      * Constructor para crear respuesta desde entidad Payment
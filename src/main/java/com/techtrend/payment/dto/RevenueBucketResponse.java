@@ -0,0 +1,28 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO con los ingresos de pagos completados de un intervalo de tiempo
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueBucketResponse {
+
+    private LocalDateTime bucketStart;
+    private String granularity;
+    private String currency;
+    private String paymentMethod;
+    private long completedCount;
+    private BigDecimal completedAmount;
+    /** Monto convertido a la moneda base; nulo si la moneda no tiene tipo de cambio */
+    private BigDecimal normalizedAmount;
+}
@@ -0,0 +1,25 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con los ingresos de pagos completados de una moneda y método de pago en un rango
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueTotalResponse {
+
+    private String currency;
+    private String paymentMethod;
+    private long completedCount;
+    private BigDecimal completedAmount;
+    /** Monto convertido a la moneda base; nulo si la moneda no tiene tipo de cambio */
+    private BigDecimal normalizedAmount;
+}
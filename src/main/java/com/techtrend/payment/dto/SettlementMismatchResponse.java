@@ -0,0 +1,41 @@
+package com.techtrend.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con una discrepancia entre el fichero de liquidación de la pasarela y los pagos
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementMismatchResponse {
+
+    private Type type;
+    /** Línea del fichero; nula si el pago no aparece en la liquidación */
+    private Long lineNumber;
+    private String transactionId;
+    private Long paymentId;
+    private BigDecimal paymentAmount;
+    private BigDecimal settledAmount;
+    private String paymentCurrency;
+    private String settledCurrency;
+    private String paymentStatus;
+    private String settlementStatus;
+    /** Contenido de la línea cuando no se pudo interpretar */
+    private String line;
+
+    public enum Type {
+        MISSING_PAYMENT,    // Línea liquidada sin pago registrado
+        MISSING_SETTLEMENT, // Pago completado en el rango que no aparece en la liquidación
+        AMOUNT_MISMATCH,    // Monto o moneda distintos
+        STATUS_MISMATCH,    // Estado liquidado distinto del estado del pago
+        DUPLICATE,          // Transacción repetida en el fichero
+        MALFORMED           // Línea que no se pudo interpretar
+    }
+}
@@ -0,0 +1,34 @@
+package com.techtrend.payment.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO con el resumen de una conciliación de un fichero de liquidación
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+public class SettlementReconciliationResponse {
+
+    private String file;
+    private String reportFile;
+    /** Rango de procesamiento de los pagos que deben aparecer en la liquidación */
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long indexedPayments;
+    private long lines;
+    private long matched;
+    private long missingPayments;
+    private long missingSettlements;
+    private long amountMismatches;
+    private long statusMismatches;
+    private long duplicates;
+    private long malformedLines;
+    private long indexMs;
+    private long parseMs;
+    private long linesPerSecond;
+}
@@ -0,0 +1,51 @@
+package com.techtrend.payment.event;
+
+import com.techtrend.payment.model.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Evento publicado tras el commit cuando un pago se crea, cambia de estado o se elimina
+ *
+ * Un alta tiene {@code previousStatus} nulo y una baja tiene {@code newStatus} nulo;
+ * {@code retryable} indica si un fallo puede reintentarse.
+ *
+ * @author TechTrend Team
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PaymentStatusChangedEvent {
+
+    private final Long paymentId;
+    private final Long orderId;
+    private final Payment.PaymentStatus previousStatus;
+    private final Payment.PaymentStatus newStatus;
+    private final boolean retryable;
+    private final BigDecimal amount;
+    private final String currency;
+    private final String paymentMethod;
+    private final LocalDateTime occurredAt;
+
+    /**
+     * Crea el evento a partir del estado actual de un pago
+     *
+     * @param payment Pago afectado
+     * @param previousStatus Estado anterior (nulo en un alta)
+     * @param newStatus Estado nuevo (nulo en una baja)
+     * @return Evento con los datos del pago
+     */
+    public static PaymentStatusChangedEvent of(Payment payment, Payment.PaymentStatus previousStatus,
+                                               Payment.PaymentStatus newStatus) {
+        LocalDateTime occurredAt = payment.getProcessedAt() != null && newStatus != Payment.PaymentStatus.PENDING
+                ? payment.getProcessedAt()
+                : LocalDateTime.now();
+        return new PaymentStatusChangedEvent(payment.getId(), payment.getOrderId(), previousStatus, newStatus,
+                payment.isRetryable(), payment.getAmount(), payment.getCurrency(), payment.getPaymentMethod(),
+                occurredAt);
+    }
+}
@@ -0,0 +1,54 @@
+package com.techtrend.payment.gateway;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.payment.model.Payment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contrato de la pasarela de pagos externa
+ * 
+ * Las implementaciones se llaman siempre fuera de una transacción de base de datos y
+ * pueden bloquear el hilo mientras esperan la respuesta de la pasarela.
+ * 
+ * El cobro debe ser idempotente sobre el transactionId del pago, que no cambia entre
+ * reintentos: tras un timeout el cobro pudo haberse hecho, y el reintento del planificador
+ * o de un worker duplicado vuelve a llamar a charge con el mismo pago.
+ * 
+ * @author TechTrend Team
+ */
+public interface PaymentGateway {
+
+    /**
+     * Solicita la autorización y cobro de un pago
+     * 
+     * Las implementaciones envían el transactionId como clave de idempotencia: si la
+     * pasarela ya registró un cobro con ese transactionId, devuelven su resultado sin
+     * cobrar de nuevo.
+     * 
+     * @param payment Pago a cobrar
+     * @return Resultado de la pasarela (aprobado o rechazado)
+     * @throws PaymentGatewayException si la pasarela no responde, responde con error o excede el timeout
+     */
+    PaymentGatewayResult charge(Payment payment);
+
+    /**
+     * Nombre de la pasarela, para logs y métricas
+     * 
+     * @return Nombre de la pasarela
+     */
+    String getName();
+
+    /**
+     * Métricas de la pasarela, para el health check y monitoreo
+     * 
+     * @return Mapa con las métricas disponibles
+     */
+    default Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("name", getName());
+        metrics.put("available", true);
+        return metrics;
+    }
+}
@@ -0,0 +1,38 @@
+package com.techtrend.payment.gateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Resultado de una llamada a la pasarela de pagos
+ * 
+ * @author TechTrend Team
+ */
+@Getter
+@AllArgsConstructor
+public class PaymentGatewayResult {
+
+    private final boolean approved;
+    private final String authorizationCode;
+    private final String declineReason;
+
+    /**
+     * Crea un resultado aprobado
+     * 
+     * @param authorizationCode Código de autorización de la pasarela
+     * @return Resultado aprobado
+     */
+    public static PaymentGatewayResult approved(String authorizationCode) {
+        return new PaymentGatewayResult(true, authorizationCode, null);
+    }
+
+    /**
+     * Crea un resultado rechazado
+     * 
+     * @param declineReason Razón del rechazo
+     * @return Resultado rechazado
+     */
+    public static PaymentGatewayResult declined(String declineReason) {
+        return new PaymentGatewayResult(false, null, declineReason);
+    }
+}
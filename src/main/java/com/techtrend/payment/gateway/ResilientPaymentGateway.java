@@ -0,0 +1,90 @@
+package com.techtrend.payment.gateway;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.common.resilience.Bulkhead;
+import com.techtrend.common.resilience.CircuitBreaker;
+import com.techtrend.payment.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decorador de PaymentGateway con circuit breaker y bulkhead
+ * 
+ * El bulkhead limita cuántos hilos pueden estar esperando a la pasarela a la vez, de modo
+ * que una pasarela lenta no agote los hilos de Tomcat que atienden catálogo y carrito.
+ * El circuit breaker deja de llamar a una pasarela degradada (errores o lentitud) y
+ * responde de inmediato con una PaymentGatewayException rechazada, que marca el pago
+ * como reintentable.
+ * 
+ * Los rechazos de la pasarela (pago declinado) cuentan como llamadas exitosas: la
+ * pasarela respondió correctamente.
+ * 
+ * @author TechTrend Team
+ */
+@Slf4j
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private final PaymentGateway delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public ResilientPaymentGateway(PaymentGateway delegate, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public PaymentGatewayResult charge(Payment payment) {
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == null) {
+            log.warn("Circuito de la pasarela {} abierto, pago {} rechazado sin llamar", delegate.getName(), payment.getId());
+            throw PaymentGatewayException.rejected("Pasarela no disponible temporalmente (circuito abierto)");
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.releasePermission(permission);
+            log.warn("Bulkhead de la pasarela {} lleno, pago {} rechazado sin llamar", delegate.getName(), payment.getId());
+            throw PaymentGatewayException.rejected("Pasarela saturada (bulkhead lleno)");
+        }
+
+        long start = System.nanoTime();
+        try {
+            PaymentGatewayResult result = delegate.charge(payment);
+            circuitBreaker.onSuccess(permission, System.nanoTime() - start);
+            return result;
+        } catch (PaymentGatewayException e) {
+            circuitBreaker.onError(permission, System.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onError(permission, System.nanoTime() - start);
+            throw new PaymentGatewayException("Error inesperado de la pasarela " + delegate.getName(), e);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>(delegate.getMetrics());
+        metrics.put("circuitBreaker", circuitBreaker.getMetrics());
+        metrics.put("bulkhead", bulkhead.getMetrics());
+        metrics.put("available", circuitBreaker.getState() != CircuitBreaker.State.OPEN);
+        return metrics;
+    }
+
+    /**
+     * Circuit breaker que protege la pasarela
+     * 
+     * @return Circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
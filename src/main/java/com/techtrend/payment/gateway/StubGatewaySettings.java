@@ -0,0 +1,68 @@
+package com.techtrend.payment.gateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configuración del comportamiento de la pasarela simulada
+ * 
+ * Los valores por defecto reproducen la simulación original: 90% de aprobación,
+ * sin latencia ni errores.
+ * 
+ * @author TechTrend Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StubGatewaySettings {
+
+    /**
+     * Distribuciones de latencia disponibles
+     */
+    public enum LatencyDistribution {
+        FIXED,        // Siempre latencyMs
+        UNIFORM,      // Uniforme entre latencyMs y latencyP99Ms
+        EXPONENTIAL,  // Exponencial con media latencyMs
+        LOG_NORMAL    // Log-normal con mediana latencyMs y percentil 99 latencyP99Ms
+    }
+
+    private double approvalRate = 0.9;
+    private double errorRate = 0.0;
+    private LatencyDistribution latencyDistribution = LatencyDistribution.FIXED;
+    private long latencyMs = 0;
+    private long latencyP99Ms = 0;
+    private long timeoutMs = 5000;
+    private boolean slowDrain = false;
+    private int drainConcurrency = 4;
+
+    /**
+     * Crea una copia independiente de la configuración
+     * 
+     * @return Copia de la configuración
+     */
+    public StubGatewaySettings copy() {
+        return new StubGatewaySettings(approvalRate, errorRate, latencyDistribution, latencyMs,
+                latencyP99Ms, timeoutMs, slowDrain, drainConcurrency);
+    }
+
+    /**
+     * Valida que los valores estén en rangos válidos
+     * 
+     * @throws IllegalArgumentException si algún valor es inválido
+     */
+    public void validate() {
+        if (approvalRate < 0 || approvalRate > 1 || errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Las tasas de aprobación y error deben estar entre 0 y 1");
+        }
+        if (latencyDistribution == null) {
+            throw new IllegalArgumentException("La distribución de latencia es obligatoria");
+        }
+        if (latencyMs < 0 || latencyP99Ms < 0 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("Las latencias no pueden ser negativas y el timeout debe ser mayor a cero");
+        }
+        if (drainConcurrency <= 0) {
+            throw new IllegalArgumentException("La concurrencia de drenaje debe ser mayor a cero");
+        }
+    }
+}
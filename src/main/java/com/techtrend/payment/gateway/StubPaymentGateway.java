@@ -0,0 +1,202 @@
+package com.techtrend.payment.gateway;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.payment.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pasarela de pagos simulada en proceso
+ * 
+ * Permite pruebas de carga del flujo de pagos sin servicios externos. Simula:
+ * latencia con distintas distribuciones, tasa de errores, timeouts y un modo de
+ * drenaje lento en el que la pasarela atiende pocas solicitudes a la vez y el resto
+ * espera en cola, como una pasarela degradada.
+ * 
+ * La configuración se puede reemplazar en caliente; las llamadas en curso terminan con
+ * la configuración con la que empezaron.
+ * 
+ * Como una pasarela real, recuerda el resultado de los últimos cobros por transactionId
+ * y lo devuelve a los reintentos en lugar de cobrar otra vez. Los timeouts y errores no
+ * se recuerdan: en la simulación ocurren antes de decidir el cobro.
+ * 
+ * @author TechTrend Team
+ */
+@Slf4j
+public class StubPaymentGateway implements PaymentGateway {
+
+    // Cuantil 0.99 de la normal estándar, para derivar sigma de la log-normal
+    private static final double Z_99 = 2.326;
+
+    // Resultados recordados para responder a los reintentos de forma idempotente
+    static final int MAX_REMEMBERED_CHARGES = 10_000;
+
+    private volatile State state;
+
+    // Orden de acceso: la primera entrada es el cobro consultado hace más tiempo
+    private final Map<String, PaymentGatewayResult> charges = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PaymentGatewayResult> eldest) {
+            return size() > MAX_REMEMBERED_CHARGES;
+        }
+    };
+
+    public StubPaymentGateway(StubGatewaySettings settings) {
+        updateSettings(settings);
+    }
+
+    @Override
+    public PaymentGatewayResult charge(Payment payment) {
+        String transactionId = payment.getTransactionId();
+        if (transactionId == null) {
+            return chargeOnce(payment);
+        }
+        PaymentGatewayResult previous = rememberedCharge(transactionId);
+        if (previous != null) {
+            log.debug("Pasarela simulada devuelve el resultado ya registrado para {}", transactionId);
+            return previous;
+        }
+        PaymentGatewayResult result = chargeOnce(payment);
+        // Si otra llamada con el mismo transactionId terminó antes, prevalece su resultado
+        synchronized (charges) {
+            PaymentGatewayResult first = charges.putIfAbsent(transactionId, result);
+            return first != null ? first : result;
+        }
+    }
+
+    private PaymentGatewayResult rememberedCharge(String transactionId) {
+        synchronized (charges) {
+            return charges.get(transactionId);
+        }
+    }
+
+    private PaymentGatewayResult chargeOnce(Payment payment) {
+        State current = state;
+        StubGatewaySettings settings = current.settings;
+        long start = System.nanoTime();
+
+        if (!settings.isSlowDrain()) {
+            return respond(payment, settings, settings.getTimeoutMs());
+        }
+
+        // Drenaje lento: solo drainConcurrency solicitudes a la vez, el resto espera su turno
+        try {
+            if (!current.drainPermits.tryAcquire(settings.getTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new PaymentGatewayException("Timeout esperando a la pasarela", true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Llamada a la pasarela interrumpida", e);
+        }
+        try {
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return respond(payment, settings, Math.max(1, settings.getTimeoutMs() - waitedMs));
+        } finally {
+            current.drainPermits.release();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    /**
+     * Obtiene una copia de la configuración actual
+     * 
+     * @return Configuración de la simulación
+     */
+    public StubGatewaySettings getSettings() {
+        return state.settings.copy();
+    }
+
+    /**
+     * Reemplaza la configuración de la simulación
+     * 
+     * @param settings Nueva configuración
+     * @throws IllegalArgumentException si la configuración es inválida
+     */
+    public void updateSettings(StubGatewaySettings settings) {
+        StubGatewaySettings copy = settings.copy();
+        copy.validate();
+        this.state = new State(copy, new Semaphore(copy.getDrainConcurrency(), true));
+        log.info("Pasarela simulada configurada: {}", copy);
+    }
+
+    private PaymentGatewayResult respond(Payment payment, StubGatewaySettings settings, long remainingMs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = sampleLatency(settings, random);
+
+        if (latency > remainingMs) {
+            sleep(remainingMs);
+            throw new PaymentGatewayException("Timeout de la pasarela tras " + settings.getTimeoutMs() + " ms", true);
+        }
+        sleep(latency);
+
+        if (random.nextDouble() < settings.getErrorRate()) {
+            throw new PaymentGatewayException("Pasarela no disponible");
+        }
+
+        if (random.nextDouble() < settings.getApprovalRate()) {
+            String authorizationCode = "AUTH-" + Long.toHexString(random.nextLong() & 0xFFFFFFFFL).toUpperCase();
+            log.debug("Pasarela simulada aprobó el pago {} en {} ms", payment.getId(), latency);
+            return PaymentGatewayResult.approved(authorizationCode);
+        }
+        log.debug("Pasarela simulada rechazó el pago {} en {} ms", payment.getId(), latency);
+        return PaymentGatewayResult.declined("Pago rechazado por la pasarela");
+    }
+
+    /**
+     * Obtiene una latencia aleatoria según la distribución configurada
+     * 
+     * @param settings Configuración de la simulación
+     * @param random Generador de números aleatorios
+     * @return Latencia en milisegundos
+     */
+    static long sampleLatency(StubGatewaySettings settings, ThreadLocalRandom random) {
+        long base = settings.getLatencyMs();
+        long p99 = settings.getLatencyP99Ms();
+        switch (settings.getLatencyDistribution()) {
+            case UNIFORM:
+                return p99 > base ? base + random.nextLong(p99 - base + 1) : base;
+            case EXPONENTIAL:
+                return Math.round(-base * Math.log(1 - random.nextDouble()));
+            case LOG_NORMAL:
+                if (base <= 0 || p99 <= base) {
+                    return base;
+                }
+                double sigma = Math.log((double) p99 / base) / Z_99;
+                return Math.round(base * Math.exp(sigma * random.nextGaussian()));
+            case FIXED:
+            default:
+                return base;
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Llamada a la pasarela interrumpida", e);
+        }
+    }
+
+    private static final class State {
+        private final StubGatewaySettings settings;
+        private final Semaphore drainPermits;
+
+        private State(StubGatewaySettings settings, Semaphore drainPermits) {
+            this.settings = settings;
+            this.drainPermits = drainPermits;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.techtrend.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Entidad que representa un checkout: el stock reservado para pagar un carrito
+ * 
+ * Un checkout nace en RESERVED junto con la reserva de stock y termina en CONFIRMED
+ * cuando el pago se completa, o en RELEASED cuando el pago falla sin posibilidad de
+ * reintento y el stock se devuelve al catálogo. Si un pago se completa después de
+ * liberar su checkout (reencolado o cambio manual de estado), el stock se reserva de
+ * nuevo; si ya no alcanza, el checkout queda en REFUND_REVIEW.
+ * 
+ * @author TechTrend Team
+ */
+@Entity
+@Table(name = "checkouts", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_checkouts_order", columnNames = "order_id"),
+        @UniqueConstraint(name = "uk_checkouts_user_active", columnNames = {"user_id", "active_slot"})
+}, indexes = {
+        @Index(name = "idx_checkouts_status_updated", columnList = "status, updated_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Checkout {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CheckoutStatus status;
+
+    @ElementCollection
+    @CollectionTable(name = "checkout_lines", joinColumns = @JoinColumn(name = "checkout_id"))
+    private List<CheckoutLine> lines = new ArrayList<>();
+
+    /**
+     * Marca de unicidad: 1 mientras el checkout está RESERVED y NULL al confirmarse o
+     * liberarse. La restricción (user_id, active_slot) impide dos checkouts en curso
+     * para el mismo usuario sin lock en memoria.
+     */
+    @Column(name = "active_slot")
+    private Integer activeSlot = 1;
+
+    @Column(name = "release_reason")
+    private String releaseReason;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * Enum que define los estados de un checkout
+     */
+    public enum CheckoutStatus {
+        RESERVED,   // Stock reservado, esperando el resultado del pago
+        CONFIRMED,  // Pago completado, carrito vaciado
+        RELEASED,   // Pago fallido, stock devuelto y carrito conservado
+        REFUND_REVIEW // Pago completado tras liberar el stock y sin stock para reservarlo de nuevo
+    }
+
+    /**
+     * Obtiene la cantidad reservada por producto
+     * 
+     * @return Mapa de ID de producto a cantidad
+     */
+    public Map<Long, Integer> getReservedQuantities() {
+        return lines.stream()
+                .collect(Collectors.toMap(CheckoutLine::getProductId, CheckoutLine::getQuantity, Integer::sum));
+    }
+
+    /**
+     * Verifica si el checkout sigue esperando el resultado del pago
+     * 
+     * @return true si el stock sigue reservado, false en caso contrario
+     */
+    public boolean isReserved() {
+        return CheckoutStatus.RESERVED.equals(this.status);
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+        if (this.status == null) {
+            this.status = CheckoutStatus.RESERVED;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -3,9 +3,13 @@ package com.techtrend.payment.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,7 +20,16 @@ import java.time.LocalDateTime;
  * @author TechTrend Team
  */
 @Entity
-@Table(name = "payments")
+@EntityListeners(PaymentLifecycleListener.class)
+@Table(name = "payments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payments_order", columnNames = "order_id"),
+        @UniqueConstraint(name = "uk_payments_transaction", columnNames = "transaction_id")
+}, indexes = {
+        @Index(name = "idx_payments_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_payments_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_payments_status_updated", columnList = "status, updated_at"),
+        @Index(name = "idx_payments_retry", columnList = "status, retryable, next_retry_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -43,7 +56,7 @@ public class Payment {
     @Column(name = "payment_method")
     private String paymentMethod;
 
-    @Column(name = "transaction_id")
+    @Column(name = "transaction_id", length = 32)
     private String transactionId;
 
     @Column(name = "currency", length = 3)
@@ -67,13 +80,45 @@ public class Payment {
     @Column(name = "failure_reason")
     private String failureReason;
 
+    @Column(name = "callback_url", length = 500)
+    private String callbackUrl;
+
+    @Column(name = "retryable")
+    private Boolean retryable = false;
+
+    @Column(name = "retry_attempts")
+    private Integer retryAttempts = 0;
+
+    @Column(name = "next_retry_at")
+    private LocalDateTime nextRetryAt;
+
+    /**
+     * Versión para bloqueo optimista: dos instancias que reclaman el mismo pago no pueden
+     * guardar ambas, la copia desactualizada falla en lugar de pisar el cambio
+     */
+    @Version
+    @Column(name = "version")
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
+    /**
+     * Estado confirmado en base de datos la última vez que se cargó o guardó el pago,
+     * para detectar transiciones en PaymentLifecycleListener
+     */
+    @Transient
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PaymentStatus persistedStatus;
+
     /**
      * Enum que define los estados de pago disponibles
      */
     public enum PaymentStatus {
         PENDING,    // Pago pendiente de procesamiento
         COMPLETED,  // Pago completado exitosamente
-        FAILED      // Pago fallido
+        FAILED,     // Pago fallido
+        DEAD_LETTER // Reintentos agotados, requiere revisión manual
     }
 
     /**
@@ -81,6 +126,8 @@ public class Payment {
      */
     public void markAsCompleted() {
         this.status = PaymentStatus.COMPLETED;
+        this.retryable = false;
+        this.nextRetryAt = null;
         this.processedAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
@@ -91,8 +138,58 @@ public class Payment {
      * @param reason Razón del fallo
      */
     public void markAsFailed(String reason) {
+        markAsFailed(reason, false);
+    }
+
+    /**
+     * Marca el pago como fallido indicando si puede reintentarse
+     * 
+     * @param reason Razón del fallo
+     * @param retryable true si el fallo fue transitorio (pasarela caída, timeout, circuito abierto)
+     */
+    public void markAsFailed(String reason, boolean retryable) {
         this.status = PaymentStatus.FAILED;
         this.failureReason = reason;
+        this.retryable = retryable;
+        this.nextRetryAt = null;
+        this.processedAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Vuelve a dejar el pago en PENDING para un nuevo intento de cobro
+     * 
+     * @param nextRetryAt Momento a partir del cual, si sigue pendiente, se considera atascado
+     */
+    public void markForRetry(LocalDateTime nextRetryAt) {
+        this.status = PaymentStatus.PENDING;
+        this.retryAttempts = getRetryAttempts() + 1;
+        this.nextRetryAt = nextRetryAt;
+        this.failureReason = null;
+        this.retryable = false;
+        this.processedAt = null;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Programa el próximo reintento de un pago fallido sin cambiar su estado
+     * 
+     * @param nextRetryAt Momento del próximo reintento
+     */
+    public void scheduleRetry(LocalDateTime nextRetryAt) {
+        this.nextRetryAt = nextRetryAt;
+    }
+
+    /**
+     * Marca el pago como dead-letter tras agotar los reintentos
+     * 
+     * @param reason Razón por la que se abandona el pago
+     */
+    public void markAsDeadLetter(String reason) {
+        this.status = PaymentStatus.DEAD_LETTER;
+        this.failureReason = reason;
+        this.retryable = false;
+        this.nextRetryAt = null;
         this.processedAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
@@ -124,6 +221,33 @@ public class Payment {
         return PaymentStatus.FAILED.equals(this.status);
     }
 
+    /**
+     * Verifica si el pago agotó sus reintentos
+     * 
+     * @return true si está en dead-letter, false en caso contrario
+     */
+    public boolean isDeadLetter() {
+        return PaymentStatus.DEAD_LETTER.equals(this.status);
+    }
+
+    /**
+     * Obtiene el número de reintentos realizados
+     * 
+     * @return Reintentos, 0 si el pago nunca se reintentó
+     */
+    public int getRetryAttempts() {
+        return this.retryAttempts != null ? this.retryAttempts : 0;
+    }
+
+    /**
+     * Verifica si el pago falló por un error transitorio y puede reintentarse
+     * 
+     * @return true si es reintentable, false en caso contrario
+     */
+    public boolean isRetryable() {
+        return this.isFailed() && Boolean.TRUE.equals(this.retryable);
+    }
+
     /**
      * Obtiene el monto formateado con la moneda
      * 
@@ -175,4 +299,11 @@ public class Payment {
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
     }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    protected void rememberPersistedStatus() {
+        this.persistedStatus = this.status;
+    }
 }
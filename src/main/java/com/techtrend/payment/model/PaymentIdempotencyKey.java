@@ -0,0 +1,54 @@
+package com.techtrend.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad que registra las claves de idempotencia usadas al procesar pagos
+ * 
+ * La restricción única por usuario y clave garantiza, también entre instancias, que una
+ * misma clave solo cree un pago.
+ * 
+ * @author TechTrend Team
+ */
+@Entity
+@Table(name = "payment_idempotency_keys",
+       uniqueConstraints = @UniqueConstraint(name = "uk_payment_idempotency_user_key",
+                                             columnNames = {"user_id", "idempotency_key"}),
+       indexes = @Index(name = "idx_payment_idempotency_expires_at", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentIdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "payment_id", nullable = false)
+    private Long paymentId;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
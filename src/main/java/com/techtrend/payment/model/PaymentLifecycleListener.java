@@ -0,0 +1,83 @@
+package com.techtrend.payment.model;
+
+import com.techtrend.common.transaction.TransactionHooks;
+import com.techtrend.outbox.model.OutboxEvent;
+import com.techtrend.outbox.service.OutboxWriter;
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.repository.PaymentLedgerRepository;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listener JPA que publica las altas, bajas y transiciones de estado de los pagos
+ *
+ * Cubre cualquier camino que persista un Payment (procesamiento síncrono, workers
+ * asíncronos, actualización manual de estado) sin que cada uno tenga que notificar.
+ * El PaymentStatusChangedEvent se publica solo tras el commit, de modo que un rollback
+ * no llega a los suscriptores. Las altas y transiciones además se registran en la outbox
+ * durante el flush, en la misma transacción que el cambio de estado.
+ *
+ * Hibernate obtiene la instancia del contenedor de Spring mientras construye el
+ * EntityManagerFactory, por eso solo depende del publicador de eventos y del escritor
+ * JDBC de la outbox, y no de servicios que a su vez necesitan repositorios.
+ *
+ * @author TechTrend Team
+ */
+@Component
+public class PaymentLifecycleListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxWriter outboxWriter;
+    private final PaymentLedgerRepository ledgerRepository;
+
+    public PaymentLifecycleListener(ApplicationEventPublisher eventPublisher, OutboxWriter outboxWriter,
+                                    PaymentLedgerRepository ledgerRepository) {
+        this.eventPublisher = eventPublisher;
+        this.outboxWriter = outboxWriter;
+        this.ledgerRepository = ledgerRepository;
+    }
+
+    @PostPersist
+    public void onPersist(Payment payment) {
+        PaymentStatusChangedEvent event = PaymentStatusChangedEvent.of(payment, null, payment.getStatus());
+        ledgerRepository.append(payment, null, payment.getStatus(), LocalDateTime.now());
+        appendToOutbox(event);
+        publishAfterCommit(event);
+    }
+
+    @PostUpdate
+    public void onUpdate(Payment payment) {
+        // Se ejecuta antes del callback de la entidad que actualiza persistedStatus
+        Payment.PaymentStatus previous = payment.getPersistedStatus();
+        if (previous == null || previous == payment.getStatus()) {
+            return;
+        }
+        PaymentStatusChangedEvent event = PaymentStatusChangedEvent.of(payment, previous, payment.getStatus());
+        ledgerRepository.append(payment, previous, payment.getStatus(), LocalDateTime.now());
+        appendToOutbox(event);
+        publishAfterCommit(event);
+    }
+
+    @PostRemove
+    public void onRemove(Payment payment) {
+        Payment.PaymentStatus status = payment.getPersistedStatus() != null
+                ? payment.getPersistedStatus()
+                : payment.getStatus();
+        ledgerRepository.append(payment, status, null, LocalDateTime.now());
+        publishAfterCommit(PaymentStatusChangedEvent.of(payment, status, null));
+    }
+
+    private void appendToOutbox(PaymentStatusChangedEvent event) {
+        outboxWriter.append(OutboxEvent.AggregateType.PAYMENT, event.getPaymentId(),
+                OutboxEvent.PAYMENT_STATUS_CHANGED, event);
+    }
+
+    private void publishAfterCommit(PaymentStatusChangedEvent event) {
+        TransactionHooks.runAfterCommit(() -> eventPublisher.publishEvent(event));
+    }
+}
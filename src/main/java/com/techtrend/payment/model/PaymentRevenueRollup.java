@@ -0,0 +1,97 @@
+package com.techtrend.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Entidad con los ingresos agregados de pagos completados por intervalo de tiempo
+ * 
+ * Cada fila acumula el número de pagos completados y su monto para un intervalo
+ * (minuto, hora o día), una moneda y un método de pago.
+ * 
+ * @author TechTrend Team
+ */
+@Entity
+@Table(name = "payment_revenue_rollups",
+       uniqueConstraints = @UniqueConstraint(name = "uk_payment_revenue_bucket",
+                                             columnNames = {"granularity", "bucket_start", "currency", "payment_method"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentRevenueRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "payment_method", nullable = false, length = 50)
+    private String paymentMethod;
+
+    @Column(name = "completed_count", nullable = false)
+    private Long completedCount;
+
+    @Column(name = "completed_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal completedAmount;
+
+    /**
+     * Tamaño de los intervalos de agregación
+     */
+    public enum Granularity {
+        MINUTE(ChronoUnit.MINUTES),
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Inicio del intervalo que contiene una fecha
+         * 
+         * @param dateTime Fecha
+         * @return Fecha truncada al intervalo
+         */
+        public LocalDateTime truncate(LocalDateTime dateTime) {
+            return dateTime.truncatedTo(unit);
+        }
+
+        /**
+         * Primer inicio de intervalo igual o posterior a una fecha
+         * 
+         * @param dateTime Fecha
+         * @return Fecha redondeada hacia arriba al intervalo
+         */
+        public LocalDateTime ceil(LocalDateTime dateTime) {
+            LocalDateTime truncated = truncate(dateTime);
+            return truncated.equals(dateTime) ? truncated : truncated.plus(1, unit);
+        }
+
+        /**
+         * Inicio del intervalo siguiente
+         * 
+         * @param bucketStart Inicio de un intervalo
+         * @return Inicio del intervalo siguiente
+         */
+        public LocalDateTime next(LocalDateTime bucketStart) {
+            return bucketStart.plus(1, unit);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.techtrend.payment.repository;
+
+import com.techtrend.payment.model.Checkout;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad Checkout
+ * 
+ * @author TechTrend Team
+ */
+@Repository
+public interface CheckoutRepository extends JpaRepository<Checkout, Long> {
+
+    /**
+     * Busca un checkout por ID de pedido
+     * 
+     * @param orderId ID del pedido
+     * @return Optional con el checkout si existe
+     */
+    Optional<Checkout> findByOrderId(Long orderId);
+
+    /**
+     * Busca checkouts reservados desde hace tiempo cuyo pago ya terminó o nunca se registró
+     * 
+     * Recupera los desenlaces que no llegaron por evento (caída del servicio tras el commit
+     * del pago, o entre la reserva y el registro del pago, que aparece con estado nulo)
+     * 
+     * @param updatedBefore Checkouts sin cambios desde antes de esta fecha
+     * @param pageable Tamaño del lote
+     * @return Filas [ID de pedido, estado del pago o nulo si no hay pago]
+     */
+    @Query("SELECT c.orderId, p.status FROM Checkout c LEFT JOIN Payment p ON p.orderId = c.orderId " +
+           "WHERE c.status = 'RESERVED' AND c.updatedAt < :updatedBefore " +
+           "AND (p.id IS NULL OR p.status = 'COMPLETED' OR p.status = 'DEAD_LETTER' " +
+           "OR (p.status = 'FAILED' AND p.retryable = false)) ORDER BY c.updatedAt ASC")
+    List<Object[]> findSettleableReservations(@Param("updatedBefore") LocalDateTime updatedBefore,
+                                              Pageable pageable);
+
+    /**
+     * Cambia el estado de un checkout solo si sigue en el estado esperado
+     * 
+     * Si dos eventos del mismo pago llegan a la vez, solo uno aplica la transición
+     * 
+     * @param id ID del checkout
+     * @param expected Estado esperado
+     * @param status Nuevo estado
+     * @param reason Razón de la liberación o de la revisión (nula al confirmar)
+     * @param updatedAt Fecha de actualización
+     * @return 1 si se aplicó la transición, 0 si el checkout ya había cambiado
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Checkout c SET c.status = :status, c.activeSlot = NULL, c.releaseReason = :reason, " +
+           "c.updatedAt = :updatedAt " +
+           "WHERE c.id = :id AND c.status = :expected")
+    int transition(@Param("id") Long id,
+                   @Param("expected") Checkout.CheckoutStatus expected,
+                   @Param("status") Checkout.CheckoutStatus status,
+                   @Param("reason") String reason,
+                   @Param("updatedAt") LocalDateTime updatedAt);
+}
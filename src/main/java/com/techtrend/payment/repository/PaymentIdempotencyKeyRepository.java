@@ -0,0 +1,39 @@
+package com.techtrend.payment.repository;
+
+import com.techtrend.payment.model.PaymentIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad PaymentIdempotencyKey
+ * 
+ * @author TechTrend Team
+ */
+@Repository
+public interface PaymentIdempotencyKeyRepository extends JpaRepository<PaymentIdempotencyKey, Long> {
+
+    /**
+     * Busca una clave de idempotencia de un usuario
+     * 
+     * @param userId ID del usuario
+     * @param idempotencyKey Clave de idempotencia
+     * @return Optional con el registro si existe
+     */
+    Optional<PaymentIdempotencyKey> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /**
+     * Elimina las claves vencidas
+     * 
+     * @param now Fecha actual
+     * @return Número de claves eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM PaymentIdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
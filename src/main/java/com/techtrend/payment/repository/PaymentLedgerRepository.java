@@ -0,0 +1,322 @@
+package com.techtrend.payment.repository;
+
+import com.techtrend.payment.dto.PaymentLedgerEntryResponse;
+import com.techtrend.payment.model.Payment;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Repositorio JDBC del ledger de pagos: transiciones de estado de solo inserción,
+ * particionadas por mes según la fecha de registro
+ *
+ * - En PostgreSQL usa particionado nativo: la tabla payment_ledger se particiona por rango
+ *   de recorded_at, con una partición por mes y una partición DEFAULT que recibe las filas
+ *   de meses aún no creados, y el planificador descarta las particiones fuera del rango.
+ * - En H2 cada mes es una tabla independiente (payment_ledger_pYYYYMM) con un CHECK sobre
+ *   su rango; las consultas unen con UNION ALL solo las tablas de los meses del rango.
+ *
+ * Archivar un mes es eliminar su tabla, sin DELETE fila a fila sobre el resto del histórico.
+ * Las inserciones usan JdbcTemplate sobre la conexión de la transacción en curso, igual que
+ * la outbox, para poder llamarse desde los callbacks JPA. Las sentencias DDL se ejecutan en
+ * una conexión aparte: en H2 un CREATE TABLE confirmaría la transacción del pago.
+ *
+ * @author TechTrend Team
+ */
+@Repository
+@Slf4j
+public class PaymentLedgerRepository {
+
+    private static final String TABLE = "payment_ledger";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final String SEQUENCE = TABLE + "_seq";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String COLUMNS = "id, payment_id, order_id, user_id, previous_status, new_status, "
+            + "amount, currency, payment_method, failure_reason, recorded_at";
+    private static final String COLUMN_DEFINITIONS = "id BIGINT NOT NULL, payment_id BIGINT NOT NULL, "
+            + "order_id BIGINT, user_id BIGINT, previous_status VARCHAR(20), new_status VARCHAR(20), "
+            + "amount DECIMAL(10,2), currency VARCHAR(3), payment_method VARCHAR(255), "
+            + "failure_reason VARCHAR(255), recorded_at TIMESTAMP NOT NULL";
+
+    private static final RowMapper<PaymentLedgerEntryResponse> ROW_MAPPER = (rs, rowNum) ->
+            new PaymentLedgerEntryResponse(
+                    rs.getLong("id"),
+                    rs.getLong("payment_id"),
+                    rs.getObject("order_id", Long.class),
+                    rs.getObject("user_id", Long.class),
+                    rs.getString("previous_status"),
+                    rs.getString("new_status"),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("currency"),
+                    rs.getString("payment_method"),
+                    rs.getString("failure_reason"),
+                    rs.getTimestamp("recorded_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    /** Meses con partición creada, en orden */
+    private final ConcurrentSkipListSet<YearMonth> partitions = new ConcurrentSkipListSet<>();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong partitionsCreated = new AtomicLong();
+
+    private boolean nativePartitioning;
+    private String insertPrefix;
+
+    public PaymentLedgerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = jdbcTemplate.getDataSource();
+    }
+
+    /**
+     * Detecta la base de datos, crea la secuencia (y en PostgreSQL la tabla padre) y carga
+     * las particiones existentes
+     */
+    @PostConstruct
+    public void initialize() {
+        List<String> tables = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            nativePartitioning = "PostgreSQL".equalsIgnoreCase(metaData.getDatabaseProductName());
+            String pattern = metaData.storesUpperCaseIdentifiers()
+                    ? PARTITION_PREFIX.toUpperCase() + "%"
+                    : PARTITION_PREFIX + "%";
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, pattern, new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    tables.add(rs.getString("TABLE_NAME").toLowerCase());
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo inicializar el ledger de pagos", e);
+        }
+
+        if (nativePartitioning) {
+            executeDdl("CREATE TABLE IF NOT EXISTS " + TABLE + " (" + COLUMN_DEFINITIONS
+                            + ", PRIMARY KEY (id, recorded_at)) PARTITION BY RANGE (recorded_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_" + TABLE + "_payment ON " + TABLE + " (payment_id)",
+                    "CREATE TABLE IF NOT EXISTS " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT",
+                    "CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+            insertPrefix = "INSERT INTO " + TABLE + " (" + COLUMNS + ") VALUES (nextval('" + SEQUENCE + "'), ";
+        } else {
+            executeDdl("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+            insertPrefix = " (" + COLUMNS + ") VALUES (NEXT VALUE FOR " + SEQUENCE + ", ";
+        }
+
+        for (String table : tables) {
+            String suffix = table.substring(PARTITION_PREFIX.length());
+            if (suffix.matches("\\d{6}")) {
+                partitions.add(YearMonth.parse(suffix, PARTITION_SUFFIX));
+            }
+        }
+        log.info("Ledger de pagos inicializado ({}): {} particiones mensuales",
+                nativePartitioning ? "particionado nativo" : "una tabla por mes", partitions.size());
+    }
+
+    /**
+     * Registra una transición de estado de un pago
+     *
+     * @param payment Pago afectado
+     * @param previousStatus Estado anterior (nulo en un alta)
+     * @param newStatus Estado nuevo (nulo en una baja)
+     * @param recordedAt Fecha de registro, que determina la partición
+     */
+    public void append(Payment payment, Payment.PaymentStatus previousStatus, Payment.PaymentStatus newStatus,
+                       LocalDateTime recordedAt) {
+        String sql;
+        if (nativePartitioning) {
+            sql = insertPrefix + "?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        } else {
+            YearMonth month = YearMonth.from(recordedAt);
+            createPartition(month);
+            sql = "INSERT INTO " + partitionName(month) + insertPrefix + "?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        }
+        jdbcTemplate.update(sql, payment.getId(), payment.getOrderId(), payment.getUserId(),
+                previousStatus != null ? previousStatus.name() : null,
+                newStatus != null ? newStatus.name() : null,
+                payment.getAmount(), payment.getCurrency(), payment.getPaymentMethod(), payment.getFailureReason(),
+                Timestamp.valueOf(recordedAt));
+        appended.incrementAndGet();
+    }
+
+    /**
+     * Crea la partición de un mes si aún no existe
+     *
+     * @param month Mes de la partición
+     * @return true si se creó
+     */
+    public boolean createPartition(YearMonth month) {
+        if (partitions.contains(month)) {
+            return false;
+        }
+        synchronized (partitions) {
+            if (partitions.contains(month)) {
+                return false;
+            }
+            String table = partitionName(month);
+            String from = "'" + Timestamp.valueOf(month.atDay(1).atStartOfDay()) + "'";
+            String to = "'" + Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()) + "'";
+            if (nativePartitioning) {
+                executeDdl("CREATE TABLE IF NOT EXISTS " + table + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM (" + from + ") TO (" + to + ")");
+            } else {
+                executeDdl("CREATE TABLE IF NOT EXISTS " + table + " (" + COLUMN_DEFINITIONS + ", PRIMARY KEY (id), "
+                                + "CHECK (recorded_at >= TIMESTAMP " + from + " AND recorded_at < TIMESTAMP " + to + "))",
+                        "CREATE INDEX IF NOT EXISTS idx_" + table + "_payment ON " + table + " (payment_id)",
+                        "CREATE INDEX IF NOT EXISTS idx_" + table + "_recorded ON " + table + " (recorded_at)");
+            }
+            partitions.add(month);
+            partitionsCreated.incrementAndGet();
+            log.info("Partición del ledger de pagos creada: {}", table);
+            return true;
+        }
+    }
+
+    /**
+     * Devuelve los meses con partición que solapan un rango
+     *
+     * @param from Inicio del rango (inclusive), o nulo para no acotar
+     * @param to Fin del rango (exclusivo), o nulo para no acotar
+     * @return Meses en orden
+     */
+    public List<YearMonth> findPartitions(LocalDateTime from, LocalDateTime to) {
+        NavigableSet<YearMonth> selected = partitions;
+        if (from != null) {
+            selected = selected.tailSet(YearMonth.from(from), true);
+        }
+        if (to != null) {
+            selected = selected.headSet(YearMonth.from(to.minusNanos(1)), true);
+        }
+        return new ArrayList<>(selected);
+    }
+
+    /**
+     * Busca transiciones en un rango, leyendo solo las particiones de los meses del rango
+     *
+     * @param from Inicio del rango (inclusive), o nulo para no acotar
+     * @param to Fin del rango (exclusivo), o nulo para no acotar
+     * @param paymentId Pago a filtrar, o nulo para todos
+     * @param limit Transiciones máximas
+     * @return Transiciones ordenadas por fecha de registro e ID
+     */
+    public List<PaymentLedgerEntryResponse> findEntries(LocalDateTime from, LocalDateTime to, Long paymentId,
+                                                        int limit) {
+        List<Object> filterArgs = new ArrayList<>();
+        StringBuilder filter = new StringBuilder(" WHERE 1 = 1");
+        if (from != null) {
+            filter.append(" AND recorded_at >= ?");
+            filterArgs.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            filter.append(" AND recorded_at < ?");
+            filterArgs.add(Timestamp.valueOf(to));
+        }
+        if (paymentId != null) {
+            filter.append(" AND payment_id = ?");
+            filterArgs.add(paymentId);
+        }
+
+        List<Object> args = new ArrayList<>();
+        String source;
+        if (nativePartitioning) {
+            source = "SELECT " + COLUMNS + " FROM " + TABLE + filter;
+            args.addAll(filterArgs);
+        } else {
+            List<YearMonth> months = findPartitions(from, to);
+            if (months.isEmpty()) {
+                return List.of();
+            }
+            List<String> selects = new ArrayList<>();
+            for (YearMonth month : months) {
+                selects.add("SELECT " + COLUMNS + " FROM " + partitionName(month) + filter);
+                args.addAll(filterArgs);
+            }
+            source = String.join(" UNION ALL ", selects);
+        }
+        args.add(limit);
+        return jdbcTemplate.query("SELECT * FROM (" + source + ") ledger ORDER BY recorded_at, id LIMIT ?",
+                ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Recorre todas las transiciones de una partición en orden
+     *
+     * @param month Mes de la partición
+     * @param consumer Receptor de cada transición
+     */
+    public void forEachInPartition(YearMonth month, Consumer<PaymentLedgerEntryResponse> consumer) {
+        int[] rowNum = {0};
+        jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + partitionName(month) + " ORDER BY recorded_at, id",
+                (RowCallbackHandler) rs -> consumer.accept(ROW_MAPPER.mapRow(rs, rowNum[0]++)));
+    }
+
+    /**
+     * Elimina la partición de un mes con todas sus transiciones
+     *
+     * @param month Mes de la partición
+     */
+    public void dropPartition(YearMonth month) {
+        synchronized (partitions) {
+            String table = partitionName(month);
+            if (nativePartitioning) {
+                executeDdl("ALTER TABLE " + TABLE + " DETACH PARTITION " + table, "DROP TABLE " + table);
+            } else {
+                executeDdl("DROP TABLE IF EXISTS " + table);
+            }
+            partitions.remove(month);
+            log.info("Partición del ledger de pagos eliminada: {}", table);
+        }
+    }
+
+    public boolean isNativePartitioning() {
+        return nativePartitioning;
+    }
+
+    public long getAppendedCount() {
+        return appended.get();
+    }
+
+    public long getPartitionsCreatedCount() {
+        return partitionsCreated.get();
+    }
+
+    /**
+     * Nombre de la tabla de la partición de un mes
+     *
+     * @param month Mes de la partición
+     * @return Nombre payment_ledger_pYYYYMM
+     */
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private void executeDdl(String... statements) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error en el DDL del ledger de pagos: " + e.getMessage(), e);
+        }
+    }
+}
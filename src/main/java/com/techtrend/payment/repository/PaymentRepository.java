@@ -1,8 +1,12 @@
 package com.techtrend.payment.repository;
 
 import com.techtrend.payment.model.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -10,6 +14,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad Payment
@@ -29,6 +34,14 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      */
     List<Payment> findByOrderId(Long orderId);
 
+    /**
+     * Verifica si existe un pago para un pedido
+     * 
+     * @param orderId ID del pedido
+     * @return true si existe, false en caso contrario
+     */
+    boolean existsByOrderId(Long orderId);
+
     /**
      * Busca pagos por estado
      * 
@@ -78,6 +91,83 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' ORDER BY p.createdAt ASC")
     List<Payment> findPendingPayments();
 
+    /**
+     * Busca pagos pendientes sin cambios desde una fecha y cuyo reintento ya venció
+     * 
+     * Recorre idx_payments_status_updated, por lo que solo lee los pendientes antiguos
+     * 
+     * @param updatedBefore Pagos sin actualizar desde antes de esta fecha
+     * @param now Fecha actual, para descartar pagos con un reintento programado a futuro
+     * @param pageable Tamaño del lote
+     * @return Pagos pendientes atascados, los más antiguos primero
+     */
+    @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' AND p.updatedAt < :updatedBefore " +
+           "AND (p.nextRetryAt IS NULL OR p.nextRetryAt <= :now) ORDER BY p.updatedAt ASC")
+    List<Payment> findStuckPendingPayments(@Param("updatedBefore") LocalDateTime updatedBefore,
+                                           @Param("now") LocalDateTime now,
+                                           Pageable pageable);
+
+    /**
+     * Busca pagos fallidos reintentables cuyo reintento no está programado o ya venció
+     * 
+     * Recorre idx_payments_retry, sin leer los fallos definitivos
+     * 
+     * @param now Fecha actual
+     * @param pageable Tamaño del lote
+     * @return Pagos reintentables, primero los que aún no tienen reintento programado
+     */
+    @Query("SELECT p FROM Payment p WHERE p.status = 'FAILED' AND p.retryable = true " +
+           "AND (p.nextRetryAt IS NULL OR p.nextRetryAt <= :now) ORDER BY p.nextRetryAt ASC NULLS FIRST, p.id ASC")
+    List<Payment> findRetryablePaymentsDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Busca la página de pagos de un usuario posterior a un cursor (createdAt, id)
+     * 
+     * @param userId ID del usuario
+     * @param createdAt Fecha de creación del último pago entregado
+     * @param id ID del último pago entregado
+     * @param pageable Tamaño de la página
+     * @return Pagos ordenados por fecha de creación e ID
+     */
+    @Query("SELECT p FROM Payment p WHERE p.userId = :userId " +
+           "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id)) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Payment> findByUserIdAfter(@Param("userId") Long userId,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    /**
+     * Busca la página de pagos con un estado posterior a un cursor (createdAt, id)
+     * 
+     * @param status Estado del pago
+     * @param createdAt Fecha de creación del último pago entregado
+     * @param id ID del último pago entregado
+     * @param pageable Tamaño de la página
+     * @return Pagos ordenados por fecha de creación e ID
+     */
+    @Query("SELECT p FROM Payment p WHERE p.status = :status " +
+           "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id)) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Payment> findByStatusAfter(@Param("status") Payment.PaymentStatus status,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    /**
+     * Busca la página de pagos posterior a un cursor (createdAt, id)
+     * 
+     * @param createdAt Fecha de creación del último pago entregado
+     * @param id ID del último pago entregado
+     * @param pageable Tamaño de la página
+     * @return Pagos ordenados por fecha de creación e ID
+     */
+    @Query("SELECT p FROM Payment p WHERE p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Payment> findAllAfter(@Param("createdAt") LocalDateTime createdAt,
+                               @Param("id") Long id,
+                               Pageable pageable);
+
     /**
      * Busca pagos completados en un rango de fechas
      * 
@@ -90,21 +180,30 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
                                                   @Param("endDate") LocalDateTime endDate);
 
     /**
-     * Calcula el total de pagos completados
+     * Recorre los pagos completados en un rango de fechas de procesamiento
+     * 
+     * Debe consumirse dentro de una transacción y cerrarse al terminar
      * 
-     * @return Total de pagos completados
+     * @param startDate Fecha de inicio (inclusive)
+     * @param endDate Fecha de fin (exclusiva)
+     * @return Flujo de filas [processedAt, moneda, método de pago, monto]
      */
-    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.status = 'COMPLETED'")
-    BigDecimal getTotalCompletedPayments();
+    @Query("SELECT p.processedAt, p.currency, p.paymentMethod, p.amount FROM Payment p " +
+           "WHERE p.status = 'COMPLETED' AND p.processedAt >= :startDate AND p.processedAt < :endDate")
+    Stream<Object[]> streamCompletedPaymentsInRange(@Param("startDate") LocalDateTime startDate,
+                                                    @Param("endDate") LocalDateTime endDate);
 
     /**
-     * Calcula el total de pagos completados por usuario
+     * Recorre los pagos con ID de transacción para conciliarlos con la liquidación
      * 
-     * @param userId ID del usuario
-     * @return Total de pagos completados del usuario
+     * Debe consumirse dentro de una transacción y cerrarse al terminar
+     * 
+     * @return Flujo de filas [id, transactionId, monto, moneda, estado, processedAt]
      */
-    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.userId = :userId AND p.status = 'COMPLETED'")
-    BigDecimal getTotalCompletedPaymentsByUser(@Param("userId") Long userId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT p.id, p.transactionId, p.amount, p.currency, p.status, p.processedAt FROM Payment p " +
+           "WHERE p.transactionId IS NOT NULL")
+    Stream<Object[]> streamForSettlement();
 
     /**
      * Cuenta pagos por estado
@@ -114,6 +213,15 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      */
     long countByStatus(Payment.PaymentStatus status);
 
+    /**
+     * Cuenta pagos y suma montos por estado y moneda en un solo recorrido
+     * 
+     * @return Filas [estado, moneda, número de pagos, monto total en esa moneda]
+     */
+    @Query("SELECT p.status, p.currency, COUNT(p), COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "GROUP BY p.status, p.currency")
+    List<Object[]> summarizeByStatusAndCurrency();
+
     /**
      * Cuenta pagos por usuario
      * 
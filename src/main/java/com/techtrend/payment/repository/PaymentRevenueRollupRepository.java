@@ -0,0 +1,78 @@
+package com.techtrend.payment.repository;
+
+import com.techtrend.payment.model.PaymentRevenueRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio para la entidad PaymentRevenueRollup
+ * 
+ * @author TechTrend Team
+ */
+@Repository
+public interface PaymentRevenueRollupRepository extends JpaRepository<PaymentRevenueRollup, Long> {
+
+    /**
+     * Suma un incremento a un intervalo existente
+     * 
+     * @return Número de filas actualizadas (0 si el intervalo aún no existe)
+     */
+    @Modifying
+    @Query("UPDATE PaymentRevenueRollup r SET r.completedCount = r.completedCount + :count, " +
+           "r.completedAmount = r.completedAmount + :amount " +
+           "WHERE r.granularity = :granularity AND r.bucketStart = :bucketStart " +
+           "AND r.currency = :currency AND r.paymentMethod = :paymentMethod")
+    int addToBucket(@Param("granularity") PaymentRevenueRollup.Granularity granularity,
+                    @Param("bucketStart") LocalDateTime bucketStart,
+                    @Param("currency") String currency,
+                    @Param("paymentMethod") String paymentMethod,
+                    @Param("count") long count,
+                    @Param("amount") BigDecimal amount);
+
+    /**
+     * Suma los intervalos de una granularidad dentro de un rango, por moneda y método de pago
+     * 
+     * @param granularity Granularidad de los intervalos
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @return Filas [moneda, método de pago, pagos completados, monto completado]
+     */
+    @Query("SELECT r.currency, r.paymentMethod, SUM(r.completedCount), SUM(r.completedAmount) " +
+           "FROM PaymentRevenueRollup r WHERE r.granularity = :granularity " +
+           "AND r.bucketStart >= :from AND r.bucketStart < :to GROUP BY r.currency, r.paymentMethod")
+    List<Object[]> sumByCurrencyAndMethod(@Param("granularity") PaymentRevenueRollup.Granularity granularity,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
+
+    /**
+     * Busca los intervalos de una granularidad dentro de un rango
+     * 
+     * @param granularity Granularidad de los intervalos
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @return Intervalos ordenados por inicio
+     */
+    @Query("SELECT r FROM PaymentRevenueRollup r WHERE r.granularity = :granularity " +
+           "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart, r.currency, r.paymentMethod")
+    List<PaymentRevenueRollup> findBuckets(@Param("granularity") PaymentRevenueRollup.Granularity granularity,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
+
+    /**
+     * Elimina los intervalos de todas las granularidades que empiezan dentro de un rango
+     * 
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @return Número de filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM PaymentRevenueRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :to")
+    int deleteBucketsInRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
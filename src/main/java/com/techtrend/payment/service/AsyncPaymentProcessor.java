@@ -0,0 +1,241 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.payment.gateway.PaymentGateway;
+import com.techtrend.payment.gateway.PaymentGatewayResult;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Procesador asíncrono de pagos
+ *
+ * Ejecuta la llamada a la pasarela en un pool acotado de workers, fuera de cualquier
+ * transacción de base de datos: el hilo de la petición solo persiste el pago en PENDING.
+ * Al terminar, el estado final se guarda en una transacción corta y, si el pago tiene
+ * una URL de callback permitida por {@link CallbackUrlPolicy}, se notifica al cliente.
+ *
+ * Un mismo pago puede llegar a procesarse dos veces (reintento de un pago atascado cuyo
+ * worker original sigue vivo): la pasarela responde igual a ambos cobros por ser
+ * idempotente sobre el transactionId, y solo el primer guardado del estado final gana.
+ *
+ * Si la cola está llena el pago queda en PENDING y se informa con un warning; los
+ * clientes siguen consultando su estado en /payments/{id}/status.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class AsyncPaymentProcessor {
+
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentGateway paymentGateway;
+    private final CallbackUrlPolicy callbackUrlPolicy;
+    private final RestClient callbackClient;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncPaymentProcessor(PaymentRepository paymentRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 PaymentGateway paymentGateway,
+                                 CallbackUrlPolicy callbackUrlPolicy,
+                                 RestClient.Builder restClientBuilder,
+                                 @Value("${app.payment.async.workers:8}") int workers,
+                                 @Value("${app.payment.async.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${app.payment.async.callback-timeout:5000}") int callbackTimeout) {
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.paymentGateway = paymentGateway;
+        this.callbackUrlPolicy = callbackUrlPolicy;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(callbackTimeout);
+        requestFactory.setReadTimeout(callbackTimeout);
+        this.callbackClient = restClientBuilder.requestFactory(requestFactory).build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "payment-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Encola el procesamiento de un pago pendiente
+     *
+     * @param paymentId ID del pago
+     * @return true si se encoló, false si la cola está llena
+     */
+    public boolean submit(Long paymentId) {
+        try {
+            executor.execute(() -> process(paymentId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola de procesamiento de pagos llena ({} en espera), pago {} queda pendiente",
+                    executor.getQueue().size(), paymentId);
+            return false;
+        }
+    }
+
+    /**
+     * Procesa un pago pendiente: llama a la pasarela y guarda el estado final
+     *
+     * @param paymentId ID del pago
+     */
+    void process(Long paymentId) {
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null || !payment.isPending()) {
+            log.debug("Pago {} ya no está pendiente, se omite el procesamiento", paymentId);
+            return;
+        }
+
+        // Llamada a la pasarela sin transacción ni conexión de base de datos tomada
+        boolean success;
+        boolean transientFailure = false;
+        String failureReason = null;
+        try {
+            PaymentGatewayResult result = paymentGateway.charge(payment);
+            success = result.isApproved();
+            failureReason = result.getDeclineReason();
+        } catch (PaymentGatewayException e) {
+            // Timeout, pasarela caída o rechazo rápido del circuit breaker: reintentable
+            log.warn("Error de la pasarela {} para el pago {}: {}", paymentGateway.getName(), paymentId, e.getMessage());
+            success = false;
+            transientFailure = true;
+            failureReason = e.isRejected()
+                    ? "Pasarela no disponible temporalmente"
+                    : "Error de comunicación con la pasarela";
+        } catch (RuntimeException e) {
+            log.error("Error inesperado llamando a la pasarela para el pago {}: {}", paymentId, e.getMessage());
+            success = false;
+            failureReason = "Error de comunicación con la pasarela";
+        }
+
+        boolean approved = success;
+        boolean retryable = transientFailure;
+        String reason = failureReason;
+        Payment finalPayment;
+        try {
+            finalPayment = transactionTemplate.execute(status -> {
+                Payment current = paymentRepository.findById(paymentId).orElse(null);
+                if (current == null || !current.isPending()) {
+                    return null;
+                }
+                if (approved) {
+                    current.markAsCompleted();
+                } else {
+                    current.markAsFailed(reason, retryable);
+                }
+                return paymentRepository.save(current);
+            });
+        } catch (OptimisticLockingFailureException e) {
+            // El planificador de reintentos u otro worker guardó el pago mientras tanto
+            finalPayment = null;
+        }
+
+        if (finalPayment == null) {
+            log.info("Pago {} cambió de estado durante el procesamiento, se conserva el estado actual", paymentId);
+            return;
+        }
+
+        log.info("Pago {} procesado de forma asíncrona: {}", paymentId, finalPayment.getStatus());
+        notifyCallback(finalPayment);
+    }
+
+    /**
+     * Notifica el estado final al callback del pago, si lo tiene
+     *
+     * @param payment Pago procesado
+     */
+    private void notifyCallback(Payment payment) {
+        if (payment.getCallbackUrl() == null || payment.getCallbackUrl().isBlank()) {
+            return;
+        }
+        // Resolver y validar el destino justo antes de conectar
+        Optional<URI> target = callbackUrlPolicy.resolve(payment.getCallbackUrl());
+        if (target.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("paymentId", payment.getId());
+        body.put("orderId", payment.getOrderId());
+        body.put("status", payment.getStatus().name());
+        body.put("transactionId", payment.getTransactionId());
+        body.put("processedAt", payment.getProcessedAt());
+        if (payment.getFailureReason() != null) {
+            body.put("failureReason", payment.getFailureReason());
+            body.put("retryable", payment.isRetryable());
+        }
+
+        try {
+            callbackClient.post()
+                    .uri(target.get())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body)
+                    .retrieve()
+                    .toBodilessEntity();
+            log.info("Callback notificado para el pago {}", payment.getId());
+        } catch (RuntimeException e) {
+            log.warn("No se pudo notificar el callback del pago {}: {}", payment.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Número de pagos en espera de un worker
+     *
+     * @return Tamaño de la cola
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Número de pagos que aún caben en la cola antes de rechazar el encolado
+     *
+     * @return Capacidad restante de la cola
+     */
+    public int getRemainingCapacity() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    /**
+     * Número de workers procesando pagos en este momento
+     *
+     * @return Workers activos
+     */
+    public int getActiveWorkers() {
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Quedaron {} pagos pendientes sin procesar al detener el servicio", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+}
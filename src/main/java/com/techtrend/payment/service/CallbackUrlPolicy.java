@@ -0,0 +1,134 @@
+package com.techtrend.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Política de destinos permitidos para los callbacks de pagos
+ *
+ * La URL de callback la elige el cliente y el servidor le envía un POST: sin control,
+ * un cliente podría hacer que el servidor llame a servicios internos, a localhost o a la
+ * dirección de metadatos de la nube. Solo se aceptan URLs http/https cuyo host esté en
+ * la lista configurada; antes de conectar se resuelve el host y se rechaza si alguna de
+ * sus direcciones es de loopback, privada, de enlace local, comodín o multicast.
+ *
+ * La conexión se abre justo después de resolver y usa la caché DNS de la JVM, lo que
+ * reduce la ventana para un cambio de DNS entre la comprobación y la conexión. Los POST
+ * de callback no siguen redirecciones.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class CallbackUrlPolicy {
+
+    /**
+     * Resuelve un nombre de host a sus direcciones
+     */
+    @FunctionalInterface
+    interface HostResolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    private final Set<String> allowedHosts;
+    private final HostResolver resolver;
+
+    @Autowired
+    public CallbackUrlPolicy(@Value("${app.payment.async.callback-allowed-hosts:}") List<String> allowedHosts) {
+        this(allowedHosts, InetAddress::getAllByName);
+    }
+
+    CallbackUrlPolicy(List<String> allowedHosts, HostResolver resolver) {
+        this.allowedHosts = allowedHosts.stream()
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(host -> host.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.resolver = resolver;
+    }
+
+    /**
+     * Comprueba el esquema y el host de una URL de callback sin resolverla
+     *
+     * Se usa al recibir la solicitud para rechazarla con 400 en lugar de descartar el
+     * callback más tarde en silencio.
+     *
+     * @param url URL de callback
+     * @return true si el esquema es http/https y el host está en la lista permitida
+     */
+    public boolean isAllowed(String url) {
+        return parse(url).isPresent();
+    }
+
+    /**
+     * Valida una URL de callback justo antes de conectar
+     *
+     * @param url URL de callback
+     * @return URI a la que enviar el callback, o vacío si el destino no está permitido
+     */
+    public Optional<URI> resolve(String url) {
+        Optional<URI> uri = parse(url);
+        if (uri.isEmpty()) {
+            log.warn("Callback descartado: host no permitido en {}", url);
+            return Optional.empty();
+        }
+
+        String host = uri.get().getHost();
+        try {
+            for (InetAddress address : resolver.resolve(host)) {
+                if (isInternal(address)) {
+                    log.warn("Callback descartado: {} resuelve a la dirección interna {}",
+                            host, address.getHostAddress());
+                    return Optional.empty();
+                }
+            }
+        } catch (UnknownHostException e) {
+            log.warn("Callback descartado: no se pudo resolver {}", host);
+            return Optional.empty();
+        }
+        return uri;
+    }
+
+    private Optional<URI> parse(String url) {
+        if (url == null || url.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (scheme == null || host == null || uri.getUserInfo() != null) {
+                return Optional.empty();
+            }
+            scheme = scheme.toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) {
+                return Optional.empty();
+            }
+            return allowedHosts.contains(host.toLowerCase(Locale.ROOT)) ? Optional.of(uri) : Optional.empty();
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isInternal(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        // Direcciones IPv6 locales únicas (fc00::/7), el equivalente a las privadas de IPv4
+        return address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc;
+    }
+}
@@ -0,0 +1,373 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.cart.dto.CartItemResponse;
+import com.techtrend.cart.dto.CartRevalidationResponse;
+import com.techtrend.cart.service.CartService;
+import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.InsufficientStockException;
+import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.payment.dto.CheckoutRequest;
+import com.techtrend.payment.dto.CheckoutResponse;
+import com.techtrend.payment.dto.PaymentRequest;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.model.Checkout;
+import com.techtrend.payment.model.CheckoutLine;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.CheckoutRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Orquestador del checkout: del carrito al pago
+ *
+ * Cada paso corre en su propia transacción corta, sin llamadas a la pasarela dentro:
+ * <ol>
+ *   <li>Revalida el carrito contra el catálogo y toma su total como monto del pago.</li>
+ *   <li>Guarda el checkout en RESERVED y reserva el stock de todas las líneas con
+ *       {@link CatalogService#reserveStock(Map)} en la misma transacción.</li>
+ *   <li>Registra el pago con {@link PaymentService#submitPayment}; el pedido es un ID nuevo
+ *       del {@link TransactionIdGenerator}.</li>
+ * </ol>
+ * El desenlace llega por {@link PaymentStatusChangedEvent}, igual con pagos síncronos,
+ * asíncronos o reintentados: un pago COMPLETED confirma el checkout y quita del carrito
+ * las unidades compradas; un pago fallido sin reintento o en dead-letter libera el stock
+ * y conserva el carrito. Un pago que se completa con el checkout ya liberado (un
+ * dead-letter reencolado o un cambio manual de estado) vuelve a reservar el stock y
+ * confirma; si el stock ya no alcanza, el checkout pasa a REFUND_REVIEW para reembolsar
+ * o revisar a mano.
+ * Los fallos reintentables mantienen la reserva hasta que el planificador de reintentos
+ * resuelve el pago.
+ *
+ * Los eventos llegan durante el commit de la transacción del pago, con su conexión aún
+ * tomada, así que el desenlace se aplica en un pool propio y no en el hilo del evento.
+ * Un barrido periódico aplica los desenlaces que se pierdan (cola llena o caída del
+ * servicio) y libera las reservas que nunca llegaron a tener pago.
+ *
+ * No se toma el lock del carrito: un checkout en curso por usuario lo garantiza la
+ * restricción única (user_id, active_slot) de la tabla checkouts.
+ *
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class CheckoutService {
+
+    private final CartService cartService;
+    private final CatalogService catalogService;
+    private final PaymentService paymentService;
+    private final CheckoutRepository checkoutRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor settlementExecutor;
+    private final int reconcileBatchSize;
+    private final long staleAfterMs;
+
+    public CheckoutService(CartService cartService,
+                           CatalogService catalogService,
+                           PaymentService paymentService,
+                           CheckoutRepository checkoutRepository,
+                           TransactionIdGenerator transactionIdGenerator,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.payment.checkout.settlement-workers:2}") int settlementWorkers,
+                           @Value("${app.payment.checkout.settlement-queue-capacity:1000}") int settlementQueueCapacity,
+                           @Value("${app.payment.checkout.reconcile-batch-size:200}") int reconcileBatchSize,
+                           @Value("${app.payment.checkout.stale-after:600000}") long staleAfterMs) {
+        this.cartService = cartService;
+        this.catalogService = catalogService;
+        this.paymentService = paymentService;
+        this.checkoutRepository = checkoutRepository;
+        this.transactionIdGenerator = transactionIdGenerator;
+        // Cada paso confirma por su cuenta aunque se invoque dentro de otra transacción
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.staleAfterMs = staleAfterMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.settlementExecutor = new ThreadPoolExecutor(settlementWorkers, settlementWorkers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settlementQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "checkout-settlement-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Inicia el checkout del carrito de un usuario
+     *
+     * @param userId ID del usuario
+     * @param request Método de pago, moneda, descripción y callback
+     * @return Checkout con el pago registrado
+     * @throws InvalidPaymentException si el carrito está vacío, tiene productos no disponibles
+     *         o el usuario ya tiene un checkout en curso
+     * @throws InsufficientStockException si algún producto no tiene stock suficiente
+     */
+    public CheckoutResponse checkout(Long userId, CheckoutRequest request) {
+        log.info("Iniciando checkout para usuario {}", userId);
+
+        CartRevalidationResponse cart = cartService.revalidateCart(userId);
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            throw new InvalidPaymentException("El carrito está vacío");
+        }
+        if (!cart.isCheckoutReady()) {
+            log.warn("Checkout del usuario {} con productos no disponibles: {}", userId, cart.getUnavailableProductIds());
+            throw new InvalidPaymentException("El carrito tiene productos no disponibles: " + cart.getUnavailableProductIds());
+        }
+
+        Map<Long, Integer> quantities = cart.getItems().stream()
+                .collect(Collectors.toMap(CartItemResponse::getProductId, CartItemResponse::getQuantity, Integer::sum));
+        Long orderId = transactionIdGenerator.nextId();
+        String currency = request.getCurrency() != null ? request.getCurrency() : "PEN";
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // El alta va primero: un segundo checkout del usuario falla antes de tomar locks de stock
+                Checkout reserved = new Checkout();
+                reserved.setOrderId(orderId);
+                reserved.setUserId(userId);
+                reserved.setAmount(cart.getTotal());
+                reserved.setCurrency(currency);
+                reserved.setStatus(Checkout.CheckoutStatus.RESERVED);
+                reserved.setLines(quantities.entrySet().stream()
+                        .map(line -> new CheckoutLine(line.getKey(), line.getValue()))
+                        .collect(Collectors.toList()));
+                checkoutRepository.saveAndFlush(reserved);
+                catalogService.reserveStock(quantities);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("El usuario {} ya tiene un checkout en curso", userId);
+            throw new InvalidPaymentException("Ya hay un checkout en curso para este usuario", e);
+        }
+        log.info("Stock reservado para el pedido {}: {} productos, total {}", orderId, quantities.size(), cart.getTotal());
+
+        PaymentResponse payment;
+        try {
+            payment = paymentService.submitPayment(new PaymentRequest(orderId, cart.getTotal(),
+                    request.getPaymentMethod(), request.getDescription(), currency, request.getCallbackUrl()), userId);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo registrar el pago del pedido {}: {}", orderId, e.getMessage());
+            release(orderId, "No se pudo registrar el pago: " + e.getMessage());
+            throw e;
+        }
+
+        return new CheckoutResponse(orderId, userId, expectedStatus(payment).name(), cart.getTotal(),
+                quantities.size(), payment);
+    }
+
+    /**
+     * Obtiene el estado de un checkout
+     *
+     * @param orderId ID del pedido
+     * @return Checkout con su pago
+     * @throws IllegalArgumentException si el checkout no existe
+     */
+    public CheckoutResponse getCheckout(Long orderId) {
+        Checkout checkout = checkoutRepository.findByOrderId(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Checkout no encontrado"));
+        List<PaymentResponse> payments = paymentService.getPaymentsByOrder(orderId);
+        return new CheckoutResponse(orderId, checkout.getUserId(), checkout.getStatus().name(), checkout.getAmount(),
+                checkout.getLines().size(), payments.isEmpty() ? null : payments.get(0));
+    }
+
+    /**
+     * Confirma o compensa el checkout del pedido cuando su pago llega a un estado final
+     *
+     * @param event Cambio de estado del pago
+     */
+    @EventListener
+    public void onPaymentStatusChanged(PaymentStatusChangedEvent event) {
+        if (event.getOrderId() == null || !isSettled(event.getNewStatus(), event.isRetryable())) {
+            return;
+        }
+
+        try {
+            settlementExecutor.execute(() -> settle(event.getOrderId(), event.getNewStatus()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola de cierre de checkouts llena, el pedido {} se cerrará en la próxima reconciliación",
+                    event.getOrderId());
+        }
+    }
+
+    /**
+     * Aplica los desenlaces pendientes de checkouts reservados desde hace más de stale-after ms
+     *
+     * @return Checkouts cerrados
+     */
+    @Scheduled(fixedDelayString = "${app.payment.checkout.reconcile-interval:60000}",
+            initialDelayString = "${app.payment.checkout.reconcile-interval:60000}")
+    public int reconcileStaleReservations() {
+        LocalDateTime updatedBefore = LocalDateTime.now().minus(staleAfterMs, ChronoUnit.MILLIS);
+        List<Object[]> rows = checkoutRepository.findSettleableReservations(updatedBefore,
+                PageRequest.of(0, reconcileBatchSize));
+        for (Object[] row : rows) {
+            settle((Long) row[0], (Payment.PaymentStatus) row[1]);
+        }
+        if (!rows.isEmpty()) {
+            log.info("Reconciliación de checkouts: {} reservas cerradas", rows.size());
+        }
+        return rows.size();
+    }
+
+    /**
+     * Cierra el checkout de un pedido según el estado final de su pago
+     *
+     * @param orderId ID del pedido
+     * @param paymentStatus Estado final del pago, o nulo si el pago nunca se registró
+     */
+    void settle(Long orderId, Payment.PaymentStatus paymentStatus) {
+        try {
+            if (paymentStatus == Payment.PaymentStatus.COMPLETED) {
+                confirm(orderId);
+            } else {
+                release(orderId, paymentStatus != null ? "Pago " + paymentStatus : "Pago no registrado");
+            }
+        } catch (RuntimeException e) {
+            log.error("Error cerrando el checkout del pedido {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Confirma el checkout de un pedido y quita del carrito lo comprado
+     *
+     * Lo agregado al carrito mientras se procesaba el pago se conserva. Si el checkout ya
+     * se había liberado, el pago está cobrado sin stock reservado: se intenta reservar de
+     * nuevo con {@link #confirmReleased(Long)}.
+     *
+     * @param orderId ID del pedido
+     */
+    void confirm(Long orderId) {
+        Checkout.CheckoutStatus current = transactionTemplate.execute(status -> {
+            Checkout checkout = checkoutRepository.findByOrderId(orderId).orElse(null);
+            if (checkout == null) {
+                return null;
+            }
+            // Las líneas se leen antes de la transición, que limpia el contexto de persistencia
+            Map<Long, Integer> quantities = checkout.getReservedQuantities();
+            if (checkoutRepository.transition(checkout.getId(), Checkout.CheckoutStatus.RESERVED,
+                    Checkout.CheckoutStatus.CONFIRMED, null, LocalDateTime.now()) == 0) {
+                // Releer el estado: otro desenlace pudo cambiarlo después de la primera lectura
+                return checkoutRepository.findByOrderId(orderId).map(Checkout::getStatus).orElse(null);
+            }
+            cartService.removeCheckedOutItems(checkout.getUserId(), quantities);
+            log.info("Checkout confirmado para el pedido {}", orderId);
+            return Checkout.CheckoutStatus.CONFIRMED;
+        });
+        if (current == Checkout.CheckoutStatus.RELEASED) {
+            confirmReleased(orderId);
+        }
+    }
+
+    /**
+     * Confirma un checkout liberado cuyo pago se completó después
+     *
+     * Vuelve a reservar el stock y quita del carrito lo comprado en una sola transacción.
+     * Si el stock ya no alcanza, esa transacción revierte y el checkout pasa a REFUND_REVIEW.
+     *
+     * @param orderId ID del pedido
+     */
+    void confirmReleased(Long orderId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Checkout checkout = checkoutRepository.findByOrderId(orderId).orElse(null);
+                if (checkout == null) {
+                    return;
+                }
+                Map<Long, Integer> quantities = checkout.getReservedQuantities();
+                if (checkoutRepository.transition(checkout.getId(), Checkout.CheckoutStatus.RELEASED,
+                        Checkout.CheckoutStatus.CONFIRMED, null, LocalDateTime.now()) == 0) {
+                    return;
+                }
+                catalogService.reserveStock(quantities);
+                cartService.removeCheckedOutItems(checkout.getUserId(), quantities);
+                log.warn("Pago del pedido {} completado con el checkout liberado: stock reservado de nuevo y checkout confirmado",
+                        orderId);
+            });
+        } catch (InsufficientStockException e) {
+            String reason = "Pago completado tras liberar la reserva, sin stock: " + e.getMessage();
+            transactionTemplate.executeWithoutResult(status -> checkoutRepository.findByOrderId(orderId)
+                    .ifPresent(checkout -> checkoutRepository.transition(checkout.getId(),
+                            Checkout.CheckoutStatus.RELEASED, Checkout.CheckoutStatus.REFUND_REVIEW, reason,
+                            LocalDateTime.now())));
+            log.error("Pago del pedido {} cobrado sin stock para entregarlo: requiere reembolso o revisión manual ({})",
+                    orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Libera el stock reservado por un checkout; el carrito se conserva para reintentar
+     *
+     * @param orderId ID del pedido
+     * @param reason Razón de la liberación
+     */
+    void release(Long orderId, String reason) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Checkout checkout = checkoutRepository.findByOrderId(orderId).orElse(null);
+            if (checkout == null || !checkout.isReserved()) {
+                return;
+            }
+            // Las líneas se leen antes de la transición, que limpia el contexto de persistencia
+            Map<Long, Integer> quantities = checkout.getReservedQuantities();
+            if (checkoutRepository.transition(checkout.getId(), Checkout.CheckoutStatus.RESERVED,
+                    Checkout.CheckoutStatus.RELEASED, reason, LocalDateTime.now()) == 0) {
+                return;
+            }
+            catalogService.releaseStock(quantities);
+            log.info("Stock liberado para el pedido {}: {}", orderId, reason);
+        });
+    }
+
+    /**
+     * Estado del checkout que corresponde al estado actual del pago
+     */
+    private Checkout.CheckoutStatus expectedStatus(PaymentResponse payment) {
+        Payment.PaymentStatus status = Payment.PaymentStatus.valueOf(payment.getStatus());
+        if (!isSettled(status, Boolean.TRUE.equals(payment.getRetryable()))) {
+            return Checkout.CheckoutStatus.RESERVED;
+        }
+        return status == Payment.PaymentStatus.COMPLETED
+                ? Checkout.CheckoutStatus.CONFIRMED
+                : Checkout.CheckoutStatus.RELEASED;
+    }
+
+    /**
+     * Indica si un estado de pago cierra el checkout
+     */
+    private static boolean isSettled(Payment.PaymentStatus status, boolean retryable) {
+        return status == Payment.PaymentStatus.COMPLETED
+                || status == Payment.PaymentStatus.DEAD_LETTER
+                || (status == Payment.PaymentStatus.FAILED && !retryable);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        settlementExecutor.shutdown();
+        if (!settlementExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Quedaron {} checkouts sin cerrar al detener el servicio; se cerrarán en la próxima reconciliación",
+                    settlementExecutor.getQueue().size());
+            settlementExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.techtrend.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Servicio de conversión de monedas para normalizar montos
+ *
+ * Lee los tipos de cambio de un fichero local de propiedades (app.payment.currency.rates-file,
+ * con la clave {@code base} y una entrada por moneda, que debe cubrir todas las de
+ * app.payment.supported-currencies) y los publica como un
+ * CurrencyRateSnapshot inmutable. Un ciclo periódico vuelve a leer el fichero cuando
+ * cambia su fecha de modificación y reemplaza la tabla de forma atómica; los lectores
+ * nunca ven una tabla a medio cargar. Si el fichero nuevo es inválido se conserva la
+ * tabla anterior.
+ *
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class CurrencyConversionService {
+
+    private final Resource ratesResource;
+    private final List<String> supportedCurrencies;
+    private final AtomicReference<CurrencyRateSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failedReloads = new AtomicLong();
+    private volatile long lastModified;
+
+    @Autowired
+    public CurrencyConversionService(ResourceLoader resourceLoader, Environment environment,
+                                     @Value("${app.payment.currency.rates-file:classpath:currency-rates.properties}") String ratesFile) {
+        this(resourceLoader, ratesFile, Binder.get(environment)
+                .bind("app.payment.supported-currencies", Bindable.listOf(String.class))
+                .orElse(List.of()));
+    }
+
+    CurrencyConversionService(ResourceLoader resourceLoader, String ratesFile, List<String> supportedCurrencies) {
+        this.ratesResource = resourceLoader.getResource(ratesFile);
+        this.supportedCurrencies = List.copyOf(supportedCurrencies);
+        this.lastModified = modifiedAt();
+        try {
+            snapshot.set(load());
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("No se pudieron cargar los tipos de cambio de " + ratesFile, e);
+        }
+    }
+
+    /**
+     * Obtiene la tabla de tipos de cambio vigente
+     *
+     * Para convertir un resultado completo debe tomarse una vez y reutilizarse en todas
+     * las filas.
+     *
+     * @return Tabla inmutable
+     */
+    public CurrencyRateSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Vuelve a leer el fichero de tipos de cambio si cambió desde la última carga
+     */
+    @Scheduled(fixedDelayString = "${app.payment.currency.reload-interval:60000}",
+            initialDelayString = "${app.payment.currency.reload-interval:60000}")
+    public void reloadIfModified() {
+        long modified = modifiedAt();
+        if (modified == lastModified) {
+            return;
+        }
+        lastModified = modified;
+        reload();
+    }
+
+    /**
+     * Carga el fichero de tipos de cambio y reemplaza la tabla vigente
+     *
+     * @return true si se cargó una tabla nueva, false si el fichero es inválido
+     */
+    public boolean reload() {
+        try {
+            CurrencyRateSnapshot fresh = load();
+            CurrencyRateSnapshot previous = snapshot.getAndSet(fresh);
+            reloads.incrementAndGet();
+            log.info("Tipos de cambio recargados desde {}: {} (antes {})", fresh.getSource(), fresh.getRates(),
+                    previous != null ? previous.getRates() : null);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedReloads.incrementAndGet();
+            log.error("Tipos de cambio inválidos en {}, se conserva la tabla anterior: {}",
+                    ratesResource.getDescription(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Obtiene la tabla vigente y las métricas de recarga
+     *
+     * @return Mapa con moneda base, tasas, fecha de carga y recargas
+     */
+    public Map<String, Object> getMetrics() {
+        CurrencyRateSnapshot current = snapshot.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("baseCurrency", current.getBaseCurrency());
+        metrics.put("rates", current.getRates());
+        metrics.put("source", current.getSource());
+        metrics.put("loadedAt", current.getLoadedAt());
+        metrics.put("reloads", reloads.get());
+        metrics.put("failedReloads", failedReloads.get());
+        return metrics;
+    }
+
+    private CurrencyRateSnapshot load() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream input = ratesResource.getInputStream()) {
+            properties.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (!"base".equals(name)) {
+                rates.put(name, new BigDecimal(properties.getProperty(name).trim()));
+            }
+        }
+        CurrencyRateSnapshot loaded = CurrencyRateSnapshot.of(properties.getProperty("base"), rates,
+                ratesResource.getDescription());
+        for (String currency : supportedCurrencies) {
+            if (!loaded.supports(currency)) {
+                throw new IllegalArgumentException("Falta el tipo de cambio de la moneda soportada " + currency);
+            }
+        }
+        return loaded;
+    }
+
+    private long modifiedAt() {
+        try {
+            return ratesResource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.techtrend.payment.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tabla inmutable de tipos de cambio hacia una moneda base
+ *
+ * Cada tasa indica cuántas unidades de la moneda base vale una unidad de la moneda y se
+ * guarda como entero escalado por 10^RATE_SCALE. Convertir un monto en céntimos es una
+ * multiplicación y una división enteras; solo si el producto no cabe en un long se
+ * recurre a BigDecimal. Quien convierte un resultado completo toma una sola instancia y
+ * la usa para todas las filas, así el resultado es coherente aunque la tabla se
+ * reemplace a mitad de camino.
+ *
+ * @author TechTrend Team
+ */
+public final class CurrencyRateSnapshot {
+
+    static final int RATE_SCALE = 6;
+    private static final long RATE_UNIT = 1_000_000L;
+
+    private final String baseCurrency;
+    private final Map<String, Long> scaledRates;
+    private final Map<String, BigDecimal> rates;
+    private final String source;
+    private final LocalDateTime loadedAt;
+
+    private CurrencyRateSnapshot(String baseCurrency, Map<String, Long> scaledRates, Map<String, BigDecimal> rates,
+                                 String source, LocalDateTime loadedAt) {
+        this.baseCurrency = baseCurrency;
+        this.scaledRates = scaledRates;
+        this.rates = rates;
+        this.source = source;
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Crea una tabla validando las tasas
+     *
+     * @param baseCurrency Moneda a la que se normalizan los montos
+     * @param rates Unidades de la moneda base por unidad de cada moneda
+     * @param source Origen de las tasas, para métricas y logs
+     * @return Tabla inmutable; la moneda base siempre tiene tasa 1
+     * @throws IllegalArgumentException si falta la moneda base o alguna tasa no es positiva
+     */
+    public static CurrencyRateSnapshot of(String baseCurrency, Map<String, BigDecimal> rates, String source) {
+        if (baseCurrency == null || baseCurrency.isBlank()) {
+            throw new IllegalArgumentException("Falta la moneda base de los tipos de cambio");
+        }
+        String base = baseCurrency.trim().toUpperCase();
+        Map<String, Long> scaled = new HashMap<>();
+        Map<String, BigDecimal> normalized = new TreeMap<>();
+        for (Map.Entry<String, BigDecimal> entry : rates.entrySet()) {
+            String currency = entry.getKey().trim().toUpperCase();
+            BigDecimal rate = entry.getValue().setScale(RATE_SCALE, RoundingMode.HALF_UP);
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Tipo de cambio inválido para " + currency + ": " + entry.getValue());
+            }
+            scaled.put(currency, rate.unscaledValue().longValueExact());
+            normalized.put(currency, rate.stripTrailingZeros());
+        }
+        if (scaled.containsKey(base) && scaled.get(base) != RATE_UNIT) {
+            throw new IllegalArgumentException("La moneda base " + base + " debe tener tipo de cambio 1");
+        }
+        scaled.put(base, RATE_UNIT);
+        normalized.put(base, BigDecimal.ONE);
+        return new CurrencyRateSnapshot(base, Collections.unmodifiableMap(scaled),
+                Collections.unmodifiableMap(normalized), source, LocalDateTime.now());
+    }
+
+    /**
+     * Verifica si la tabla tiene tasa para una moneda
+     *
+     * @param currency Código de moneda
+     * @return true si se puede convertir a la moneda base
+     */
+    public boolean supports(String currency) {
+        return currency != null && scaledRates.containsKey(currency);
+    }
+
+    /**
+     * Convierte un monto en céntimos a céntimos de la moneda base, redondeando a la mitad
+     * hacia arriba
+     *
+     * @param currency Moneda del monto
+     * @param cents Monto en céntimos (puede ser negativo)
+     * @return Monto en céntimos de la moneda base
+     * @throws IllegalArgumentException si la moneda no tiene tasa
+     */
+    public long toBaseCents(String currency, long cents) {
+        Long rate = currency != null ? scaledRates.get(currency) : null;
+        if (rate == null) {
+            throw new IllegalArgumentException("Moneda sin tipo de cambio: " + currency);
+        }
+        if (rate == RATE_UNIT) {
+            return cents;
+        }
+
+        long high = Math.multiplyHigh(cents, rate);
+        long low = cents * rate;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            long half = RATE_UNIT / 2;
+            return low >= 0 ? (low + half) / RATE_UNIT : -((-low + half) / RATE_UNIT);
+        }
+        return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(rate, RATE_SCALE))
+                .setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Convierte un monto a la moneda base
+     *
+     * @param currency Moneda del monto
+     * @param amount Monto
+     * @return Monto en la moneda base con dos decimales
+     * @throws IllegalArgumentException si la moneda no tiene tasa
+     */
+    public BigDecimal toBase(String currency, BigDecimal amount) {
+        long cents = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return BigDecimal.valueOf(toBaseCents(currency, cents), 2);
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * @return Tasas por moneda, ordenadas por código
+     */
+    public Map<String, BigDecimal> getRates() {
+        return rates;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+}
@@ -0,0 +1,68 @@
+package com.techtrend.payment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para paginar pagos por (createdAt, id)
+ *
+ * Se codifica en Base64 URL-safe para que los clientes lo reenvíen tal cual. Al
+ * apuntar a la última fila entregada, las páginas siguientes no se desplazan aunque
+ * se inserten pagos nuevos, y cada página cuesta lo mismo sin importar su posición.
+ *
+ * @author TechTrend Team
+ */
+final class PaymentCursor {
+
+    /** Posición anterior a cualquier pago */
+    static final PaymentCursor START = new PaymentCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    PaymentCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    /**
+     * Codifica el cursor
+     *
+     * @return Cursor opaco
+     */
+    String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor recibido del cliente
+     *
+     * @param cursor Cursor opaco, o nulo para la primera página
+     * @return Posición del cursor
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    static PaymentCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new PaymentCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.payment.dto.PaymentPageResponse;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Servicio de exportación de pagos en NDJSON (un objeto JSON por línea)
+ * 
+ * Recorre los pagos con las mismas páginas por cursor que la API, cada una en su propia
+ * transacción corta, y escribe cada página antes de pedir la siguiente. La memoria usada
+ * depende del tamaño de lote y no del número de pagos exportados.
+ * 
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class PaymentExportService {
+
+    private static final byte NEWLINE = '\n';
+
+    private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public PaymentExportService(PaymentService paymentService,
+                                ObjectMapper objectMapper,
+                                @Value("${app.payment.pagination.export-batch-size:200}") int batchSize) {
+        this.paymentService = paymentService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Exporta pagos como NDJSON ordenados por (createdAt, id)
+     * 
+     * @param status Estado a exportar, o nulo para todos
+     * @param userId Usuario a exportar, o nulo para todos
+     * @param output Flujo de salida; no se cierra al terminar
+     * @return Número de pagos exportados
+     * @throws IOException si falla la escritura (por ejemplo, el cliente cerró la conexión)
+     * @throws IllegalArgumentException si se filtra por estado y usuario a la vez
+     */
+    public long exportPayments(Payment.PaymentStatus status, Long userId, OutputStream output) throws IOException {
+        if (status != null && userId != null) {
+            throw new IllegalArgumentException("La exportación filtra por estado o por usuario, no ambos");
+        }
+
+        long exported = 0;
+        String cursor = null;
+        do {
+            PaymentPageResponse page = nextPage(status, userId, cursor);
+            for (PaymentResponse payment : page.getItems()) {
+                output.write(objectMapper.writeValueAsBytes(payment));
+                output.write(NEWLINE);
+            }
+            output.flush();
+            exported += page.getItems().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        log.info("Exportación de pagos completada: {} pagos (estado {}, usuario {})", exported, status, userId);
+        return exported;
+    }
+
+    private PaymentPageResponse nextPage(Payment.PaymentStatus status, Long userId, String cursor) {
+        if (status != null) {
+            return paymentService.getPaymentsByStatus(status, cursor, batchSize);
+        }
+        if (userId != null) {
+            return paymentService.getPaymentsByUser(userId, cursor, batchSize);
+        }
+        return paymentService.getAllPayments(cursor, batchSize);
+    }
+}
@@ -0,0 +1,274 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.common.exception.IdempotencyKeyConflictException;
+import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.payment.dto.PaymentRequest;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.model.PaymentIdempotencyKey;
+import com.techtrend.payment.repository.PaymentIdempotencyKeyRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio de idempotencia para el procesamiento de pagos
+ * 
+ * Una solicitud con cabecera Idempotency-Key crea como máximo un pago por usuario y clave:
+ * - Los reintentos reciben el pago original sin volver a llamar a la pasarela.
+ * - Los duplicados concurrentes en esta instancia esperan a la primera solicitud en vuelo.
+ * - Entre instancias, la restricción única de payment_idempotency_keys decide el ganador
+ *   y el perdedor responde con el pago ya registrado.
+ * 
+ * Las claves confirmadas se guardan además en una caché en memoria de TTL corto para
+ * responder los reintentos sin consultar la base de datos.
+ * 
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class PaymentIdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final PaymentService paymentService;
+    private final PaymentIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long cacheTtlNanos;
+    private final int cacheMaxEntries;
+    private final long retentionHours;
+
+    private final ConcurrentHashMap<String, CachedKey> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<PaymentResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public PaymentIdempotencyService(PaymentService paymentService,
+                                     PaymentIdempotencyKeyRepository idempotencyKeyRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${app.payment.idempotency.cache-ttl:600000}") long cacheTtlMs,
+                                     @Value("${app.payment.idempotency.cache-max-entries:10000}") int cacheMaxEntries,
+                                     @Value("${app.payment.idempotency.retention-hours:24}") long retentionHours) {
+        this.paymentService = paymentService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     * Procesa un pago de forma idempotente
+     * 
+     * @param request Solicitud de pago
+     * @param userId ID del usuario
+     * @param idempotencyKey Valor de la cabecera Idempotency-Key
+     * @return Pago creado o, si la clave ya se usó, el pago original
+     * @throws IdempotencyKeyConflictException si la clave ya se usó con otra solicitud
+     */
+    public IdempotentPaymentResult submitPayment(PaymentRequest request, Long userId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidPaymentException("La clave de idempotencia debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+        }
+
+        String scopedKey = userId + ":" + idempotencyKey;
+        String requestHash = hashRequest(request);
+
+        // 1. Reintento reciente: responder desde la caché
+        Optional<PaymentResponse> replay = findCompleted(scopedKey, userId, idempotencyKey, requestHash);
+        if (replay.isPresent()) {
+            return new IdempotentPaymentResult(replay.get(), true);
+        }
+
+        // 2. Duplicado concurrente en esta instancia: esperar a la solicitud en vuelo
+        CompletableFuture<PaymentResponse> ownFuture = new CompletableFuture<>();
+        CompletableFuture<PaymentResponse> existing = inFlight.putIfAbsent(scopedKey, ownFuture);
+        if (existing != null) {
+            log.info("Solicitud duplicada en vuelo para la clave {} del usuario {}, esperando resultado",
+                    idempotencyKey, userId);
+            PaymentResponse original = await(existing);
+            CachedKey cached = cache.get(scopedKey);
+            if (cached != null && !cached.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyConflictException(idempotencyKey, userId);
+            }
+            return new IdempotentPaymentResult(original, true);
+        }
+
+        try {
+            // La clave pudo confirmarse justo antes de tomar el lugar en vuelo
+            replay = findCompleted(scopedKey, userId, idempotencyKey, requestHash);
+            if (replay.isPresent()) {
+                ownFuture.complete(replay.get());
+                return new IdempotentPaymentResult(replay.get(), true);
+            }
+
+            PaymentResponse response = createPayment(request, userId, idempotencyKey, requestHash);
+            cachePut(scopedKey, new CachedKey(response.getId(), requestHash, System.nanoTime() + cacheTtlNanos));
+            ownFuture.complete(response);
+            return new IdempotentPaymentResult(response, false);
+        } catch (RuntimeException e) {
+            // Otra instancia pudo registrar la misma clave: responder con su pago
+            Optional<PaymentResponse> winner = e instanceof IdempotencyKeyConflictException
+                    ? Optional.empty()
+                    : findCompleted(scopedKey, userId, idempotencyKey, requestHash);
+            if (winner.isPresent()) {
+                log.info("Clave {} del usuario {} registrada por otra solicitud concurrente", idempotencyKey, userId);
+                ownFuture.complete(winner.get());
+                return new IdempotentPaymentResult(winner.get(), true);
+            }
+            ownFuture.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(scopedKey, ownFuture);
+        }
+    }
+
+    /**
+     * Elimina las claves de idempotencia vencidas
+     */
+    @Scheduled(fixedDelayString = "${app.payment.idempotency.purge-interval:3600000}")
+    @Transactional
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        long now = System.nanoTime();
+        cache.values().removeIf(cached -> now - cached.expiresAtNanos > 0);
+        if (deleted > 0) {
+            log.info("Claves de idempotencia vencidas eliminadas: {}", deleted);
+        }
+    }
+
+    /**
+     * Crea el pago y registra la clave en una misma transacción
+     */
+    private PaymentResponse createPayment(PaymentRequest request, Long userId, String idempotencyKey, String requestHash) {
+        return transactionTemplate.execute(status -> {
+            PaymentResponse response = paymentService.submitPayment(request, userId);
+
+            PaymentIdempotencyKey record = new PaymentIdempotencyKey();
+            record.setIdempotencyKey(idempotencyKey);
+            record.setUserId(userId);
+            record.setRequestHash(requestHash);
+            record.setPaymentId(response.getId());
+            record.setExpiresAt(LocalDateTime.now().plusHours(retentionHours));
+            try {
+                idempotencyKeyRepository.saveAndFlush(record);
+            } catch (DataIntegrityViolationException e) {
+                // Otra instancia confirmó la misma clave: se revierte este pago
+                throw new InvalidPaymentException("Clave de idempotencia registrada por otra solicitud", e);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Busca el pago asociado a una clave ya confirmada, primero en caché y luego en base de datos
+     */
+    private Optional<PaymentResponse> findCompleted(String scopedKey, Long userId, String idempotencyKey, String requestHash) {
+        CachedKey cached = cache.get(scopedKey);
+        if (cached != null && System.nanoTime() - cached.expiresAtNanos < 0) {
+            verifySameRequest(cached.requestHash, requestHash, idempotencyKey, userId);
+            log.info("Reintento con clave {} del usuario {} respondido desde caché", idempotencyKey, userId);
+            return Optional.of(paymentService.getPaymentById(cached.paymentId));
+        }
+
+        Optional<PaymentIdempotencyKey> record = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+        if (record.isEmpty() || record.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        verifySameRequest(record.get().getRequestHash(), requestHash, idempotencyKey, userId);
+        cachePut(scopedKey, new CachedKey(record.get().getPaymentId(), record.get().getRequestHash(),
+                System.nanoTime() + cacheTtlNanos));
+        log.info("Reintento con clave {} del usuario {} respondido con el pago {}",
+                idempotencyKey, userId, record.get().getPaymentId());
+        return Optional.of(paymentService.getPaymentById(record.get().getPaymentId()));
+    }
+
+    private void verifySameRequest(String storedHash, String requestHash, String idempotencyKey, Long userId) {
+        if (!storedHash.equals(requestHash)) {
+            log.warn("Clave de idempotencia {} del usuario {} reutilizada con otra solicitud", idempotencyKey, userId);
+            throw new IdempotencyKeyConflictException(idempotencyKey, userId);
+        }
+    }
+
+    private void cachePut(String scopedKey, CachedKey cachedKey) {
+        if (cache.size() >= cacheMaxEntries) {
+            Iterator<String> keys = cache.keySet().iterator();
+            int toEvict = Math.max(1, cacheMaxEntries / 10);
+            while (keys.hasNext() && toEvict-- > 0) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        cache.put(scopedKey, cachedKey);
+    }
+
+    private static PaymentResponse await(CompletableFuture<PaymentResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Calcula la huella de los campos que definen una solicitud de pago
+     * 
+     * @param request Solicitud de pago
+     * @return Hash SHA-256 en hexadecimal
+     */
+    static String hashRequest(PaymentRequest request) {
+        String canonical = String.join("|",
+                String.valueOf(request.getOrderId()),
+                request.getAmount() != null ? request.getAmount().stripTrailingZeros().toPlainString() : "",
+                String.valueOf(request.getCurrency()),
+                String.valueOf(request.getPaymentMethod()),
+                String.valueOf(request.getDescription()),
+                String.valueOf(request.getCallbackUrl()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Resultado de un procesamiento idempotente
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class IdempotentPaymentResult {
+        private final PaymentResponse response;
+        private final boolean replayed;
+    }
+
+    private static final class CachedKey {
+        private final Long paymentId;
+        private final String requestHash;
+        private final long expiresAtNanos;
+
+        private CachedKey(Long paymentId, String requestHash, long expiresAtNanos) {
+            this.paymentId = paymentId;
+            this.requestHash = requestHash;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.common.util.DataPaths;
+import com.techtrend.payment.dto.PaymentLedgerEntryResponse;
+import com.techtrend.payment.repository.PaymentLedgerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio del ledger de pagos particionado por mes
+ *
+ * - Crea por adelantado las particiones de los próximos meses, de modo que las
+ *   inserciones no tengan que crearlas al cambiar de mes.
+ * - Archiva los meses que superan la retención: vuelca la partición a un fichero NDJSON
+ *   y después la elimina entera. Si el volcado falla, la partición se conserva.
+ * - El fichero archivado es la única copia de ese historial: archive-dir es obligatorio
+ *   cuando hay retención, no puede estar dentro de target/ salvo en el perfil test, y el
+ *   fichero se sincroniza con el disco antes de eliminar la partición.
+ * - Resuelve las consultas por rango leyendo solo las particiones de los meses del rango.
+ *
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class PaymentLedgerService {
+
+    private final PaymentLedgerRepository ledgerRepository;
+    private final ObjectMapper objectMapper;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final int maxEntries;
+
+    private final AtomicLong archivedPartitions = new AtomicLong();
+    private final AtomicLong archivedEntries = new AtomicLong();
+    private final AtomicLong failedArchives = new AtomicLong();
+    private volatile LocalDateTime lastMaintenanceAt;
+
+    @Autowired
+    public PaymentLedgerService(PaymentLedgerRepository ledgerRepository,
+                                ObjectMapper objectMapper,
+                                @Value("${app.payment.ledger.months-ahead:2}") int monthsAhead,
+                                @Value("${app.payment.ledger.retention-months:24}") int retentionMonths,
+                                @Value("${app.payment.ledger.archive-dir:}") String archiveDir,
+                                @Value("${app.payment.ledger.max-entries:1000}") int maxEntries,
+                                Environment environment) {
+        this(ledgerRepository, objectMapper, monthsAhead, retentionMonths,
+                retentionMonths > 0
+                        ? DataPaths.requirePersistent("app.payment.ledger.archive-dir", archiveDir,
+                                DataPaths.buildDirAllowed(environment, "test"), "el ledger archivado")
+                        : null,
+                maxEntries);
+    }
+
+    PaymentLedgerService(PaymentLedgerRepository ledgerRepository, ObjectMapper objectMapper, int monthsAhead,
+                         int retentionMonths, Path archiveDir, int maxEntries) {
+        this.ledgerRepository = ledgerRepository;
+        this.objectMapper = objectMapper;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Crea las particiones de los próximos meses y archiva las vencidas
+     */
+    @Scheduled(fixedDelayString = "${app.payment.ledger.maintenance-interval:3600000}")
+    public void maintainPartitions() {
+        maintainPartitions(YearMonth.now());
+    }
+
+    /**
+     * Crea las particiones desde el mes actual hasta monthsAhead meses después y archiva
+     * las anteriores a la retención
+     *
+     * @param currentMonth Mes actual
+     * @return Meses archivados
+     */
+    List<YearMonth> maintainPartitions(YearMonth currentMonth) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            ledgerRepository.createPartition(currentMonth.plusMonths(i));
+        }
+
+        List<YearMonth> archived = new ArrayList<>();
+        if (retentionMonths > 0) {
+            LocalDateTime cutoff = currentMonth.minusMonths(retentionMonths).atDay(1).atStartOfDay();
+            for (YearMonth month : ledgerRepository.findPartitions(null, cutoff)) {
+                if (archive(month)) {
+                    archived.add(month);
+                }
+            }
+        }
+        lastMaintenanceAt = LocalDateTime.now();
+        return archived;
+    }
+
+    /**
+     * Vuelca una partición a archiveDir/payment_ledger_pYYYYMM.ndjson y la elimina
+     *
+     * El fichero se escribe con otro nombre, se sincroniza con el disco y se renombra al
+     * terminar, así que un fichero con el nombre final siempre está completo y persistido
+     * antes de eliminar la partición.
+     *
+     * @param month Mes de la partición
+     * @return true si se archivó
+     */
+    boolean archive(YearMonth month) {
+        String name = PaymentLedgerRepository.partitionName(month);
+        Path target = archiveDir.resolve(name + ".ndjson");
+        Path partial = archiveDir.resolve(name + ".ndjson.partial");
+        long[] entries = {0};
+        try {
+            Files.createDirectories(archiveDir);
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+                ledgerRepository.forEachInPartition(month, entry -> {
+                    try {
+                        writer.write(objectMapper.writeValueAsString(entry));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    entries[0]++;
+                });
+                writer.flush();
+                channel.force(true);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(archiveDir);
+        } catch (IOException | UncheckedIOException e) {
+            deleteQuietly(partial);
+            failedArchives.incrementAndGet();
+            log.warn("No se pudo archivar la partición {} del ledger, se conserva: {}", month, e.getMessage());
+            return false;
+        }
+
+        ledgerRepository.dropPartition(month);
+        archivedPartitions.incrementAndGet();
+        archivedEntries.addAndGet(entries[0]);
+        log.info("Partición {} del ledger archivada en {}: {} transiciones", month, target, entries[0]);
+        return true;
+    }
+
+    /**
+     * Obtiene las transiciones registradas en un rango
+     *
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @param limit Transiciones máximas
+     * @return Transiciones ordenadas por fecha de registro
+     * @throws IllegalArgumentException si el rango o el límite no son válidos
+     */
+    public List<PaymentLedgerEntryResponse> getEntries(LocalDateTime from, LocalDateTime to, int limit) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("El inicio del rango debe ser anterior al fin");
+        }
+        return ledgerRepository.findEntries(from, to, null, validateLimit(limit));
+    }
+
+    /**
+     * Obtiene el historial de transiciones de un pago en todas las particiones vigentes
+     *
+     * @param paymentId ID del pago
+     * @return Transiciones ordenadas por fecha de registro
+     */
+    public List<PaymentLedgerEntryResponse> getPaymentHistory(Long paymentId) {
+        return ledgerRepository.findEntries(null, null, paymentId, maxEntries);
+    }
+
+    /**
+     * Devuelve los meses cuyas particiones se leen para un rango
+     *
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @return Meses en orden
+     */
+    public List<YearMonth> getPartitionsFor(LocalDateTime from, LocalDateTime to) {
+        return ledgerRepository.findPartitions(from, to);
+    }
+
+    /**
+     * Obtiene métricas del ledger
+     *
+     * @return Mapa con particiones, transiciones registradas y archivados
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("nativePartitioning", ledgerRepository.isNativePartitioning());
+        metrics.put("partitions", ledgerRepository.findPartitions(null, null).stream().map(YearMonth::toString).toList());
+        metrics.put("appended", ledgerRepository.getAppendedCount());
+        metrics.put("partitionsCreated", ledgerRepository.getPartitionsCreatedCount());
+        metrics.put("archivedPartitions", archivedPartitions.get());
+        metrics.put("archivedEntries", archivedEntries.get());
+        metrics.put("failedArchives", failedArchives.get());
+        metrics.put("retentionMonths", retentionMonths);
+        metrics.put("lastMaintenanceAt", lastMaintenanceAt);
+        return metrics;
+    }
+
+    /**
+     * Sincroniza el directorio para que el renombrado sobreviva a una caída
+     *
+     * No todos los sistemas permiten abrir un directorio; el contenido del fichero ya está
+     * sincronizado, así que en ese caso basta con registrarlo.
+     */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("No se pudo sincronizar el directorio {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar el fichero parcial {}: {}", path, e.getMessage());
+        }
+    }
+
+    private int validateLimit(int limit) {
+        if (limit < 1 || limit > maxEntries) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + maxEntries);
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,230 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planificador de reintentos de pagos
+ *
+ * Revisa periódicamente dos tipos de pagos que de otro modo nadie vuelve a procesar:
+ * los fallidos por errores transitorios de la pasarela (retryable) y los que quedaron
+ * en PENDING sin cambios durante más de stuck-after ms, por ejemplo tras una caída entre
+ * el registro y el guardado del estado final, o porque la cola de workers estaba llena.
+ *
+ * Cada ciclo lee lotes acotados por las consultas indexadas del repositorio, nunca más
+ * de lo que cabe en la cola del AsyncPaymentProcessor. Un fallo reintentable recién
+ * detectado primero recibe su fecha de reintento (backoff exponencial con jitter según
+ * el número de intentos); cuando vence, el pago vuelve a PENDING, se incrementa su
+ * contador de intentos y se encola tras el commit. Al agotar max-attempts el pago pasa
+ * a DEAD_LETTER y queda a la espera de revisión manual.
+ *
+ * Con varias instancias, dos planificadores pueden leer el mismo lote. El commit del lote
+ * es el reclamo: la versión del pago hace que solo una transacción lo guarde, y la otra
+ * se descarta entera sin encolar nada. El cobro repetido que aún pudiera darse, por
+ * ejemplo tras un timeout en el que la pasarela sí cobró, lo cubre la idempotencia de
+ * PaymentGateway.charge sobre el transactionId.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class PaymentRetryScheduler {
+
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long stuckAfterMs;
+
+    private final AtomicLong retriedFailed = new AtomicLong();
+    private final AtomicLong recoveredPending = new AtomicLong();
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong claimConflicts = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+
+    public PaymentRetryScheduler(PaymentRepository paymentRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 AsyncPaymentProcessor asyncPaymentProcessor,
+                                 @Value("${app.payment.retry.enabled:true}") boolean enabled,
+                                 @Value("${app.payment.retry.batch-size:200}") int batchSize,
+                                 @Value("${app.payment.retry.max-batches-per-run:10}") int maxBatchesPerRun,
+                                 @Value("${app.payment.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${app.payment.retry.base-delay:5000}") long baseDelayMs,
+                                 @Value("${app.payment.retry.max-delay:600000}") long maxDelayMs,
+                                 @Value("${app.payment.retry.stuck-after:300000}") long stuckAfterMs) {
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.asyncPaymentProcessor = asyncPaymentProcessor;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.stuckAfterMs = stuckAfterMs;
+    }
+
+    /**
+     * Procesa los pagos con reintento vencido en lotes, hasta vaciarlos o llenar la cola
+     */
+    @Scheduled(fixedDelayString = "${app.payment.retry.interval:10000}",
+            initialDelayString = "${app.payment.retry.interval:10000}")
+    public void retryDuePayments() {
+        if (!enabled) {
+            return;
+        }
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int limit = Math.min(batchSize, asyncPaymentProcessor.getRemainingCapacity());
+            if (limit <= 0) {
+                log.debug("Cola de workers llena, se posponen los reintentos de pagos");
+                break;
+            }
+            if (runBatch(limit) < limit) {
+                break;
+            }
+        }
+        lastRunAt = LocalDateTime.now();
+    }
+
+    /**
+     * Revisa un lote de pagos en una transacción corta y encola los reintentos tras el commit
+     *
+     * Si otra instancia modificó alguno de los pagos del lote, el commit falla por la
+     * versión y no se encola ninguno; se vuelven a leer en el siguiente ciclo.
+     *
+     * @param limit Pagos máximos a leer
+     * @return Pagos leídos; menos que limit indica que no quedan más vencidos
+     */
+    int runBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> toSubmit = new ArrayList<>();
+
+        Integer read;
+        try {
+            read = transactionTemplate.execute(status -> {
+                List<Payment> candidates = new ArrayList<>(
+                        paymentRepository.findRetryablePaymentsDue(now, PageRequest.of(0, limit)));
+                if (candidates.size() < limit) {
+                    candidates.addAll(paymentRepository.findStuckPendingPayments(
+                            now.minus(stuckAfterMs, ChronoUnit.MILLIS), now,
+                            PageRequest.of(0, limit - candidates.size())));
+                }
+                for (Payment payment : candidates) {
+                    if (reschedule(payment, now)) {
+                        toSubmit.add(payment.getId());
+                    }
+                    paymentRepository.save(payment);
+                }
+                return candidates.size();
+            });
+        } catch (OptimisticLockingFailureException e) {
+            claimConflicts.incrementAndGet();
+            log.info("Otra instancia reclamó pagos del lote de reintentos, se releerán en el siguiente ciclo");
+            return 0;
+        }
+
+        for (Long paymentId : toSubmit) {
+            asyncPaymentProcessor.submit(paymentId);
+        }
+        if (!toSubmit.isEmpty()) {
+            log.info("Reintentos de pagos encolados: {}", toSubmit.size());
+        }
+        return read != null ? read : 0;
+    }
+
+    /**
+     * Decide qué hacer con un pago candidato: programar su reintento, reintentarlo o
+     * abandonarlo
+     *
+     * @param payment Pago fallido reintentable o pendiente atascado
+     * @param now Fecha del ciclo
+     * @return true si el pago volvió a PENDING y debe encolarse
+     */
+    boolean reschedule(Payment payment, LocalDateTime now) {
+        int attempts = payment.getRetryAttempts();
+        if (attempts >= maxAttempts) {
+            String reason = payment.isFailed()
+                    ? "Reintentos agotados: " + payment.getFailureReason()
+                    : "Reintentos agotados: el pago no terminó de procesarse";
+            log.warn("Pago {} pasa a dead-letter tras {} reintentos", payment.getId(), attempts);
+            payment.markAsDeadLetter(reason);
+            deadLettered.incrementAndGet();
+            return false;
+        }
+
+        if (payment.isFailed() && payment.getNextRetryAt() == null) {
+            LocalDateTime failedAt = payment.getProcessedAt() != null ? payment.getProcessedAt() : now;
+            LocalDateTime retryAt = failedAt.plus(backoffMillis(attempts + 1), ChronoUnit.MILLIS);
+            if (retryAt.isAfter(now)) {
+                payment.scheduleRetry(retryAt);
+                scheduled.incrementAndGet();
+                return false;
+            }
+        }
+
+        if (payment.isFailed()) {
+            retriedFailed.incrementAndGet();
+        } else {
+            recoveredPending.incrementAndGet();
+        }
+        // Mientras siga pendiente no se vuelve a encolar antes del siguiente backoff
+        payment.markForRetry(now.plus(backoffMillis(attempts + 2), ChronoUnit.MILLIS));
+        return true;
+    }
+
+    /**
+     * Calcula la espera antes de un intento: base * 2^(intento - 1), acotada por max-delay,
+     * de la que se sortea la mitad superior para que los pagos que fallaron juntos no se
+     * reintenten todos en el mismo ciclo
+     *
+     * @param attempt Número de intento, desde 1
+     * @return Espera en milisegundos
+     */
+    long backoffMillis(int attempt) {
+        int exponent = Math.min(Math.max(attempt - 1, 0), 30);
+        long delay = Math.min(maxDelayMs, baseDelayMs << exponent);
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * Obtiene las métricas del planificador de reintentos
+     *
+     * @return Mapa con contadores de reintentos, recuperaciones y dead-letters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("maxAttempts", maxAttempts);
+        metrics.put("retriedFailed", retriedFailed.get());
+        metrics.put("recoveredPending", recoveredPending.get());
+        metrics.put("scheduled", scheduled.get());
+        metrics.put("deadLettered", deadLettered.get());
+        metrics.put("claimConflicts", claimConflicts.get());
+        metrics.put("lastRunAt", lastRunAt);
+        return metrics;
+    }
+}
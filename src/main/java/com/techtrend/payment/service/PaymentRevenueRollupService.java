@@ -0,0 +1,431 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.dto.RevenueBucketResponse;
+import com.techtrend.payment.dto.RevenueTotalResponse;
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.model.PaymentRevenueRollup;
+import com.techtrend.payment.model.PaymentRevenueRollup.Granularity;
+import com.techtrend.payment.repository.PaymentRepository;
+import com.techtrend.payment.repository.PaymentRevenueRollupRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Servicio de ingresos agregados por intervalos de tiempo
+ * 
+ * Mantiene la tabla payment_revenue_rollups con el número y monto de pagos completados
+ * por minuto, hora y día, moneda y método de pago:
+ * - Cada PaymentStatusChangedEvent que entra o sale de COMPLETED suma o resta en un
+ *   buffer en memoria por minuto, que se vuelca periódicamente a los tres niveles con
+ *   UPDATE incrementales. Un pago que deja de estar completado se descuenta en el
+ *   intervalo en que ocurre la reversión.
+ * - Las consultas por rango combinan días completos, horas completas y los minutos de
+ *   los extremos, de modo que un rango de meses lee unas decenas de filas.
+ * - El backfill reconstruye los intervalos de un rango de días desde la tabla payments.
+ * 
+ * Las consultas reflejan los pagos completados hasta el último volcado
+ * (app.payment.revenue.flush-interval). Los incrementos pendientes solo viven en memoria:
+ * si la instancia cae sin apagarse ordenadamente, se pierden hasta un intervalo de volcado
+ * de eventos (más los que no se pudieron volcar por error). Para acotar esa pérdida, cada
+ * día (app.payment.revenue.rebackfill-cron) se reconstruyen desde payments los últimos
+ * días cerrados (app.payment.revenue.rebackfill-days); los intervalos del día en curso
+ * pueden quedar por debajo del valor real hasta ese re-backfill o uno manual.
+ * Cada fila se agrega en su moneda y además se
+ * devuelve convertida a la moneda base, con una sola tabla de tipos de cambio por
+ * consulta.
+ * 
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class PaymentRevenueRollupService {
+
+    static final String UNSPECIFIED_METHOD = "NO_ESPECIFICADO";
+    private static final String DEFAULT_CURRENCY = "PEN";
+
+    private final PaymentRevenueRollupRepository rollupRepository;
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CurrencyConversionService currencyConversionService;
+    private final int maxSeriesBuckets;
+    private final int rebackfillDays;
+
+    /** Incrementos pendientes de volcar: minuto, moneda y método → [pagos, céntimos] */
+    private final ConcurrentHashMap<BucketKey, long[]> pending = new ConcurrentHashMap<>();
+
+    public PaymentRevenueRollupService(PaymentRevenueRollupRepository rollupRepository,
+                                       PaymentRepository paymentRepository,
+                                       TransactionTemplate transactionTemplate,
+                                       CurrencyConversionService currencyConversionService,
+                                       @Value("${app.payment.revenue.max-series-buckets:5000}") int maxSeriesBuckets,
+                                       @Value("${app.payment.revenue.rebackfill-days:2}") int rebackfillDays) {
+        this.rollupRepository = rollupRepository;
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.currencyConversionService = currencyConversionService;
+        this.maxSeriesBuckets = maxSeriesBuckets;
+        this.rebackfillDays = rebackfillDays;
+    }
+
+    /**
+     * Acumula los pagos que entran o salen del estado COMPLETED
+     * 
+     * @param event Evento del pago publicado tras el commit
+     */
+    @EventListener
+    public void onPaymentStatusChanged(PaymentStatusChangedEvent event) {
+        boolean wasCompleted = event.getPreviousStatus() == Payment.PaymentStatus.COMPLETED;
+        boolean isCompleted = event.getNewStatus() == Payment.PaymentStatus.COMPLETED;
+        if (wasCompleted == isCompleted) {
+            return;
+        }
+        record(event.getOccurredAt(), event.getCurrency(), event.getPaymentMethod(),
+                isCompleted ? 1 : -1, isCompleted ? event.getAmount() : event.getAmount().negate());
+    }
+
+    /**
+     * Acumula un incremento en el buffer del minuto correspondiente
+     */
+    void record(LocalDateTime occurredAt, String currency, String paymentMethod, long count, BigDecimal amount) {
+        BucketKey key = new BucketKey(Granularity.MINUTE.truncate(occurredAt), normalizeCurrency(currency),
+                normalizeMethod(paymentMethod));
+        pending.merge(key, new long[]{count, toCents(amount)}, PaymentRevenueRollupService::sum);
+    }
+
+    /**
+     * Vuelca los incrementos pendientes a los intervalos de minuto, hora y día
+     */
+    @Scheduled(fixedDelayString = "${app.payment.revenue.flush-interval:5000}")
+    public void flush() {
+        Map<BucketKey, long[]> drained = new HashMap<>();
+        Iterator<BucketKey> keys = pending.keySet().iterator();
+        while (keys.hasNext()) {
+            BucketKey key = keys.next();
+            long[] delta = pending.remove(key);
+            if (delta != null) {
+                drained.merge(key, delta, PaymentRevenueRollupService::sum);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Map<RollupKey, long[]> increments = expand(drained);
+        try {
+            transactionTemplate.executeWithoutResult(status -> increments.forEach(this::upsert));
+            log.debug("Ingresos agregados volcados: {} intervalos", increments.size());
+        } catch (RuntimeException e) {
+            // Otra instancia pudo crear el mismo intervalo: se reintenta en el próximo volcado
+            drained.forEach((key, delta) -> pending.merge(key, delta, PaymentRevenueRollupService::sum));
+            log.warn("No se pudieron volcar los ingresos agregados, se reintentará: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene los ingresos de un rango agrupados por moneda y método de pago
+     * 
+     * El rango se alinea a minutos y se resuelve con los intervalos más grandes que
+     * caben completos en él.
+     * 
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @return Totales por moneda y método de pago
+     */
+    public List<RevenueTotalResponse> getRevenue(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+        LocalDateTime start = Granularity.MINUTE.truncate(from);
+        LocalDateTime end = Granularity.MINUTE.ceil(to);
+
+        Map<String, RevenueTotalResponse> totals = new HashMap<>();
+        for (Segment segment : decompose(start, end)) {
+            for (Object[] row : rollupRepository.sumByCurrencyAndMethod(segment.granularity, segment.from, segment.to)) {
+                String currency = (String) row[0];
+                String method = (String) row[1];
+                RevenueTotalResponse total = totals.computeIfAbsent(currency + "|" + method,
+                        k -> new RevenueTotalResponse(currency, method, 0, BigDecimal.ZERO.setScale(2), null));
+                total.setCompletedCount(total.getCompletedCount() + ((Number) row[2]).longValue());
+                total.setCompletedAmount(total.getCompletedAmount().add((BigDecimal) row[3]));
+            }
+        }
+
+        CurrencyRateSnapshot rates = currencyConversionService.getSnapshot();
+        for (RevenueTotalResponse total : totals.values()) {
+            total.setNormalizedAmount(normalize(rates, total.getCurrency(), total.getCompletedAmount()));
+        }
+
+        return totals.values().stream()
+                .sorted(Comparator.comparing(RevenueTotalResponse::getCurrency)
+                        .thenComparing(RevenueTotalResponse::getPaymentMethod))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Obtiene la serie de intervalos de una granularidad dentro de un rango
+     * 
+     * @param from Inicio del rango (inclusive)
+     * @param to Fin del rango (exclusivo)
+     * @param granularity Granularidad de la serie
+     * @return Intervalos ordenados por inicio
+     * @throws IllegalArgumentException si el rango supera el número máximo de intervalos
+     */
+    public List<RevenueBucketResponse> getRevenueSeries(LocalDateTime from, LocalDateTime to, Granularity granularity) {
+        validateRange(from, to);
+        LocalDateTime start = granularity.truncate(from);
+        LocalDateTime end = granularity.ceil(to);
+        long buckets = Duration.between(start, end).dividedBy(Duration.between(start, granularity.next(start)));
+        if (buckets > maxSeriesBuckets) {
+            throw new IllegalArgumentException("El rango abarca " + buckets + " intervalos de " + granularity
+                    + ", el máximo es " + maxSeriesBuckets);
+        }
+
+        CurrencyRateSnapshot rates = currencyConversionService.getSnapshot();
+        return rollupRepository.findBuckets(granularity, start, end).stream()
+                .map(rollup -> new RevenueBucketResponse(rollup.getBucketStart(), granularity.name(),
+                        rollup.getCurrency(), rollup.getPaymentMethod(), rollup.getCompletedCount(),
+                        rollup.getCompletedAmount(),
+                        normalize(rates, rollup.getCurrency(), rollup.getCompletedAmount())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Obtiene la moneda a la que se normalizan los ingresos
+     * 
+     * @return Código de la moneda base vigente
+     */
+    public String getBaseCurrency() {
+        return currencyConversionService.getSnapshot().getBaseCurrency();
+    }
+
+    private static BigDecimal normalize(CurrencyRateSnapshot rates, String currency, BigDecimal amount) {
+        return rates.supports(currency) ? rates.toBase(currency, amount) : null;
+    }
+
+    /**
+     * Reconstruye los intervalos de un rango de días desde la tabla de pagos
+     * 
+     * Cada día se reemplaza en su propia transacción. Pensado para periodos cerrados:
+     * los pagos que se completen durante el backfill del día en curso pueden contarse
+     * dos veces o ninguna hasta un nuevo backfill.
+     * 
+     * @param from Primer día (se trunca al inicio del día)
+     * @param to Último día (exclusivo, se redondea al día siguiente si no es exacto)
+     * @return Resumen con días procesados, pagos leídos e intervalos escritos
+     */
+    public Map<String, Object> backfill(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+        LocalDateTime day = Granularity.DAY.truncate(from);
+        LocalDateTime end = Granularity.DAY.ceil(to);
+        log.info("Backfill de ingresos agregados desde {} hasta {}", day, end);
+
+        long days = 0;
+        long payments = 0;
+        long buckets = 0;
+        while (day.isBefore(end)) {
+            LocalDateTime dayStart = day;
+            LocalDateTime dayEnd = Granularity.DAY.next(day);
+            long[] result = transactionTemplate.execute(status -> backfillDay(dayStart, dayEnd));
+            payments += result[0];
+            buckets += result[1];
+            days++;
+            day = dayEnd;
+        }
+
+        log.info("Backfill de ingresos completado: {} días, {} pagos, {} intervalos", days, payments, buckets);
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("from", Granularity.DAY.truncate(from));
+        summary.put("to", end);
+        summary.put("days", days);
+        summary.put("payments", payments);
+        summary.put("buckets", buckets);
+        return summary;
+    }
+
+    /**
+     * Reconstruye los últimos días cerrados para recuperar incrementos perdidos
+     * 
+     * Los incrementos que se pierden con una caída de la instancia antes del volcado no
+     * tienen otra fuente que la tabla payments; este re-backfill periódico los repone.
+     */
+    @Scheduled(cron = "${app.payment.revenue.rebackfill-cron:0 15 0 * * *}")
+    public void rebackfillClosedDays() {
+        rebackfillClosedDays(LocalDateTime.now());
+    }
+
+    void rebackfillClosedDays(LocalDateTime now) {
+        if (rebackfillDays <= 0) {
+            return;
+        }
+        // Volcar antes lo pendiente: el backfill reemplaza esos días por completo
+        flush();
+        LocalDateTime today = Granularity.DAY.truncate(now);
+        try {
+            backfill(today.minusDays(rebackfillDays), today);
+        } catch (RuntimeException e) {
+            log.error("No se pudieron reconstruir los ingresos de los últimos {} días: {}", rebackfillDays,
+                    e.getMessage());
+        }
+    }
+
+    private long[] backfillDay(LocalDateTime dayStart, LocalDateTime dayEnd) {
+        rollupRepository.deleteBucketsInRange(dayStart, dayEnd);
+
+        Map<BucketKey, long[]> minutes = new HashMap<>();
+        long payments = 0;
+        try (Stream<Object[]> stream = paymentRepository.streamCompletedPaymentsInRange(dayStart, dayEnd)) {
+            Iterator<Object[]> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                BucketKey key = new BucketKey(Granularity.MINUTE.truncate((LocalDateTime) row[0]),
+                        normalizeCurrency((String) row[1]), normalizeMethod((String) row[2]));
+                minutes.merge(key, new long[]{1, toCents((BigDecimal) row[3])}, PaymentRevenueRollupService::sum);
+                payments++;
+            }
+        }
+
+        Map<RollupKey, long[]> rollups = expand(minutes);
+        rollups.forEach((key, values) -> rollupRepository.save(newRollup(key, values)));
+        return new long[]{payments, rollups.size()};
+    }
+
+    private void upsert(RollupKey key, long[] delta) {
+        if (delta[0] == 0 && delta[1] == 0) {
+            return;
+        }
+        int updated = rollupRepository.addToBucket(key.granularity, key.bucketStart, key.currency,
+                key.paymentMethod, delta[0], fromCents(delta[1]));
+        if (updated == 0) {
+            rollupRepository.save(newRollup(key, delta));
+        }
+    }
+
+    /**
+     * Propaga los incrementos por minuto a los intervalos de minuto, hora y día
+     */
+    private static Map<RollupKey, long[]> expand(Map<BucketKey, long[]> minutes) {
+        Map<RollupKey, long[]> rollups = new HashMap<>();
+        minutes.forEach((key, values) -> {
+            for (Granularity granularity : Granularity.values()) {
+                RollupKey rollupKey = new RollupKey(granularity, granularity.truncate(key.minute),
+                        key.currency, key.paymentMethod);
+                rollups.merge(rollupKey, values.clone(), PaymentRevenueRollupService::sum);
+            }
+        });
+        return rollups;
+    }
+
+    /**
+     * Divide un rango alineado a minutos en días, horas y minutos completos
+     */
+    static List<Segment> decompose(LocalDateTime start, LocalDateTime end) {
+        List<Segment> segments = new ArrayList<>();
+        LocalDateTime hourStart = Granularity.HOUR.ceil(start);
+        LocalDateTime hourEnd = Granularity.HOUR.truncate(end);
+        if (!hourStart.isBefore(hourEnd)) {
+            addSegment(segments, Granularity.MINUTE, start, end);
+            return segments;
+        }
+
+        addSegment(segments, Granularity.MINUTE, start, hourStart);
+        addSegment(segments, Granularity.MINUTE, hourEnd, end);
+
+        LocalDateTime dayStart = Granularity.DAY.ceil(hourStart);
+        LocalDateTime dayEnd = Granularity.DAY.truncate(hourEnd);
+        if (!dayStart.isBefore(dayEnd)) {
+            addSegment(segments, Granularity.HOUR, hourStart, hourEnd);
+            return segments;
+        }
+
+        addSegment(segments, Granularity.HOUR, hourStart, dayStart);
+        addSegment(segments, Granularity.HOUR, dayEnd, hourEnd);
+        addSegment(segments, Granularity.DAY, dayStart, dayEnd);
+        return segments;
+    }
+
+    private static void addSegment(List<Segment> segments, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            segments.add(new Segment(granularity, from, to));
+        }
+    }
+
+    private static void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("El inicio del rango debe ser anterior al fin");
+        }
+    }
+
+    private static PaymentRevenueRollup newRollup(RollupKey key, long[] values) {
+        return new PaymentRevenueRollup(null, key.granularity, key.bucketStart, key.currency, key.paymentMethod,
+                values[0], fromCents(values[1]));
+    }
+
+    private static String normalizeCurrency(String currency) {
+        return currency == null || currency.isBlank() ? DEFAULT_CURRENCY : currency;
+    }
+
+    private static String normalizeMethod(String paymentMethod) {
+        return paymentMethod == null || paymentMethod.isBlank() ? UNSPECIFIED_METHOD : paymentMethod;
+    }
+
+    private static long[] sum(long[] a, long[] b) {
+        return new long[]{a[0] + b[0], a[1] + b[1]};
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class BucketKey {
+        private final LocalDateTime minute;
+        private final String currency;
+        private final String paymentMethod;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class RollupKey {
+        private final Granularity granularity;
+        private final LocalDateTime bucketStart;
+        private final String currency;
+        private final String paymentMethod;
+    }
+
+    @AllArgsConstructor
+    static final class Segment {
+        final Granularity granularity;
+        final LocalDateTime from;
+        final LocalDateTime to;
+    }
+}
@@ -1,14 +1,20 @@
 package com.techtrend.payment.service;
 
-import com.techtrend.cart.service.CartService;
+import com.techtrend.payment.dto.PaymentPageResponse;
 import com.techtrend.payment.dto.PaymentRequest;
 import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.gateway.PaymentGateway;
+import com.techtrend.payment.gateway.PaymentGatewayResult;
 import com.techtrend.payment.model.Payment;
 import com.techtrend.payment.repository.PaymentRepository;
 import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.common.transaction.TransactionHooks;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,7 +22,6 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -33,11 +38,22 @@ import java.util.stream.Collectors;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
-    private final CartService cartService;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
+    private final PaymentGateway paymentGateway;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final PaymentStatisticsTracker paymentStatisticsTracker;
+    private final PaymentVelocityGuard paymentVelocityGuard;
+    private final CallbackUrlPolicy callbackUrlPolicy;
 
     @Value("${app.payment.max-amount:100000.00}")
     private BigDecimal maxAmount;
 
+    @Value("${app.payment.async.enabled:true}")
+    private boolean asyncEnabled;
+
+    @Value("${app.payment.pagination.max-page-size:200}")
+    private int maxPageSize;
+
     /**
      * Procesa un pago para un pedido
      * 
@@ -49,9 +65,69 @@ public class PaymentService {
         log.info("Procesando pago para pedido {}: monto {}", request.getOrderId(), request.getAmount());
 
         // Validar el pago
-        validatePayment(request);
+        validatePayment(request, userId);
+
+        // Crear y guardar el pago
+        Payment savedPayment = createPendingPayment(request, userId);
+
+        // Cobrar el pago en la pasarela
+        try {
+            PaymentGatewayResult result = paymentGateway.charge(savedPayment);
+            if (result.isApproved()) {
+                savedPayment.markAsCompleted();
+                log.info("Pago completado exitosamente: {}", savedPayment.getId());
+            } else {
+                savedPayment.markAsFailed(result.getDeclineReason());
+                log.warn("Pago rechazado por la pasarela: {}", savedPayment.getId());
+            }
+        } catch (PaymentGatewayException e) {
+            // Fallo transitorio o rechazo rápido del circuit breaker: el pago puede reintentarse
+            savedPayment.markAsFailed(e.isRejected()
+                    ? "Pasarela no disponible temporalmente"
+                    : "Error de comunicación con la pasarela", true);
+            log.warn("Pago falló por error de la pasarela {}: {}", savedPayment.getId(), e.getMessage());
+        }
+
+        Payment finalPayment = paymentRepository.save(savedPayment);
+        
+        return convertToResponse(finalPayment);
+    }
+
+    /**
+     * Registra un pago y delega su procesamiento al pool de workers
+     * 
+     * El pago se guarda en PENDING y se encola tras el commit; el cliente consulta el
+     * estado final en /payments/{id}/status o lo recibe en su URL de callback. Si el
+     * modo asíncrono está deshabilitado se procesa igual que processPayment.
+     * 
+     * @param request Solicitud de pago
+     * @param userId ID del usuario
+     * @return Pago registrado (PENDING en modo asíncrono)
+     */
+    public PaymentResponse submitPayment(PaymentRequest request, Long userId) {
+        if (!asyncEnabled) {
+            return processPayment(request, userId);
+        }
+
+        log.info("Registrando pago asíncrono para pedido {}: monto {}", request.getOrderId(), request.getAmount());
+
+        validatePayment(request, userId);
+
+        Payment savedPayment = createPendingPayment(request, userId);
+        Long paymentId = savedPayment.getId();
+        TransactionHooks.runAfterCommit(() -> asyncPaymentProcessor.submit(paymentId));
+
+        return convertToResponse(savedPayment);
+    }
 
-        // Crear el pago
+    /**
+     * Crea y guarda un pago en estado PENDING
+     * 
+     * @param request Solicitud de pago
+     * @param userId ID del usuario
+     * @return Pago guardado
+     */
+    private Payment createPendingPayment(PaymentRequest request, Long userId) {
         Payment payment = new Payment();
         payment.setOrderId(request.getOrderId());
         payment.setAmount(request.getAmount());
@@ -60,29 +136,23 @@ public class PaymentService {
         payment.setDescription(request.getDescription());
         payment.setCurrency(request.getCurrency() != null ? request.getCurrency() : "PEN");
         payment.setUserId(userId);
+        payment.setCallbackUrl(request.getCallbackUrl());
 
         // Generar ID de transacción único
-        String transactionId = generateTransactionId();
+        String transactionId = transactionIdGenerator.nextTransactionId();
         payment.setTransactionId(transactionId);
 
-        // Guardar el pago
-        Payment savedPayment = paymentRepository.save(payment);
-        log.info("Pago creado con ID: {}", savedPayment.getId());
-
-        // Simular procesamiento del pago
-        boolean paymentSuccess = simulatePaymentProcessing(savedPayment);
-        
-        if (paymentSuccess) {
-            savedPayment.markAsCompleted();
-            log.info("Pago completado exitosamente: {}", savedPayment.getId());
-        } else {
-            savedPayment.markAsFailed("Error en procesamiento de pago");
-            log.warn("Pago falló: {}", savedPayment.getId());
+        // Guardar el pago; la restricción única sobre order_id cubre la carrera entre dos solicitudes
+        Payment savedPayment;
+        try {
+            savedPayment = paymentRepository.save(payment);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Pago concurrente detectado para el pedido: {}", request.getOrderId());
+            throw new InvalidPaymentException("Ya existe un pago para este pedido", e);
         }
+        log.info("Pago creado con ID: {}", savedPayment.getId());
 
-        Payment finalPayment = paymentRepository.save(savedPayment);
-        
-        return convertToResponse(finalPayment);
+        return savedPayment;
     }
 
     /**
@@ -145,9 +215,15 @@ public class PaymentService {
                 payment.markAsFailed("Estado actualizado manualmente a fallido");
                 break;
             case PENDING:
+                // Reencolar manualmente reinicia los reintentos; el planificador lo retoma si sigue atascado
                 payment.setStatus(Payment.PaymentStatus.PENDING);
+                payment.setRetryAttempts(0);
+                payment.setNextRetryAt(null);
                 payment.setUpdatedAt(LocalDateTime.now());
                 break;
+            case DEAD_LETTER:
+                payment.markAsDeadLetter("Estado actualizado manualmente a dead-letter");
+                break;
         }
 
         Payment updatedPayment = paymentRepository.save(payment);
@@ -161,7 +237,9 @@ public class PaymentService {
      * 
      * @param userId ID del usuario
      * @return Lista de pagos del usuario
+     * @deprecated Carga todos los pagos en memoria; usar {@link #getPaymentsByUser(Long, String, int)}
      */
+    @Deprecated
     public List<PaymentResponse> getPaymentsByUser(Long userId) {
         log.info("Obteniendo pagos del usuario: {}", userId);
 
@@ -179,7 +257,9 @@ public class PaymentService {
      * 
      * @param status Estado del pago
      * @return Lista de pagos con el estado especificado
+     * @deprecated Carga todos los pagos en memoria; usar {@link #getPaymentsByStatus(Payment.PaymentStatus, String, int)}
      */
+    @Deprecated
     public List<PaymentResponse> getPaymentsByStatus(Payment.PaymentStatus status) {
         log.info("Obteniendo pagos con estado: {}", status);
 
@@ -192,6 +272,73 @@ public class PaymentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Obtiene una página de pagos de un usuario ordenada por (createdAt, id)
+     * 
+     * @param userId ID del usuario
+     * @param cursor Cursor de la página anterior, o nulo para la primera
+     * @param size Tamaño de la página (acotado por app.payment.pagination.max-page-size)
+     * @return Página de pagos y cursor de la siguiente
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaymentPageResponse getPaymentsByUser(Long userId, String cursor, int size) {
+        PaymentCursor position = PaymentCursor.decode(cursor);
+        int pageSize = pageSize(size);
+        log.info("Obteniendo página de pagos del usuario {}: tamaño {}", userId, pageSize);
+
+        List<Payment> payments = paymentRepository.findByUserIdAfter(userId, position.getCreatedAt(),
+                position.getId(), PageRequest.of(0, pageSize + 1));
+        return toPage(payments, pageSize);
+    }
+
+    /**
+     * Obtiene una página de pagos con un estado ordenada por (createdAt, id)
+     * 
+     * @param status Estado del pago
+     * @param cursor Cursor de la página anterior, o nulo para la primera
+     * @param size Tamaño de la página (acotado por app.payment.pagination.max-page-size)
+     * @return Página de pagos y cursor de la siguiente
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaymentPageResponse getPaymentsByStatus(Payment.PaymentStatus status, String cursor, int size) {
+        PaymentCursor position = PaymentCursor.decode(cursor);
+        int pageSize = pageSize(size);
+        log.info("Obteniendo página de pagos con estado {}: tamaño {}", status, pageSize);
+
+        List<Payment> payments = paymentRepository.findByStatusAfter(status, position.getCreatedAt(),
+                position.getId(), PageRequest.of(0, pageSize + 1));
+        return toPage(payments, pageSize);
+    }
+
+    /**
+     * Obtiene una página de pagos pendientes, los más antiguos primero
+     * 
+     * @param cursor Cursor de la página anterior, o nulo para la primera
+     * @param size Tamaño de la página (acotado por app.payment.pagination.max-page-size)
+     * @return Página de pagos y cursor de la siguiente
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaymentPageResponse getPendingPayments(String cursor, int size) {
+        return getPaymentsByStatus(Payment.PaymentStatus.PENDING, cursor, size);
+    }
+
+    /**
+     * Obtiene una página de todos los pagos ordenada por (createdAt, id)
+     * 
+     * @param cursor Cursor de la página anterior, o nulo para la primera
+     * @param size Tamaño de la página (acotado por app.payment.pagination.max-page-size)
+     * @return Página de pagos y cursor de la siguiente
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaymentPageResponse getAllPayments(String cursor, int size) {
+        PaymentCursor position = PaymentCursor.decode(cursor);
+        int pageSize = pageSize(size);
+
+        List<Payment> payments = paymentRepository.findAllAfter(position.getCreatedAt(), position.getId(),
+                PageRequest.of(0, pageSize + 1));
+        return toPage(payments, pageSize);
+    }
+
     /**
      * Obtiene pagos por pedido
      * 
@@ -214,7 +361,9 @@ public class PaymentService {
      * Obtiene pagos pendientes
      * 
      * @return Lista de pagos pendientes
+     * @deprecated Carga todos los pagos en memoria; usar {@link #getPendingPayments(String, int)}
      */
+    @Deprecated
     public List<PaymentResponse> getPendingPayments() {
         log.info("Obteniendo pagos pendientes");
 
@@ -230,31 +379,50 @@ public class PaymentService {
     /**
      * Obtiene estadísticas de pagos
      * 
+     * Se leen de los contadores materializados, sin consultar la tabla de pagos
+     * 
      * @return Mapa con estadísticas
      */
     public java.util.Map<String, Object> getPaymentStatistics() {
         log.info("Obteniendo estadísticas de pagos");
 
-        java.util.Map<String, Object> stats = new java.util.HashMap<>();
-        
-        stats.put("totalPayments", paymentRepository.count());
-        stats.put("pendingPayments", paymentRepository.countByStatus(Payment.PaymentStatus.PENDING));
-        stats.put("completedPayments", paymentRepository.countByStatus(Payment.PaymentStatus.COMPLETED));
-        stats.put("failedPayments", paymentRepository.countByStatus(Payment.PaymentStatus.FAILED));
-        stats.put("totalCompletedAmount", paymentRepository.getTotalCompletedPayments());
+        java.util.Map<String, Object> stats = paymentStatisticsTracker.getStatistics();
         
         log.info("Estadísticas de pagos obtenidas");
         
         return stats;
     }
 
+    /**
+     * Obtiene el estado del procesamiento asíncrono de pagos
+     * 
+     * @return Mapa con el modo y la ocupación del pool de workers
+     */
+    public java.util.Map<String, Object> getAsyncProcessingStatus() {
+        java.util.Map<String, Object> status = new java.util.HashMap<>();
+        status.put("asyncEnabled", asyncEnabled);
+        status.put("queueDepth", asyncPaymentProcessor.getQueueDepth());
+        status.put("activeWorkers", asyncPaymentProcessor.getActiveWorkers());
+        return status;
+    }
+
+    /**
+     * Obtiene el estado de la pasarela de pagos (circuit breaker y bulkhead)
+     * 
+     * @return Mapa con las métricas de la pasarela
+     */
+    public java.util.Map<String, Object> getGatewayStatus() {
+        return paymentGateway.getMetrics();
+    }
+
     /**
      * Valida un pago antes de procesarlo
      * 
      * @param request Solicitud de pago
-     * @throws InvalidPaymentException si el pago es inválido
+     * @param userId ID del usuario
+     * @throws InvalidPaymentException si el pago es inválido o supera un límite de velocidad
      */
-    private void validatePayment(PaymentRequest request) {
+    private void validatePayment(PaymentRequest request, Long userId) {
         // Validar monto
         if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             log.warn("Monto inválido: {}", request.getAmount());
@@ -273,37 +441,40 @@ public class PaymentService {
             throw new InvalidPaymentException("ID de pedido es obligatorio");
         }
 
+        // Validar el destino del callback: solo hosts de la lista permitida
+        if (request.getCallbackUrl() != null && !callbackUrlPolicy.isAllowed(request.getCallbackUrl())) {
+            log.warn("URL de callback no permitida para el pedido {}", request.getOrderId());
+            throw new InvalidPaymentException("La URL de callback no está permitida");
+        }
+
         // Verificar si ya existe un pago para este pedido
-        List<Payment> existingPayments = paymentRepository.findByOrderId(request.getOrderId());
-        if (!existingPayments.isEmpty()) {
+        if (paymentRepository.existsByOrderId(request.getOrderId())) {
             log.warn("Ya existe un pago para el pedido: {}", request.getOrderId());
             throw new InvalidPaymentException("Ya existe un pago para este pedido");
         }
+
+        // Límites de velocidad por usuario y método de pago; va al final para que las
+        // solicitudes inválidas o duplicadas no consuman el cupo
+        paymentVelocityGuard.check(userId, request.getPaymentMethod(), request.getAmount());
     }
 
-    /**
-     * Genera un ID de transacción único
-     * 
-     * @return ID de transacción
-     */
-    private String generateTransactionId() {
-        return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    private int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, maxPageSize));
     }
 
     /**
-     * Simula el procesamiento de un pago
-     * 
-     * @param payment Pago a procesar
-     * @return true si el pago fue exitoso, false en caso contrario
+     * Arma la página a partir de una consulta que pidió un pago de más para saber si hay siguiente
      */
-    private boolean simulatePaymentProcessing(Payment payment) {
-        // Simulación simple: 90% de éxito
-        double random = Math.random();
-        boolean success = random < 0.9;
-        
-        log.info("Simulando procesamiento de pago {}: {}", payment.getId(), success ? "EXITOSO" : "FALLIDO");
-        
-        return success;
+    private PaymentPageResponse toPage(List<Payment> payments, int pageSize) {
+        boolean hasMore = payments.size() > pageSize;
+        List<Payment> page = hasMore ? payments.subList(0, pageSize) : payments;
+        String nextCursor = null;
+        if (hasMore) {
+            Payment last = page.get(page.size() - 1);
+            nextCursor = new PaymentCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new PaymentPageResponse(page.stream().map(this::convertToResponse).collect(Collectors.toList()),
+                nextCursor);
     }
 
     /**
@@ -313,7 +484,7 @@ public class PaymentService {
      * @return PaymentResponse
      */
     private PaymentResponse convertToResponse(Payment payment) {
-        return new PaymentResponse(
+        PaymentResponse response = new PaymentResponse(
             payment.getId(),
             payment.getOrderId(),
             payment.getAmount(),
@@ -328,5 +499,7 @@ public class PaymentService {
             payment.getProcessedAt(),
             payment.getFailureReason()
         );
+        response.setRetryable(payment.isRetryable());
+        return response;
     }
 }
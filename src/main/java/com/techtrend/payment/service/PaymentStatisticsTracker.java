@@ -0,0 +1,229 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estadísticas de pagos materializadas en memoria
+ *
+ * Mantiene por estado y moneda el número de pagos y la suma de montos (en céntimos),
+ * actualizados con cada PaymentStatusChangedEvent que se publica tras el commit. Consultar
+ * las estadísticas no toca la base de datos: los totales de cada moneda se convierten a
+ * la moneda base con una sola tabla de tipos de cambio al leerlos, de modo que un cambio
+ * de tasas se refleja de inmediato sin recalcular nada.
+ *
+ * Una reconciliación periódica recalcula los contadores con una sola consulta agrupada y
+ * corrige la deriva por pagos modificados desde otras instancias o con SQL directo. Los
+ * pagos que cambian de estado mientras corre la consulta pueden quedar desfasados hasta
+ * la siguiente reconciliación.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class PaymentStatisticsTracker {
+
+    private static final String DEFAULT_CURRENCY = "PEN";
+
+    private final PaymentRepository paymentRepository;
+    private final CurrencyConversionService currencyConversionService;
+    private final Map<Payment.PaymentStatus, ConcurrentHashMap<String, StatusCounter>> counters =
+            new EnumMap<>(Payment.PaymentStatus.class);
+    private volatile LocalDateTime lastReconciledAt;
+
+    public PaymentStatisticsTracker(PaymentRepository paymentRepository,
+                                    CurrencyConversionService currencyConversionService) {
+        this.paymentRepository = paymentRepository;
+        this.currencyConversionService = currencyConversionService;
+        for (Payment.PaymentStatus status : Payment.PaymentStatus.values()) {
+            counters.put(status, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Aplica un alta, baja o transición de estado publicada tras el commit
+     *
+     * @param event Evento del pago
+     */
+    @EventListener
+    public void onPaymentStatusChanged(PaymentStatusChangedEvent event) {
+        if (event.getPreviousStatus() == null) {
+            onCreated(event.getNewStatus(), event.getCurrency(), event.getAmount());
+        } else if (event.getNewStatus() == null) {
+            onDeleted(event.getPreviousStatus(), event.getCurrency(), event.getAmount());
+        } else {
+            onTransition(event.getPreviousStatus(), event.getNewStatus(), event.getCurrency(), event.getAmount());
+        }
+    }
+
+    /**
+     * Registra un pago nuevo
+     *
+     * @param status Estado inicial
+     * @param currency Moneda del pago
+     * @param amount Monto del pago
+     */
+    public void onCreated(Payment.PaymentStatus status, String currency, BigDecimal amount) {
+        counter(status, currency).add(1, toCents(amount));
+    }
+
+    /**
+     * Registra un cambio de estado
+     *
+     * @param from Estado anterior
+     * @param to Estado nuevo
+     * @param currency Moneda del pago
+     * @param amount Monto del pago
+     */
+    public void onTransition(Payment.PaymentStatus from, Payment.PaymentStatus to, String currency,
+                             BigDecimal amount) {
+        long cents = toCents(amount);
+        counter(from, currency).add(-1, -cents);
+        counter(to, currency).add(1, cents);
+    }
+
+    /**
+     * Registra la eliminación de un pago
+     *
+     * @param status Estado que tenía el pago
+     * @param currency Moneda del pago
+     * @param amount Monto del pago
+     */
+    public void onDeleted(Payment.PaymentStatus status, String currency, BigDecimal amount) {
+        counter(status, currency).add(-1, -toCents(amount));
+    }
+
+    /**
+     * Obtiene las estadísticas actuales sin consultar la base de datos
+     *
+     * @return Mapa con totales por estado y monto completado, por moneda y en la moneda base
+     */
+    public Map<String, Object> getStatistics() {
+        long pending = count(Payment.PaymentStatus.PENDING);
+        long completed = count(Payment.PaymentStatus.COMPLETED);
+        long failed = count(Payment.PaymentStatus.FAILED);
+        long deadLetter = count(Payment.PaymentStatus.DEAD_LETTER);
+
+        // Una sola tabla de tipos de cambio para todas las monedas de la respuesta
+        CurrencyRateSnapshot rates = currencyConversionService.getSnapshot();
+        long completedBaseCents = 0;
+        Map<String, BigDecimal> completedByCurrency = new TreeMap<>();
+        List<String> unconverted = new ArrayList<>();
+        for (Map.Entry<String, StatusCounter> entry : counters.get(Payment.PaymentStatus.COMPLETED).entrySet()) {
+            long cents = entry.getValue().cents.get();
+            if (cents == 0 && entry.getValue().count.get() == 0) {
+                continue;
+            }
+            completedByCurrency.put(entry.getKey(), fromCents(cents));
+            if (rates.supports(entry.getKey())) {
+                completedBaseCents += rates.toBaseCents(entry.getKey(), cents);
+            } else {
+                unconverted.add(entry.getKey());
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalPayments", pending + completed + failed + deadLetter);
+        stats.put("pendingPayments", pending);
+        stats.put("completedPayments", completed);
+        stats.put("failedPayments", failed);
+        stats.put("deadLetterPayments", deadLetter);
+        stats.put("baseCurrency", rates.getBaseCurrency());
+        stats.put("totalCompletedAmount", fromCents(completedBaseCents));
+        stats.put("completedAmountByCurrency", completedByCurrency);
+        if (!unconverted.isEmpty()) {
+            stats.put("unconvertedCurrencies", unconverted);
+        }
+        stats.put("lastReconciledAt", lastReconciledAt);
+        return stats;
+    }
+
+    /**
+     * Recalcula los contadores desde la tabla de pagos
+     */
+    @Scheduled(fixedDelayString = "${app.payment.statistics.reconcile-interval:300000}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        Map<Payment.PaymentStatus, Map<String, long[]>> fresh = new EnumMap<>(Payment.PaymentStatus.class);
+        List<Object[]> rows = paymentRepository.summarizeByStatusAndCurrency();
+        for (Object[] row : rows) {
+            fresh.computeIfAbsent((Payment.PaymentStatus) row[0], k -> new HashMap<>())
+                    .put(currencyOf((String) row[1]),
+                            new long[]{((Number) row[2]).longValue(), toCents((BigDecimal) row[3])});
+        }
+
+        for (Payment.PaymentStatus status : Payment.PaymentStatus.values()) {
+            Map<String, long[]> byCurrency = fresh.getOrDefault(status, Map.of());
+            for (String currency : byCurrency.keySet()) {
+                counter(status, currency);
+            }
+            for (Map.Entry<String, StatusCounter> entry : counters.get(status).entrySet()) {
+                long[] values = byCurrency.getOrDefault(entry.getKey(), new long[]{0, 0});
+                StatusCounter counter = entry.getValue();
+                long countDrift = values[0] - counter.count.getAndSet(values[0]);
+                long centsDrift = values[1] - counter.cents.getAndSet(values[1]);
+                if (countDrift != 0 || centsDrift != 0) {
+                    log.warn("Estadísticas de pagos {} en {} corregidas: {} pagos, {} en montos",
+                            status, entry.getKey(), countDrift, fromCents(centsDrift));
+                }
+            }
+        }
+        lastReconciledAt = LocalDateTime.now();
+        log.debug("Estadísticas de pagos reconciliadas");
+    }
+
+    private StatusCounter counter(Payment.PaymentStatus status, String currency) {
+        return counters.get(status).computeIfAbsent(currencyOf(currency), k -> new StatusCounter());
+    }
+
+    private long count(Payment.PaymentStatus status) {
+        long total = 0;
+        for (StatusCounter counter : counters.get(status).values()) {
+            total += counter.count.get();
+        }
+        return total;
+    }
+
+    private static String currencyOf(String currency) {
+        return currency != null ? currency : DEFAULT_CURRENCY;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static final class StatusCounter {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong cents = new AtomicLong();
+
+        private void add(long countDelta, long centsDelta) {
+            count.addAndGet(countDelta);
+            cents.addAndGet(centsDelta);
+        }
+    }
+}
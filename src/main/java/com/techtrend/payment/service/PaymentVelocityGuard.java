@@ -0,0 +1,184 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.common.util.SlidingWindowCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Límites de velocidad de pagos para la detección de fraude
+ *
+ * Limita cuántos pagos y qué monto total puede registrar cada usuario y cada método de
+ * pago dentro de una ventana deslizante (por defecto 10 minutos), antes de llegar a la
+ * pasarela. Los totales se llevan en memoria con un SlidingWindowCounter por clave, en
+ * lugar de sumar la tabla payments en cada solicitud.
+ *
+ * Cada regla conserva como máximo max-keys claves y descarta la menos usada al llenarse;
+ * una clave descartada empieza de cero, así que el límite es aproximado cuando hay más
+ * claves activas que max-keys. Los contadores son por instancia y se pierden al reiniciar.
+ * Un pago aceptado cuenta aunque después falle o su transacción se revierta.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class PaymentVelocityGuard {
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final Rule userRule;
+    private final Rule paymentMethodRule;
+
+    public PaymentVelocityGuard(@Value("${app.payment.velocity.enabled:true}") boolean enabled,
+                                @Value("${app.payment.velocity.window:600000}") long windowMillis,
+                                @Value("${app.payment.velocity.buckets:10}") int buckets,
+                                @Value("${app.payment.velocity.max-keys:50000}") int maxKeys,
+                                @Value("${app.payment.velocity.user.max-payments:10}") long userMaxPayments,
+                                @Value("${app.payment.velocity.user.max-amount:0}") BigDecimal userMaxAmount,
+                                @Value("${app.payment.velocity.payment-method.max-payments:0}") long methodMaxPayments,
+                                @Value("${app.payment.velocity.payment-method.max-amount:0}") BigDecimal methodMaxAmount) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.userRule = new Rule("usuario", windowMillis, buckets, maxKeys, userMaxPayments, toCents(userMaxAmount));
+        this.paymentMethodRule = new Rule("método de pago", windowMillis, buckets, maxKeys, methodMaxPayments,
+                toCents(methodMaxAmount));
+    }
+
+    /**
+     * Verifica los límites de un pago y, si los cumple, lo registra en las ventanas
+     *
+     * @param userId ID del usuario
+     * @param paymentMethod Método de pago
+     * @param amount Monto del pago
+     * @throws InvalidPaymentException si el pago supera algún límite
+     */
+    public void check(Long userId, String paymentMethod, BigDecimal amount) {
+        check(userId, paymentMethod, amount, System.currentTimeMillis());
+    }
+
+    void check(Long userId, String paymentMethod, BigDecimal amount, long nowMillis) {
+        if (!enabled) {
+            return;
+        }
+
+        long cents = toCents(amount);
+        userRule.acquire(userId, cents, nowMillis);
+        try {
+            paymentMethodRule.acquire(paymentMethod, cents, nowMillis);
+        } catch (InvalidPaymentException e) {
+            // El pago no se registra: se deshace lo que ya sumó la regla de usuario
+            userRule.release(userId, cents, nowMillis);
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene las métricas de cada regla de velocidad
+     *
+     * @return Mapa con límites, verificaciones, rechazos y claves por regla
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("windowMinutes", TimeUnit.MILLISECONDS.toMinutes(windowMillis));
+        metrics.put("user", userRule.getMetrics());
+        metrics.put("paymentMethod", paymentMethodRule.getMetrics());
+        return metrics;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Límite de pagos y monto por clave dentro de la ventana
+     */
+    private static final class Rule {
+
+        private final String label;
+        private final long windowMillis;
+        private final int buckets;
+        private final int maxKeys;
+        private final long maxPayments;
+        private final long maxAmountCents;
+        private final LinkedHashMap<Object, SlidingWindowCounter> windows;
+        private long checks;
+        private long rejections;
+        private long evictions;
+
+        Rule(String label, long windowMillis, int buckets, int maxKeys, long maxPayments, long maxAmountCents) {
+            this.label = label;
+            this.windowMillis = windowMillis;
+            this.buckets = buckets;
+            this.maxKeys = maxKeys;
+            this.maxPayments = maxPayments;
+            this.maxAmountCents = maxAmountCents;
+            // Orden de acceso: la primera entrada es la clave usada hace más tiempo
+            this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, SlidingWindowCounter> eldest) {
+                    if (size() > Rule.this.maxKeys) {
+                        evictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        boolean isActive() {
+            return maxPayments > 0 || maxAmountCents > 0;
+        }
+
+        synchronized void acquire(Object key, long cents, long nowMillis) {
+            if (key == null || !isActive()) {
+                return;
+            }
+            checks++;
+            SlidingWindowCounter window = windows.computeIfAbsent(key,
+                    k -> new SlidingWindowCounter(windowMillis, buckets));
+
+            if (maxPayments > 0 && window.count(nowMillis) + 1 > maxPayments) {
+                reject(key, "máximo " + maxPayments + " pagos");
+            }
+            if (maxAmountCents > 0 && window.sum(nowMillis) + cents > maxAmountCents) {
+                reject(key, "monto máximo " + BigDecimal.valueOf(maxAmountCents, 2));
+            }
+            window.add(nowMillis, 1, cents);
+        }
+
+        synchronized void release(Object key, long cents, long nowMillis) {
+            SlidingWindowCounter window = key != null ? windows.get(key) : null;
+            if (window != null) {
+                window.add(nowMillis, -1, -cents);
+            }
+        }
+
+        private void reject(Object key, String limit) {
+            rejections++;
+            log.warn("Pago rechazado por límite de velocidad del {} {}: {}", label, key, limit);
+            throw new InvalidPaymentException("Límite de velocidad por " + label + " excedido: " + limit
+                    + " en " + TimeUnit.MILLISECONDS.toMinutes(windowMillis) + " minutos");
+        }
+
+        synchronized Map<String, Object> getMetrics() {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("active", isActive());
+            metrics.put("maxPayments", maxPayments);
+            metrics.put("maxAmount", BigDecimal.valueOf(maxAmountCents, 2));
+            metrics.put("checks", checks);
+            metrics.put("rejections", rejections);
+            metrics.put("trackedKeys", windows.size());
+            metrics.put("evictions", evictions);
+            return metrics;
+        }
+    }
+}
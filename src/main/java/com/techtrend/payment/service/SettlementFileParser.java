@@ -0,0 +1,313 @@
+package com.techtrend.payment.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lector de ficheros de liquidación de la pasarela en CSV
+ *
+ * Formato por línea: {@code transaction_id,amount,currency,status[,...]}, con una cabecera
+ * opcional en la primera línea y columnas adicionales que se ignoran. El estado es
+ * SETTLED o DECLINED y el monto usa punto decimal con hasta dos decimales.
+ *
+ * Mapea el fichero en memoria por ventanas y lee los campos directamente de los bytes:
+ * los IDs de transacción se decodifican a su long, los montos a céntimos y la moneda a un
+ * entero, sin crear objetos por línea. Solo las líneas inválidas y los IDs con formato
+ * anterior al generador actual se convierten a String.
+ *
+ * Una instancia lee un único fichero y no es thread-safe.
+ *
+ * @author TechTrend Team
+ */
+public final class SettlementFileParser {
+
+    public static final int SETTLED = 0;
+    public static final int DECLINED = 1;
+
+    private static final byte[] SETTLED_TOKEN = "SETTLED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DECLINED_TOKEN = "DECLINED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID_PREFIX = TransactionIdGenerator.PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int ID_LENGTH = ID_PREFIX.length + TransactionIdGenerator.ENCODED_LENGTH;
+    private static final int MAX_LEGACY_ID_LENGTH = 32;
+    private static final int MAX_AMOUNT_DIGITS = 15;
+    private static final long DEFAULT_WINDOW_BYTES = 1L << 30;
+
+    private final RecordHandler handler;
+    private final long windowBytes;
+    private long lineNumber;
+
+    // Posición de lectura dentro de la línea en curso
+    private MappedByteBuffer buffer;
+    private int cursor;
+    private int lineEnd;
+
+    public SettlementFileParser(RecordHandler handler) {
+        this(handler, DEFAULT_WINDOW_BYTES);
+    }
+
+    SettlementFileParser(RecordHandler handler, long windowBytes) {
+        this.handler = handler;
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * Recorre el fichero y notifica cada línea al receptor
+     *
+     * @param file Fichero de liquidación
+     * @return Líneas leídas, incluida la cabecera
+     * @throws IOException si el fichero no se puede leer o tiene una línea mayor que la ventana
+     */
+    public long parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(windowBytes, size - position);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = parseWindow((int) length, position + length == size);
+                if (consumed == 0) {
+                    throw new IOException("Línea " + (lineNumber + 1) + " mayor que la ventana de lectura");
+                }
+                position += consumed;
+            }
+        } finally {
+            buffer = null;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Procesa las líneas completas de la ventana mapeada
+     *
+     * @return Bytes consumidos; la línea incompleta del final se relee en la siguiente ventana
+     */
+    private int parseWindow(int limit, boolean lastWindow) {
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lastWindow && lineStart < limit) {
+            parseLine(lineStart, limit);
+            lineStart = limit;
+        }
+        return lineStart;
+    }
+
+    private void parseLine(int start, int end) {
+        lineNumber++;
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        // Cabecera: la primera línea empieza por el nombre de la columna en minúsculas
+        if (lineNumber == 1 && buffer.get(start) >= 'a' && buffer.get(start) <= 'z') {
+            return;
+        }
+
+        cursor = start;
+        lineEnd = end;
+        int idStart = cursor;
+        int idEnd = nextField();
+        long transactionId = decodeTransactionId(idStart, idEnd);
+        String legacyTransactionId = null;
+        if (transactionId < 0) {
+            if (idEnd == idStart || idEnd - idStart > MAX_LEGACY_ID_LENGTH) {
+                malformed(start, end);
+                return;
+            }
+            legacyTransactionId = text(idStart, idEnd);
+        }
+
+        int amountStart = cursor;
+        long amountCents = parseCents(amountStart, nextField());
+        int currencyStart = cursor;
+        int currency = parseCurrency(currencyStart, nextField());
+        int statusStart = cursor;
+        int status = parseStatus(statusStart, nextField());
+        if (amountCents == Long.MIN_VALUE || currency < 0 || status < 0) {
+            malformed(start, end);
+            return;
+        }
+        handler.onRecord(lineNumber, transactionId, legacyTransactionId, amountCents, currency, status);
+    }
+
+    /**
+     * Avanza el cursor hasta el siguiente separador
+     *
+     * @return Fin (exclusivo) del campo en curso
+     */
+    private int nextField() {
+        int fieldEnd = cursor;
+        while (fieldEnd < lineEnd && buffer.get(fieldEnd) != ',') {
+            fieldEnd++;
+        }
+        cursor = fieldEnd < lineEnd ? fieldEnd + 1 : lineEnd;
+        return fieldEnd;
+    }
+
+    private long decodeTransactionId(int start, int end) {
+        if (end - start != ID_LENGTH) {
+            return -1;
+        }
+        for (int i = 0; i < ID_PREFIX.length; i++) {
+            if (buffer.get(start + i) != ID_PREFIX[i]) {
+                return -1;
+            }
+        }
+        if (!TransactionIdGenerator.isValidFirstDigit(buffer.get(start + ID_PREFIX.length))) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = start + ID_PREFIX.length; i < end; i++) {
+            int value = TransactionIdGenerator.decodeDigit(buffer.get(i));
+            if (value < 0) {
+                return -1;
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+
+    /**
+     * Convierte un monto con hasta dos decimales a céntimos
+     *
+     * @return Céntimos, o Long.MIN_VALUE si el campo no es un monto válido
+     */
+    private long parseCents(int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        long units = 0;
+        int digits = 0;
+        while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            units = units * 10 + (buffer.get(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > MAX_AMOUNT_DIGITS) {
+            return Long.MIN_VALUE;
+        }
+        long cents = 0;
+        int decimals = 0;
+        if (i < end && buffer.get(i) == '.') {
+            i++;
+            while (i < end && decimals < 2 && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                cents = cents * 10 + (buffer.get(i++) - '0');
+                decimals++;
+            }
+            if (decimals == 0) {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (i != end) {
+            return Long.MIN_VALUE;
+        }
+        if (decimals == 1) {
+            cents *= 10;
+        }
+        long total = units * 100 + cents;
+        return negative ? -total : total;
+    }
+
+    private int parseCurrency(int start, int end) {
+        if (end - start != 3) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            byte c = buffer.get(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            code = (code << 8) | c;
+        }
+        return code;
+    }
+
+    private int parseStatus(int start, int end) {
+        if (matches(start, end, SETTLED_TOKEN)) {
+            return SETTLED;
+        }
+        if (matches(start, end, DECLINED_TOKEN)) {
+            return DECLINED;
+        }
+        return -1;
+    }
+
+    private boolean matches(int start, int end, byte[] token) {
+        if (end - start != token.length) {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++) {
+            if (buffer.get(start + i) != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void malformed(int start, int end) {
+        handler.onMalformed(lineNumber, text(start, end));
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Codifica una moneda ISO 4217 como entero, igual que el lector
+     *
+     * @param currency Código de tres letras mayúsculas
+     * @return Código entero, o -1 si el código no es válido
+     */
+    public static int currencyCode(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = currency.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            code = (code << 8) | c;
+        }
+        return code;
+    }
+
+    /**
+     * Receptor de las líneas leídas
+     */
+    public interface RecordHandler {
+
+        /**
+         * Línea válida
+         *
+         * @param lineNumber Número de línea (desde 1)
+         * @param transactionId ID numérico de la transacción, o -1 si tiene otro formato
+         * @param legacyTransactionId ID tal cual cuando no se pudo decodificar, o nulo
+         * @param amountCents Monto liquidado en céntimos
+         * @param currency Moneda codificada con {@link #currencyCode(String)}
+         * @param status {@link #SETTLED} o {@link #DECLINED}
+         */
+        void onRecord(long lineNumber, long transactionId, String legacyTransactionId, long amountCents,
+                      int currency, int status);
+
+        /**
+         * Línea que no se pudo interpretar
+         *
+         * @param lineNumber Número de línea (desde 1)
+         * @param line Contenido de la línea
+         */
+        void onMalformed(long lineNumber, String line);
+    }
+}
@@ -0,0 +1,452 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.common.util.DataPaths;
+import com.techtrend.common.util.LongLongHashMap;
+import com.techtrend.payment.dto.SettlementMismatchResponse;
+import com.techtrend.payment.dto.SettlementReconciliationResponse;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Servicio de conciliación de los ficheros de liquidación de la pasarela con los pagos
+ *
+ * 1. Recorre la tabla payments en streaming y construye un índice en memoria por ID de
+ *    transacción: un LongLongHashMap del ID decodificado a una posición en arreglos
+ *    primitivos con monto en céntimos, moneda y estado.
+ * 2. Lee el CSV mapeado en memoria con {@link SettlementFileParser} y compara cada línea
+ *    con el índice sin crear objetos por línea.
+ * 3. Escribe las discrepancias en un informe NDJSON junto a un resumen con los totales.
+ *
+ * Un pago COMPLETED cuyo processedAt cae en el rango indicado debe aparecer como SETTLED;
+ * uno FAILED o DEAD_LETTER, como DECLINED. Los pagos completados del rango ausentes del
+ * fichero se informan como MISSING_SETTLEMENT.
+ *
+ * Las conciliaciones se ejecutan de una en una.
+ *
+ * Los directorios de liquidaciones e informes son obligatorios y, salvo en el perfil test,
+ * no pueden estar dentro de target/: los CSV de la pasarela y los informes no se regeneran.
+ *
+ * @author TechTrend Team
+ */
+@Service
+@Slf4j
+public class SettlementReconciliationService {
+
+    private static final String DEFAULT_CURRENCY = "PEN";
+    private static final String REPORT_SUFFIX = ".mismatches.ndjson";
+    private static final Payment.PaymentStatus[] STATUSES = Payment.PaymentStatus.values();
+
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final Path settlementDir;
+    private final Path reportDir;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    private volatile SettlementReconciliationResponse lastRun;
+
+    @Autowired
+    public SettlementReconciliationService(PaymentRepository paymentRepository,
+                                           PlatformTransactionManager transactionManager,
+                                           ObjectMapper objectMapper,
+                                           @Value("${app.payment.settlement.dir:}") String settlementDir,
+                                           @Value("${app.payment.settlement.report-dir:}") String reportDir,
+                                           Environment environment) {
+        this(paymentRepository, transactionManager, objectMapper,
+                DataPaths.requirePersistent("app.payment.settlement.dir", settlementDir,
+                        DataPaths.buildDirAllowed(environment, "test"), "los ficheros de liquidación"),
+                DataPaths.requirePersistent("app.payment.settlement.report-dir", reportDir,
+                        DataPaths.buildDirAllowed(environment, "test"), "los informes de discrepancias"));
+    }
+
+    SettlementReconciliationService(PaymentRepository paymentRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    Path settlementDir,
+                                    Path reportDir) {
+        this.paymentRepository = paymentRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.settlementDir = settlementDir;
+        this.reportDir = reportDir;
+    }
+
+    /**
+     * Concilia los ficheros del directorio de liquidaciones que aún no tienen informe,
+     * esperando en cada uno los pagos completados el día anterior
+     */
+    @Scheduled(cron = "${app.payment.settlement.cron:-}")
+    public void reconcilePendingFiles() {
+        if (!Files.isDirectory(settlementDir)) {
+            return;
+        }
+        LocalDateTime to = LocalDate.now().atStartOfDay();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(settlementDir, "*.csv")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (Files.exists(reportPath(name))) {
+                    continue;
+                }
+                try {
+                    reconcile(name, to.minusDays(1), to);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Error conciliando la liquidación {}: {}", name, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("No se pudo leer el directorio de liquidaciones {}: {}", settlementDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Concilia un fichero de liquidación con los pagos registrados
+     *
+     * @param fileName Nombre del fichero dentro del directorio de liquidaciones
+     * @param from Inicio del rango de processedAt de los pagos esperados (inclusive), o nulo
+     * @param to Fin del rango de processedAt de los pagos esperados (exclusivo), o nulo
+     * @return Resumen de la conciliación
+     * @throws IllegalArgumentException si el nombre o el rango no son válidos
+     * @throws IOException si el fichero no se puede leer o el informe no se puede escribir
+     */
+    public synchronized SettlementReconciliationResponse reconcile(String fileName, LocalDateTime from,
+                                                                   LocalDateTime to) throws IOException {
+        if (fileName == null || fileName.isBlank() || fileName.contains("/") || fileName.contains("\\")
+                || fileName.contains("..")) {
+            throw new IllegalArgumentException("Nombre de fichero de liquidación inválido: " + fileName);
+        }
+        if ((from == null) != (to == null) || (from != null && !from.isBefore(to))) {
+            throw new IllegalArgumentException("El rango de pagos esperados debe tener inicio anterior al fin");
+        }
+        Path file = settlementDir.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No existe el fichero de liquidación " + fileName);
+        }
+
+        runs.incrementAndGet();
+        try {
+            SettlementReconciliationResponse summary = new SettlementReconciliationResponse();
+            summary.setFile(fileName);
+            summary.setFrom(from);
+            summary.setTo(to);
+
+            long start = System.nanoTime();
+            PaymentIndex index = buildIndex(from, to);
+            summary.setIndexedPayments(index.size);
+            summary.setIndexMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            Path report = reportPath(fileName);
+            Path partial = reportDir.resolve(report.getFileName() + ".partial");
+            Files.createDirectories(reportDir);
+            try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+                Reconciliation reconciliation = new Reconciliation(index, writer, summary);
+                start = System.nanoTime();
+                long lines = new SettlementFileParser(reconciliation).parse(file);
+                long parseNanos = System.nanoTime() - start;
+                reconciliation.reportMissingSettlements();
+
+                summary.setLines(lines);
+                summary.setParseMs(TimeUnit.NANOSECONDS.toMillis(parseNanos));
+                summary.setLinesPerSecond(parseNanos > 0 ? lines * 1_000_000_000L / parseNanos : lines);
+            } catch (UncheckedIOException e) {
+                Files.deleteIfExists(partial);
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            }
+            Files.move(partial, report, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            summary.setReportFile(report.toString());
+
+            lastRun = summary;
+            log.info("Liquidación {} conciliada: {} líneas en {} ms ({} líneas/s), {} coincidencias, "
+                            + "{} sin pago, {} sin liquidar, {} montos distintos, {} estados distintos, {} inválidas",
+                    fileName, summary.getLines(), summary.getParseMs(), summary.getLinesPerSecond(),
+                    summary.getMatched(), summary.getMissingPayments(), summary.getMissingSettlements(),
+                    summary.getAmountMismatches(), summary.getStatusMismatches(), summary.getMalformedLines());
+            return summary;
+        } catch (IOException | RuntimeException e) {
+            failedRuns.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene métricas de las conciliaciones
+     *
+     * @return Mapa con ejecuciones y el resumen de la última
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("runs", runs.get());
+        metrics.put("failedRuns", failedRuns.get());
+        metrics.put("lastRun", lastRun);
+        return metrics;
+    }
+
+    private Path reportPath(String fileName) {
+        return reportDir.resolve(fileName + REPORT_SUFFIX);
+    }
+
+    /**
+     * Recorre los pagos en una transacción de solo lectura y construye el índice
+     */
+    private PaymentIndex buildIndex(LocalDateTime from, LocalDateTime to) {
+        PaymentIndex index = new PaymentIndex((int) Math.min(paymentRepository.count(), Integer.MAX_VALUE - 8));
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> stream = paymentRepository.streamForSettlement()) {
+                Iterator<Object[]> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    Object[] row = iterator.next();
+                    String transactionId = (String) row[1];
+                    Payment.PaymentStatus paymentStatus = (Payment.PaymentStatus) row[4];
+                    LocalDateTime processedAt = (LocalDateTime) row[5];
+                    boolean expected = from != null && paymentStatus == Payment.PaymentStatus.COMPLETED
+                            && processedAt != null && !processedAt.isBefore(from) && processedAt.isBefore(to);
+                    String currency = row[3] != null ? (String) row[3] : DEFAULT_CURRENCY;
+                    index.add(transactionId, (Long) row[0], toCents((BigDecimal) row[2]),
+                            SettlementFileParser.currencyCode(currency), paymentStatus, expected);
+                }
+            }
+        });
+        return index;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static String currencyName(int code) {
+        return code < 0 ? null : new String(new char[]{(char) (code >> 16), (char) ((code >> 8) & 0xFF),
+                (char) (code & 0xFF)});
+    }
+
+    private static boolean statusMatches(Payment.PaymentStatus paymentStatus, int settlementStatus) {
+        return settlementStatus == SettlementFileParser.SETTLED
+                ? paymentStatus == Payment.PaymentStatus.COMPLETED
+                : paymentStatus == Payment.PaymentStatus.FAILED || paymentStatus == Payment.PaymentStatus.DEAD_LETTER;
+    }
+
+    /**
+     * Índice de pagos por ID de transacción sobre arreglos primitivos
+     */
+    static final class PaymentIndex {
+
+        private static final int NOT_FOUND = -1;
+
+        private final LongLongHashMap slotsByTransactionId;
+        /** IDs con formato anterior al generador actual, que no se pueden decodificar a long */
+        private final Map<String, Integer> legacySlots = new HashMap<>();
+        private final Map<Integer, String> legacyIds = new HashMap<>();
+        private final BitSet expected = new BitSet();
+        private final BitSet seen = new BitSet();
+
+        private long[] transactionIds;
+        private long[] paymentIds;
+        private long[] amountCents;
+        private int[] currencies;
+        private byte[] statuses;
+        private int size;
+
+        PaymentIndex(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            slotsByTransactionId = new LongLongHashMap(capacity);
+            transactionIds = new long[capacity];
+            paymentIds = new long[capacity];
+            amountCents = new long[capacity];
+            currencies = new int[capacity];
+            statuses = new byte[capacity];
+        }
+
+        void add(String transactionId, long paymentId, long cents, int currency, Payment.PaymentStatus status,
+                 boolean expectedInSettlement) {
+            if (size == paymentIds.length) {
+                int capacity = size + (size >> 1);
+                transactionIds = Arrays.copyOf(transactionIds, capacity);
+                paymentIds = Arrays.copyOf(paymentIds, capacity);
+                amountCents = Arrays.copyOf(amountCents, capacity);
+                currencies = Arrays.copyOf(currencies, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            long decoded = TransactionIdGenerator.decode(transactionId);
+            if (decoded >= 0) {
+                slotsByTransactionId.put(decoded, size);
+            } else {
+                legacySlots.put(transactionId, size);
+                legacyIds.put(size, transactionId);
+            }
+            transactionIds[size] = decoded;
+            paymentIds[size] = paymentId;
+            amountCents[size] = cents;
+            currencies[size] = currency;
+            statuses[size] = (byte) status.ordinal();
+            if (expectedInSettlement) {
+                expected.set(size);
+            }
+            size++;
+        }
+
+        int find(long transactionId, String legacyTransactionId) {
+            if (legacyTransactionId != null) {
+                Integer slot = legacySlots.get(legacyTransactionId);
+                return slot != null ? slot : NOT_FOUND;
+            }
+            return (int) slotsByTransactionId.get(transactionId, NOT_FOUND);
+        }
+
+        String transactionId(int slot) {
+            return transactionIds[slot] >= 0
+                    ? TransactionIdGenerator.encode(transactionIds[slot])
+                    : legacyIds.get(slot);
+        }
+    }
+
+    /**
+     * Compara cada línea del fichero con el índice y escribe las discrepancias
+     */
+    private final class Reconciliation implements SettlementFileParser.RecordHandler {
+
+        private final PaymentIndex index;
+        private final BufferedWriter writer;
+        private final SettlementReconciliationResponse summary;
+
+        Reconciliation(PaymentIndex index, BufferedWriter writer, SettlementReconciliationResponse summary) {
+            this.index = index;
+            this.writer = writer;
+            this.summary = summary;
+        }
+
+        @Override
+        public void onRecord(long lineNumber, long transactionId, String legacyTransactionId, long amountCents,
+                             int currency, int status) {
+            int slot = index.find(transactionId, legacyTransactionId);
+            if (slot < 0) {
+                summary.setMissingPayments(summary.getMissingPayments() + 1);
+                write(mismatch(SettlementMismatchResponse.Type.MISSING_PAYMENT, lineNumber,
+                        displayId(transactionId, legacyTransactionId), -1, amountCents, currency, status));
+                return;
+            }
+            if (index.seen.get(slot)) {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+                write(mismatch(SettlementMismatchResponse.Type.DUPLICATE, lineNumber,
+                        displayId(transactionId, legacyTransactionId), slot, amountCents, currency, status));
+                return;
+            }
+            index.seen.set(slot);
+
+            boolean matched = true;
+            if (index.amountCents[slot] != amountCents || index.currencies[slot] != currency) {
+                matched = false;
+                summary.setAmountMismatches(summary.getAmountMismatches() + 1);
+                write(mismatch(SettlementMismatchResponse.Type.AMOUNT_MISMATCH, lineNumber,
+                        displayId(transactionId, legacyTransactionId), slot, amountCents, currency, status));
+            }
+            if (!statusMatches(STATUSES[index.statuses[slot]], status)) {
+                matched = false;
+                summary.setStatusMismatches(summary.getStatusMismatches() + 1);
+                write(mismatch(SettlementMismatchResponse.Type.STATUS_MISMATCH, lineNumber,
+                        displayId(transactionId, legacyTransactionId), slot, amountCents, currency, status));
+            }
+            if (matched) {
+                summary.setMatched(summary.getMatched() + 1);
+            }
+        }
+
+        @Override
+        public void onMalformed(long lineNumber, String line) {
+            summary.setMalformedLines(summary.getMalformedLines() + 1);
+            SettlementMismatchResponse mismatch = new SettlementMismatchResponse();
+            mismatch.setType(SettlementMismatchResponse.Type.MALFORMED);
+            mismatch.setLineNumber(lineNumber);
+            mismatch.setLine(line);
+            write(mismatch);
+        }
+
+        /**
+         * Informa los pagos esperados en la liquidación que no aparecieron en el fichero
+         */
+        void reportMissingSettlements() {
+            BitSet missing = (BitSet) index.expected.clone();
+            missing.andNot(index.seen);
+            for (int slot = missing.nextSetBit(0); slot >= 0; slot = missing.nextSetBit(slot + 1)) {
+                summary.setMissingSettlements(summary.getMissingSettlements() + 1);
+                SettlementMismatchResponse mismatch = new SettlementMismatchResponse();
+                mismatch.setType(SettlementMismatchResponse.Type.MISSING_SETTLEMENT);
+                mismatch.setTransactionId(index.transactionId(slot));
+                fillPayment(mismatch, slot);
+                write(mismatch);
+            }
+        }
+
+        private SettlementMismatchResponse mismatch(SettlementMismatchResponse.Type type, long lineNumber,
+                                                    String transactionId, int slot, long amountCents,
+                                                    int currency, int status) {
+            SettlementMismatchResponse mismatch = new SettlementMismatchResponse();
+            mismatch.setType(type);
+            mismatch.setLineNumber(lineNumber);
+            mismatch.setTransactionId(transactionId);
+            mismatch.setSettledAmount(fromCents(amountCents));
+            mismatch.setSettledCurrency(currencyName(currency));
+            mismatch.setSettlementStatus(status == SettlementFileParser.SETTLED ? "SETTLED" : "DECLINED");
+            if (slot >= 0) {
+                fillPayment(mismatch, slot);
+            }
+            return mismatch;
+        }
+
+        private void fillPayment(SettlementMismatchResponse mismatch, int slot) {
+            mismatch.setPaymentId(index.paymentIds[slot]);
+            mismatch.setPaymentAmount(fromCents(index.amountCents[slot]));
+            mismatch.setPaymentCurrency(currencyName(index.currencies[slot]));
+            mismatch.setPaymentStatus(STATUSES[index.statuses[slot]].name());
+        }
+
+        private String displayId(long transactionId, String legacyTransactionId) {
+            return legacyTransactionId != null ? legacyTransactionId : TransactionIdGenerator.encode(transactionId);
+        }
+
+        private void write(SettlementMismatchResponse mismatch) {
+            try {
+                writer.write(objectMapper.writeValueAsString(mismatch));
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
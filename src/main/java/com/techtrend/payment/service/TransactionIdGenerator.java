@@ -0,0 +1,196 @@
+package com.techtrend.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generador de IDs de transacción ordenados en el tiempo, estilo Snowflake
+ *
+ * Cada ID es un long de 63 bits: 41 bits de milisegundos desde 2024-01-01, 10 bits de
+ * nodo y 12 bits de secuencia (4096 IDs por milisegundo y nodo). Se representa como
+ * "TXN-" seguido de 13 caracteres en Base32 de Crockford, por lo que el orden
+ * lexicográfico coincide con el de creación.
+ *
+ * El estado (milisegundo, secuencia) vive en un único AtomicLong que se avanza con CAS,
+ * sin locks ni SecureRandom. Si la secuencia se agota en un milisegundo, o si el reloj
+ * retrocede, el generador continúa desde el último valor emitido en lugar de repetir IDs.
+ *
+ * La unicidad entre instancias depende de que cada una tenga un node-id distinto, por eso
+ * no tiene valor por defecto: solo los perfiles dev y test lo fijan a 0.
+ *
+ * @author TechTrend Team
+ */
+@Component
+@Slf4j
+public class TransactionIdGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    static final int ENCODED_LENGTH = 13;
+    static final String PREFIX = "TXN-";
+
+    /** Valor de cada carácter ASCII en Base32 de Crockford, -1 si no es un dígito válido */
+    private static final byte[] CROCKFORD_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(CROCKFORD_VALUES, (byte) -1);
+        for (int i = 0; i < CROCKFORD.length; i++) {
+            CROCKFORD_VALUES[CROCKFORD[i]] = (byte) i;
+        }
+    }
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    /** Último (milisegundo << SEQUENCE_BITS | secuencia) emitido */
+    private final AtomicLong lastState = new AtomicLong();
+
+    @Autowired
+    public TransactionIdGenerator(@Value("${app.payment.transaction-id.node-id:}") String nodeId) {
+        this(requireNodeId(nodeId), System::currentTimeMillis);
+    }
+
+    TransactionIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    TransactionIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("El node-id debe estar entre 0 y " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        log.info("Generador de IDs de transacción inicializado con node-id {}", nodeId);
+    }
+
+    /**
+     * Valida el node-id configurado
+     *
+     * @param nodeId Valor de app.payment.transaction-id.node-id
+     * @return node-id numérico
+     * @throws IllegalStateException si falta o no es un número
+     */
+    static long requireNodeId(String nodeId) {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new IllegalStateException("app.payment.transaction-id.node-id es obligatorio: asigne a cada "
+                    + "instancia un valor distinto entre 0 y " + MAX_NODE_ID);
+        }
+        try {
+            return Long.parseLong(nodeId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("app.payment.transaction-id.node-id no es un número: " + nodeId);
+        }
+    }
+
+    /**
+     * Genera un nuevo ID de transacción
+     *
+     * @return ID de transacción único, por ejemplo TXN-0C8ZQ5R1T4000
+     */
+    public String nextTransactionId() {
+        return encode(nextId());
+    }
+
+    /**
+     * Genera un nuevo ID numérico
+     *
+     * @return ID de 63 bits creciente para este nodo
+     */
+    public long nextId() {
+        long nowState = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long last;
+        long next;
+        do {
+            last = lastState.get();
+            // Nuevo milisegundo: secuencia en 0; mismo milisegundo o reloj atrasado: siguiente valor
+            next = Math.max(nowState, last + 1);
+        } while (!lastState.compareAndSet(last, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * Codifica un ID numérico como ID de transacción
+     *
+     * @param id ID numérico
+     * @return ID de transacción con prefijo y 13 caracteres Base32
+     */
+    static String encode(long id) {
+        char[] chars = new char[PREFIX.length() + ENCODED_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for (int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodifica un ID de transacción a su ID numérico
+     *
+     * @param transactionId ID de transacción, por ejemplo TXN-0C8ZQ5R1T4000
+     * @return ID numérico, o -1 si no tiene el formato de este generador
+     */
+    public static long decode(CharSequence transactionId) {
+        if (transactionId == null || transactionId.length() != PREFIX.length() + ENCODED_LENGTH) {
+            return -1;
+        }
+        for (int i = 0; i < PREFIX.length(); i++) {
+            if (transactionId.charAt(i) != PREFIX.charAt(i)) {
+                return -1;
+            }
+        }
+        long id = 0;
+        for (int i = PREFIX.length(); i < transactionId.length(); i++) {
+            int value = decodeDigit(transactionId.charAt(i));
+            if (value < 0) {
+                return -1;
+            }
+            id = (id << 5) | value;
+        }
+        return isValidFirstDigit(transactionId.charAt(PREFIX.length())) ? id : -1;
+    }
+
+    /**
+     * Valor de un carácter en Base32 de Crockford
+     *
+     * @param c Carácter ASCII
+     * @return Valor entre 0 y 31, o -1 si no es un dígito válido
+     */
+    static int decodeDigit(int c) {
+        return c >= 0 && c < CROCKFORD_VALUES.length ? CROCKFORD_VALUES[c] : -1;
+    }
+
+    /**
+     * Verifica que el primer dígito no desborde los 63 bits del ID (13 dígitos codifican 65)
+     *
+     * @param c Primer carácter tras el prefijo
+     * @return true si su valor es menor que 8
+     */
+    static boolean isValidFirstDigit(int c) {
+        int value = decodeDigit(c);
+        return value >= 0 && value < 8;
+    }
+
+    /**
+     * Obtiene el nodo de este generador
+     *
+     * @return node-id configurado
+     */
+    public long getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,109 @@
+package com.techtrend.authentication.security;
+
+import com.techtrend.common.exception.PasswordHashingUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del PasswordEncoder con pool acotado
+ *
+ * @author TechTrend Team
+ */
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    /**
+     * Encoder que se queda bloqueado hasta que la prueba lo libera
+     */
+    private PasswordEncoder blockingEncoder() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Debería calcular y verificar hashes en el pool y registrar la latencia")
+    void shouldHashInPool() {
+        // Given
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, 5_000);
+
+        // When
+        String hash = encoder.encode("password123");
+
+        // Then
+        assertTrue(encoder.matches("password123", hash));
+        assertFalse(encoder.matches("otra", hash));
+        assertEquals(3L, encoder.getMetrics().get("hashes"));
+        assertTrue((double) encoder.getMetrics().get("avgHashMillis") > 0);
+        assertEquals(0, encoder.getMetrics().get("queueDepth"));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar al instante cuando la cola está llena")
+    void shouldRejectImmediatelyWhenQueueIsFull() throws Exception {
+        // Given: un hilo ocupado y la única plaza de la cola tomada
+        encoder = new BoundedPasswordEncoder(blockingEncoder(), 1, 1, 5_000);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        while ((int) encoder.getMetrics().get("queueDepth") < 1) {
+            Thread.onSpinWait();
+        }
+
+        // When
+        long start = System.nanoTime();
+        PasswordHashingUnavailableException exception =
+                assertThrows(PasswordHashingUnavailableException.class, () -> encoder.encode("c"));
+
+        // Then
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(exception.getRetryAfterSeconds() >= 1);
+        assertEquals(1L, encoder.getMetrics().get("rejected"));
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar la solicitud que espera más del tiempo máximo")
+    void shouldRejectAfterTimeout() {
+        // Given
+        encoder = new BoundedPasswordEncoder(blockingEncoder(), 1, 1, 50);
+
+        // When & Then
+        assertThrows(PasswordHashingUnavailableException.class, () -> encoder.matches("a", "hash"));
+        assertEquals(1L, encoder.getMetrics().get("timeouts"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.techtrend.authentication.security;
+
+import com.techtrend.authentication.service.JwtKeyStore;
+import com.techtrend.authentication.service.JwtService;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del filtro de autenticación JWT
+ *
+ * @author TechTrend Team
+ */
+class JwtAuthenticationFilterTest {
+
+    @TempDir
+    Path keyDir;
+
+    private JwtService jwtService;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JwtKeyStore keyStore = new JwtKeyStore(keyDir.toString(), 604_800_000L, 3_600_000L, 3_600_000L, 5000L,
+                new MockEnvironment());
+        keyStore.initialize();
+        jwtService = new JwtService(keyStore, 3_600_000L, 100, 600_000L);
+        filter = new JwtAuthenticationFilter(jwtService, "Authorization", "Bearer");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Ejecuta el filtro y devuelve la autenticación que dejó para el resto de la cadena
+     */
+    private Authentication filter(String authorization) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/cart/items");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        Authentication[] seen = new Authentication[1];
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                seen[0] = SecurityContextHolder.getContext().getAuthentication();
+            }
+        };
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return seen[0];
+    }
+
+    @Test
+    @DisplayName("Debería autenticar con el ID y el rol del token sin consultar la base de datos")
+    void shouldAuthenticateFromBearerToken() throws Exception {
+        // Given
+        String token = jwtService.generateToken(42L, "cliente@techtrend.com", "CLIENT");
+
+        // When
+        Authentication authentication = filter("Bearer " + token);
+
+        // Then
+        assertNotNull(authentication);
+        assertTrue(authentication.isAuthenticated());
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+        assertEquals(42L, user.getUserId());
+        assertEquals("cliente@techtrend.com", user.getEmail());
+        assertFalse(user.isAdmin());
+        assertTrue(user.canAccess(42L));
+        assertFalse(user.canAccess(7L));
+        assertEquals("ROLE_CLIENT", authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).findFirst().orElse(null));
+    }
+
+    @Test
+    @DisplayName("Debería dejar la solicitud sin autenticar si falta el token o no es válido")
+    void shouldNotAuthenticateWithoutValidToken() throws Exception {
+        // Given
+        String token = jwtService.generateToken(42L, "cliente@techtrend.com", "CLIENT");
+        String withoutUserId = jwtService.generateToken(null, "antiguo@techtrend.com", "CLIENT");
+
+        // When & Then
+        assertNull(filter(null));
+        assertNull(filter("Basic dXNlcjpwYXNz"));
+        assertNull(filter("Bearer "));
+        assertNull(filter("Bearer " + token + "x"));
+        assertNull(filter("Bearer " + withoutUserId));
+    }
+}
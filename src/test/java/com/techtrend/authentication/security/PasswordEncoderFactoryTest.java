@@ -0,0 +1,70 @@
+package com.techtrend.authentication.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del PasswordEncoder con prefijo de algoritmo
+ *
+ * @author TechTrend Team
+ */
+class PasswordEncoderFactoryTest {
+
+    @Test
+    @DisplayName("Debería verificar los hashes BCrypt sin prefijo y marcarlos para actualizar")
+    void shouldMatchLegacyHashesAndFlagThem() {
+        // Given
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password123");
+        PasswordEncoder encoder = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4);
+
+        // When & Then
+        assertTrue(encoder.matches("password123", legacyHash));
+        assertFalse(encoder.matches("otra", legacyHash));
+        assertTrue(encoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    @DisplayName("Debería marcar para actualizar los hashes con otro coste, mayor o menor")
+    void shouldFlagHashesWithDifferentCost() {
+        // Given
+        PasswordEncoder encoder = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 5);
+        String current = encoder.encode("password123");
+        String cheaper = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4).encode("password123");
+        String costlier = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 6).encode("password123");
+
+        // When & Then
+        assertTrue(current.startsWith("{bcrypt}$2a$05$"));
+        assertFalse(encoder.upgradeEncoding(current));
+        assertTrue(encoder.upgradeEncoding(cheaper));
+        assertTrue(encoder.upgradeEncoding(costlier));
+        assertTrue(encoder.matches("password123", cheaper));
+        assertTrue(encoder.matches("password123", costlier));
+    }
+
+    @Test
+    @DisplayName("Debería marcar los hashes BCrypt al cambiar de algoritmo y seguir verificándolos")
+    void shouldFlagHashesFromPreviousAlgorithm() {
+        // Given
+        String bcryptHash = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4).encode("password123");
+        PasswordEncoder encoder = PasswordEncoderFactory.create(PasswordEncoderFactory.PBKDF2, 4);
+
+        // When
+        String pbkdf2Hash = encoder.encode("password123");
+
+        // Then
+        assertTrue(pbkdf2Hash.startsWith("{pbkdf2}"));
+        assertTrue(encoder.matches("password123", bcryptHash));
+        assertTrue(encoder.upgradeEncoding(bcryptHash));
+        assertFalse(encoder.upgradeEncoding(pbkdf2Hash));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un algoritmo no soportado")
+    void shouldRejectUnknownAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> PasswordEncoderFactory.create("argon2", 4));
+    }
+}
@@ -10,11 +10,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -38,6 +42,12 @@ class AuthenticationServiceTest {
     @Mock
     private JwtService jwtService;
 
+    @Mock
+    private PasswordRehashService passwordRehashService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private AuthenticationService authenticationService;
 
@@ -46,7 +56,12 @@ class AuthenticationServiceTest {
     private LoginRequest solicitudLogin;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void configurarPruebas() {
+        // Ejecutar las transacciones cortas en línea
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
         // Configurar límites de intentos de login
         ReflectionTestUtils.setField(authenticationService, "maxLoginAttempts", 3);
         ReflectionTestUtils.setField(authenticationService, "lockoutDuration", 300000L);
@@ -83,7 +98,7 @@ class AuthenticationServiceTest {
         when(userRepository.existsByEmail(solicitudRegistro.getEmail())).thenReturn(false);
         when(passwordEncoder.encode(solicitudRegistro.getPassword())).thenReturn("passwordEncriptada");
         when(userRepository.save(any(User.class))).thenReturn(usuarioGuardado);
-        when(jwtService.generateToken(anyString(), anyString())).thenReturn("tokenJWT");
+        when(jwtService.generateToken(any(), anyString(), anyString())).thenReturn("tokenJWT");
 
         // EJECUTAR
         AuthResponse respuesta = authenticationService.registerUser(solicitudRegistro);
@@ -142,6 +157,24 @@ class AuthenticationServiceTest {
         assertEquals("La contraseña debe tener al menos 6 caracteres", excepcion.getMessage());
     }
 
+    @Test
+    @DisplayName("❌ Error: Registro concurrente con el mismo email")
+    void errorRegistroConcurrente() {
+        // PREPARAR
+        when(userRepository.existsByEmail(solicitudRegistro.getEmail())).thenReturn(false);
+        when(passwordEncoder.encode(solicitudRegistro.getPassword())).thenReturn("hashSeguro");
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("email duplicado"));
+
+        // EJECUTAR Y VERIFICAR
+        InvalidCredentialsException excepcion = assertThrows(
+            InvalidCredentialsException.class,
+            () -> authenticationService.registerUser(solicitudRegistro)
+        );
+
+        assertEquals("El usuario ya existe", excepcion.getMessage());
+        verify(jwtService, never()).generateToken(any(), any(), any());
+    }
+
     // ===== TESTS DE LOGIN =====
 
     @Test
@@ -150,7 +183,7 @@ class AuthenticationServiceTest {
         // PREPARAR
         when(userRepository.findByEmail(solicitudLogin.getEmail())).thenReturn(Optional.of(usuarioPrueba));
         when(passwordEncoder.matches(solicitudLogin.getPassword(), usuarioPrueba.getPassword())).thenReturn(true);
-        when(jwtService.generateToken(usuarioPrueba.getEmail(), usuarioPrueba.getRole().name())).thenReturn("tokenJWT");
+        when(jwtService.generateToken(usuarioPrueba.getId(), usuarioPrueba.getEmail(), usuarioPrueba.getRole().name())).thenReturn("tokenJWT");
         when(userRepository.save(any(User.class))).thenReturn(usuarioPrueba);
 
         // EJECUTAR
@@ -161,6 +194,13 @@ class AuthenticationServiceTest {
         assertTrue(respuesta.isSuccess());
         assertEquals("tokenJWT", respuesta.getToken());
         assertEquals(usuarioPrueba.getEmail(), respuesta.getEmail());
+        verify(passwordRehashService).rehashIfNeeded(usuarioPrueba, solicitudLogin.getPassword());
+
+        // El hash se verifica sin transacción abierta; el guardado va en una transacción corta después
+        InOrder orden = inOrder(passwordEncoder, transactionTemplate, userRepository);
+        orden.verify(passwordEncoder).matches(solicitudLogin.getPassword(), usuarioPrueba.getPassword());
+        orden.verify(transactionTemplate).execute(any());
+        orden.verify(userRepository).save(usuarioPrueba);
     }
 
     @Test
@@ -193,6 +233,7 @@ class AuthenticationServiceTest {
         );
 
         assertEquals("Credenciales inválidas", excepcion.getMessage());
+        verify(passwordRehashService, never()).rehashIfNeeded(any(), any());
     }
 
     @Test
@@ -0,0 +1,153 @@
+package com.techtrend.authentication.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.interfaces.ECPublicKey;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la rotación y publicación de las claves de firma JWT
+ *
+ * @author TechTrend Team
+ */
+class JwtKeyStoreTest {
+
+    private static final long ROTATION_INTERVAL = 7 * 24 * 3_600_000L;
+    private static final long CHECK_INTERVAL = 3_600_000L;
+    private static final long EXPIRATION = 24 * 3_600_000L;
+    private static final long RELOAD_INTERVAL = 5_000L;
+
+    @TempDir
+    Path keyDir;
+
+    private AtomicLong now;
+    private JwtKeyStore keyStore;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_790_000_000_000L);
+        keyStore = new JwtKeyStore(keyDir, ROTATION_INTERVAL, CHECK_INTERVAL, EXPIRATION, RELOAD_INTERVAL, now::get);
+        keyStore.initialize();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> jwks(JwtKeyStore store) {
+        return (List<Map<String, Object>>) store.getJwks().get("keys");
+    }
+
+    @Test
+    @DisplayName("Debería publicar la clave activa como JWK con su huella como kid")
+    void shouldPublishActiveKeyAsJwk() {
+        // When
+        List<Map<String, Object>> keys = jwks(keyStore);
+
+        // Then
+        assertEquals(1, keys.size());
+        Map<String, Object> jwk = keys.get(0);
+        String kid = keyStore.getSigningKey().kid();
+        assertEquals(kid, jwk.get("kid"));
+        assertEquals(kid, JwtKeyStore.thumbprint((ECPublicKey) keyStore.getVerificationKey(kid)));
+        assertEquals("EC", jwk.get("kty"));
+        assertEquals("P-256", jwk.get("crv"));
+        assertEquals("ES256", jwk.get("alg"));
+        assertEquals(43, ((String) jwk.get("x")).length());
+        assertEquals(43, ((String) jwk.get("y")).length());
+        assertFalse(jwk.containsKey("d"));
+    }
+
+    @Test
+    @DisplayName("Debería reutilizar las claves guardadas al reiniciar")
+    void shouldReuseStoredKeysOnRestart() {
+        // Given
+        String kid = keyStore.getSigningKey().kid();
+
+        // When
+        JwtKeyStore restarted = new JwtKeyStore(keyDir, ROTATION_INTERVAL, CHECK_INTERVAL, EXPIRATION, RELOAD_INTERVAL, now::get);
+        restarted.initialize();
+
+        // Then
+        assertEquals(kid, restarted.getSigningKey().kid());
+        assertEquals(keyStore.getVerificationKey(kid), restarted.getVerificationKey(kid));
+    }
+
+    @Test
+    @DisplayName("Debería rotar al cumplirse el intervalo y retirar la clave anterior cuando expiran sus tokens")
+    void shouldRotateAndRemoveExpiredKeys() throws IOException {
+        // Given
+        String firstKid = keyStore.getSigningKey().kid();
+
+        // When: se cumple el intervalo de rotación
+        now.addAndGet(ROTATION_INTERVAL);
+        keyStore.rotateIfDue();
+        String secondKid = keyStore.getSigningKey().kid();
+
+        // Then: la anterior sigue publicada para verificar
+        assertNotEquals(firstKid, secondKid);
+        assertNotNull(keyStore.getVerificationKey(firstKid));
+        assertEquals(2, jwks(keyStore).size());
+        assertEquals(secondKid, jwks(keyStore).get(0).get("kid"));
+
+        // When & Then: otra instancia pudo firmar con la anterior hasta su próxima comprobación
+        now.addAndGet(EXPIRATION + 1);
+        keyStore.rotateIfDue();
+        assertNotNull(keyStore.getVerificationKey(firstKid));
+
+        // When: expiran los últimos tokens firmados con la anterior en cualquier instancia
+        now.addAndGet(CHECK_INTERVAL);
+        keyStore.rotateIfDue();
+
+        // Then
+        assertNull(keyStore.getVerificationKey(firstKid));
+        assertEquals(secondKid, keyStore.getSigningKey().kid());
+        assertEquals(1, jwks(keyStore).size());
+        try (var files = Files.list(keyDir)) {
+            assertEquals(List.of(keyDir.resolve(secondKid + ".key")), files.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Debería releer el directorio ante un kid creado por otra instancia, como mucho una vez por intervalo")
+    void shouldReloadKeysOnUnknownKidWithRateLimit() {
+        // Given: otra instancia comparte el directorio y rota su clave un segundo después
+        long loadedAt = now.get();
+        JwtKeyStore otherInstance = new JwtKeyStore(keyDir, ROTATION_INTERVAL, CHECK_INTERVAL, EXPIRATION, RELOAD_INTERVAL, now::get);
+        otherInstance.initialize();
+        now.addAndGet(1_000);
+        String newKid = otherInstance.rotate();
+
+        // When & Then: dentro del intervalo no se relee
+        now.set(loadedAt + RELOAD_INTERVAL - 1);
+        assertNull(keyStore.getVerificationKey(newKid));
+
+        // When & Then: pasado el intervalo se relee y se publica la clave nueva
+        now.set(loadedAt + RELOAD_INTERVAL);
+        assertEquals(otherInstance.getVerificationKey(newKid), keyStore.getVerificationKey(newKid));
+        assertEquals(newKid, keyStore.getSigningKey().kid());
+
+        // When & Then: un kid inventado justo después no provoca otra lectura
+        assertNull(keyStore.getVerificationKey("kid-inventado"));
+        assertEquals(1L, keyStore.getMetrics().get("unknownKidReloads"));
+    }
+
+    @Test
+    @DisplayName("Debería exigir key-dir y rechazar target/ fuera del perfil test")
+    void shouldRequireKeyDirOutsideBuildDirectory() {
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> JwtKeyStore.requireKeyDir("", false));
+        assertThrows(IllegalStateException.class, () -> JwtKeyStore.requireKeyDir(null, true));
+        assertThrows(IllegalStateException.class, () -> JwtKeyStore.requireKeyDir("target/jwt-keys", false));
+        assertThrows(IllegalStateException.class, () -> JwtKeyStore.requireKeyDir("./target/../target/claves", false));
+        assertEquals(Path.of("target/jwt-keys-test"), JwtKeyStore.requireKeyDir("target/jwt-keys-test", true));
+        assertEquals(keyDir, JwtKeyStore.requireKeyDir(keyDir.toString(), false));
+    }
+}
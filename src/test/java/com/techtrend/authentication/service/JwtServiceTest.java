@@ -0,0 +1,213 @@
+package com.techtrend.authentication.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la verificación de tokens JWT y de su caché
+ *
+ * @author TechTrend Team
+ */
+@Slf4j
+class JwtServiceTest {
+
+    private static final long EXPIRATION = 3_600_000L;
+
+    @TempDir
+    Path keyDir;
+
+    private AtomicLong now;
+    private JwtKeyStore keyStore;
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_790_000_000_000L);
+        keyStore = new JwtKeyStore(keyDir, 7 * 24 * EXPIRATION, EXPIRATION, EXPIRATION, 5000, now::get);
+        keyStore.initialize();
+        jwtService = new JwtService(keyStore, EXPIRATION, 100, 600_000L, now::get);
+    }
+
+    @Test
+    @DisplayName("Debería verificar el token una vez y responder desde la caché después")
+    void shouldVerifyOnceAndServeFromCache() {
+        // Given
+        String token = jwtService.generateToken(7L, "test@techtrend.com", "CLIENT");
+
+        // When
+        Optional<VerifiedToken> first = jwtService.verify(token);
+        Optional<VerifiedToken> second = jwtService.verify(token);
+
+        // Then
+        assertTrue(first.isPresent());
+        assertEquals(7L, first.get().getUserId());
+        assertEquals("test@techtrend.com", first.get().getEmail());
+        assertEquals("CLIENT", first.get().getRole());
+        assertEquals(now.get() + EXPIRATION, first.get().getExpiresAt().toEpochMilli());
+        assertSame(first.get(), second.get());
+        assertEquals(1L, jwtService.getCacheMetrics().get("misses"));
+        assertEquals(1L, jwtService.getCacheMetrics().get("hits"));
+        assertEquals("test@techtrend.com", jwtService.extractEmail(token));
+        assertEquals("CLIENT", jwtService.extractRole(token));
+        assertTrue(jwtService.validateToken(token, "test@techtrend.com"));
+        assertFalse(jwtService.validateToken(token, "otro@techtrend.com"));
+    }
+
+    @Test
+    @DisplayName("Debería dejar de aceptar un token en caché cuando expira")
+    void shouldNotServeCachedTokenAfterExpiration() {
+        // Given: la caché guardaría 10 minutos, pero el token expira en 1 minuto
+        JwtService shortLived = new JwtService(keyStore, 60_000L, 100, 600_000L, now::get);
+        String token = shortLived.generateToken(7L, "test@techtrend.com", "CLIENT");
+        assertTrue(shortLived.isTokenValid(token));
+
+        // When
+        now.addAndGet(61_000L);
+
+        // Then
+        assertFalse(shortLived.isTokenValid(token));
+        assertTrue(shortLived.isTokenExpired(token));
+        assertNull(shortLived.extractEmail(token));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar tokens alterados, firmados con otra clave o con otro algoritmo sin guardarlos en caché")
+    void shouldRejectTamperedTokens() throws Exception {
+        // Given
+        String token = jwtService.generateToken(7L, "test@techtrend.com", "CLIENT");
+        String kid = keyStore.getSigningKey().kid();
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        String foreign = Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("test@techtrend.com")
+                .claim("role", "ADMIN")
+                .setExpiration(new Date(now.get() + EXPIRATION))
+                .signWith(generator.generateKeyPair().getPrivate(), SignatureAlgorithm.ES256)
+                .compact();
+        String symmetric = Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("test@techtrend.com")
+                .setExpiration(new Date(now.get() + EXPIRATION))
+                .signWith(Keys.hmacShaKeyFor("otra-clave-secreta-para-firmar-tokens-jwt".getBytes(StandardCharsets.UTF_8)),
+                        SignatureAlgorithm.HS256)
+                .compact();
+
+        // When & Then
+        assertTrue(jwtService.verify(tampered).isEmpty());
+        assertTrue(jwtService.verify(foreign).isEmpty());
+        assertTrue(jwtService.verify(symmetric).isEmpty());
+        assertTrue(jwtService.verify("no-es-un-token").isEmpty());
+        assertTrue(jwtService.verify(null).isEmpty());
+        assertEquals(5L, jwtService.getCacheMetrics().get("rejected"));
+        assertEquals(0, jwtService.getCacheMetrics().get("size"));
+    }
+
+    @Test
+    @DisplayName("Debería seguir aceptando los tokens firmados con la clave anterior tras una rotación")
+    void shouldVerifyTokensSignedBeforeRotation() {
+        // Given
+        String before = jwtService.generateToken(7L, "test@techtrend.com", "CLIENT");
+        String previousKid = keyStore.getSigningKey().kid();
+
+        // When
+        String newKid = keyStore.rotate();
+        String after = jwtService.generateToken(7L, "test@techtrend.com", "CLIENT");
+
+        // Then
+        assertNotEquals(previousKid, newKid);
+        assertTrue(jwtService.verify(before).isPresent());
+        assertTrue(jwtService.verify(after).isPresent());
+        String header = new String(Base64.getUrlDecoder().decode(after.substring(0, after.indexOf('.'))),
+                StandardCharsets.UTF_8);
+        assertTrue(header.contains("\"kid\":\"" + newKid + "\""));
+        assertTrue(header.contains("\"alg\":\"ES256\""));
+    }
+
+    @Test
+    @DisplayName("Debería acotar el tamaño de la caché")
+    void shouldBoundCacheSize() {
+        // Given
+        JwtService small = new JwtService(keyStore, EXPIRATION, 10, 600_000L, now::get);
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            assertTrue(small.verify(small.generateToken((long) i, "user" + i + "@techtrend.com", "CLIENT")).isPresent());
+        }
+
+        // Then
+        assertTrue((int) small.getCacheMetrics().get("size") <= 10);
+    }
+
+    /**
+     * Compara la ruta anterior (parser nuevo en cada llamada, tres lecturas por
+     * validación) con la verificación sin caché y con caché.
+     *
+     * Ejecutar con: mvn test -Dtest=JwtServiceTest -Dbenchmarks=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("Benchmark: validación de un token por solicitud")
+    void benchmarkValidation() {
+        JwtKeyStore benchmarkKeys = new JwtKeyStore(keyDir.resolve("benchmark"), 7 * 24 * EXPIRATION, EXPIRATION,
+                EXPIRATION, 5000, System::currentTimeMillis);
+        benchmarkKeys.initialize();
+        JwtService service = new JwtService(benchmarkKeys, EXPIRATION, 10_000, 600_000L, System::currentTimeMillis);
+        JwtService uncached = new JwtService(benchmarkKeys, EXPIRATION, 0, 0L, System::currentTimeMillis);
+        String token = service.generateToken(7L, "test@techtrend.com", "CLIENT");
+        PublicKey publicKey = benchmarkKeys.getVerificationKey(benchmarkKeys.getSigningKey().kid());
+        // Verificar una firma ES256 cuesta del orden de un milisegundo: menos iteraciones sin caché
+        int iterations = 200_000;
+        int uncachedIterations = 2_000;
+        int previousIterations = 500;
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < previousIterations; i++) {
+                for (int parse = 0; parse < 3; parse++) {
+                    Jwts.parserBuilder()
+                            .setSigningKey(publicKey)
+                            .build()
+                            .parseClaimsJws(token);
+                }
+            }
+            report("Ruta anterior (3 lecturas)", previousIterations, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < uncachedIterations; i++) {
+                assertTrue(uncached.verify(token).isPresent());
+            }
+            report("Verificación sin caché", uncachedIterations, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                assertTrue(service.verify(token).isPresent());
+            }
+            report("Verificación con caché", iterations, System.nanoTime() - start);
+        }
+    }
+
+    private static void report(String label, int iterations, long elapsedNanos) {
+        log.info("{}: {} µs por validación", label, String.format("%.2f", elapsedNanos / 1000.0 / iterations));
+    }
+}
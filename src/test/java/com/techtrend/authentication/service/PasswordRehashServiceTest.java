@@ -0,0 +1,111 @@
+package com.techtrend.authentication.service;
+
+import com.techtrend.authentication.model.User;
+import com.techtrend.authentication.repository.UserRepository;
+import com.techtrend.common.exception.PasswordHashingUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas del rehash de contraseñas desactualizadas
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PasswordRehashServiceTest {
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private PasswordRehashService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        service = new PasswordRehashService(passwordEncoder, userRepository, 10);
+        user = new User();
+        user.setId(7L);
+        user.setPassword("$2a$04$hashAntiguo");
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Debería no recalcular un hash al día")
+    void shouldSkipUpToDateHash() {
+        // Given
+        when(passwordEncoder.upgradeEncoding(user.getPassword())).thenReturn(false);
+
+        // When
+        boolean scheduled = service.rehashIfNeeded(user, "password123");
+
+        // Then
+        assertFalse(scheduled);
+        verify(passwordEncoder, never()).encode(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Debería recalcular y guardar en segundo plano un hash desactualizado")
+    void shouldRehashOutdatedHash() {
+        // Given
+        when(passwordEncoder.upgradeEncoding(user.getPassword())).thenReturn(true);
+        when(passwordEncoder.encode("password123")).thenReturn("{bcrypt}$2a$12$hashNuevo");
+        when(userRepository.updatePasswordIfUnchanged(7L, "$2a$04$hashAntiguo", "{bcrypt}$2a$12$hashNuevo"))
+                .thenReturn(1);
+
+        // When
+        boolean scheduled = service.rehashIfNeeded(user, "password123");
+
+        // Then
+        assertTrue(scheduled);
+        verify(userRepository, timeout(5_000))
+                .updatePasswordIfUnchanged(7L, "$2a$04$hashAntiguo", "{bcrypt}$2a$12$hashNuevo");
+        assertEquals(1L, service.getMetrics().get("scheduled"));
+    }
+
+    @Test
+    @DisplayName("Debería conservar la contraseña si cambió durante el rehash")
+    void shouldKeepConcurrentPasswordChange() {
+        // Given
+        when(passwordEncoder.encode("password123")).thenReturn("nuevo");
+        when(userRepository.updatePasswordIfUnchanged(7L, "$2a$04$hashAntiguo", "nuevo")).thenReturn(0);
+
+        // When
+        service.rehash(7L, "$2a$04$hashAntiguo", "password123");
+
+        // Then
+        assertEquals(1L, service.getMetrics().get("conflicts"));
+        assertEquals(0L, service.getMetrics().get("rehashed"));
+    }
+
+    @Test
+    @DisplayName("Debería omitir el rehash si el pool de hashes está saturado")
+    void shouldSkipWhenHashingPoolIsSaturated() {
+        // Given
+        when(passwordEncoder.encode("password123"))
+                .thenThrow(new PasswordHashingUnavailableException("Pool saturado", 1));
+
+        // When
+        service.rehash(7L, "$2a$04$hashAntiguo", "password123");
+
+        // Then
+        assertEquals(1L, service.getMetrics().get("skipped"));
+        verifyNoInteractions(userRepository);
+    }
+}
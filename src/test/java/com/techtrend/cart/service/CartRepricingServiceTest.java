@@ -0,0 +1,220 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.model.CartItem;
+import com.techtrend.cart.repository.CartItemRepository;
+import com.techtrend.catalog.dto.ProductResponse;
+import com.techtrend.catalog.event.ProductPriceChangedEvent;
+import com.techtrend.catalog.service.CatalogService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el recálculo de precios de carritos
+ */
+@ExtendWith(MockitoExtension.class)
+class CartRepricingServiceTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private CatalogService catalogService;
+
+    @Spy
+    private CartLockManager cartLockManager = new CartLockManager(16);
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CartRepricingService cartRepricingService;
+
+    private final Long idProducto = 7L;
+    private final BigDecimal precioNuevo = new BigDecimal("80.00");
+
+    @BeforeEach
+    void configurarPruebas() {
+        ReflectionTestUtils.setField(cartRepricingService, "pageSize", 2);
+
+        // Ejecutar las transacciones programáticas en el mismo hilo
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocacion ->
+                ((TransactionCallback<Object>) invocacion.getArgument(0)).doInTransaction(null));
+        lenient().when(catalogService.getProductsByIds(anyCollection())).thenReturn(Map.of(idProducto, producto(precioNuevo)));
+    }
+
+    @Test
+    @DisplayName("✅ Recalcula por páginas (id > último id) solo los items con precio desactualizado")
+    void recalculaPorPaginas() {
+        // PREPARAR
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(item(1L, "100.00"), item(2L, "80.00")));
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(item(3L, "100.00")));
+        when(cartItemRepository.repriceItems(anyCollection(), eq(precioNuevo), any())).thenReturn(1);
+
+        // EJECUTAR
+        int actualizados = cartRepricingService.repriceProduct(idProducto);
+
+        // VERIFICAR: la última página vino incompleta, no se pide otra
+        assertEquals(2, actualizados);
+        verify(cartItemRepository).repriceItems(eq(List.of(1L)), eq(precioNuevo), any());
+        verify(cartItemRepository).repriceItems(eq(List.of(3L)), eq(precioNuevo), any());
+        verify(cartItemRepository, times(2)).findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), anyLong(),
+                argThat(p -> p.getPageNumber() == 0 && p.getPageSize() == 2));
+    }
+
+    @Test
+    @DisplayName("✅ Un evento de precio antiguo aplica el precio vigente del catálogo")
+    void eventoAntiguoAplicaPrecioVigente() {
+        // PREPARAR: el evento trae 80.00, pero el catálogo ya cambió a 90.00
+        BigDecimal precioVigente = new BigDecimal("90.00");
+        when(catalogService.getProductsByIds(anyCollection())).thenReturn(Map.of(idProducto, producto(precioVigente)));
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(item(1L, "100.00"), item(2L, "90.00")));
+        when(cartItemRepository.repriceItems(anyCollection(), any(), any())).thenReturn(1);
+
+        // EJECUTAR
+        cartRepricingService.onProductPriceChanged(
+                new ProductPriceChangedEvent(idProducto, new BigDecimal("100.00"), precioNuevo));
+
+        // VERIFICAR
+        verify(cartItemRepository).repriceItems(eq(List.of(1L)), eq(precioVigente), any());
+        verify(cartItemRepository, never()).repriceItems(anyCollection(), eq(precioNuevo), any());
+    }
+
+    @Test
+    @DisplayName("✅ El precio se relee con los locks tomados antes del UPDATE")
+    void precioSeRevalidaConLocksTomados() {
+        // PREPARAR: otro cambio de precio se confirma entre la lectura de la página y el UPDATE
+        BigDecimal precioPosterior = new BigDecimal("75.00");
+        when(catalogService.getProductsByIds(anyCollection()))
+                .thenReturn(Map.of(idProducto, producto(precioNuevo)))
+                .thenReturn(Map.of(idProducto, producto(precioPosterior)));
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(item(1L, "100.00")));
+        when(cartItemRepository.repriceItems(anyCollection(), any(), any())).thenReturn(1);
+
+        // EJECUTAR
+        cartRepricingService.repriceProduct(idProducto);
+
+        // VERIFICAR
+        verify(cartItemRepository).repriceItems(eq(List.of(1L)), eq(precioPosterior), any());
+    }
+
+    @Test
+    @DisplayName("✅ No recalcula los carritos de un producto inactivo")
+    void noRecalculaProductoInactivo() {
+        // PREPARAR
+        when(catalogService.getProductsByIds(anyCollection())).thenReturn(Map.of());
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(item(1L, "100.00")));
+
+        // EJECUTAR
+        int actualizados = cartRepricingService.repriceProduct(idProducto);
+
+        // VERIFICAR
+        assertEquals(0, actualizados);
+        verify(cartItemRepository, never()).repriceItems(anyCollection(), any(), any());
+    }
+
+    @Test
+    @DisplayName("✅ El evento de cambio de precio dispara el recálculo")
+    void eventoDisparaRecalculo() {
+        // PREPARAR
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // EJECUTAR
+        cartRepricingService.onProductPriceChanged(
+                new ProductPriceChangedEvent(idProducto, new BigDecimal("100.00"), precioNuevo));
+
+        // VERIFICAR
+        verify(cartItemRepository).findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class));
+        verify(cartItemRepository, never()).repriceItems(anyCollection(), any(), any());
+    }
+
+    @Test
+    @DisplayName("✅ El UPDATE espera a que confirme la mutación en curso del mismo usuario")
+    void updateEsperaMutacionDelUsuario() throws Exception {
+        // PREPARAR: un cambio de cantidad cargó el item con el precio viejo y aún no lo guardó
+        CartItem cargado = item(1L, "100.00");
+        List<String> escrituras = new CopyOnWriteArrayList<>();
+        when(cartItemRepository.findByProductIdAndIsActiveTrueAndIdGreaterThan(eq(idProducto), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(cargado));
+        when(cartItemRepository.repriceItems(anyCollection(), eq(precioNuevo), any())).thenAnswer(invocacion -> {
+            escrituras.add("reprice");
+            return 1;
+        });
+
+        CountDownLatch cargadoAntes = new CountDownLatch(1);
+        CountDownLatch guardar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> mutacion = executor.submit(() -> cartLockManager.executeLocked(cargado.getUserId(), () -> {
+                cargadoAntes.countDown();
+                try {
+                    guardar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                escrituras.add("save");
+                return null;
+            }));
+            cargadoAntes.await();
+
+            // EJECUTAR
+            Future<Integer> recalculo = executor.submit(() -> cartRepricingService.repriceProduct(idProducto));
+
+            // VERIFICAR: el UPDATE no se ejecuta mientras el usuario tiene el lock tomado
+            verify(cartItemRepository, after(200).never()).repriceItems(anyCollection(), any(), any());
+            guardar.countDown();
+            mutacion.get(5, TimeUnit.SECONDS);
+            assertEquals(1, recalculo.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of("save", "reprice"), escrituras);
+            assertFalse(cartLockManager.lockFor(cargado.getUserId()).isLocked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ProductResponse producto(BigDecimal precio) {
+        ProductResponse producto = new ProductResponse();
+        producto.setId(idProducto);
+        producto.setPrice(precio);
+        return producto;
+    }
+
+    private CartItem item(Long id, String precio) {
+        CartItem item = new CartItem();
+        item.setId(id);
+        item.setUserId(100L + id);
+        item.setProductId(idProducto);
+        item.setQuantity(1);
+        item.setUnitPrice(new BigDecimal(precio));
+        return item;
+    }
+}
@@ -2,25 +2,45 @@ package com.techtrend.cart.service;
 
 import com.techtrend.cart.dto.CartItemRequest;
 import com.techtrend.cart.dto.CartItemResponse;
+import com.techtrend.cart.dto.CartRevalidationResponse;
 import com.techtrend.cart.model.CartItem;
 import com.techtrend.cart.repository.CartItemRepository;
 import com.techtrend.catalog.dto.ProductResponse;
 import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.CartLimitExceededException;
 import com.techtrend.common.exception.InsufficientStockException;
+import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,6 +49,7 @@ import static org.mockito.Mockito.*;
 /**
  * Tests simples y legibles para el servicio de carrito
  */
+@Slf4j
 @ExtendWith(MockitoExtension.class)
 class CartServiceTest {
 
@@ -38,6 +59,21 @@ class CartServiceTest {
     @Mock
     private CatalogService catalogService;
 
+    @Spy
+    private CartLockManager cartLockManager = new CartLockManager(16);
+
+    @Spy
+    private CartItemCounter cartItemCounter = new CartItemCounter(1000);
+
+    @Mock
+    private ProductPopularityTracker popularityTracker;
+
+    @Mock
+    private ProductCooccurrenceIndex cooccurrenceIndex;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private CartService cartService;
 
@@ -52,6 +88,10 @@ class CartServiceTest {
         // Configurar límite de items por carrito
         ReflectionTestUtils.setField(cartService, "maxItemsPerCart", 50);
 
+        // Ejecutar las transacciones programáticas en el mismo hilo
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocacion ->
+                ((TransactionCallback<Object>) invocacion.getArgument(0)).doInTransaction(null));
+
         // Crear producto de prueba
         producto = new ProductResponse();
         producto.setId(idProducto);
@@ -92,6 +132,7 @@ class CartServiceTest {
         when(catalogService.checkStockAvailability(idProducto, solicitudItem.getQuantity())).thenReturn(true);
         when(cartItemRepository.findByUserIdAndProductIdAndIsActiveTrue(idUsuario, idProducto))
                 .thenReturn(Optional.empty());
+        when(cartItemRepository.findActiveProductIdsByUserId(idUsuario)).thenReturn(List.of(9L));
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(itemGuardado);
 
         // EJECUTAR
@@ -103,6 +144,8 @@ class CartServiceTest {
         assertEquals(idUsuario, respuesta.getUserId());
         assertEquals(idProducto, respuesta.getProductId());
         assertEquals(solicitudItem.getQuantity(), respuesta.getQuantity());
+        verify(popularityTracker).onItemAdded(idProducto);
+        verify(cooccurrenceIndex).onItemAdded(idProducto, List.of(9L));
     }
 
     @Test
@@ -130,6 +173,29 @@ class CartServiceTest {
         assertEquals(cantidadTotal, itemCarrito.getQuantity());
     }
 
+    @Test
+    @DisplayName("✅ Inserción duplicada desde otra instancia se reintenta como incremento")
+    void insercionDuplicadaSeReintentaComoIncremento() {
+        // PREPARAR: la primera lectura no ve el item; otra instancia lo inserta antes
+        when(catalogService.getProductById(idProducto)).thenReturn(producto);
+        when(catalogService.checkStockAvailability(eq(idProducto), anyInt())).thenReturn(true);
+        when(cartItemRepository.findByUserIdAndProductIdAndIsActiveTrue(idUsuario, idProducto))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(itemCarrito));
+        when(cartItemRepository.save(any(CartItem.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_cart_items_active_product"))
+                .thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        // EJECUTAR
+        CartItemResponse respuesta = cartService.addProductToCart(idUsuario, solicitudItem);
+
+        // VERIFICAR
+        assertEquals(itemCarrito.getId(), respuesta.getId());
+        assertEquals(3, respuesta.getQuantity());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(popularityTracker, never()).onItemAdded(anyLong());
+    }
+
     @Test
     @DisplayName("❌ Error: Stock insuficiente")
     void errorStockInsuficiente() {
@@ -146,6 +212,51 @@ class CartServiceTest {
         assertTrue(excepcion.getMessage().contains("Stock insuficiente"));
     }
 
+    @Test
+    @DisplayName("❌ Error: Carrito alcanzó el máximo de items")
+    void errorLimiteDeItems() {
+        // PREPARAR
+        ReflectionTestUtils.setField(cartService, "maxItemsPerCart", 3);
+        when(catalogService.getProductById(idProducto)).thenReturn(producto);
+        when(catalogService.checkStockAvailability(idProducto, solicitudItem.getQuantity())).thenReturn(true);
+        when(cartItemRepository.findByUserIdAndProductIdAndIsActiveTrue(idUsuario, idProducto))
+                .thenReturn(Optional.empty());
+        when(cartItemRepository.countByUserIdAndIsActiveTrue(idUsuario)).thenReturn(3L);
+
+        // EJECUTAR Y VERIFICAR: el límite se decide con el contador, sin cargar el carrito
+        assertThrows(
+            CartLimitExceededException.class,
+            () -> cartService.addProductToCart(idUsuario, solicitudItem)
+        );
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verify(cartItemRepository, never()).findByUserIdAndIsActiveTrue(anyLong());
+        verify(cartItemRepository, never()).findActiveProductIdsByUserId(anyLong());
+    }
+
+    @Test
+    @DisplayName("✅ El contador de items evita consultas COUNT repetidas")
+    void contadorDeItemsSinConsultasRepetidas() {
+        // PREPARAR
+        CartItem otroItem = crearItemDeProducto(9L);
+        when(catalogService.getProductById(idProducto)).thenReturn(producto);
+        when(catalogService.checkStockAvailability(idProducto, solicitudItem.getQuantity())).thenReturn(true);
+        when(cartItemRepository.findByUserIdAndProductIdAndIsActiveTrue(idUsuario, idProducto))
+                .thenReturn(Optional.empty());
+        when(cartItemRepository.findByUserIdAndIsActiveTrue(idUsuario)).thenReturn(List.of(otroItem, itemCarrito));
+        when(cartItemRepository.countByUserIdAndIsActiveTrue(idUsuario)).thenReturn(1L);
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(crearItemGuardado(1));
+
+        // EJECUTAR
+        assertEquals(1L, cartService.getCartItemCount(idUsuario));
+        cartService.addProductToCart(idUsuario, solicitudItem);
+        cartService.addProductToCart(idUsuario, solicitudItem);
+        cartService.removeCartItem(idUsuario, 1L);
+
+        // VERIFICAR
+        assertEquals(2L, cartService.getCartItemCount(idUsuario));
+        verify(cartItemRepository, times(1)).countByUserIdAndIsActiveTrue(idUsuario);
+    }
+
     // ===== TESTS DE ACTUALIZAR CANTIDADES =====
 
     @Test
@@ -279,15 +390,19 @@ class CartServiceTest {
     void eliminarItemCarrito() {
         // PREPARAR
         Long idItem = 1L;
-        when(cartItemRepository.findById(idItem)).thenReturn(Optional.of(itemCarrito));
+        CartItem otroItem = crearItemDeProducto(9L);
+        when(cartItemRepository.findByUserIdAndIsActiveTrue(idUsuario)).thenReturn(List.of(itemCarrito, otroItem));
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(itemCarrito);
 
         // EJECUTAR
         boolean resultado = cartService.removeCartItem(idUsuario, idItem);
 
-        // VERIFICAR
+        // VERIFICAR: el índice recibe el carrito ya cargado, sin otra consulta
         assertTrue(resultado);
         assertFalse(itemCarrito.getIsActive());
+        verify(popularityTracker).onItemRemoved(idProducto);
+        verify(cooccurrenceIndex).onItemRemoved(idProducto, List.of(idProducto, 9L));
+        verify(cartItemRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -322,6 +437,32 @@ class CartServiceTest {
         assertFalse(itemCarrito.getIsActive());
     }
 
+    @Test
+    @DisplayName("✅ Confirmar checkout conserva lo agregado durante el pago")
+    void confirmarCheckoutConservaItemsNuevos() {
+        // PREPARAR: se compraron 2 unidades del producto 1 y 1 del 2; durante el pago el
+        // usuario agregó una unidad más del producto 1 y el producto 3
+        CartItem comprado = crearItemDeProducto(1L);
+        comprado.setQuantity(3);
+        CartItem compradoCompleto = crearItemDeProducto(2L);
+        CartItem agregadoDespues = crearItemDeProducto(3L);
+        when(cartItemRepository.findByUserIdAndIsActiveTrue(idUsuario))
+                .thenReturn(List.of(comprado, compradoCompleto, agregadoDespues));
+
+        // EJECUTAR
+        int desactivados = cartService.removeCheckedOutItems(idUsuario, Map.of(1L, 2, 2L, 1));
+
+        // VERIFICAR
+        assertEquals(1, desactivados);
+        assertTrue(comprado.getIsActive());
+        assertEquals(1, comprado.getQuantity());
+        assertFalse(compradoCompleto.getIsActive());
+        assertTrue(agregadoDespues.getIsActive());
+        assertEquals(1, agregadoDespues.getQuantity());
+        verify(cartItemRepository).saveAll(List.of(comprado, compradoCompleto));
+        verify(cooccurrenceIndex).onItemRemoved(2L, List.of(1L, 2L, 3L));
+    }
+
     // ===== TESTS DE CÁLCULOS =====
 
     @Test
@@ -365,6 +506,42 @@ class CartServiceTest {
         assertEquals(cantidadEsperada, resultado);
     }
 
+    @Test
+    @DisplayName("✅ Revalidar carrito con una sola consulta al catálogo")
+    void revalidarCarritoConPrecioNuevo() {
+        // PREPARAR
+        producto.setPrice(new BigDecimal("1200.00"));
+        when(cartItemRepository.findActiveCartItemsByUserId(idUsuario)).thenReturn(List.of(itemCarrito));
+        when(catalogService.getProductsByIds(anySet())).thenReturn(Map.of(idProducto, producto));
+
+        // EJECUTAR
+        CartRevalidationResponse respuesta = cartService.revalidateCart(idUsuario);
+
+        // VERIFICAR
+        assertEquals(new BigDecimal("2400.00"), respuesta.getTotal());
+        assertEquals(1, respuesta.getRepricedItems());
+        assertTrue(respuesta.isCheckoutReady());
+        verify(catalogService, times(1)).getProductsByIds(anySet());
+        verify(cartItemRepository).saveAll(List.of(itemCarrito));
+    }
+
+    @Test
+    @DisplayName("❌ Revalidar carrito con producto no disponible")
+    void revalidarCarritoConProductoNoDisponible() {
+        // PREPARAR
+        when(cartItemRepository.findActiveCartItemsByUserId(idUsuario)).thenReturn(List.of(itemCarrito));
+        when(catalogService.getProductsByIds(anySet())).thenReturn(Map.of());
+
+        // EJECUTAR
+        CartRevalidationResponse respuesta = cartService.revalidateCart(idUsuario);
+
+        // VERIFICAR
+        assertEquals(BigDecimal.ZERO, respuesta.getTotal());
+        assertEquals(List.of(idProducto), respuesta.getUnavailableProductIds());
+        assertFalse(respuesta.isCheckoutReady());
+        verify(cartItemRepository, never()).saveAll(anyList());
+    }
+
     // ===== TESTS DE VERIFICACIONES =====
 
     @Test
@@ -395,8 +572,171 @@ class CartServiceTest {
         assertFalse(resultado);
     }
 
+
+    // ===== TESTS DE CONCURRENCIA =====
+
+    @Test
+    @DisplayName("✅ Agregados concurrentes del mismo usuario no duplican filas")
+    void agregadosConcurrentesSinDuplicados() throws Exception {
+        // PREPARAR
+        Map<String, CartItem> activos = new ConcurrentHashMap<>();
+        AtomicInteger inserciones = new AtomicInteger();
+        simularRepositorioEnMemoria(activos, inserciones);
+
+        int hilos = 8;
+        int agregadosPorHilo = 25;
+
+        // EJECUTAR
+        ejecutarConcurrente(hilos, agregadosPorHilo, hilo -> idUsuario);
+
+        // VERIFICAR
+        assertEquals(1, inserciones.get());
+        assertEquals(hilos * agregadosPorHilo, activos.get(idUsuario + ":" + idProducto).getQuantity());
+    }
+
+    @Test
+    @DisplayName("✅ Stress: una fila por usuario y cantidad acumulada con uno y varios usuarios")
+    void stressAgregadosMultiplesUsuarios() throws Exception {
+        // PREPARAR
+        Map<String, CartItem> activos = new ConcurrentHashMap<>();
+        AtomicInteger inserciones = new AtomicInteger();
+        simularRepositorioEnMemoria(activos, inserciones);
+
+        int hilos = 8;
+        int agregadosPorHilo = 25;
+
+        // EJECUTAR: todos los hilos sobre un usuario y luego un usuario por hilo
+        ejecutarConcurrente(hilos, agregadosPorHilo, hilo -> 100L);
+        ejecutarConcurrente(hilos, agregadosPorHilo, hilo -> 200L + hilo);
+
+        // VERIFICAR
+        assertEquals(1 + hilos, inserciones.get());
+        assertEquals(hilos * agregadosPorHilo, activos.get(100L + ":" + idProducto).getQuantity());
+        for (int hilo = 0; hilo < hilos; hilo++) {
+            assertEquals(agregadosPorHilo, activos.get((200L + hilo) + ":" + idProducto).getQuantity());
+        }
+        // El stock se validó contra la cantidad acumulada y el carrito no lo descuenta
+        verify(catalogService).checkStockAvailability(idProducto, hilos * agregadosPorHilo);
+        assertEquals(100, producto.getQuantity());
+    }
+
+    /**
+     * Throughput de agregados con todos los hilos sobre un usuario frente a un usuario por
+     * hilo: con el lock por usuario, el primer caso se serializa y el segundo no.
+     *
+     * Ejecutar con: mvn test -Dtest=CartServiceTest -Dbenchmarks=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("Benchmark: agregados con un mismo usuario vs. usuarios distintos")
+    void benchmarkAgregadosMismoUsuarioVsDistintos() throws Exception {
+        Map<String, CartItem> activos = new ConcurrentHashMap<>();
+        simularRepositorioEnMemoria(activos, new AtomicInteger());
+
+        int hilos = 8;
+        int agregadosPorHilo = 100;
+
+        // Calentamiento
+        ejecutarConcurrente(hilos, agregadosPorHilo / 10, hilo -> 1_000L + hilo);
+
+        long mismoUsuario = ejecutarConcurrente(hilos, agregadosPorHilo, hilo -> 100L);
+        long usuariosDistintos = ejecutarConcurrente(hilos, agregadosPorHilo, hilo -> 200L + hilo);
+        log.info("Agregados/s -> mismo usuario: {}, usuarios distintos: {}",
+                hilos * agregadosPorHilo * 1_000_000_000L / mismoUsuario,
+                hilos * agregadosPorHilo * 1_000_000_000L / usuariosDistintos);
+    }
+
+    @Test
+    @DisplayName("✅ El lock de un usuario no bloquea a otro usuario")
+    void lockDeUsuarioNoBloqueaOtros() throws Exception {
+        // PREPARAR
+        ReentrantLock lockUsuario1 = cartLockManager.lockFor(1L);
+        assertNotSame(lockUsuario1, cartLockManager.lockFor(2L));
+
+        CountDownLatch tomado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> cartLockManager.executeLocked(1L, () -> {
+            tomado.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        tomado.await();
+
+        // EJECUTAR
+        AtomicBoolean ejecutado = new AtomicBoolean();
+        cartLockManager.executeLocked(2L, () -> ejecutado.getAndSet(true));
+
+        // VERIFICAR
+        assertTrue(ejecutado.get());
+        assertTrue(lockUsuario1.isLocked());
+        liberar.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
     // ===== MÉTODOS AUXILIARES =====
 
+    private void simularRepositorioEnMemoria(Map<String, CartItem> activos, AtomicInteger inserciones) {
+        AtomicLong secuencia = new AtomicLong();
+        when(catalogService.getProductById(idProducto)).thenReturn(producto);
+        when(catalogService.checkStockAvailability(eq(idProducto), anyInt())).thenReturn(true);
+        when(cartItemRepository.findByUserIdAndProductIdAndIsActiveTrue(anyLong(), eq(idProducto)))
+                .thenAnswer(invocacion -> {
+                    // Ensanchar la ventana de carrera entre la lectura y la inserción
+                    Thread.sleep(1);
+                    return Optional.ofNullable(activos.get(invocacion.getArgument(0) + ":" + idProducto));
+                });
+        when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocacion -> {
+            CartItem item = invocacion.getArgument(0);
+            if (item.getId() == null) {
+                item.setId(secuencia.incrementAndGet());
+                inserciones.incrementAndGet();
+                activos.put(item.getUserId() + ":" + item.getProductId(), item);
+            }
+            return item;
+        });
+    }
+
+    private long ejecutarConcurrente(int hilos, int agregadosPorHilo,
+                                     java.util.function.IntFunction<Long> usuarioPorHilo) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<Object>> tareas = new ArrayList<>();
+        for (int hilo = 0; hilo < hilos; hilo++) {
+            Long usuario = usuarioPorHilo.apply(hilo);
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < agregadosPorHilo; i++) {
+                    cartService.addProductToCart(usuario, new CartItemRequest(idProducto, 1));
+                }
+                return null;
+            }));
+        }
+        long comienzo = System.nanoTime();
+        inicio.countDown();
+        try {
+            // Propagar cualquier excepción de los hilos en lugar de ignorarla
+            for (Future<Object> tarea : tareas) {
+                tarea.get(60, TimeUnit.SECONDS);
+            }
+            return System.nanoTime() - comienzo;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CartItem crearItemDeProducto(Long productId) {
+        CartItem item = crearItemGuardado(1);
+        item.setId(100L + productId);
+        item.setProductId(productId);
+        return item;
+    }
+
     private CartItem crearItemGuardado(int cantidad) {
         CartItem item = new CartItem();
         item.setId(1L);
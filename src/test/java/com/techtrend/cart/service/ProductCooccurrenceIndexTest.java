@@ -0,0 +1,218 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.dto.RelatedProductResponse;
+import com.techtrend.cart.repository.CartItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el índice de co-ocurrencia de productos
+ */
+@ExtendWith(MockitoExtension.class)
+@Slf4j
+class ProductCooccurrenceIndexTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    private ProductCooccurrenceIndex index;
+
+    @BeforeEach
+    void configurarPruebas() {
+        index = new ProductCooccurrenceIndex(cartItemRepository, 3);
+    }
+
+    @Test
+    @DisplayName("✅ Agregar y quitar productos mantiene los pares de forma simétrica")
+    void paresSimetricos() {
+        // EJECUTAR: dos carritos comparten 1 y 2, uno comparte 1 y 3
+        index.onItemAdded(2L, List.of(1L, 2L));
+        index.onItemAdded(2L, List.of(1L));
+        index.onItemAdded(3L, List.of(1L, 2L));
+        index.onItemRemoved(3L, List.of(2L, 3L));
+
+        // VERIFICAR
+        List<RelatedProductResponse> relacionados = index.getRelatedProducts(1L, 5);
+        assertEquals(2, relacionados.size());
+        assertEquals(2L, relacionados.get(0).getProductId());
+        assertEquals(2L, relacionados.get(0).getSharedCarts());
+        assertEquals(3L, relacionados.get(1).getProductId());
+        assertEquals(1L, relacionados.get(1).getSharedCarts());
+
+        assertEquals(List.of(1L), index.getRelatedProducts(2L, 5).stream()
+                .map(RelatedProductResponse::getProductId).toList());
+        assertTrue(index.getRelatedProducts(99L, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ Vaciar un carrito descuenta todos sus pares")
+    void vaciarCarrito() {
+        // PREPARAR
+        index.addCart(List.of(1L, 2L, 3L));
+
+        // EJECUTAR
+        index.onCartCleared(List.of(1L, 2L, 3L));
+
+        // VERIFICAR
+        assertTrue(index.getRelatedProducts(1L, 5).isEmpty());
+        assertTrue(index.getRelatedProducts(3L, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ Los eventos recibidos durante la reconstrucción no se pierden")
+    void eventosDuranteReconstruccionSeConservan() {
+        // PREPARAR: mientras se recorre el carrito del usuario 1 otro usuario agrega y quita productos
+        AtomicBoolean eventosEnviados = new AtomicBoolean();
+        when(cartItemRepository.streamActiveUserProducts()).thenReturn(Stream.of(
+                        new Object[]{1L, 1L}, new Object[]{1L, 2L})
+                .peek(fila -> {
+                    if (eventosEnviados.compareAndSet(false, true)) {
+                        index.onItemAdded(3L, List.of(1L, 4L));
+                        index.onItemRemoved(4L, List.of(1L, 3L));
+                    }
+                }));
+
+        // EJECUTAR
+        index.rebuild();
+
+        // VERIFICAR
+        List<RelatedProductResponse> relacionados = index.getRelatedProducts(1L, 5);
+        assertEquals(List.of(2L, 3L), relacionados.stream()
+                .map(RelatedProductResponse::getProductId).sorted().toList());
+        assertTrue(index.getRelatedProducts(4L, 5).isEmpty());
+
+        // Fuera de la reconstrucción los eventos se aplican directamente
+        index.onItemAdded(5L, List.of(1L));
+        assertEquals(3, index.getRelatedProducts(1L, 5).size());
+    }
+
+    @Test
+    @DisplayName("✅ Un evento entre la apertura del registro y el recorrido se cuenta dos veces como mucho hasta la siguiente reconstrucción")
+    void eventoAntesDelRecorridoAcotadoYCorregido() {
+        // PREPARAR: el usuario 2 agregó el producto 2 antes del snapshot de la consulta, que ya
+        // lo incluye, pero su evento llega después de abrir el registro de eventos
+        when(cartItemRepository.streamActiveUserProducts())
+                .thenAnswer(invocacion -> {
+                    index.onItemAdded(2L, List.of(1L));
+                    return Stream.of(new Object[]{1L, 1L}, new Object[]{1L, 2L},
+                            new Object[]{2L, 1L}, new Object[]{2L, 2L});
+                })
+                .thenAnswer(invocacion -> Stream.of(new Object[]{1L, 1L}, new Object[]{1L, 2L},
+                        new Object[]{2L, 1L}, new Object[]{2L, 2L}));
+
+        // EJECUTAR
+        index.rebuild();
+
+        // VERIFICAR: el par se desvía en un carrito, el del evento repetido
+        assertEquals(3L, index.getRelatedProducts(1L, 5).get(0).getSharedCarts());
+        assertEquals(3L, index.getRelatedProducts(2L, 5).get(0).getSharedCarts());
+
+        // La siguiente reconstrucción sin eventos la descarta
+        index.rebuild();
+        assertEquals(2L, index.getRelatedProducts(1L, 5).get(0).getSharedCarts());
+        assertEquals(2L, index.getRelatedProducts(2L, 5).get(0).getSharedCarts());
+    }
+
+    @Test
+    @DisplayName("✅ La poda por fila conserva los pares más frecuentes con memoria acotada")
+    void podaPorFila() {
+        // PREPARAR: el producto 1 comparte carritos con muchos productos
+        for (int i = 0; i < 5; i++) {
+            index.addCart(List.of(1L, 10L));
+            index.addCart(List.of(1L, 20L));
+        }
+        for (long other = 100; other < 120; other++) {
+            index.addCart(List.of(1L, other));
+        }
+
+        // VERIFICAR
+        List<RelatedProductResponse> relacionados = index.getRelatedProducts(1L, 100);
+        assertTrue(relacionados.size() <= 6);
+        assertEquals(5L, relacionados.get(0).getSharedCarts());
+        assertEquals(5L, relacionados.get(1).getSharedCarts());
+        assertTrue(relacionados.stream().anyMatch(r -> r.getProductId() == 10L));
+        assertTrue(relacionados.stream().anyMatch(r -> r.getProductId() == 20L));
+    }
+
+    @Test
+    @DisplayName("✅ La reconstrucción agrupa los carritos activos por usuario")
+    void reconstruccionDesdeBaseDeDatos() {
+        // PREPARAR
+        index.addCart(List.of(7L, 8L));
+        when(cartItemRepository.streamActiveUserProducts()).thenReturn(Stream.of(
+                new Object[]{1L, 1L}, new Object[]{1L, 2L},
+                new Object[]{2L, 1L}, new Object[]{2L, 2L}, new Object[]{2L, 3L},
+                new Object[]{3L, 4L}));
+
+        // EJECUTAR
+        index.rebuild();
+
+        // VERIFICAR
+        assertEquals(2L, index.getRelatedProducts(1L, 5).get(0).getSharedCarts());
+        assertEquals(1L, index.getRelatedProducts(3L, 5).get(0).getSharedCarts());
+        assertTrue(index.getRelatedProducts(7L, 5).isEmpty());
+        assertTrue(index.getRelatedProducts(4L, 5).isEmpty());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("⏱ Benchmark: índice sobre 1M de carritos sintéticos")
+    void benchmarkUnMillonDeCarritos() {
+        // PREPARAR: 10.000 productos con popularidad sesgada y carritos de 1 a 6 productos
+        ProductCooccurrenceIndex benchmarkIndex = new ProductCooccurrenceIndex(cartItemRepository, 100);
+        Random random = new Random(42);
+        int carts = 1_000_000;
+        int products = 10_000;
+
+        // EJECUTAR: carga
+        long start = System.nanoTime();
+        List<Long> cart = new ArrayList<>();
+        for (int i = 0; i < carts; i++) {
+            cart.clear();
+            int size = 1 + random.nextInt(6);
+            for (int j = 0; j < size; j++) {
+                long product = 1 + (long) (products * Math.pow(random.nextDouble(), 3));
+                if (!cart.contains(product)) {
+                    cart.add(product);
+                }
+            }
+            benchmarkIndex.addCart(cart);
+        }
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // EJECUTAR: consultas
+        int queries = 200_000;
+        start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < queries; i++) {
+            found += benchmarkIndex.getRelatedProducts(1L + random.nextInt(products), 10).size();
+        }
+        long queryNanos = (System.nanoTime() - start) / queries;
+
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+
+        log.info("Co-ocurrencia: {} carritos cargados en {} ms, {} filas, {} ns por consulta top-10, "
+                + "~{} MB de heap en uso", carts, loadMillis, benchmarkIndex.size(), queryNanos, usedMb);
+
+        // VERIFICAR
+        assertTrue(found > 0);
+        assertTrue(benchmarkIndex.getRelatedProducts(1L, 1000).size() <= 200);
+    }
+}
@@ -0,0 +1,137 @@
+package com.techtrend.cart.service;
+
+import com.techtrend.cart.dto.TrendingProductResponse;
+import com.techtrend.cart.repository.CartItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para los contadores de popularidad de productos
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductPopularityTrackerTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    private ProductPopularityTracker tracker;
+
+    @BeforeEach
+    void configurarPruebas() {
+        tracker = new ProductPopularityTracker(cartItemRepository, 3);
+    }
+
+    @Test
+    @DisplayName("✅ Los eventos del carrito mantienen el número de usuarios por producto")
+    void eventosMantienenContadores() {
+        // EJECUTAR
+        tracker.onItemAdded(1L);
+        tracker.onItemAdded(1L);
+        tracker.onItemAdded(2L);
+        tracker.onItemRemoved(1L);
+        tracker.onItemRemoved(3L);
+
+        // VERIFICAR
+        assertEquals(1L, tracker.getUsersWithProduct(1L));
+        assertEquals(1L, tracker.getUsersWithProduct(2L));
+        assertEquals(0L, tracker.getUsersWithProduct(3L));
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    @Test
+    @DisplayName("✅ La reconciliación reemplaza los contadores con la base de datos")
+    void reconciliacionCorrigeDeriva() {
+        // PREPARAR
+        tracker.onItemAdded(1L);
+        when(cartItemRepository.countUsersPerProduct())
+                .thenReturn(List.of(new Object[]{1L, 5L}, new Object[]{2L, 2L}));
+
+        // EJECUTAR
+        tracker.reconcile();
+
+        // VERIFICAR
+        assertEquals(5L, tracker.getUsersWithProduct(1L));
+        assertEquals(2L, tracker.getUsersWithProduct(2L));
+    }
+
+    @Test
+    @DisplayName("✅ Los eventos recibidos durante la reconciliación no se pierden")
+    void eventosDuranteReconciliacionSeConservan() {
+        // PREPARAR: llegan eventos mientras corre la consulta, que aún no los incluye
+        when(cartItemRepository.countUsersPerProduct()).thenAnswer(invocacion -> {
+            tracker.onItemAdded(1L);
+            tracker.onItemAdded(3L);
+            tracker.onItemRemoved(2L);
+            return List.of(new Object[]{1L, 5L}, new Object[]{2L, 2L});
+        });
+
+        // EJECUTAR
+        tracker.reconcile();
+
+        // VERIFICAR
+        assertEquals(6L, tracker.getUsersWithProduct(1L));
+        assertEquals(1L, tracker.getUsersWithProduct(2L));
+        assertEquals(1L, tracker.getUsersWithProduct(3L));
+
+        // Fuera de la reconciliación los eventos ya no se acumulan como deltas
+        tracker.onItemAdded(1L);
+        assertEquals(7L, tracker.getUsersWithProduct(1L));
+    }
+
+    @Test
+    @DisplayName("✅ Un evento que la consulta ya incluye se cuenta dos veces como mucho hasta la siguiente reconciliación")
+    void eventoIncluidoEnLaConsultaAcotadoYCorregido() {
+        // PREPARAR: el agregado se confirmó antes del snapshot de la consulta, que ya lo
+        // cuenta (6), pero su evento llega después de abrir el registro de deltas
+        when(cartItemRepository.countUsersPerProduct())
+                .thenAnswer(invocacion -> {
+                    tracker.onItemAdded(1L);
+                    tracker.onItemRemoved(2L);
+                    return List.of(new Object[]{1L, 6L}, new Object[]{2L, 1L});
+                })
+                .thenReturn(List.of(new Object[]{1L, 6L}, new Object[]{2L, 1L}));
+
+        // EJECUTAR
+        tracker.reconcile();
+
+        // VERIFICAR: la desviación es de un evento por producto, en ambos sentidos
+        assertEquals(7L, tracker.getUsersWithProduct(1L));
+        assertEquals(0L, tracker.getUsersWithProduct(2L));
+
+        // La siguiente reconciliación sin eventos la descarta
+        tracker.reconcile();
+        assertEquals(6L, tracker.getUsersWithProduct(1L));
+        assertEquals(1L, tracker.getUsersWithProduct(2L));
+    }
+
+    @Test
+    @DisplayName("✅ El ranking de tendencias conserva los productos más agregados con memoria acotada")
+    void rankingDeTendencias() {
+        // PREPARAR: capacidad 3 y muchos productos con un solo agregado
+        for (int i = 0; i < 50; i++) {
+            tracker.onItemAdded(10L);
+            tracker.onItemAdded(20L);
+            tracker.onItemAdded(100L + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.onItemAdded(20L);
+        }
+
+        // EJECUTAR
+        List<TrendingProductResponse> tendencias = tracker.getTrending(2);
+
+        // VERIFICAR
+        assertEquals(2, tendencias.size());
+        assertEquals(20L, tendencias.get(0).getProductId());
+        assertEquals(10L, tendencias.get(1).getProductId());
+    }
+}
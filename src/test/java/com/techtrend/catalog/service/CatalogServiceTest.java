@@ -1,10 +1,14 @@
 package com.techtrend.catalog.service;
 
 import com.techtrend.catalog.dto.ProductResponse;
+import com.techtrend.catalog.event.ProductPriceChangedEvent;
+import com.techtrend.catalog.event.ProductStockChangedEvent;
 import com.techtrend.catalog.model.Product;
 import com.techtrend.catalog.repository.ProductRepository;
 import com.techtrend.common.exception.InsufficientStockException;
 import com.techtrend.common.exception.ProductNotFoundException;
+import com.techtrend.outbox.model.OutboxEvent;
+import com.techtrend.outbox.service.OutboxWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -39,6 +44,12 @@ class CatalogServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OutboxWriter outboxWriter;
+
     @InjectMocks
     private CatalogService catalogService;
 
@@ -252,15 +263,17 @@ class CatalogServiceTest {
         Long productId = 1L;
         int quantityToReduce = 10;
         when(productRepository.findById(productId)).thenReturn(Optional.of(testProduct));
-        when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(testProduct);
 
         // When
         catalogService.reduceStock(productId, quantityToReduce);
 
         // Then
         verify(productRepository).findById(productId);
-        verify(productRepository).save(testProduct);
+        verify(productRepository).saveAndFlush(testProduct);
         assertEquals(40, testProduct.getQuantity()); // 50 - 10
+        verify(outboxWriter).append(eq(OutboxEvent.AggregateType.PRODUCT), eq(productId),
+                eq(OutboxEvent.STOCK_CHANGED), any(ProductStockChangedEvent.class));
     }
 
     @Test
@@ -279,7 +292,7 @@ class CatalogServiceTest {
 
         assertTrue(exception.getMessage().contains("Stock insuficiente"));
         verify(productRepository).findById(productId);
-        verify(productRepository, never()).save(any(Product.class));
+        verify(productRepository, never()).saveAndFlush(any(Product.class));
     }
 
     @Test
@@ -297,7 +310,7 @@ class CatalogServiceTest {
 
         assertEquals("La cantidad debe ser mayor a cero", exception.getMessage());
         verify(productRepository, never()).findById(anyLong());
-        verify(productRepository, never()).save(any(Product.class));
+        verify(productRepository, never()).saveAndFlush(any(Product.class));
     }
 
     @Test
@@ -308,14 +321,14 @@ class CatalogServiceTest {
         int quantityToIncrease = 10;
         int originalQuantity = testProduct.getQuantity();
         when(productRepository.findById(productId)).thenReturn(Optional.of(testProduct));
-        when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(testProduct);
 
         // When
         catalogService.increaseStock(productId, quantityToIncrease);
 
         // Then
         verify(productRepository).findById(productId);
-        verify(productRepository).save(testProduct);
+        verify(productRepository).saveAndFlush(testProduct);
         assertEquals(originalQuantity + quantityToIncrease, testProduct.getQuantity());
     }
 
@@ -334,7 +347,7 @@ class CatalogServiceTest {
 
         assertEquals("La cantidad debe ser mayor a cero", exception.getMessage());
         verify(productRepository, never()).findById(anyLong());
-        verify(productRepository, never()).save(any(Product.class));
+        verify(productRepository, never()).saveAndFlush(any(Product.class));
     }
 
     @Test
@@ -460,4 +473,71 @@ class CatalogServiceTest {
         verify(productRepository).findLowStockProducts();
         verify(productRepository).getTotalInventoryValue();
     }
+
+    @Test
+    @DisplayName("Debería actualizar el precio y publicar el evento de cambio")
+    void shouldUpdatePriceAndPublishEvent() {
+        // Given
+        BigDecimal newPrice = new BigDecimal("8999.99");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
+        when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+
+        // When
+        ProductResponse result = catalogService.updateProductPrice(1L, newPrice);
+
+        // Then
+        assertEquals(newPrice, result.getPrice());
+        verify(eventPublisher).publishEvent(argThat((Object event) ->
+                event instanceof ProductPriceChangedEvent changed
+                        && changed.getProductId().equals(1L)
+                        && changed.getNewPrice().equals(newPrice)));
+    }
+
+    @Test
+    @DisplayName("Debería obtener varios productos con una sola consulta")
+    void shouldGetProductsByIdsWithSingleQuery() {
+        // Given
+        when(productRepository.findAllById(List.of(1L, 2L))).thenReturn(Arrays.asList(testProduct, testProduct2));
+
+        // When
+        java.util.Map<Long, ProductResponse> result = catalogService.getProductsByIds(List.of(1L, 2L));
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(testProduct.getName(), result.get(1L).getName());
+        verify(productRepository, times(1)).findAllById(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("Debería reservar el stock de varios productos en orden de ID")
+    void shouldReserveStockForAllLinesInIdOrder() {
+        // Given
+        when(productRepository.decrementStockIfAvailable(anyLong(), anyInt(), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        catalogService.reserveStock(java.util.Map.of(2L, 1, 1L, 3));
+
+        // Then
+        org.mockito.InOrder inOrder = inOrder(productRepository);
+        inOrder.verify(productRepository).decrementStockIfAvailable(eq(1L), eq(3), any(LocalDateTime.class));
+        inOrder.verify(productRepository).decrementStockIfAvailable(eq(2L), eq(1), any(LocalDateTime.class));
+        verify(productRepository, never()).save(any(Product.class));
+        verify(outboxWriter, times(2)).append(eq(OutboxEvent.AggregateType.PRODUCT), anyLong(),
+                eq(OutboxEvent.STOCK_CHANGED), any(ProductStockChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("Debería lanzar excepción al reservar un producto sin stock suficiente")
+    void shouldThrowException_whenReservationExceedsStock() {
+        // Given
+        testProduct2.setQuantity(1);
+        when(productRepository.decrementStockIfAvailable(eq(1L), eq(3), any(LocalDateTime.class))).thenReturn(1);
+        when(productRepository.decrementStockIfAvailable(eq(2L), eq(5), any(LocalDateTime.class))).thenReturn(0);
+        when(productRepository.findById(2L)).thenReturn(Optional.of(testProduct2));
+
+        // When & Then
+        InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                () -> catalogService.reserveStock(java.util.Map.of(1L, 3, 2L, 5)));
+        assertTrue(exception.getMessage().contains("Disponible: 1"));
+    }
 }
@@ -0,0 +1,191 @@
+package com.techtrend.common.resilience;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el circuit breaker
+ * 
+ * @author TechTrend Team
+ */
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(3000);
+
+    private AtomicLong now;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+        // 50% de errores o lentas, mínimo 10 llamadas, ventana de 10 s, 5 s abierto, 2 llamadas de prueba
+        circuitBreaker = new CircuitBreaker("test", 0.5, 0.5, 2000, 10, 10, 5000, 2, now::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void succeed(long durationNanos) {
+        circuitBreaker.onSuccess(acquire(), durationNanos);
+    }
+
+    private void fail(long durationNanos) {
+        circuitBreaker.onError(acquire(), durationNanos);
+    }
+
+    private CircuitBreaker.Permission acquire() {
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        assertNotNull(permission);
+        return permission;
+    }
+
+    @Test
+    @DisplayName("Debería abrir el circuito cuando la tasa de errores alcanza el umbral")
+    void shouldOpen_whenFailureRateExceedsThreshold() {
+        // Given & When
+        for (int i = 0; i < 5; i++) {
+            succeed(FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            fail(FAST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        fail(FAST);
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(1L, circuitBreaker.getMetrics().get("rejectedCalls"));
+    }
+
+    @Test
+    @DisplayName("Debería abrir el circuito cuando la tasa de llamadas lentas alcanza el umbral")
+    void shouldOpen_whenSlowCallRateExceedsThreshold() {
+        // Given & When
+        for (int i = 0; i < 10; i++) {
+            succeed(i % 2 == 0 ? SLOW : FAST);
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Debería olvidar los errores que salen de la ventana deslizante")
+    void shouldForgetFailuresOutsideTheWindow() {
+        // Given: 9 errores, uno menos que el mínimo de llamadas
+        for (int i = 0; i < 9; i++) {
+            fail(FAST);
+        }
+
+        // When: pasa la ventana completa y llegan llamadas sanas
+        advanceSeconds(11);
+        for (int i = 0; i < 10; i++) {
+            succeed(FAST);
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0.0, circuitBreaker.getMetrics().get("failureRate"));
+    }
+
+    @Test
+    @DisplayName("Debería cerrar tras llamadas de prueba exitosas en estado semiabierto")
+    void shouldCloseAfterSuccessfulHalfOpenCalls() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            fail(FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // When
+        advanceSeconds(6);
+        CircuitBreaker.Permission first = acquire();
+        CircuitBreaker.Permission second = acquire();
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onSuccess(first, FAST);
+        circuitBreaker.onSuccess(second, FAST);
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    @DisplayName("Debería volver a abrir si las llamadas de prueba fallan")
+    void shouldReopen_whenHalfOpenCallsFail() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            fail(FAST);
+        }
+        advanceSeconds(6);
+
+        // When
+        CircuitBreaker.Permission first = acquire();
+        CircuitBreaker.Permission second = acquire();
+        circuitBreaker.onSuccess(first, FAST);
+        circuitBreaker.onError(second, FAST);
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2L, circuitBreaker.getMetrics().get("openTransitions"));
+    }
+
+    @Test
+    @DisplayName("Debería ignorar en semiabierto el resultado de llamadas admitidas con el circuito cerrado")
+    void shouldIgnoreCallsAdmittedBeforeHalfOpen() {
+        // Given: una llamada lenta admitida con el circuito cerrado, que luego se abre
+        CircuitBreaker.Permission slowCall = acquire();
+        for (int i = 0; i < 10; i++) {
+            fail(FAST);
+        }
+        advanceSeconds(6);
+        CircuitBreaker.Permission trial = acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        // When: la llamada vieja termina bien durante el semiabierto
+        circuitBreaker.onSuccess(slowCall, FAST);
+        circuitBreaker.onSuccess(slowCall, FAST);
+
+        // Then: no cuenta como prueba ni libera el lugar de una
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        CircuitBreaker.Permission secondTrial = acquire();
+        assertNull(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess(trial, FAST);
+        circuitBreaker.onSuccess(secondTrial, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Debería ignorar con el circuito cerrado los resultados de permisos del semiabierto anterior")
+    void shouldIgnoreStaleResultsAfterClosing() {
+        // Given: el circuito se abre, pasa a semiabierto y cierra con dos pruebas exitosas
+        for (int i = 0; i < 10; i++) {
+            fail(FAST);
+        }
+        advanceSeconds(6);
+        CircuitBreaker.Permission first = acquire();
+        CircuitBreaker.Permission second = acquire();
+        circuitBreaker.onSuccess(first, FAST);
+        circuitBreaker.onSuccess(second, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // When: resultados repetidos de permisos del semiabierto ya cerrado
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onError(first, FAST);
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().get("windowCalls"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.techtrend.common.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el mapa primitivo long → long
+ */
+class LongLongHashMapTest {
+
+    @Test
+    @DisplayName("Debería comportarse como un HashMap ante inserciones y eliminaciones aleatorias")
+    void shouldMatchHashMapUnderRandomOperations() {
+        // Given
+        LongLongHashMap map = new LongLongHashMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(500) - 10;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                long delta = random.nextInt(5) + 1;
+                expected.merge(key, delta, Long::sum);
+                assertEquals(expected.get(key).longValue(), map.addTo(key, delta));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value.longValue(), map.get(key, -1L)));
+        map.forEach((key, value) -> assertEquals(expected.get(key).longValue(), value));
+    }
+
+    @Test
+    @DisplayName("Debería conservar solo las entradas de mayor valor al podar")
+    void shouldRetainTopEntries() {
+        // Given
+        LongLongHashMap map = new LongLongHashMap();
+        for (long key = 1; key <= 10; key++) {
+            map.put(key, key * 10);
+        }
+        map.put(11L, 50L);
+
+        // When
+        map.retainTop(3);
+
+        // Then
+        assertEquals(3, map.size());
+        assertEquals(100L, map.get(10L, 0L));
+        assertEquals(90L, map.get(9L, 0L));
+        assertEquals(80L, map.get(8L, 0L));
+        assertFalse(map.containsKey(11L));
+    }
+}
@@ -0,0 +1,101 @@
+package com.techtrend.common.util;
+
+import com.techtrend.common.util.SpaceSavingCounter.HeavyHitter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el contador de elementos frecuentes
+ */
+class SpaceSavingCounterTest {
+
+    @Test
+    @DisplayName("Debería cumplir las garantías de Space-Saving con una distribución sesgada")
+    void shouldKeepSpaceSavingGuarantees() {
+        // Given
+        int capacity = 20;
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        Map<Long, Long> frequencies = new HashMap<>();
+        Random random = new Random(11);
+        int total = 100_000;
+
+        // When: unos pocos elementos frecuentes entre muchos que aparecen pocas veces
+        for (int i = 0; i < total; i++) {
+            long item = random.nextInt(4) == 0 ? random.nextInt(5) : 100 + random.nextInt(5_000);
+            frequencies.merge(item, 1L, Long::sum);
+            counter.offer(item);
+        }
+
+        // Then
+        List<HeavyHitter> top = counter.top(capacity);
+        assertEquals(capacity, counter.size());
+        assertEquals(total, top.stream().mapToLong(HeavyHitter::getCount).sum());
+        for (int i = 0; i < top.size(); i++) {
+            HeavyHitter hitter = top.get(i);
+            long actual = frequencies.get(hitter.getItem());
+            assertTrue(hitter.getCount() - hitter.getError() <= actual && actual <= hitter.getCount());
+            if (i > 0) {
+                assertTrue(top.get(i - 1).getCount() >= hitter.getCount());
+            }
+        }
+        frequencies.forEach((item, frequency) -> {
+            if (frequency > total / capacity) {
+                assertTrue(top.stream().anyMatch(hitter -> hitter.getItem() == item), "Falta el elemento " + item);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Debería reemplazar al elemento de menor cuenta y heredar su cuenta como error")
+    void shouldReplaceMinimumCounter() {
+        // Given
+        SpaceSavingCounter counter = new SpaceSavingCounter(2);
+        counter.offer(1L);
+        counter.offer(1L);
+        counter.offer(2L);
+
+        // When
+        counter.offer(3L);
+
+        // Then
+        List<HeavyHitter> top = counter.top(2);
+        assertEquals(2, top.size());
+        assertEquals(1L, top.get(0).getItem());
+        assertEquals(2L, top.get(0).getCount());
+        assertEquals(3L, top.get(1).getItem());
+        assertEquals(2L, top.get(1).getCount());
+        assertEquals(1L, top.get(1).getError());
+    }
+
+    @Test
+    @DisplayName("Debería dividir las cuentas a la mitad y descartar las que llegan a cero")
+    void shouldHalveCountsOnDecay() {
+        // Given
+        SpaceSavingCounter counter = new SpaceSavingCounter(10);
+        for (long item = 1; item <= 4; item++) {
+            for (int i = 0; i < item; i++) {
+                counter.offer(item);
+            }
+        }
+
+        // When: 1 → 0, 2 → 1, 3 → 1, 4 → 2
+        counter.decay();
+        counter.offer(2L);
+
+        // Then
+        List<HeavyHitter> top = counter.top(10);
+        assertEquals(3, counter.size());
+        assertEquals(3, top.size());
+        assertTrue(top.get(0).getCount() == 2 && top.get(1).getCount() == 2);
+        assertEquals(3L, top.get(2).getItem());
+        assertEquals(1L, top.get(2).getCount());
+        assertTrue(top.stream().noneMatch(hitter -> hitter.getItem() == 1L));
+    }
+}
@@ -0,0 +1,117 @@
+package com.techtrend.outbox.service;
+
+import com.techtrend.outbox.model.OutboxEvent;
+import com.techtrend.outbox.repository.OutboxEventRepository;
+import com.techtrend.outbox.sink.InMemoryOutboxBus;
+import com.techtrend.outbox.sink.OutboxSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el relay de la outbox
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxSink fileSink;
+
+    private InMemoryOutboxBus bus;
+    private List<OutboxEvent> received;
+
+    @BeforeEach
+    void setUp() {
+        bus = new InMemoryOutboxBus();
+        received = new ArrayList<>();
+        bus.subscribe(received::add);
+        lenient().when(fileSink.getName()).thenReturn("file");
+    }
+
+    private OutboxRelay relay(int batchSize) {
+        return new OutboxRelay(outboxEventRepository, List.of(bus, fileSink), true, batchSize, 10);
+    }
+
+    private OutboxEvent event(long id, long aggregateId) {
+        return new OutboxEvent(id, OutboxEvent.AggregateType.PAYMENT, aggregateId,
+                OutboxEvent.PAYMENT_STATUS_CHANGED, "{\"paymentId\":" + aggregateId + "}", LocalDateTime.now());
+    }
+
+    @Test
+    @DisplayName("Debería publicar los lotes en orden en todos los destinos y borrarlos de la outbox")
+    void shouldPublishBatchesInOrderAndDeleteThem() throws Exception {
+        // Given
+        List<OutboxEvent> first = List.of(event(1, 7), event(2, 8), event(3, 7));
+        List<OutboxEvent> second = List.of(event(4, 7));
+        when(outboxEventRepository.findBatch(any(Pageable.class))).thenReturn(first, second);
+
+        // When
+        relay(3).relay();
+
+        // Then
+        assertEquals(List.of(1L, 2L, 3L, 4L), received.stream().map(OutboxEvent::getId).toList());
+        verify(fileSink).publish(first);
+        verify(fileSink).publish(second);
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(4L));
+        verify(outboxEventRepository, times(2)).findBatch(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Debería conservar el lote y reintentarlo completo cuando un destino falla")
+    void shouldKeepBatchWhenSinkFails() throws Exception {
+        // Given
+        OutboxRelay relay = relay(10);
+        List<OutboxEvent> batch = List.of(event(1, 7), event(2, 7));
+        when(outboxEventRepository.findBatch(any(Pageable.class))).thenReturn(batch);
+        doThrow(new java.io.IOException("disco lleno")).doNothing().when(fileSink).publish(batch);
+
+        // When
+        relay.relay();
+
+        // Then
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(anyList());
+        Map<String, Object> metrics = relay.getMetrics();
+        assertEquals(1L, metrics.get("failedBatches"));
+        assertEquals(Map.of("memory", 0L, "file", 1L), metrics.get("sinkFailures"));
+
+        // When
+        relay.relay();
+
+        // Then
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        assertEquals(2L, relay.getMetrics().get("published"));
+        assertEquals(4, received.size());
+    }
+
+    @Test
+    @DisplayName("Debería no hacer nada cuando el relay está deshabilitado")
+    void shouldDoNothingWhenDisabled() {
+        // Given
+        OutboxRelay relay = new OutboxRelay(outboxEventRepository, List.of(bus), false, 10, 10);
+
+        // When
+        relay.relay();
+
+        // Then
+        verifyNoInteractions(outboxEventRepository);
+    }
+}
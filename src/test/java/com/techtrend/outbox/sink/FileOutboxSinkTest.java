@@ -0,0 +1,77 @@
+package com.techtrend.outbox.sink;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techtrend.outbox.model.OutboxEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el destino de outbox en fichero NDJSON
+ *
+ * @author TechTrend Team
+ */
+class FileOutboxSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Debería añadir un evento por línea con el payload incrustado como JSON")
+    void shouldAppendOneJsonLinePerEvent() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Path file = tempDir.resolve("outbox/events.ndjson");
+        FileOutboxSink sink = new FileOutboxSink(objectMapper, file);
+        OutboxEvent first = new OutboxEvent(1L, OutboxEvent.AggregateType.PRODUCT, 5L,
+                OutboxEvent.STOCK_CHANGED, "{\"productId\":5,\"delta\":-2}", LocalDateTime.now());
+        OutboxEvent second = new OutboxEvent(2L, OutboxEvent.AggregateType.PRODUCT, 5L,
+                OutboxEvent.STOCK_CHANGED, "{\"productId\":5,\"delta\":2}", LocalDateTime.now());
+
+        // When
+        sink.publish(List.of(first));
+        sink.publish(List.of(second));
+        sink.close();
+
+        // Then
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode line = objectMapper.readTree(lines.get(0));
+        assertEquals(1L, line.get("id").asLong());
+        assertEquals("PRODUCT", line.get("aggregateType").asText());
+        assertEquals(-2, line.get("payload").get("delta").asInt());
+        assertEquals(2, objectMapper.readTree(lines.get(1)).get("payload").get("delta").asInt());
+    }
+
+    @Test
+    @DisplayName("Debería exigir la ruta del fichero fuera de target/ salvo en el perfil test")
+    void shouldRequirePathOutsideBuildDirectory() {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        MockEnvironment production = new MockEnvironment();
+        MockEnvironment dev = new MockEnvironment();
+        dev.setActiveProfiles("dev");
+        MockEnvironment test = new MockEnvironment();
+        test.setActiveProfiles("test");
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> new FileOutboxSink(objectMapper, "", test));
+        assertThrows(IllegalStateException.class,
+                () -> new FileOutboxSink(objectMapper, "target/outbox/events.ndjson", production));
+        assertThrows(IllegalStateException.class,
+                () -> new FileOutboxSink(objectMapper, "target/outbox/events.ndjson", dev));
+        assertDoesNotThrow(() -> new FileOutboxSink(objectMapper, "target/outbox/events.ndjson", test));
+        assertDoesNotThrow(() -> new FileOutboxSink(objectMapper,
+                tempDir.resolve("events.ndjson").toString(), production));
+    }
+}
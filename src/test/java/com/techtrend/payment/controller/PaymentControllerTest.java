@@ -0,0 +1,145 @@
+package com.techtrend.payment.controller;
+
+import com.techtrend.authentication.security.AuthenticatedUser;
+import com.techtrend.common.exception.IdempotencyKeyConflictException;
+import com.techtrend.payment.dto.PaymentRequest;
+import com.techtrend.payment.dto.CheckoutResponse;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.service.CheckoutService;
+import com.techtrend.payment.service.PaymentIdempotencyService;
+import com.techtrend.payment.service.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias del control de acceso en el controlador de pagos
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentControllerTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private CheckoutService checkoutService;
+
+    @Mock
+    private PaymentIdempotencyService paymentIdempotencyService;
+
+    @InjectMocks
+    private PaymentController paymentController;
+
+    private final AuthenticatedUser owner = new AuthenticatedUser(1L, "duena@techtrend.com", "CLIENT");
+    private final AuthenticatedUser otherUser = new AuthenticatedUser(2L, "otro@techtrend.com", "CLIENT");
+    private final AuthenticatedUser admin = new AuthenticatedUser(3L, "admin@techtrend.com", "ADMIN");
+
+    private PaymentResponse payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = new PaymentResponse(10L, 99L, new BigDecimal("250.00"), "COMPLETED", "TARJETA_CREDITO",
+                "TXN-1", "PEN", null, 1L, LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now(), null);
+    }
+
+    @Test
+    @DisplayName("Debería responder 404 al pedir el pago de otro usuario y 200 al dueño y al administrador")
+    void shouldHidePaymentFromOtherUser() {
+        // Given
+        when(paymentService.getPaymentById(10L)).thenReturn(payment);
+
+        // When
+        ResponseEntity<PaymentResponse> forOther = paymentController.getPaymentById(10L, otherUser);
+        ResponseEntity<PaymentResponse> forOwner = paymentController.getPaymentById(10L, owner);
+        ResponseEntity<PaymentResponse> forAdmin = paymentController.getPaymentById(10L, admin);
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, forOther.getStatusCode());
+        assertNull(forOther.getBody());
+        assertEquals(HttpStatus.OK, forOwner.getStatusCode());
+        assertEquals(payment, forOwner.getBody());
+        assertEquals(HttpStatus.OK, forAdmin.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Debería responder 404 al pedir el estado del pago de otro usuario")
+    void shouldHidePaymentStatusFromOtherUser() {
+        // Given
+        when(paymentService.getPaymentById(10L)).thenReturn(payment);
+
+        // When
+        ResponseEntity<Map<String, Object>> forOther = paymentController.getPaymentStatus(10L, otherUser);
+        ResponseEntity<Map<String, Object>> forOwner = paymentController.getPaymentStatus(10L, owner);
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, forOther.getStatusCode());
+        assertNull(forOther.getBody());
+        assertEquals(HttpStatus.OK, forOwner.getStatusCode());
+        assertEquals("COMPLETED", forOwner.getBody().get("status"));
+    }
+
+    @Test
+    @DisplayName("Debería responder 404 al pedir los pagos del pedido de otro usuario")
+    void shouldHideOrderPaymentsFromOtherUser() {
+        // Given
+        when(paymentService.getPaymentsByOrder(99L)).thenReturn(List.of(payment));
+
+        // When
+        ResponseEntity<List<PaymentResponse>> forOther = paymentController.getPaymentsByOrder(99L, otherUser);
+        ResponseEntity<List<PaymentResponse>> forOwner = paymentController.getPaymentsByOrder(99L, owner);
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, forOther.getStatusCode());
+        assertNull(forOther.getBody());
+        assertEquals(HttpStatus.OK, forOwner.getStatusCode());
+        assertEquals(List.of(payment), forOwner.getBody());
+    }
+
+    @Test
+    @DisplayName("Debería responder 404 al pedir el checkout de otro usuario")
+    void shouldHideCheckoutFromOtherUser() {
+        // Given
+        CheckoutResponse checkout = new CheckoutResponse(99L, 1L, "CONFIRMED", new BigDecimal("250.00"), 2, payment);
+        when(checkoutService.getCheckout(99L)).thenReturn(checkout);
+
+        // When
+        ResponseEntity<CheckoutResponse> forOther = paymentController.getCheckout(99L, otherUser);
+        ResponseEntity<CheckoutResponse> forAdmin = paymentController.getCheckout(99L, admin);
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, forOther.getStatusCode());
+        assertNull(forOther.getBody());
+        assertEquals(HttpStatus.OK, forAdmin.getStatusCode());
+        assertEquals(checkout, forAdmin.getBody());
+    }
+
+    @Test
+    @DisplayName("Debería dejar el conflicto de Idempotency-Key al manejador global en lugar de responder 400")
+    void shouldPropagateIdempotencyKeyConflict() {
+        // Given
+        PaymentRequest request = new PaymentRequest(99L, new BigDecimal("250.00"), "TARJETA_CREDITO",
+                "Pedido 99", "PEN", null);
+        IdempotencyKeyConflictException conflict = new IdempotencyKeyConflictException("clave-1", 1L);
+        when(paymentIdempotencyService.submitPayment(request, 1L, "clave-1")).thenThrow(conflict);
+
+        // When & Then
+        assertSame(conflict, assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentController.processPayment(request, 1L, "clave-1")));
+    }
+}
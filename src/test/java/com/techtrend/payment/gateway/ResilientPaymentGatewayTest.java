@@ -0,0 +1,108 @@
+package com.techtrend.payment.gateway;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.common.resilience.Bulkhead;
+import com.techtrend.common.resilience.CircuitBreaker;
+import com.techtrend.payment.model.Payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el decorador con circuit breaker y bulkhead
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class ResilientPaymentGatewayTest {
+
+    @Mock
+    private PaymentGateway delegate;
+
+    private Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = new Payment();
+        payment.setId(1L);
+    }
+
+    private ResilientPaymentGateway gateway(int minimumCalls, int maxConcurrentCalls) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 0.5, 1.0, 2000, minimumCalls, 10, 60000, 1);
+        return new ResilientPaymentGateway(delegate, circuitBreaker, new Bulkhead("test", maxConcurrentCalls, 0));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar sin llamar a la pasarela cuando el circuito está abierto")
+    void shouldFailFast_whenCircuitIsOpen() {
+        // Given
+        ResilientPaymentGateway gateway = gateway(2, 10);
+        when(delegate.charge(payment)).thenThrow(new PaymentGatewayException("Timeout", true));
+        assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+        assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+
+        // When
+        PaymentGatewayException exception = assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+
+        // Then
+        assertTrue(exception.isRejected());
+        verify(delegate, times(2)).charge(payment);
+        assertEquals(Boolean.FALSE, gateway.getMetrics().get("available"));
+    }
+
+    @Test
+    @DisplayName("Debería contar los pagos declinados como respuestas sanas de la pasarela")
+    void shouldNotOpenCircuit_whenPaymentsAreDeclined() {
+        // Given
+        ResilientPaymentGateway gateway = gateway(2, 10);
+        when(delegate.charge(payment)).thenReturn(PaymentGatewayResult.declined("Fondos insuficientes"));
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertFalse(gateway.charge(payment).isApproved());
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.getCircuitBreaker().getState());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar llamadas cuando el bulkhead está lleno")
+    void shouldRejectCalls_whenBulkheadIsFull() throws InterruptedException {
+        // Given: una llamada ocupa el único lugar del bulkhead
+        ResilientPaymentGateway gateway = gateway(100, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.charge(any(Payment.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return PaymentGatewayResult.approved("AUTH-1");
+        });
+        Thread slowCall = new Thread(() -> gateway.charge(payment));
+        slowCall.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        PaymentGatewayException exception = assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+        release.countDown();
+        slowCall.join(5000);
+
+        // Then
+        assertTrue(exception.isRejected());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> bulkhead = (Map<String, Object>) gateway.getMetrics().get("bulkhead");
+        assertEquals(1L, bulkhead.get("rejectedCalls"));
+        assertEquals(0, bulkhead.get("activeCalls"));
+    }
+}
@@ -0,0 +1,181 @@
+package com.techtrend.payment.gateway;
+
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.payment.model.Payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para la pasarela de pagos simulada
+ * 
+ * @author TechTrend Team
+ */
+class StubPaymentGatewayTest {
+
+    private Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = new Payment();
+        payment.setId(1L);
+    }
+
+    private StubGatewaySettings settings(double approvalRate, double errorRate) {
+        StubGatewaySettings settings = new StubGatewaySettings();
+        settings.setApprovalRate(approvalRate);
+        settings.setErrorRate(errorRate);
+        return settings;
+    }
+
+    @Test
+    @DisplayName("Debería aprobar o rechazar según la tasa de aprobación")
+    void shouldApproveOrDeclineByApprovalRate() {
+        // Given
+        StubPaymentGateway alwaysApproves = new StubPaymentGateway(settings(1.0, 0.0));
+        StubPaymentGateway alwaysDeclines = new StubPaymentGateway(settings(0.0, 0.0));
+
+        // When
+        PaymentGatewayResult approved = alwaysApproves.charge(payment);
+        PaymentGatewayResult declined = alwaysDeclines.charge(payment);
+
+        // Then
+        assertTrue(approved.isApproved());
+        assertTrue(approved.getAuthorizationCode().startsWith("AUTH-"));
+        assertFalse(declined.isApproved());
+        assertNotNull(declined.getDeclineReason());
+    }
+
+    @Test
+    @DisplayName("Debería devolver el mismo resultado al reintentar un cobro con el mismo transactionId")
+    void shouldBeIdempotentOnTransactionId() {
+        // Given
+        StubPaymentGateway gateway = new StubPaymentGateway(settings(0.5, 0.0));
+        payment.setTransactionId("TX-IDEMPOTENTE");
+
+        // When
+        PaymentGatewayResult first = gateway.charge(payment);
+
+        // Then
+        for (int i = 0; i < 50; i++) {
+            assertSame(first, gateway.charge(payment));
+        }
+        Payment other = new Payment();
+        other.setId(2L);
+        other.setTransactionId("TX-OTRO");
+        gateway.updateSettings(settings(1.0, 0.0));
+        assertTrue(gateway.charge(other).isApproved());
+    }
+
+    @Test
+    @DisplayName("Debería lanzar error de pasarela según la tasa de errores")
+    void shouldThrowByErrorRate() {
+        // Given
+        StubPaymentGateway gateway = new StubPaymentGateway(settings(1.0, 1.0));
+
+        // When & Then
+        PaymentGatewayException exception = assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+        assertFalse(exception.isTimeout());
+    }
+
+    @Test
+    @DisplayName("Debería fallar por timeout sin esperar la latencia completa")
+    void shouldTimeOut_whenLatencyExceedsTimeout() {
+        // Given
+        StubGatewaySettings settings = settings(1.0, 0.0);
+        settings.setLatencyMs(2000);
+        settings.setTimeoutMs(50);
+        StubPaymentGateway gateway = new StubPaymentGateway(settings);
+
+        // When
+        long start = System.nanoTime();
+        PaymentGatewayException exception = assertThrows(PaymentGatewayException.class, () -> gateway.charge(payment));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertTrue(exception.isTimeout());
+        assertTrue(elapsedMs < 1000, "Esperó " + elapsedMs + " ms");
+    }
+
+    @Test
+    @DisplayName("Debería encolar las solicitudes en modo de drenaje lento")
+    void shouldQueueRequestsInSlowDrainMode() throws Exception {
+        // Given: una solicitud a la vez, 100 ms cada una, timeout de 250 ms
+        StubGatewaySettings settings = settings(1.0, 0.0);
+        settings.setLatencyMs(100);
+        settings.setTimeoutMs(250);
+        settings.setSlowDrain(true);
+        settings.setDrainConcurrency(1);
+        StubPaymentGateway gateway = new StubPaymentGateway(settings);
+
+        // When: 4 solicitudes simultáneas
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<PaymentGatewayResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(pool.submit(() -> gateway.charge(payment)));
+        }
+        int approved = 0;
+        int timeouts = 0;
+        for (Future<PaymentGatewayResult> future : futures) {
+            try {
+                if (future.get(5, TimeUnit.SECONDS).isApproved()) {
+                    approved++;
+                }
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(((PaymentGatewayException) e.getCause()).isTimeout());
+                timeouts++;
+            }
+        }
+        pool.shutdown();
+
+        // Then: las primeras se atienden, las últimas exceden el timeout esperando turno
+        assertTrue(approved >= 1 && approved <= 3, "Aprobadas: " + approved);
+        assertEquals(4, approved + timeouts);
+        assertTrue(timeouts >= 1);
+    }
+
+    @Test
+    @DisplayName("Debería muestrear latencias log-normales alrededor de la mediana configurada")
+    void shouldSampleLogNormalLatencies() {
+        // Given
+        StubGatewaySettings settings = new StubGatewaySettings();
+        settings.setLatencyDistribution(StubGatewaySettings.LatencyDistribution.LOG_NORMAL);
+        settings.setLatencyMs(300);
+        settings.setLatencyP99Ms(2000);
+
+        // When
+        long[] samples = new long[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = StubPaymentGateway.sampleLatency(settings, ThreadLocalRandom.current());
+        }
+        Arrays.sort(samples);
+
+        // Then
+        long median = samples[samples.length / 2];
+        long p99 = samples[(int) (samples.length * 0.99)];
+        assertTrue(median > 250 && median < 350, "Mediana: " + median);
+        assertTrue(p99 > 1500 && p99 < 2600, "P99: " + p99);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar configuraciones inválidas y conservar la anterior")
+    void shouldRejectInvalidSettings() {
+        // Given
+        StubPaymentGateway gateway = new StubPaymentGateway(settings(1.0, 0.0));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> gateway.updateSettings(settings(1.5, 0.0)));
+        assertEquals(1.0, gateway.getSettings().getApprovalRate());
+    }
+}
@@ -0,0 +1,271 @@
+package com.techtrend.payment.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.techtrend.common.exception.PaymentGatewayException;
+import com.techtrend.payment.gateway.PaymentGateway;
+import com.techtrend.payment.gateway.PaymentGatewayResult;
+import com.techtrend.payment.gateway.StubGatewaySettings;
+import com.techtrend.payment.gateway.StubPaymentGateway;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el procesador asíncrono de pagos
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+@Slf4j
+class AsyncPaymentProcessorTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    private AsyncPaymentProcessor processor;
+    private Payment pendingPayment;
+
+    @BeforeEach
+    void setUp() {
+        processor = new AsyncPaymentProcessor(paymentRepository, transactionTemplate, paymentGateway,
+                new CallbackUrlPolicy(List.of("127.0.0.1", "169.254.169.254")), RestClient.builder(), 1, 1, 1000);
+
+        pendingPayment = new Payment();
+        pendingPayment.setId(1L);
+        pendingPayment.setOrderId(10L);
+        pendingPayment.setAmount(new BigDecimal("150.00"));
+        pendingPayment.setStatus(Payment.PaymentStatus.PENDING);
+        pendingPayment.setTransactionId("TXN-ASYNC001");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Debería completar el pago aprobado por la pasarela")
+    void shouldCompletePaymentApprovedByGateway() {
+        // Given
+        runTransactionsInline();
+        when(paymentRepository.findById(1L)).thenReturn(Optional.of(pendingPayment));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentGateway.charge(pendingPayment)).thenReturn(PaymentGatewayResult.approved("AUTH-1"));
+
+        // When
+        processor.process(1L);
+
+        // Then
+        assertEquals(Payment.PaymentStatus.COMPLETED, pendingPayment.getStatus());
+        assertNotNull(pendingPayment.getProcessedAt());
+        verify(paymentRepository).save(pendingPayment);
+    }
+
+    @Test
+    @DisplayName("Debería no conectar a callbacks que resuelven a loopback o a la dirección de metadatos")
+    void shouldNotConnectToInternalCallbacks() throws Exception {
+        // Given: un servidor local que registra cualquier conexión; los hosts están en la lista
+        AtomicInteger received = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            runTransactionsInline();
+            when(paymentRepository.findById(anyLong())).thenAnswer(invocation -> {
+                Payment payment = new Payment();
+                payment.setId(invocation.getArgument(0));
+                payment.setStatus(Payment.PaymentStatus.PENDING);
+                payment.setCallbackUrl(invocation.<Long>getArgument(0) == 1L
+                        ? "http://127.0.0.1:" + server.getAddress().getPort() + "/callback"
+                        : "http://169.254.169.254/latest/meta-data/");
+                return Optional.of(payment);
+            });
+            when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+            when(paymentGateway.charge(any(Payment.class))).thenReturn(PaymentGatewayResult.approved("AUTH-1"));
+
+            // When
+            long start = System.nanoTime();
+            processor.process(1L);
+            processor.process(2L);
+
+            // Then: ninguna conexión, ni siquiera el timeout de 1 s contra la dirección de metadatos
+            assertEquals(0, received.get());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Debería marcar como fallido el pago cuando la pasarela lanza una excepción")
+    void shouldFailPayment_whenGatewayThrows() {
+        // Given
+        runTransactionsInline();
+        when(paymentRepository.findById(1L)).thenReturn(Optional.of(pendingPayment));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentGateway.charge(pendingPayment)).thenThrow(new PaymentGatewayException("Timeout", true));
+
+        // When
+        processor.process(1L);
+
+        // Then
+        assertEquals(Payment.PaymentStatus.FAILED, pendingPayment.getStatus());
+        assertEquals("Error de comunicación con la pasarela", pendingPayment.getFailureReason());
+        assertTrue(pendingPayment.isRetryable());
+    }
+
+    @Test
+    @DisplayName("Debería omitir pagos que ya no están pendientes")
+    void shouldSkipPaymentsNoLongerPending() {
+        // Given
+        pendingPayment.setStatus(Payment.PaymentStatus.COMPLETED);
+        when(paymentRepository.findById(1L)).thenReturn(Optional.of(pendingPayment));
+
+        // When
+        processor.process(1L);
+
+        // Then
+        verifyNoInteractions(paymentGateway);
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar el encolado cuando el pool y la cola están llenos")
+    void shouldRejectSubmission_whenQueueIsFull() throws InterruptedException {
+        // Given: un worker bloqueado y una cola de capacidad 1
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(paymentRepository.findById(anyLong())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        // When
+        boolean first = processor.submit(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        boolean second = processor.submit(2L);
+        boolean third = processor.submit(3L);
+        release.countDown();
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("⏱ Carga: rendimiento y latencia de cola del flujo asíncrono con la pasarela degradada")
+    void loadTestUnderGatewayDegradation() throws InterruptedException {
+        StubGatewaySettings healthy = new StubGatewaySettings(0.9, 0.0,
+                StubGatewaySettings.LatencyDistribution.LOG_NORMAL, 30, 200, 1000, false, 4);
+        StubGatewaySettings errors = new StubGatewaySettings(0.9, 0.2,
+                StubGatewaySettings.LatencyDistribution.LOG_NORMAL, 30, 200, 1000, false, 4);
+        StubGatewaySettings slowDrain = new StubGatewaySettings(0.9, 0.0,
+                StubGatewaySettings.LatencyDistribution.LOG_NORMAL, 30, 200, 1000, true, 4);
+
+        runLoadScenario("saludable", healthy);
+        runLoadScenario("20% de errores", errors);
+        runLoadScenario("drenaje lento (4 en paralelo)", slowDrain);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runLoadScenario(String name, StubGatewaySettings settings) throws InterruptedException {
+        int payments = 2000;
+        Map<Long, Payment> store = new ConcurrentHashMap<>();
+        Map<Long, Long> submittedAt = new ConcurrentHashMap<>();
+        long[] completionNanos = new long[payments];
+        CountDownLatch done = new CountDownLatch(payments);
+
+        PaymentRepository repository = mock(PaymentRepository.class);
+        TransactionTemplate transactions = mock(TransactionTemplate.class);
+        when(repository.findById(anyLong())).thenAnswer(invocation -> {
+            Payment stored = store.get(invocation.<Long>getArgument(0));
+            if (stored == null) {
+                return Optional.empty();
+            }
+            Payment copy = new Payment();
+            copy.setId(stored.getId());
+            copy.setStatus(stored.getStatus());
+            return Optional.of(copy);
+        });
+        when(repository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment saved = invocation.getArgument(0);
+            store.put(saved.getId(), saved);
+            completionNanos[saved.getId().intValue()] = System.nanoTime() - submittedAt.get(saved.getId());
+            done.countDown();
+            return saved;
+        });
+        when(transactions.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
+        AsyncPaymentProcessor loadProcessor = new AsyncPaymentProcessor(repository, transactions,
+                new StubPaymentGateway(settings), new CallbackUrlPolicy(List.of()), RestClient.builder(),
+                64, payments, 1000);
+
+        long start = System.nanoTime();
+        for (long id = 0; id < payments; id++) {
+            Payment payment = new Payment();
+            payment.setId(id);
+            payment.setStatus(Payment.PaymentStatus.PENDING);
+            store.put(id, payment);
+            submittedAt.put(id, System.nanoTime());
+            assertTrue(loadProcessor.submit(id));
+        }
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        loadProcessor.shutdown();
+
+        long failed = store.values().stream().filter(Payment::isFailed).count();
+        Arrays.sort(completionNanos);
+        log.info("Pasarela {}: {} pagos en {} ms ({} pagos/s), p50 {} ms, p99 {} ms, {} fallidos",
+                name, payments, elapsedMs, Math.round(payments * 1000.0 / elapsedMs),
+                TimeUnit.NANOSECONDS.toMillis(completionNanos[payments / 2]),
+                TimeUnit.NANOSECONDS.toMillis(completionNanos[(int) (payments * 0.99)]), failed);
+    }
+}
@@ -0,0 +1,80 @@
+package com.techtrend.payment.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la política de destinos de callbacks de pagos
+ *
+ * @author TechTrend Team
+ */
+class CallbackUrlPolicyTest {
+
+    private static final Map<String, String> DNS = Map.of(
+            "hooks.techtrend.com", "93.184.216.34",
+            "interno.techtrend.com", "10.0.0.5");
+
+    /**
+     * Política con un DNS simulado para no depender de la red
+     */
+    private CallbackUrlPolicy policy(String... allowedHosts) {
+        return new CallbackUrlPolicy(List.of(allowedHosts), host -> {
+            String address = DNS.getOrDefault(host, host);
+            if (!Character.isDigit(address.charAt(0)) && !address.contains(":")) {
+                throw new UnknownHostException(host);
+            }
+            return new InetAddress[]{InetAddress.getByName(address)};
+        });
+    }
+
+    @Test
+    @DisplayName("Debería aceptar solo http/https hacia hosts de la lista permitida")
+    void shouldAllowOnlyListedHosts() {
+        // Given
+        CallbackUrlPolicy policy = policy("hooks.techtrend.com");
+
+        // When & Then
+        assertTrue(policy.isAllowed("https://hooks.techtrend.com/pagos"));
+        assertTrue(policy.isAllowed("http://HOOKS.techtrend.com:8080/pagos"));
+        assertFalse(policy.isAllowed("https://otro.techtrend.com/pagos"));
+        assertFalse(policy.isAllowed("ftp://hooks.techtrend.com/pagos"));
+        assertFalse(policy.isAllowed("https://admin@hooks.techtrend.com/pagos"));
+        assertFalse(policy.isAllowed("no es una url"));
+        assertFalse(policy("").isAllowed("https://hooks.techtrend.com/pagos"));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar loopback y la dirección de metadatos aunque estén en la lista")
+    void shouldRejectLoopbackAndMetadataAddresses() {
+        // Given
+        CallbackUrlPolicy policy = policy("127.0.0.1", "169.254.169.254", "0.0.0.0", "[::1]", "[fd00::1]");
+
+        // When & Then
+        assertTrue(policy.resolve("http://127.0.0.1/callback").isEmpty());
+        assertTrue(policy.resolve("http://169.254.169.254/latest/meta-data/").isEmpty());
+        assertTrue(policy.resolve("http://0.0.0.0/callback").isEmpty());
+        assertTrue(policy.resolve("http://[::1]/callback").isEmpty());
+        assertTrue(policy.resolve("http://[fd00::1]/callback").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un host permitido que resuelve a una dirección privada")
+    void shouldRejectHostResolvingToPrivateAddress() {
+        // Given
+        CallbackUrlPolicy policy = policy("hooks.techtrend.com", "interno.techtrend.com", "desconocido.techtrend.com");
+
+        // When & Then
+        assertEquals(URI.create("https://hooks.techtrend.com/pagos"),
+                policy.resolve("https://hooks.techtrend.com/pagos").orElseThrow());
+        assertTrue(policy.resolve("https://interno.techtrend.com/pagos").isEmpty());
+        assertTrue(policy.resolve("https://desconocido.techtrend.com/pagos").isEmpty());
+    }
+}
@@ -0,0 +1,300 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.cart.dto.CartItemResponse;
+import com.techtrend.cart.dto.CartRevalidationResponse;
+import com.techtrend.cart.service.CartService;
+import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.InsufficientStockException;
+import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.payment.dto.CheckoutRequest;
+import com.techtrend.payment.dto.CheckoutResponse;
+import com.techtrend.payment.dto.PaymentRequest;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.model.Checkout;
+import com.techtrend.payment.model.CheckoutLine;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.CheckoutRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el orquestador del checkout
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class CheckoutServiceTest {
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CatalogService catalogService;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private CheckoutRepository checkoutRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CheckoutService checkoutService;
+    private CheckoutRequest request;
+
+    @BeforeEach
+    void setUp() {
+        checkoutService = new CheckoutService(cartService, catalogService, paymentService, checkoutRepository,
+                new TransactionIdGenerator(1), transactionManager, 1, 10, 50, 600000);
+        request = new CheckoutRequest("TARJETA_CREDITO", null, "PEN", null);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        checkoutService.shutdown();
+    }
+
+    private CartRevalidationResponse cartWith(CartItemResponse... items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItemResponse item : items) {
+            total = total.add(item.getTotalPrice());
+        }
+        return new CartRevalidationResponse(1L, List.of(items), total, 0, List.of());
+    }
+
+    private CartItemResponse item(Long productId, int quantity, String unitPrice) {
+        BigDecimal price = new BigDecimal(unitPrice);
+        return new CartItemResponse(productId * 10, 1L, productId, quantity, price,
+                price.multiply(BigDecimal.valueOf(quantity)), "Producto " + productId, "SKU" + productId,
+                LocalDateTime.now(), LocalDateTime.now(), true);
+    }
+
+    private PaymentResponse payment(Long orderId, Payment.PaymentStatus status, BigDecimal amount) {
+        return new PaymentResponse(1L, orderId, amount, status.name(), "TARJETA_CREDITO", "TXN-1", "PEN",
+                null, 1L, LocalDateTime.now(), LocalDateTime.now(), null, null);
+    }
+
+    private Checkout reservedCheckout(Long orderId) {
+        Checkout checkout = new Checkout();
+        checkout.setId(7L);
+        checkout.setOrderId(orderId);
+        checkout.setUserId(1L);
+        checkout.setAmount(new BigDecimal("250.00"));
+        checkout.setStatus(Checkout.CheckoutStatus.RESERVED);
+        checkout.setLines(new ArrayList<>(List.of(new CheckoutLine(1L, 2), new CheckoutLine(2L, 1))));
+        return checkout;
+    }
+
+    @Test
+    @DisplayName("Debería reservar todo el stock y registrar el pago por el total del carrito")
+    void shouldReserveStockAndSubmitPaymentForCartTotal() {
+        // Given
+        when(cartService.revalidateCart(1L)).thenReturn(cartWith(item(1L, 2, "100.00"), item(2L, 1, "50.00")));
+        when(paymentService.submitPayment(any(PaymentRequest.class), eq(1L))).thenAnswer(invocation -> {
+            PaymentRequest submitted = invocation.getArgument(0);
+            return payment(submitted.getOrderId(), Payment.PaymentStatus.PENDING, submitted.getAmount());
+        });
+
+        // When
+        CheckoutResponse response = checkoutService.checkout(1L, request);
+
+        // Then
+        verify(catalogService).reserveStock(Map.of(1L, 2, 2L, 1));
+        ArgumentCaptor<Checkout> saved = ArgumentCaptor.forClass(Checkout.class);
+        verify(checkoutRepository).saveAndFlush(saved.capture());
+        assertEquals(Checkout.CheckoutStatus.RESERVED, saved.getValue().getStatus());
+        assertEquals(response.getOrderId(), saved.getValue().getOrderId());
+        assertEquals(2, saved.getValue().getLines().size());
+
+        ArgumentCaptor<PaymentRequest> paymentRequest = ArgumentCaptor.forClass(PaymentRequest.class);
+        verify(paymentService).submitPayment(paymentRequest.capture(), eq(1L));
+        assertEquals(new BigDecimal("250.00"), paymentRequest.getValue().getAmount());
+        assertEquals(response.getOrderId(), paymentRequest.getValue().getOrderId());
+        assertEquals("RESERVED", response.getStatus());
+        assertEquals(2, response.getItems());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un carrito vacío sin reservar stock")
+    void shouldRejectEmptyCartWithoutReservingStock() {
+        // Given
+        when(cartService.revalidateCart(1L)).thenReturn(cartWith());
+
+        // When & Then
+        assertThrows(InvalidPaymentException.class, () -> checkoutService.checkout(1L, request));
+        verifyNoInteractions(catalogService, paymentService);
+    }
+
+    @Test
+    @DisplayName("Debería propagar la falta de stock sin registrar el pago")
+    void shouldNotSubmitPayment_whenStockIsInsufficient() {
+        // Given
+        when(cartService.revalidateCart(1L)).thenReturn(cartWith(item(1L, 5, "100.00")));
+        doThrow(new InsufficientStockException(1L, 5, 2)).when(catalogService).reserveStock(anyMap());
+
+        // When & Then
+        assertThrows(InsufficientStockException.class, () -> checkoutService.checkout(1L, request));
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un segundo checkout en curso del mismo usuario sin reservar stock")
+    void shouldRejectSecondCheckoutInProgress() {
+        // Given
+        when(cartService.revalidateCart(1L)).thenReturn(cartWith(item(1L, 1, "100.00")));
+        when(checkoutRepository.saveAndFlush(any(Checkout.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_checkouts_user_active"));
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(InvalidPaymentException.class,
+                () -> checkoutService.checkout(1L, request));
+        assertEquals("Ya hay un checkout en curso para este usuario", exception.getMessage());
+        verifyNoInteractions(catalogService, paymentService);
+    }
+
+    @Test
+    @DisplayName("Debería liberar el stock y conservar el carrito si el pago no se puede registrar")
+    void shouldReleaseStock_whenPaymentSubmissionFails() {
+        // Given
+        when(cartService.revalidateCart(1L)).thenReturn(cartWith(item(1L, 2, "100.00"), item(2L, 1, "50.00")));
+        when(paymentService.submitPayment(any(PaymentRequest.class), eq(1L)))
+                .thenThrow(new InvalidPaymentException("Monto excede el límite máximo permitido"));
+        when(checkoutRepository.findByOrderId(anyLong())).thenAnswer(invocation ->
+                Optional.of(reservedCheckout(invocation.getArgument(0))));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RESERVED),
+                eq(Checkout.CheckoutStatus.RELEASED), anyString(), any(LocalDateTime.class))).thenReturn(1);
+
+        // When & Then
+        assertThrows(InvalidPaymentException.class, () -> checkoutService.checkout(1L, request));
+        verify(catalogService).releaseStock(Map.of(1L, 2, 2L, 1));
+        verify(cartService, never()).removeCheckedOutItems(anyLong(), anyMap());
+    }
+
+    @Test
+    @DisplayName("Debería confirmar el checkout y quitar del carrito lo comprado cuando el pago se completa")
+    void shouldConfirmCheckoutAndRemovePurchasedItems_whenPaymentCompletes() {
+        // Given
+        when(checkoutRepository.findByOrderId(99L)).thenReturn(Optional.of(reservedCheckout(99L)));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RESERVED),
+                eq(Checkout.CheckoutStatus.CONFIRMED), isNull(), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        checkoutService.onPaymentStatusChanged(new PaymentStatusChangedEvent(1L, 99L, Payment.PaymentStatus.PENDING,
+                Payment.PaymentStatus.COMPLETED, false, new BigDecimal("250.00"), "PEN", "TARJETA_CREDITO",
+                LocalDateTime.now()));
+
+        // Then
+        verify(cartService, timeout(2000)).removeCheckedOutItems(1L, Map.of(1L, 2, 2L, 1));
+        verify(cartService, never()).clearCart(anyLong());
+        verify(catalogService, never()).releaseStock(anyMap());
+    }
+
+    @Test
+    @DisplayName("Debería reservar de nuevo y confirmar si el pago se completa con el checkout ya liberado")
+    void shouldReReserveAndConfirm_whenPaymentCompletesAfterRelease() {
+        // Given
+        Checkout released = reservedCheckout(99L);
+        released.setStatus(Checkout.CheckoutStatus.RELEASED);
+        when(checkoutRepository.findByOrderId(99L)).thenReturn(Optional.of(released));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RELEASED),
+                eq(Checkout.CheckoutStatus.CONFIRMED), isNull(), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        checkoutService.onPaymentStatusChanged(new PaymentStatusChangedEvent(1L, 99L, Payment.PaymentStatus.DEAD_LETTER,
+                Payment.PaymentStatus.COMPLETED, false, new BigDecimal("250.00"), "PEN", "TARJETA_CREDITO",
+                LocalDateTime.now()));
+
+        // Then
+        verify(cartService, timeout(2000)).removeCheckedOutItems(1L, Map.of(1L, 2, 2L, 1));
+        verify(catalogService).reserveStock(Map.of(1L, 2, 2L, 1));
+        verify(checkoutRepository, never()).transition(anyLong(), any(), eq(Checkout.CheckoutStatus.REFUND_REVIEW),
+                anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debería dejar el checkout en revisión de reembolso si el pago se completa tras liberar y sin stock")
+    void shouldMarkForRefundReview_whenPaymentCompletesAfterReleaseWithoutStock() {
+        // Given
+        Checkout released = reservedCheckout(99L);
+        released.setStatus(Checkout.CheckoutStatus.RELEASED);
+        when(checkoutRepository.findByOrderId(99L)).thenReturn(Optional.of(released));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RELEASED),
+                eq(Checkout.CheckoutStatus.CONFIRMED), isNull(), any(LocalDateTime.class))).thenReturn(1);
+        doThrow(new InsufficientStockException(1L, 2, 0)).when(catalogService).reserveStock(anyMap());
+
+        // When
+        checkoutService.onPaymentStatusChanged(new PaymentStatusChangedEvent(1L, 99L, Payment.PaymentStatus.DEAD_LETTER,
+                Payment.PaymentStatus.COMPLETED, false, new BigDecimal("250.00"), "PEN", "TARJETA_CREDITO",
+                LocalDateTime.now()));
+
+        // Then
+        verify(checkoutRepository, timeout(2000)).transition(eq(7L), eq(Checkout.CheckoutStatus.RELEASED),
+                eq(Checkout.CheckoutStatus.REFUND_REVIEW), anyString(), any(LocalDateTime.class));
+        verify(cartService, never()).removeCheckedOutItems(anyLong(), anyMap());
+    }
+
+    @Test
+    @DisplayName("Debería mantener la reserva en fallos reintentables y liberarla en dead-letter")
+    void shouldKeepReservationOnRetryableFailureAndReleaseOnDeadLetter() {
+        // Given
+        when(checkoutRepository.findByOrderId(99L)).thenReturn(Optional.of(reservedCheckout(99L)));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RESERVED),
+                eq(Checkout.CheckoutStatus.RELEASED), anyString(), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        checkoutService.onPaymentStatusChanged(new PaymentStatusChangedEvent(1L, 99L, Payment.PaymentStatus.PENDING,
+                Payment.PaymentStatus.FAILED, true, new BigDecimal("250.00"), "PEN", "TARJETA_CREDITO",
+                LocalDateTime.now()));
+        verifyNoInteractions(checkoutRepository, catalogService);
+        checkoutService.onPaymentStatusChanged(new PaymentStatusChangedEvent(1L, 99L, Payment.PaymentStatus.FAILED,
+                Payment.PaymentStatus.DEAD_LETTER, false, new BigDecimal("250.00"), "PEN", "TARJETA_CREDITO",
+                LocalDateTime.now()));
+
+        // Then
+        verify(catalogService, timeout(2000)).releaseStock(Map.of(1L, 2, 2L, 1));
+        verify(cartService, never()).removeCheckedOutItems(anyLong(), anyMap());
+    }
+
+    @Test
+    @DisplayName("Debería liberar en la reconciliación las reservas que nunca tuvieron pago")
+    void shouldReleaseStaleReservationsWithoutPayment() {
+        // Given
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{99L, null});
+        when(checkoutRepository.findSettleableReservations(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(rows);
+        when(checkoutRepository.findByOrderId(99L)).thenReturn(Optional.of(reservedCheckout(99L)));
+        when(checkoutRepository.transition(eq(7L), eq(Checkout.CheckoutStatus.RESERVED),
+                eq(Checkout.CheckoutStatus.RELEASED), eq("Pago no registrado"), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        // When
+        int settled = checkoutService.reconcileStaleReservations();
+
+        // Then
+        assertEquals(1, settled);
+        verify(catalogService).releaseStock(Map.of(1L, 2, 2L, 1));
+    }
+}
@@ -0,0 +1,185 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.cart.dto.CartItemRequest;
+import com.techtrend.cart.service.CartService;
+import com.techtrend.catalog.model.Product;
+import com.techtrend.catalog.repository.ProductRepository;
+import com.techtrend.catalog.service.CatalogService;
+import com.techtrend.common.exception.InsufficientStockException;
+import com.techtrend.payment.dto.CheckoutRequest;
+import com.techtrend.payment.model.Checkout;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.CheckoutRepository;
+import com.techtrend.payment.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark del checkout con SKUs disputados sobre la base de datos H2 de la aplicación
+ *
+ * Se ejecuta solo con -Dbenchmarks=true
+ *
+ * @author TechTrend Team
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.techtrend=WARN",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+        "app.payment.async.queue-capacity=10000",
+        "app.payment.retry.enabled=false"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class CheckoutThroughputBenchmarkTest {
+
+    private static final int THREADS = 32;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private CheckoutRepository checkoutRepository;
+
+    @Test
+    @DisplayName("⏱ Carga: checkouts concurrentes sobre 3 SKUs disputados")
+    void loadTestConcurrentCheckoutsOnContendedSkus() throws Exception {
+        runScenario("stock holgado", 1000, 100_000, 1L);
+        runScenario("stock escaso", 1000, 300, 100_000L);
+    }
+
+    @Test
+    @DisplayName("⏱ Carga: descuento de stock leer-modificar-guardar frente al UPDATE condicional")
+    void compareReadModifyWriteWithConditionalUpdate() throws Exception {
+        int operations = 2000;
+        Product legacy = productRepository.save(product("LEGACY", operations));
+        Product conditional = productRepository.save(product("CONDITIONAL", operations));
+
+        long legacyMs = runConcurrently(operations, i -> catalogService.reduceStock(legacy.getId(), 1));
+        long conditionalMs = runConcurrently(operations,
+                i -> catalogService.reserveStock(java.util.Map.of(conditional.getId(), 1)));
+
+        int legacyLeft = productRepository.findById(legacy.getId()).orElseThrow().getQuantity();
+        int conditionalLeft = productRepository.findById(conditional.getId()).orElseThrow().getQuantity();
+        log.info("reduceStock: {} descuentos en {} ms, stock final {} ({} actualizaciones perdidas)",
+                operations, legacyMs, legacyLeft, legacyLeft);
+        log.info("reserveStock: {} descuentos en {} ms, stock final {}",
+                operations, conditionalMs, conditionalLeft);
+        assertEquals(0, conditionalLeft);
+    }
+
+    private void runScenario(String name, int checkouts, int stockPerSku, long userOffset) throws Exception {
+        List<Product> hotSkus = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            hotSkus.add(productRepository.save(product(name + "-" + i + "-" + userOffset, stockPerSku)));
+        }
+        for (int user = 0; user < checkouts; user++) {
+            for (Product sku : hotSkus) {
+                cartService.addProductToCart(userOffset + user, new CartItemRequest(sku.getId(), 1));
+            }
+        }
+
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[checkouts];
+        long elapsedMs = runConcurrently(checkouts, i -> {
+            long start = System.nanoTime();
+            try {
+                checkoutService.checkout(userOffset + i, new CheckoutRequest("TARJETA_CREDITO", null, "PEN", null));
+            } catch (InsufficientStockException e) {
+                rejected.incrementAndGet();
+            }
+            latencies[i] = System.nanoTime() - start;
+        });
+
+        // Esperar a que los workers resuelvan todos los pagos y sus compensaciones
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+        while (paymentRepository.countByStatus(Payment.PaymentStatus.PENDING) > 0
+                || checkoutRepository.findAll().stream().anyMatch(Checkout::isReserved)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Los pagos no terminaron a tiempo");
+            Thread.sleep(50);
+        }
+        Thread.sleep(200);
+
+        long confirmed = checkoutRepository.findAll().stream()
+                .filter(checkout -> checkout.getUserId() >= userOffset && checkout.getUserId() < userOffset + checkouts)
+                .filter(checkout -> checkout.getStatus() == Checkout.CheckoutStatus.CONFIRMED)
+                .count();
+        for (Product sku : hotSkus) {
+            int left = productRepository.findById(sku.getId()).orElseThrow().getQuantity();
+            assertTrue(left >= 0);
+            assertEquals(stockPerSku - confirmed, left, "El stock debe cuadrar con los checkouts confirmados");
+        }
+
+        Arrays.sort(latencies);
+        log.info("Checkout {}: {} checkouts en {} ms ({} checkouts/s), p50 {} ms, p99 {} ms, "
+                        + "{} sin stock, {} confirmados",
+                name, checkouts, elapsedMs, Math.round(checkouts * 1000.0 / elapsedMs),
+                String.format("%.1f", latencies[checkouts / 2] / 1e6),
+                String.format("%.1f", latencies[(int) (checkouts * 0.99)] / 1e6),
+                rejected.get(), confirmed);
+    }
+
+    private long runConcurrently(int operations, IntTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                task.run(index);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executor.shutdown();
+        return elapsedMs;
+    }
+
+    private Product product(String sku, int stock) {
+        Product product = new Product();
+        product.setName("Producto " + sku);
+        product.setPrice(new BigDecimal("99.90"));
+        product.setQuantity(stock);
+        product.setSku(sku);
+        product.setIsActive(true);
+        return product;
+    }
+
+    @FunctionalInterface
+    private interface IntTask {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,119 @@
+package com.techtrend.payment.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para la conversión de monedas con tablas de tipos de cambio
+ *
+ * @author TechTrend Team
+ */
+class CurrencyConversionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeRates(String content, long modifiedAt) throws IOException {
+        Path file = tempDir.resolve("rates.properties");
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedAt));
+        return file;
+    }
+
+    private CurrencyConversionService service(Path file) {
+        return new CurrencyConversionService(new DefaultResourceLoader(), "file:" + file,
+                List.of("USD", "EUR", "PEN"));
+    }
+
+    @Test
+    @DisplayName("Debería convertir a la moneda base con la tabla del fichero")
+    void shouldConvertToBaseCurrency() throws IOException {
+        // Given
+        CurrencyConversionService service = service(writeRates("base=PEN\nUSD=3.75\nEUR=4.05\n", 1000));
+
+        // When
+        CurrencyRateSnapshot rates = service.getSnapshot();
+
+        // Then
+        assertEquals("PEN", rates.getBaseCurrency());
+        assertEquals(new BigDecimal("37.50"), rates.toBase("USD", new BigDecimal("10.00")));
+        assertEquals(new BigDecimal("-4.05"), rates.toBase("EUR", new BigDecimal("-1")));
+        assertEquals(1234L, rates.toBaseCents("PEN", 1234L));
+        assertFalse(rates.supports("GBP"));
+        assertThrows(IllegalArgumentException.class, () -> rates.toBaseCents("GBP", 100));
+    }
+
+    @Test
+    @DisplayName("Debería coincidir con BigDecimal, también cuando el producto no cabe en un long")
+    void shouldMatchBigDecimalIncludingOverflow() {
+        // Given
+        CurrencyRateSnapshot rates = CurrencyRateSnapshot.of("PEN", Map.of("USD", new BigDecimal("3.754321")), "test");
+        BigDecimal rate = new BigDecimal("3.754321");
+        Random random = new Random(11);
+
+        for (int i = 0; i < 10_000; i++) {
+            long cents = i % 2 == 0 ? random.nextInt() : random.nextLong() / 1000;
+
+            // When
+            long converted = rates.toBaseCents("USD", cents);
+
+            // Then
+            long expected = BigDecimal.valueOf(cents).multiply(rate).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            assertEquals(expected, converted, "céntimos: " + cents);
+        }
+    }
+
+    @Test
+    @DisplayName("Debería reemplazar la tabla al cambiar el fichero y conservarla si el nuevo es inválido")
+    void shouldSwapSnapshotOnChangeAndKeepItOnInvalidFile() throws IOException {
+        // Given
+        Path file = writeRates("base=PEN\nUSD=3.75\nEUR=4.05\n", 1000);
+        CurrencyConversionService service = service(file);
+        CurrencyRateSnapshot first = service.getSnapshot();
+
+        // When: sin cambios no se recarga
+        service.reloadIfModified();
+
+        // Then
+        assertSame(first, service.getSnapshot());
+
+        // When: fichero nuevo válido
+        writeRates("base=PEN\nUSD=3.80\nEUR=4.10\n", 2000);
+        service.reloadIfModified();
+
+        // Then
+        CurrencyRateSnapshot second = service.getSnapshot();
+        assertNotSame(first, second);
+        assertEquals(new BigDecimal("38.00"), second.toBase("USD", BigDecimal.TEN));
+        assertEquals(new BigDecimal("37.50"), first.toBase("USD", BigDecimal.TEN));
+
+        // When: fichero sin una moneda soportada
+        writeRates("base=PEN\nUSD=3.90\n", 3000);
+        service.reloadIfModified();
+
+        // Then
+        assertSame(second, service.getSnapshot());
+        assertEquals(1L, service.getMetrics().get("reloads"));
+        assertEquals(1L, service.getMetrics().get("failedReloads"));
+    }
+
+    @Test
+    @DisplayName("Debería fallar al arrancar si el fichero de tipos de cambio no existe")
+    void shouldFailFast_whenRatesFileIsMissing() {
+        assertThrows(IllegalStateException.class, () -> service(tempDir.resolve("missing.properties")));
+    }
+}
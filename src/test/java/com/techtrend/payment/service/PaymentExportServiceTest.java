@@ -0,0 +1,97 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techtrend.payment.dto.PaymentPageResponse;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.model.Payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para la exportación NDJSON de pagos
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentExportServiceTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    private PaymentExportService exportService;
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new PaymentExportService(paymentService, objectMapper, 2);
+    }
+
+    private PaymentResponse payment(long id) {
+        return new PaymentResponse(id, 100L + id, new BigDecimal("10.00"), "COMPLETED", "TARJETA_CREDITO",
+                "TXN-EXPORT" + id, "PEN", null, 1L, LocalDateTime.of(2026, 1, 1, 10, 0), null, null, null);
+    }
+
+    @Test
+    @DisplayName("Debería escribir un pago por línea recorriendo todas las páginas")
+    void shouldWriteOnePaymentPerLineAcrossPages() throws Exception {
+        // Given
+        when(paymentService.getPaymentsByStatus(Payment.PaymentStatus.COMPLETED, null, 2))
+                .thenReturn(new PaymentPageResponse(Arrays.asList(payment(1), payment(2)), "c1"));
+        when(paymentService.getPaymentsByStatus(Payment.PaymentStatus.COMPLETED, "c1", 2))
+                .thenReturn(new PaymentPageResponse(Arrays.asList(payment(3)), null));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long exported = exportService.exportPayments(Payment.PaymentStatus.COMPLETED, null, output);
+
+        // Then
+        assertEquals(3, exported);
+        List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(i + 1L, objectMapper.readTree(lines.get(i)).get("id").asLong());
+        }
+        verify(paymentService, times(2)).getPaymentsByStatus(eq(Payment.PaymentStatus.COMPLETED), any(), eq(2));
+    }
+
+    @Test
+    @DisplayName("Debería exportar todos los pagos cuando no hay filtros")
+    void shouldExportAllPaymentsWithoutFilters() throws Exception {
+        // Given
+        when(paymentService.getAllPayments(null, 2)).thenReturn(new PaymentPageResponse(Arrays.asList(), null));
+
+        // When
+        long exported = exportService.exportPayments(null, null, new ByteArrayOutputStream());
+
+        // Then
+        assertEquals(0, exported);
+        verify(paymentService, never()).getPaymentsByUser(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar filtros por estado y usuario a la vez")
+    void shouldRejectStatusAndUserTogether() {
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.exportPayments(Payment.PaymentStatus.PENDING, 1L, new ByteArrayOutputStream()));
+        verifyNoInteractions(paymentService);
+    }
+}
@@ -0,0 +1,188 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.common.exception.IdempotencyKeyConflictException;
+import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.payment.dto.PaymentRequest;
+import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.model.PaymentIdempotencyKey;
+import com.techtrend.payment.repository.PaymentIdempotencyKeyRepository;
+import com.techtrend.payment.service.PaymentIdempotencyService.IdempotentPaymentResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el servicio de idempotencia de pagos
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentIdempotencyServiceTest {
+
+    private static final String KEY = "3f1c9a52-orden-42";
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PaymentIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private PaymentIdempotencyService idempotencyService;
+    private PaymentRequest request;
+    private PaymentResponse pendingResponse;
+    private Long userId = 7L;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new PaymentIdempotencyService(paymentService, idempotencyKeyRepository,
+                transactionTemplate, 600000, 100, 24);
+
+        request = new PaymentRequest();
+        request.setOrderId(42L);
+        request.setAmount(new BigDecimal("150.00"));
+        request.setPaymentMethod("TARJETA_CREDITO");
+        request.setCurrency("PEN");
+
+        pendingResponse = new PaymentResponse(1L, 42L, new BigDecimal("150.00"), "PENDING", "TARJETA_CREDITO",
+                "TXN-IDEM0001", "PEN", null, userId, LocalDateTime.now(), LocalDateTime.now(), null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Debería responder el reintento con el pago original sin crear otro")
+    void shouldReplayRetryWithoutCreatingAnotherPayment() {
+        // Given
+        runTransactionsInline();
+        when(paymentService.submitPayment(request, userId)).thenReturn(pendingResponse);
+        when(paymentService.getPaymentById(1L)).thenReturn(pendingResponse);
+
+        // When
+        IdempotentPaymentResult first = idempotencyService.submitPayment(request, userId, KEY);
+        IdempotentPaymentResult retry = idempotencyService.submitPayment(request, userId, KEY);
+
+        // Then
+        assertFalse(first.isReplayed());
+        assertTrue(retry.isReplayed());
+        assertEquals(1L, retry.getResponse().getId());
+        verify(paymentService, times(1)).submitPayment(request, userId);
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(record ->
+                KEY.equals(record.getIdempotencyKey()) && record.getPaymentId().equals(1L)));
+    }
+
+    @Test
+    @DisplayName("Debería colapsar solicitudes concurrentes con la misma clave en un solo pago")
+    void shouldCollapseConcurrentDuplicatesIntoSinglePayment() throws Exception {
+        // Given
+        runTransactionsInline();
+        CountDownLatch firstEntered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(paymentService.submitPayment(request, userId)).thenAnswer(invocation -> {
+            firstEntered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return pendingResponse;
+        });
+
+        // When
+        CompletableFuture<IdempotentPaymentResult> first =
+                CompletableFuture.supplyAsync(() -> idempotencyService.submitPayment(request, userId, KEY));
+        assertTrue(firstEntered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<IdempotentPaymentResult> duplicate =
+                CompletableFuture.supplyAsync(() -> idempotencyService.submitPayment(request, userId, KEY));
+        Thread.sleep(100);
+        release.countDown();
+
+        // Then
+        assertFalse(first.get(5, TimeUnit.SECONDS).isReplayed());
+        IdempotentPaymentResult duplicateResult = duplicate.get(5, TimeUnit.SECONDS);
+        assertTrue(duplicateResult.isReplayed());
+        assertEquals(1L, duplicateResult.getResponse().getId());
+        verify(paymentService, times(1)).submitPayment(request, userId);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar la clave reutilizada con otra solicitud")
+    void shouldRejectKeyReusedWithDifferentPayload() {
+        // Given
+        PaymentIdempotencyKey record = new PaymentIdempotencyKey();
+        record.setIdempotencyKey(KEY);
+        record.setUserId(userId);
+        record.setPaymentId(1L);
+        record.setRequestHash(PaymentIdempotencyService.hashRequest(request));
+        record.setExpiresAt(LocalDateTime.now().plusHours(1));
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, KEY)).thenReturn(Optional.of(record));
+
+        PaymentRequest changed = new PaymentRequest();
+        changed.setOrderId(42L);
+        changed.setAmount(new BigDecimal("999.00"));
+        changed.setPaymentMethod("TARJETA_CREDITO");
+        changed.setCurrency("PEN");
+
+        // When & Then
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.submitPayment(changed, userId, KEY));
+        verify(paymentService, never()).submitPayment(any(), any());
+    }
+
+    @Test
+    @DisplayName("Debería responder con el pago ganador cuando otra instancia registró la clave")
+    void shouldReplayWinnerWhenAnotherInstanceRegisteredKey() {
+        // Given
+        runTransactionsInline();
+        PaymentIdempotencyKey winner = new PaymentIdempotencyKey();
+        winner.setIdempotencyKey(KEY);
+        winner.setUserId(userId);
+        winner.setPaymentId(5L);
+        winner.setRequestHash(PaymentIdempotencyService.hashRequest(request));
+        winner.setExpiresAt(LocalDateTime.now().plusHours(1));
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, KEY))
+                .thenReturn(Optional.empty(), Optional.empty(), Optional.of(winner));
+        when(paymentService.submitPayment(request, userId)).thenReturn(pendingResponse);
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_payment_idempotency_user_key"));
+        PaymentResponse winnerResponse = new PaymentResponse(5L, 42L, new BigDecimal("150.00"), "COMPLETED",
+                "TARJETA_CREDITO", "TXN-IDEM0005", "PEN", null, userId, LocalDateTime.now(), LocalDateTime.now(),
+                LocalDateTime.now(), null);
+        when(paymentService.getPaymentById(5L)).thenReturn(winnerResponse);
+
+        // When
+        IdempotentPaymentResult result = idempotencyService.submitPayment(request, userId, KEY);
+
+        // Then
+        assertTrue(result.isReplayed());
+        assertEquals(5L, result.getResponse().getId());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar claves de idempotencia demasiado largas")
+    void shouldRejectTooLongKey() {
+        // When & Then
+        assertThrows(InvalidPaymentException.class,
+                () -> idempotencyService.submitPayment(request, userId, "k".repeat(101)));
+        verifyNoInteractions(paymentService);
+    }
+}
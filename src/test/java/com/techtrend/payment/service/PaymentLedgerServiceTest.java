@@ -0,0 +1,176 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.payment.dto.PaymentLedgerEntryResponse;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentLedgerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del ledger de pagos particionado por mes sobre una base de datos H2 en memoria
+ *
+ * @author TechTrend Team
+ */
+class PaymentLedgerServiceTest {
+
+    @TempDir
+    Path archiveDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private PaymentLedgerRepository ledgerRepository;
+    private PaymentLedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:ledger-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ledgerRepository = new PaymentLedgerRepository(jdbcTemplate);
+        ledgerRepository.initialize();
+        ledgerService = new PaymentLedgerService(ledgerRepository, new ObjectMapper().findAndRegisterModules(),
+                1, 6, archiveDir, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    private Payment payment(Long id) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setOrderId(id * 10);
+        payment.setUserId(1L);
+        payment.setAmount(new BigDecimal("150.00"));
+        payment.setCurrency("PEN");
+        payment.setPaymentMethod("TARJETA_CREDITO");
+        return payment;
+    }
+
+    @Test
+    @DisplayName("Debería crear una tabla por mes y leer solo las de los meses del rango")
+    void shouldCreateMonthlyPartitionsAndPruneByRange() {
+        // Given
+        ledgerRepository.append(payment(1L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2026, 1, 31, 23, 59));
+        ledgerRepository.append(payment(1L), Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED,
+                LocalDateTime.of(2026, 2, 1, 0, 0));
+        ledgerRepository.append(payment(2L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2026, 3, 15, 12, 0));
+
+        // When
+        LocalDateTime from = LocalDateTime.of(2026, 2, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2026, 3, 1, 0, 0);
+        List<PaymentLedgerEntryResponse> entries = ledgerService.getEntries(from, to, 10);
+
+        // Then
+        assertEquals(List.of(YearMonth.of(2026, 1), YearMonth.of(2026, 2), YearMonth.of(2026, 3)),
+                ledgerRepository.findPartitions(null, null));
+        assertEquals(List.of(YearMonth.of(2026, 2)), ledgerService.getPartitionsFor(from, to));
+        assertEquals(1, entries.size());
+        assertEquals("PENDING", entries.get(0).getPreviousStatus());
+        assertEquals("COMPLETED", entries.get(0).getNewStatus());
+        assertEquals(new BigDecimal("150.00"), entries.get(0).getAmount());
+    }
+
+    @Test
+    @DisplayName("Debería devolver el historial de un pago a través de varias particiones en orden")
+    void shouldReturnPaymentHistoryAcrossPartitions() {
+        // Given
+        ledgerRepository.append(payment(1L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2026, 1, 31, 23, 59));
+        ledgerRepository.append(payment(2L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2026, 2, 1, 8, 0));
+        ledgerRepository.append(payment(1L), Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED,
+                LocalDateTime.of(2026, 2, 1, 9, 0));
+        ledgerRepository.append(payment(1L), Payment.PaymentStatus.FAILED, null,
+                LocalDateTime.of(2026, 3, 2, 9, 0));
+
+        // When
+        List<PaymentLedgerEntryResponse> history = ledgerService.getPaymentHistory(1L);
+
+        // Then
+        assertEquals(3, history.size());
+        assertNull(history.get(0).getPreviousStatus());
+        assertEquals("FAILED", history.get(1).getNewStatus());
+        assertNull(history.get(2).getNewStatus());
+        assertTrue(history.get(0).getId() < history.get(1).getId());
+    }
+
+    @Test
+    @DisplayName("Debería archivar en NDJSON y eliminar las particiones anteriores a la retención")
+    void shouldArchiveAndDropExpiredPartitions() throws IOException {
+        // Given
+        ledgerRepository.append(payment(1L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2025, 12, 10, 10, 0));
+        ledgerRepository.append(payment(1L), Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED,
+                LocalDateTime.of(2025, 12, 10, 10, 5));
+        ledgerRepository.append(payment(2L), null, Payment.PaymentStatus.PENDING,
+                LocalDateTime.of(2026, 1, 5, 10, 0));
+
+        // When: retención de 6 meses en julio de 2026
+        List<YearMonth> archived = ledgerService.maintainPartitions(YearMonth.of(2026, 7));
+
+        // Then
+        assertEquals(List.of(YearMonth.of(2025, 12)), archived);
+        assertEquals(List.of(YearMonth.of(2026, 1), YearMonth.of(2026, 7), YearMonth.of(2026, 8)),
+                ledgerRepository.findPartitions(null, null));
+        List<String> lines = Files.readAllLines(archiveDir.resolve("payment_ledger_p202512.ndjson"));
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains("\"newStatus\":\"COMPLETED\""));
+        assertEquals(1, ledgerService.getPaymentHistory(2L).size());
+        assertTrue(ledgerService.getPaymentHistory(1L).isEmpty());
+        assertEquals(2L, ledgerService.getMetrics().get("archivedEntries"));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar rangos invertidos y límites fuera de rango")
+    void shouldRejectInvalidQueries() {
+        LocalDateTime now = LocalDateTime.of(2026, 2, 1, 0, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> ledgerService.getEntries(now, now, 10));
+        assertThrows(IllegalArgumentException.class, () -> ledgerService.getEntries(now, now.plusDays(1), 0));
+        assertThrows(IllegalArgumentException.class, () -> ledgerService.getEntries(now, now.plusDays(1), 101));
+    }
+
+    @Test
+    @DisplayName("Debería exigir archive-dir fuera de target/ salvo en el perfil test")
+    void shouldRequireArchiveDirOutsideBuildDirectory() {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        MockEnvironment production = new MockEnvironment();
+        MockEnvironment test = new MockEnvironment();
+        test.setActiveProfiles("test");
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> new PaymentLedgerService(ledgerRepository, objectMapper,
+                1, 6, "", 100, test));
+        assertThrows(IllegalStateException.class, () -> new PaymentLedgerService(ledgerRepository, objectMapper,
+                1, 6, "target/ledger-archive", 100, production));
+        assertDoesNotThrow(() -> new PaymentLedgerService(ledgerRepository, objectMapper,
+                1, 6, "target/ledger-archive", 100, test));
+        assertDoesNotThrow(() -> new PaymentLedgerService(ledgerRepository, objectMapper,
+                1, 6, archiveDir.toString(), 100, production));
+        // Sin retención no se archiva nada y la ruta no hace falta
+        assertDoesNotThrow(() -> new PaymentLedgerService(ledgerRepository, objectMapper,
+                1, 0, "", 100, production));
+    }
+}
@@ -0,0 +1,196 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para el planificador de reintentos de pagos
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentRetrySchedulerTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private AsyncPaymentProcessor asyncPaymentProcessor;
+
+    private PaymentRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new PaymentRetryScheduler(paymentRepository, transactionTemplate, asyncPaymentProcessor,
+                true, 10, 3, 3, 1000, 60000, 300000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    private Payment failedPayment(Long id, int attempts, LocalDateTime nextRetryAt) {
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setAmount(new BigDecimal("80.00"));
+        payment.markAsFailed("Error de comunicación con la pasarela", true);
+        payment.setRetryAttempts(attempts);
+        payment.scheduleRetry(nextRetryAt);
+        return payment;
+    }
+
+    @Test
+    @DisplayName("Debería programar con backoff el reintento de un fallo recién detectado sin encolarlo")
+    void shouldScheduleRetryForNewFailure() {
+        // Given
+        runTransactionsInline();
+        Payment payment = failedPayment(1L, 0, null);
+        when(asyncPaymentProcessor.getRemainingCapacity()).thenReturn(100);
+        when(paymentRepository.findRetryablePaymentsDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(payment));
+        when(paymentRepository.findStuckPendingPayments(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(List.of());
+
+        // When
+        scheduler.retryDuePayments();
+
+        // Then
+        assertTrue(payment.isFailed());
+        assertNotNull(payment.getNextRetryAt());
+        assertTrue(payment.getNextRetryAt().isAfter(payment.getProcessedAt()));
+        assertEquals(0, payment.getRetryAttempts());
+        verify(paymentRepository).save(payment);
+        verify(asyncPaymentProcessor, never()).submit(anyLong());
+        assertEquals(1L, scheduler.getMetrics().get("scheduled"));
+    }
+
+    @Test
+    @DisplayName("Debería volver a PENDING y encolar el pago cuyo reintento venció")
+    void shouldRequeuePaymentWhenRetryIsDue() {
+        // Given
+        runTransactionsInline();
+        Payment payment = failedPayment(2L, 1, LocalDateTime.now().minusSeconds(1));
+        when(asyncPaymentProcessor.getRemainingCapacity()).thenReturn(100);
+        when(paymentRepository.findRetryablePaymentsDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(payment));
+        when(paymentRepository.findStuckPendingPayments(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(List.of());
+
+        // When
+        scheduler.retryDuePayments();
+
+        // Then
+        assertTrue(payment.isPending());
+        assertEquals(2, payment.getRetryAttempts());
+        assertNull(payment.getFailureReason());
+        assertTrue(payment.getNextRetryAt().isAfter(LocalDateTime.now()));
+        verify(asyncPaymentProcessor).submit(2L);
+        assertEquals(1L, scheduler.getMetrics().get("retriedFailed"));
+    }
+
+    @Test
+    @DisplayName("Debería reencolar los pagos atascados en PENDING y mandar a dead-letter los que agotaron intentos")
+    void shouldRecoverStuckPendingAndDeadLetterExhausted() {
+        // Given
+        runTransactionsInline();
+        Payment exhausted = failedPayment(3L, 3, LocalDateTime.now().minusSeconds(1));
+        Payment stuck = new Payment();
+        stuck.setId(4L);
+        stuck.setStatus(Payment.PaymentStatus.PENDING);
+        when(asyncPaymentProcessor.getRemainingCapacity()).thenReturn(100);
+        when(paymentRepository.findRetryablePaymentsDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(exhausted));
+        when(paymentRepository.findStuckPendingPayments(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(List.of(stuck));
+
+        // When
+        scheduler.retryDuePayments();
+
+        // Then
+        assertTrue(exhausted.isDeadLetter());
+        assertFalse(exhausted.isRetryable());
+        assertNull(exhausted.getNextRetryAt());
+        assertTrue(exhausted.getFailureReason().startsWith("Reintentos agotados"));
+        assertTrue(stuck.isPending());
+        assertEquals(1, stuck.getRetryAttempts());
+        verify(asyncPaymentProcessor).submit(4L);
+        verify(asyncPaymentProcessor, never()).submit(3L);
+        assertEquals(1L, scheduler.getMetrics().get("deadLettered"));
+        assertEquals(1L, scheduler.getMetrics().get("recoveredPending"));
+    }
+
+    @Test
+    @DisplayName("Debería no encolar nada si otra instancia reclamó un pago del lote")
+    void shouldNotSubmitWhenAnotherInstanceClaimedThePayment() {
+        // Given
+        when(asyncPaymentProcessor.getRemainingCapacity()).thenReturn(100);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            // El lote se procesa, pero el commit falla por la versión del pago
+            ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            throw new ObjectOptimisticLockingFailureException(Payment.class, 2L);
+        });
+        when(paymentRepository.findRetryablePaymentsDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(failedPayment(2L, 1, LocalDateTime.now().minusSeconds(1))));
+        when(paymentRepository.findStuckPendingPayments(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(List.of());
+
+        // When
+        scheduler.retryDuePayments();
+
+        // Then
+        verify(asyncPaymentProcessor, never()).submit(anyLong());
+        verify(transactionTemplate, times(1)).execute(any());
+        assertEquals(1L, scheduler.getMetrics().get("claimConflicts"));
+    }
+
+    @Test
+    @DisplayName("Debería posponer los reintentos cuando la cola de workers está llena")
+    void shouldSkipRunWhenQueueIsFull() {
+        // Given
+        when(asyncPaymentProcessor.getRemainingCapacity()).thenReturn(0);
+
+        // When
+        scheduler.retryDuePayments();
+
+        // Then
+        verifyNoInteractions(paymentRepository, transactionTemplate);
+        verify(asyncPaymentProcessor, never()).submit(anyLong());
+    }
+
+    @Test
+    @DisplayName("Debería duplicar la espera en cada intento con jitter y acotarla por max-delay")
+    void shouldGrowBackoffExponentiallyWithJitter() {
+        for (int i = 0; i < 1000; i++) {
+            long first = scheduler.backoffMillis(1);
+            long third = scheduler.backoffMillis(3);
+            long capped = scheduler.backoffMillis(40);
+
+            assertTrue(first >= 500 && first <= 1000, "primer intento: " + first);
+            assertTrue(third >= 2000 && third <= 4000, "tercer intento: " + third);
+            assertTrue(capped >= 30000 && capped <= 60000, "acotado: " + capped);
+        }
+    }
+}
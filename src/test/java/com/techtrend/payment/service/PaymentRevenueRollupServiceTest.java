@@ -0,0 +1,256 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.dto.RevenueTotalResponse;
+import com.techtrend.payment.event.PaymentStatusChangedEvent;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.model.PaymentRevenueRollup;
+import com.techtrend.payment.model.PaymentRevenueRollup.Granularity;
+import com.techtrend.payment.repository.PaymentRepository;
+import com.techtrend.payment.repository.PaymentRevenueRollupRepository;
+import com.techtrend.payment.service.PaymentRevenueRollupService.Segment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para los ingresos agregados por intervalos de tiempo
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentRevenueRollupServiceTest {
+
+    @Mock
+    private PaymentRevenueRollupRepository rollupRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CurrencyConversionService currencyConversionService;
+
+    private PaymentRevenueRollupService revenueService;
+    private LocalDateTime completedAt = LocalDateTime.of(2026, 3, 10, 14, 25, 42);
+
+    @BeforeEach
+    void setUp() {
+        revenueService = new PaymentRevenueRollupService(rollupRepository, paymentRepository, transactionTemplate,
+                currencyConversionService, 100, 2);
+        lenient().when(currencyConversionService.getSnapshot()).thenReturn(
+                CurrencyRateSnapshot.of("PEN", Map.of("USD", new BigDecimal("3.75")), "test"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        lenient().doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    private PaymentStatusChangedEvent event(Payment.PaymentStatus from, Payment.PaymentStatus to, String amount) {
+        return new PaymentStatusChangedEvent(1L, 10L, from, to, false, new BigDecimal(amount), "PEN", "TARJETA_CREDITO", completedAt);
+    }
+
+    @Test
+    @DisplayName("Debería dividir un rango en días, horas y minutos completos")
+    void shouldDecomposeRangeIntoLargestBuckets() {
+        // Given
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 22, 30);
+        LocalDateTime end = LocalDateTime.of(2026, 1, 4, 1, 15);
+
+        // When
+        List<Segment> segments = PaymentRevenueRollupService.decompose(start, end);
+
+        // Then
+        assertEquals(5, segments.size());
+        assertSegment(segments.get(0), Granularity.MINUTE, start, LocalDateTime.of(2026, 1, 1, 23, 0));
+        assertSegment(segments.get(1), Granularity.MINUTE, LocalDateTime.of(2026, 1, 4, 1, 0), end);
+        assertSegment(segments.get(2), Granularity.HOUR, LocalDateTime.of(2026, 1, 1, 23, 0), LocalDateTime.of(2026, 1, 2, 0, 0));
+        assertSegment(segments.get(3), Granularity.HOUR, LocalDateTime.of(2026, 1, 4, 0, 0), LocalDateTime.of(2026, 1, 4, 1, 0));
+        assertSegment(segments.get(4), Granularity.DAY, LocalDateTime.of(2026, 1, 2, 0, 0), LocalDateTime.of(2026, 1, 4, 0, 0));
+
+        // Un rango dentro de la misma hora solo usa minutos
+        List<Segment> short_ = PaymentRevenueRollupService.decompose(start, start.plusMinutes(10));
+        assertEquals(1, short_.size());
+        assertSegment(short_.get(0), Granularity.MINUTE, start, start.plusMinutes(10));
+    }
+
+    private static void assertSegment(Segment segment, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        assertEquals(granularity, segment.granularity);
+        assertEquals(from, segment.from);
+        assertEquals(to, segment.to);
+    }
+
+    @Test
+    @DisplayName("Debería sumar los totales de todos los segmentos por moneda y método")
+    void shouldMergeSegmentTotals() {
+        // Given
+        List<Object[]> dayRows = new ArrayList<>();
+        dayRows.add(new Object[]{"PEN", "TARJETA_CREDITO", 100L, new BigDecimal("5000.00")});
+        List<Object[]> minuteRows = new ArrayList<>();
+        minuteRows.add(new Object[]{"PEN", "TARJETA_CREDITO", 2L, new BigDecimal("80.50")});
+        minuteRows.add(new Object[]{"USD", "PAYPAL", 1L, new BigDecimal("20.00")});
+        when(rollupRepository.sumByCurrencyAndMethod(eq(Granularity.DAY), any(), any())).thenReturn(dayRows);
+        when(rollupRepository.sumByCurrencyAndMethod(eq(Granularity.MINUTE), any(), any())).thenReturn(minuteRows);
+        when(rollupRepository.sumByCurrencyAndMethod(eq(Granularity.HOUR), any(), any())).thenReturn(new ArrayList<>());
+
+        // When
+        List<RevenueTotalResponse> totals = revenueService.getRevenue(
+                LocalDateTime.of(2026, 1, 1, 22, 30), LocalDateTime.of(2026, 2, 1, 0, 30));
+
+        // Then: días completos, horas de los extremos y minutos de los extremos
+        assertEquals(2, totals.size());
+        assertEquals("PEN", totals.get(0).getCurrency());
+        assertEquals(102L + 2L, totals.get(0).getCompletedCount());
+        assertEquals(new BigDecimal("5161.00"), totals.get(0).getCompletedAmount());
+        assertEquals(new BigDecimal("5161.00"), totals.get(0).getNormalizedAmount());
+        assertEquals("USD", totals.get(1).getCurrency());
+        assertEquals(2L, totals.get(1).getCompletedCount());
+        assertEquals(new BigDecimal("150.00"), totals.get(1).getNormalizedAmount());
+        verify(rollupRepository, never()).findBuckets(any(), any(), any());
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    @DisplayName("Debería volcar los pagos completados a los intervalos de minuto, hora y día")
+    void shouldFlushCompletedPaymentsToAllGranularities() {
+        // Given
+        runTransactionsInline();
+        when(rollupRepository.addToBucket(any(), any(), any(), any(), anyLong(), any())).thenReturn(0);
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "100.00"));
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "50.25"));
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED, "999.00"));
+
+        // When
+        revenueService.flush();
+
+        // Then
+        ArgumentCaptor<PaymentRevenueRollup> captor = ArgumentCaptor.forClass(PaymentRevenueRollup.class);
+        verify(rollupRepository, times(3)).save(captor.capture());
+        for (PaymentRevenueRollup rollup : captor.getAllValues()) {
+            assertEquals(2L, rollup.getCompletedCount());
+            assertEquals(new BigDecimal("150.25"), rollup.getCompletedAmount());
+            assertEquals(rollup.getGranularity().truncate(completedAt), rollup.getBucketStart());
+        }
+
+        // Sin incrementos nuevos el volcado no escribe
+        revenueService.flush();
+        verify(rollupRepository, times(3)).addToBucket(any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Debería descontar los pagos que dejan de estar completados")
+    void shouldSubtractPaymentsLeavingCompleted() {
+        // Given
+        runTransactionsInline();
+        when(rollupRepository.addToBucket(any(), any(), any(), any(), anyLong(), any())).thenReturn(1);
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.FAILED, "40.00"));
+
+        // When
+        revenueService.flush();
+
+        // Then
+        verify(rollupRepository).addToBucket(Granularity.DAY, completedAt.toLocalDate().atStartOfDay(),
+                "PEN", "TARJETA_CREDITO", -1L, new BigDecimal("-40.00"));
+        verify(rollupRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Debería conservar los incrementos si el volcado falla")
+    void shouldKeepIncrementsWhenFlushFails() {
+        // Given
+        doThrow(new RuntimeException("conflicto")).doAnswer(invocation -> null)
+                .when(transactionTemplate).executeWithoutResult(any());
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "10.00"));
+
+        // When
+        revenueService.flush();
+        revenueService.flush();
+
+        // Then: el segundo volcado reintenta los mismos incrementos
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Debería reconstruir los intervalos de un día desde los pagos")
+    void shouldBackfillDayFromPayments() {
+        // Given
+        runTransactionsInline();
+        LocalDateTime day = LocalDateTime.of(2026, 3, 10, 0, 0);
+        when(paymentRepository.streamCompletedPaymentsInRange(day, day.plusDays(1))).thenReturn(Stream.of(
+                new Object[]{day.plusHours(9).plusMinutes(1), "PEN", "TARJETA_CREDITO", new BigDecimal("10.00")},
+                new Object[]{day.plusHours(9).plusMinutes(1).plusSeconds(30), "PEN", "TARJETA_CREDITO", new BigDecimal("5.00")},
+                new Object[]{day.plusHours(18), "PEN", null, new BigDecimal("7.00")}));
+
+        // When
+        Map<String, Object> summary = revenueService.backfill(day, day.plusHours(12));
+
+        // Then: 2 minutos + 2 horas + 2 días (con y sin método de pago)
+        assertEquals(1L, summary.get("days"));
+        assertEquals(3L, summary.get("payments"));
+        assertEquals(6L, summary.get("buckets"));
+        verify(rollupRepository).deleteBucketsInRange(day, day.plusDays(1));
+        ArgumentCaptor<PaymentRevenueRollup> captor = ArgumentCaptor.forClass(PaymentRevenueRollup.class);
+        verify(rollupRepository, times(6)).save(captor.capture());
+        assertTrue(captor.getAllValues().stream().anyMatch(r -> r.getGranularity() == Granularity.DAY
+                && "TARJETA_CREDITO".equals(r.getPaymentMethod())
+                && r.getCompletedCount() == 2L
+                && new BigDecimal("15.00").equals(r.getCompletedAmount())));
+        assertTrue(captor.getAllValues().stream().anyMatch(r ->
+                PaymentRevenueRollupService.UNSPECIFIED_METHOD.equals(r.getPaymentMethod())));
+    }
+
+    @Test
+    @DisplayName("Debería volcar lo pendiente y reconstruir los últimos días cerrados")
+    void shouldFlushAndRebackfillClosedDays() {
+        // Given
+        runTransactionsInline();
+        LocalDateTime today = LocalDateTime.of(2026, 3, 12, 0, 0);
+        when(paymentRepository.streamCompletedPaymentsInRange(any(), any())).thenAnswer(invocation -> Stream.empty());
+        revenueService.onPaymentStatusChanged(event(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "10.00"));
+
+        // When
+        revenueService.rebackfillClosedDays(today.plusMinutes(15));
+
+        // Then: el volcado ocurre antes y se reemplazan los dos días anteriores, no el actual
+        InOrder inOrder = inOrder(rollupRepository);
+        inOrder.verify(rollupRepository, atLeastOnce()).addToBucket(any(), any(), any(), any(), anyLong(), any());
+        inOrder.verify(rollupRepository).deleteBucketsInRange(today.minusDays(2), today.minusDays(1));
+        inOrder.verify(rollupRepository).deleteBucketsInRange(today.minusDays(1), today);
+        verify(rollupRepository, never()).deleteBucketsInRange(eq(today), any());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una serie con demasiados intervalos")
+    void shouldRejectSeriesWithTooManyBuckets() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> revenueService.getRevenueSeries(
+                LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 2, 0, 0), Granularity.MINUTE));
+        verifyNoInteractions(rollupRepository);
+    }
+}
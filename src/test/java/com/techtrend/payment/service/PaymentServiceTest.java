@@ -1,18 +1,27 @@
 package com.techtrend.payment.service;
 
-import com.techtrend.cart.service.CartService;
+import com.techtrend.payment.dto.PaymentPageResponse;
 import com.techtrend.payment.dto.PaymentRequest;
 import com.techtrend.payment.dto.PaymentResponse;
+import com.techtrend.payment.gateway.PaymentGateway;
+import com.techtrend.payment.gateway.PaymentGatewayResult;
+import com.techtrend.payment.gateway.StubGatewaySettings;
+import com.techtrend.payment.gateway.StubPaymentGateway;
 import com.techtrend.payment.model.Payment;
 import com.techtrend.payment.repository.PaymentRepository;
 import com.techtrend.common.exception.InvalidPaymentException;
+import com.techtrend.common.exception.PaymentGatewayException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
@@ -37,7 +46,22 @@ class PaymentServiceTest {
     private PaymentRepository paymentRepository;
 
     @Mock
-    private CartService cartService;
+    private AsyncPaymentProcessor asyncPaymentProcessor;
+
+    @Spy
+    private PaymentGateway paymentGateway = new StubPaymentGateway(new StubGatewaySettings());
+
+    @Mock
+    private PaymentStatisticsTracker paymentStatisticsTracker;
+
+    @Spy
+    private TransactionIdGenerator transactionIdGenerator = new TransactionIdGenerator(1);
+
+    @Mock
+    private PaymentVelocityGuard paymentVelocityGuard;
+
+    @Spy
+    private CallbackUrlPolicy callbackUrlPolicy = new CallbackUrlPolicy(List.of("hooks.techtrend.com"));
 
     @InjectMocks
     private PaymentService paymentService;
@@ -51,6 +75,8 @@ class PaymentServiceTest {
     void setUp() {
         // Configurar valores de prueba
         ReflectionTestUtils.setField(paymentService, "maxAmount", new BigDecimal("100000.00"));
+        ReflectionTestUtils.setField(paymentService, "asyncEnabled", true);
+        ReflectionTestUtils.setField(paymentService, "maxPageSize", 200);
 
         // Crear pago de prueba
         testPayment = new Payment();
@@ -76,11 +102,24 @@ class PaymentServiceTest {
         testRequest.setCurrency("PEN");
     }
 
+    @Test
+    @DisplayName("Debería rechazar una URL de callback con un host fuera de la lista permitida")
+    void shouldRejectCallbackToHostNotAllowed() {
+        // Given
+        testRequest.setCallbackUrl("http://169.254.169.254/latest/meta-data/");
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(InvalidPaymentException.class,
+                () -> paymentService.submitPayment(testRequest, testUserId));
+        assertEquals("La URL de callback no está permitida", exception.getMessage());
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+
     @Test
     @DisplayName("Debería procesar pago válido exitosamente")
     void shouldProcessValidPaymentSuccessfully() {
         // Given
-        when(paymentRepository.findByOrderId(testOrderId)).thenReturn(Arrays.asList());
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
         // When
@@ -93,8 +132,100 @@ class PaymentServiceTest {
         assertEquals(testPayment.getAmount(), response.getAmount());
         assertEquals(testPayment.getStatus().name(), response.getStatus());
 
-        verify(paymentRepository).findByOrderId(testOrderId);
+        verify(paymentRepository).existsByOrderId(testOrderId);
+        verify(paymentRepository, times(2)).save(any(Payment.class));
+    }
+
+    @Test
+    @DisplayName("Debería marcar el pago como fallido cuando la pasarela lo rechaza")
+    void shouldFailPayment_whenGatewayDeclines() {
+        // Given
+        testPayment.setStatus(Payment.PaymentStatus.PENDING);
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+        doReturn(PaymentGatewayResult.declined("Fondos insuficientes")).when(paymentGateway).charge(testPayment);
+
+        // When
+        PaymentResponse response = paymentService.processPayment(testRequest, testUserId);
+
+        // Then
+        assertEquals("FAILED", response.getStatus());
+        assertEquals("Fondos insuficientes", response.getFailureReason());
+        assertFalse(response.getRetryable());
+    }
+
+    @Test
+    @DisplayName("Debería marcar el pago como fallido cuando la pasarela no responde")
+    void shouldFailPayment_whenGatewayTimesOut() {
+        // Given
+        testPayment.setStatus(Payment.PaymentStatus.PENDING);
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+        doThrow(new PaymentGatewayException("Timeout", true)).when(paymentGateway).charge(testPayment);
+
+        // When
+        PaymentResponse response = paymentService.processPayment(testRequest, testUserId);
+
+        // Then
+        assertEquals("FAILED", response.getStatus());
+        assertEquals("Error de comunicación con la pasarela", response.getFailureReason());
+        assertTrue(response.getRetryable());
+        verify(paymentRepository, times(2)).save(any(Payment.class));
+    }
+
+    @Test
+    @DisplayName("Debería marcar el pago como reintentable cuando el circuito de la pasarela está abierto")
+    void shouldMarkPaymentRetryable_whenCircuitIsOpen() {
+        // Given
+        testPayment.setStatus(Payment.PaymentStatus.PENDING);
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+        doThrow(PaymentGatewayException.rejected("Circuito abierto")).when(paymentGateway).charge(testPayment);
+
+        // When
+        PaymentResponse response = paymentService.processPayment(testRequest, testUserId);
+
+        // Then
+        assertEquals("FAILED", response.getStatus());
+        assertEquals("Pasarela no disponible temporalmente", response.getFailureReason());
+        assertTrue(response.getRetryable());
+    }
+
+    @Test
+    @DisplayName("Debería registrar el pago en PENDING y encolarlo en modo asíncrono")
+    void shouldSubmitPendingPaymentForAsyncProcessing() {
+        // Given
+        testPayment.setStatus(Payment.PaymentStatus.PENDING);
+        testPayment.setProcessedAt(null);
+        testRequest.setCallbackUrl("https://hooks.techtrend.com/callbacks/pagos");
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+
+        // When
+        PaymentResponse response = paymentService.submitPayment(testRequest, testUserId);
+
+        // Then
+        assertEquals("PENDING", response.getStatus());
+        assertEquals(testPayment.getId(), response.getId());
+        verify(paymentRepository, times(1)).save(argThat(payment ->
+                "https://hooks.techtrend.com/callbacks/pagos".equals(payment.getCallbackUrl())));
+        verify(asyncPaymentProcessor).submit(testPayment.getId());
+    }
+
+    @Test
+    @DisplayName("Debería procesar en el mismo hilo cuando el modo asíncrono está deshabilitado")
+    void shouldProcessSynchronously_whenAsyncDisabled() {
+        // Given
+        ReflectionTestUtils.setField(paymentService, "asyncEnabled", false);
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+
+        // When
+        paymentService.submitPayment(testRequest, testUserId);
+
+        // Then
         verify(paymentRepository, times(2)).save(any(Payment.class));
+        verifyNoInteractions(asyncPaymentProcessor);
     }
 
     @Test
@@ -165,7 +296,7 @@ class PaymentServiceTest {
     @DisplayName("Debería lanzar excepción cuando ya existe un pago para el pedido")
     void shouldThrowException_whenPaymentAlreadyExistsForOrder() {
         // Given
-        when(paymentRepository.findByOrderId(testOrderId)).thenReturn(Arrays.asList(testPayment));
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(true);
 
         // When & Then
         InvalidPaymentException exception = assertThrows(
@@ -174,10 +305,47 @@ class PaymentServiceTest {
         );
 
         assertEquals("Ya existe un pago para este pedido", exception.getMessage());
-        verify(paymentRepository).findByOrderId(testOrderId);
+        verify(paymentRepository).existsByOrderId(testOrderId);
         verify(paymentRepository, never()).save(any(Payment.class));
     }
 
+    @Test
+    @DisplayName("Debería rechazar el pago sin registrarlo cuando supera un límite de velocidad")
+    void shouldThrowException_whenVelocityLimitIsExceeded() {
+        // Given
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        doThrow(new InvalidPaymentException("Límite de velocidad por usuario excedido: máximo 10 pagos en 10 minutos"))
+                .when(paymentVelocityGuard).check(testUserId, testRequest.getPaymentMethod(), testRequest.getAmount());
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(
+            InvalidPaymentException.class,
+            () -> paymentService.submitPayment(testRequest, testUserId)
+        );
+
+        assertTrue(exception.getMessage().startsWith("Límite de velocidad por usuario"));
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(asyncPaymentProcessor, never()).submit(any());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar el pago cuando otra solicitud concurrente ya registró el pedido")
+    void shouldThrowException_whenOrderUniqueConstraintIsViolated() {
+        // Given
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
+        when(paymentRepository.save(any(Payment.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_payments_order"));
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(
+            InvalidPaymentException.class,
+            () -> paymentService.submitPayment(testRequest, testUserId)
+        );
+
+        assertEquals("Ya existe un pago para este pedido", exception.getMessage());
+        verify(asyncPaymentProcessor, never()).submit(any());
+    }
+
     @Test
     @DisplayName("Debería obtener pago por ID correctamente")
     void shouldGetPaymentByIdCorrectly() {
@@ -318,6 +486,57 @@ class PaymentServiceTest {
         verify(paymentRepository).findByStatus(status);
     }
 
+    @Test
+    @DisplayName("Debería paginar por cursor los pagos por estado")
+    void shouldPaginatePaymentsByStatusWithCursor() {
+        // Given
+        Payment second = new Payment();
+        second.setId(2L);
+        second.setStatus(Payment.PaymentStatus.COMPLETED);
+        second.setCreatedAt(testPayment.getCreatedAt().plusSeconds(1));
+        Payment third = new Payment();
+        third.setId(3L);
+        third.setStatus(Payment.PaymentStatus.COMPLETED);
+        third.setCreatedAt(testPayment.getCreatedAt().plusSeconds(2));
+        when(paymentRepository.findByStatusAfter(eq(Payment.PaymentStatus.COMPLETED), any(), anyLong(), any()))
+                .thenReturn(Arrays.asList(testPayment, second, third));
+
+        // When: se piden 2 y la consulta trae uno de más
+        PaymentPageResponse firstPage = paymentService.getPaymentsByStatus(Payment.PaymentStatus.COMPLETED, null, 2);
+
+        // Then
+        assertEquals(2, firstPage.getItems().size());
+        assertTrue(firstPage.hasMore());
+        verify(paymentRepository).findByStatusAfter(Payment.PaymentStatus.COMPLETED,
+                PaymentCursor.START.getCreatedAt(), 0L, PageRequest.of(0, 3));
+
+        // When: la siguiente página parte del último pago entregado
+        when(paymentRepository.findByStatusAfter(eq(Payment.PaymentStatus.COMPLETED), eq(second.getCreatedAt()), eq(2L), any()))
+                .thenReturn(Arrays.asList(third));
+        PaymentPageResponse secondPage = paymentService.getPaymentsByStatus(
+                Payment.PaymentStatus.COMPLETED, firstPage.getNextCursor(), 2);
+
+        // Then
+        assertEquals(1, secondPage.getItems().size());
+        assertEquals(3L, secondPage.getItems().get(0).getId());
+        assertFalse(secondPage.hasMore());
+    }
+
+    @Test
+    @DisplayName("Debería acotar el tamaño de página y rechazar cursores inválidos")
+    void shouldCapPageSizeAndRejectInvalidCursor() {
+        // Given
+        when(paymentRepository.findByUserIdAfter(eq(testUserId), any(), anyLong(), any())).thenReturn(Arrays.asList());
+
+        // When
+        paymentService.getPaymentsByUser(testUserId, null, 1_000_000);
+
+        // Then
+        verify(paymentRepository).findByUserIdAfter(eq(testUserId), any(), anyLong(), eq(PageRequest.of(0, 201)));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentService.getPaymentsByUser(testUserId, "no-es-un-cursor", 10));
+    }
+
     @Test
     @DisplayName("Debería obtener pagos por pedido correctamente")
     void shouldGetPaymentsByOrderCorrectly() {
@@ -359,38 +578,39 @@ class PaymentServiceTest {
     }
 
     @Test
-    @DisplayName("Debería obtener estadísticas de pagos correctamente")
+    @DisplayName("Debería obtener estadísticas de pagos desde los contadores materializados")
     void shouldGetPaymentStatisticsCorrectly() {
         // Given
-        when(paymentRepository.count()).thenReturn(10L);
-        when(paymentRepository.countByStatus(Payment.PaymentStatus.PENDING)).thenReturn(2L);
-        when(paymentRepository.countByStatus(Payment.PaymentStatus.COMPLETED)).thenReturn(7L);
-        when(paymentRepository.countByStatus(Payment.PaymentStatus.FAILED)).thenReturn(1L);
-        when(paymentRepository.getTotalCompletedPayments()).thenReturn(new BigDecimal("50000.00"));
+        PaymentStatisticsTracker tracker = new PaymentStatisticsTracker(paymentRepository,
+                new CurrencyConversionService(new DefaultResourceLoader(),
+                        "classpath:currency-rates.properties", List.of("PEN")));
+        tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", new BigDecimal("100.00"));
+        tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", new BigDecimal("250.50"));
+        tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", new BigDecimal("80.00"));
+        tracker.onTransition(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "PEN",
+                new BigDecimal("250.50"));
+        tracker.onTransition(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED, "PEN", new BigDecimal("80.00"));
+        when(paymentStatisticsTracker.getStatistics()).thenReturn(tracker.getStatistics());
 
         // When
         java.util.Map<String, Object> stats = paymentService.getPaymentStatistics();
 
         // Then
         assertNotNull(stats);
-        assertEquals(10L, stats.get("totalPayments"));
-        assertEquals(2L, stats.get("pendingPayments"));
-        assertEquals(7L, stats.get("completedPayments"));
+        assertEquals(3L, stats.get("totalPayments"));
+        assertEquals(1L, stats.get("pendingPayments"));
+        assertEquals(1L, stats.get("completedPayments"));
         assertEquals(1L, stats.get("failedPayments"));
-        assertEquals(new BigDecimal("50000.00"), stats.get("totalCompletedAmount"));
+        assertEquals(new BigDecimal("250.50"), stats.get("totalCompletedAmount"));
 
-        verify(paymentRepository).count();
-        verify(paymentRepository).countByStatus(Payment.PaymentStatus.PENDING);
-        verify(paymentRepository).countByStatus(Payment.PaymentStatus.COMPLETED);
-        verify(paymentRepository).countByStatus(Payment.PaymentStatus.FAILED);
-        verify(paymentRepository).getTotalCompletedPayments();
+        verifyNoInteractions(paymentRepository);
     }
 
     @Test
     @DisplayName("Debería generar ID de transacción único")
     void shouldGenerateUniqueTransactionId() {
         // Given
-        when(paymentRepository.findByOrderId(testOrderId)).thenReturn(Arrays.asList());
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
         // When
@@ -401,7 +621,7 @@ class PaymentServiceTest {
         assertNotNull(response.getTransactionId());
         assertTrue(response.getTransactionId().startsWith("TXN-"));
 
-        verify(paymentRepository).findByOrderId(testOrderId);
+        verify(paymentRepository).existsByOrderId(testOrderId);
         verify(paymentRepository, times(2)).save(any(Payment.class));
     }
 
@@ -409,7 +629,7 @@ class PaymentServiceTest {
     @DisplayName("Debería simular procesamiento de pago exitoso")
     void shouldSimulateSuccessfulPaymentProcessing() {
         // Given
-        when(paymentRepository.findByOrderId(testOrderId)).thenReturn(Arrays.asList());
+        when(paymentRepository.existsByOrderId(testOrderId)).thenReturn(false);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
         // When
@@ -420,7 +640,7 @@ class PaymentServiceTest {
         // El resultado puede variar debido a la simulación aleatoria, pero debe ser un estado válido
         assertTrue(Arrays.asList("PENDING", "COMPLETED", "FAILED").contains(response.getStatus()));
 
-        verify(paymentRepository).findByOrderId(testOrderId);
+        verify(paymentRepository).existsByOrderId(testOrderId);
         verify(paymentRepository, times(2)).save(any(Payment.class));
     }
 }
@@ -0,0 +1,137 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para las estadísticas materializadas de pagos
+ * 
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentStatisticsTrackerTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private CurrencyConversionService currencyConversionService;
+
+    private PaymentStatisticsTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new PaymentStatisticsTracker(paymentRepository, currencyConversionService);
+        lenient().when(currencyConversionService.getSnapshot()).thenReturn(CurrencyRateSnapshot.of("PEN",
+                Map.of("USD", new BigDecimal("3.75"), "EUR", new BigDecimal("4.05")), "test"));
+    }
+
+    @Test
+    @DisplayName("Debería mover conteo y monto entre estados en cada transición")
+    void shouldMoveCountAndAmountOnTransitions() {
+        // Given
+        tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", new BigDecimal("10.25"));
+        tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", new BigDecimal("20.00"));
+
+        // When
+        tracker.onTransition(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "PEN", new BigDecimal("10.25"));
+        tracker.onTransition(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "PEN", new BigDecimal("20.00"));
+        tracker.onTransition(Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.FAILED, "PEN", new BigDecimal("20.00"));
+
+        // Then
+        Map<String, Object> stats = tracker.getStatistics();
+        assertEquals(2L, stats.get("totalPayments"));
+        assertEquals(0L, stats.get("pendingPayments"));
+        assertEquals(1L, stats.get("completedPayments"));
+        assertEquals(1L, stats.get("failedPayments"));
+        assertEquals(new BigDecimal("10.25"), stats.get("totalCompletedAmount"));
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    @DisplayName("Debería corregir la deriva con la reconciliación")
+    void shouldCorrectDriftOnReconcile() {
+        // Given: contadores con eventos que la base de datos no refleja
+        tracker.onCreated(Payment.PaymentStatus.COMPLETED, "PEN", new BigDecimal("999.99"));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{Payment.PaymentStatus.PENDING, "PEN", 4L, new BigDecimal("400.00")});
+        rows.add(new Object[]{Payment.PaymentStatus.COMPLETED, "PEN", 6L, new BigDecimal("1234.56")});
+        when(paymentRepository.summarizeByStatusAndCurrency()).thenReturn(rows);
+
+        // When
+        tracker.reconcile();
+
+        // Then
+        Map<String, Object> stats = tracker.getStatistics();
+        assertEquals(10L, stats.get("totalPayments"));
+        assertEquals(4L, stats.get("pendingPayments"));
+        assertEquals(6L, stats.get("completedPayments"));
+        assertEquals(0L, stats.get("failedPayments"));
+        assertEquals(new BigDecimal("1234.56"), stats.get("totalCompletedAmount"));
+        assertNotNull(stats.get("lastReconciledAt"));
+        verify(paymentRepository, times(1)).summarizeByStatusAndCurrency();
+    }
+
+    @Test
+    @DisplayName("Debería mantener los totales exactos con transiciones concurrentes")
+    void shouldKeepExactTotalsUnderConcurrentTransitions() {
+        // Given
+        int threads = 8;
+        int perThread = 10_000;
+        BigDecimal amount = new BigDecimal("1.10");
+
+        // When
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            futures[t] = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    tracker.onCreated(Payment.PaymentStatus.PENDING, "PEN", amount);
+                    tracker.onTransition(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, "PEN", amount);
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+
+        // Then
+        Map<String, Object> stats = tracker.getStatistics();
+        assertEquals((long) threads * perThread, stats.get("completedPayments"));
+        assertEquals(0L, stats.get("pendingPayments"));
+        assertEquals(new BigDecimal("88000.00"), stats.get("totalCompletedAmount"));
+    }
+
+    @Test
+    @DisplayName("Debería sumar el monto completado de cada moneda convertido a la moneda base")
+    void shouldNormalizeCompletedAmountAcrossCurrencies() {
+        // Given
+        tracker.onCreated(Payment.PaymentStatus.COMPLETED, "PEN", new BigDecimal("100.00"));
+        tracker.onCreated(Payment.PaymentStatus.COMPLETED, "USD", new BigDecimal("10.00"));
+        tracker.onCreated(Payment.PaymentStatus.COMPLETED, "EUR", new BigDecimal("0.01"));
+        tracker.onCreated(Payment.PaymentStatus.COMPLETED, "GBP", new BigDecimal("5.00"));
+
+        // When
+        Map<String, Object> stats = tracker.getStatistics();
+
+        // Then: 100.00 + 37.50 + 0.04 (0.0405 redondeado); GBP no tiene tipo de cambio
+        assertEquals(4L, stats.get("completedPayments"));
+        assertEquals("PEN", stats.get("baseCurrency"));
+        assertEquals(new BigDecimal("137.54"), stats.get("totalCompletedAmount"));
+        assertEquals(Map.of("EUR", new BigDecimal("0.01"), "GBP", new BigDecimal("5.00"),
+                "PEN", new BigDecimal("100.00"), "USD", new BigDecimal("10.00")), stats.get("completedAmountByCurrency"));
+        assertEquals(List.of("GBP"), stats.get("unconvertedCurrencies"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.common.exception.InvalidPaymentException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para los límites de velocidad de pagos
+ *
+ * @author TechTrend Team
+ */
+class PaymentVelocityGuardTest {
+
+    private static final long WINDOW = 600_000;
+    private static final long START = 1_700_000_000_000L;
+
+    private PaymentVelocityGuard guard(long userMaxPayments, String userMaxAmount, long methodMaxPayments,
+                                       int maxKeys) {
+        return new PaymentVelocityGuard(true, WINDOW, 10, maxKeys, userMaxPayments, new BigDecimal(userMaxAmount),
+                methodMaxPayments, BigDecimal.ZERO);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> metrics(PaymentVelocityGuard guard, String rule) {
+        return (Map<String, Object>) guard.getMetrics().get(rule);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar el pago que supera el máximo por usuario y aceptarlo cuando la ventana avanza")
+    void shouldRejectUserOverLimitUntilWindowSlides() {
+        // Given
+        PaymentVelocityGuard guard = guard(3, "0", 0, 100);
+        for (int i = 0; i < 3; i++) {
+            guard.check(1L, "YAPE", new BigDecimal("10.00"), START + i * 1000);
+        }
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(InvalidPaymentException.class,
+                () -> guard.check(1L, "YAPE", new BigDecimal("10.00"), START + 5000));
+        assertTrue(exception.getMessage().startsWith("Límite de velocidad por usuario excedido"));
+        guard.check(2L, "YAPE", new BigDecimal("10.00"), START + 5000);
+        guard.check(1L, "YAPE", new BigDecimal("10.00"), START + WINDOW + 60_000);
+
+        assertEquals(1L, metrics(guard, "user").get("rejections"));
+        assertEquals(6L, metrics(guard, "user").get("checks"));
+    }
+
+    @Test
+    @DisplayName("Debería limitar el monto acumulado por usuario en la ventana")
+    void shouldRejectUserOverAmountLimit() {
+        // Given
+        PaymentVelocityGuard guard = guard(0, "100.00", 0, 100);
+        guard.check(1L, "YAPE", new BigDecimal("60.00"), START);
+        guard.check(1L, "YAPE", new BigDecimal("40.00"), START + 1000);
+
+        // When & Then
+        InvalidPaymentException exception = assertThrows(InvalidPaymentException.class,
+                () -> guard.check(1L, "YAPE", new BigDecimal("0.01"), START + 2000));
+        assertTrue(exception.getMessage().contains("monto máximo 100.00"));
+    }
+
+    @Test
+    @DisplayName("Debería deshacer el registro del usuario cuando lo rechaza la regla del método de pago")
+    void shouldUndoUserRecord_whenPaymentMethodRuleRejects() {
+        // Given
+        PaymentVelocityGuard guard = guard(2, "0", 1, 100);
+        guard.check(1L, "YAPE", new BigDecimal("10.00"), START);
+
+        // When
+        assertThrows(InvalidPaymentException.class,
+                () -> guard.check(1L, "YAPE", new BigDecimal("10.00"), START + 1000));
+
+        // Then: el intento rechazado no consumió el segundo pago del usuario
+        guard.check(1L, "PLIN", new BigDecimal("10.00"), START + 2000);
+        assertEquals(1L, metrics(guard, "paymentMethod").get("rejections"));
+        assertEquals(0L, metrics(guard, "user").get("rejections"));
+    }
+
+    @Test
+    @DisplayName("Debería acotar las claves en memoria descartando la menos usada")
+    void shouldEvictLeastRecentlyUsedKeys() {
+        // Given
+        PaymentVelocityGuard guard = guard(1, "0", 0, 2);
+        guard.check(1L, "YAPE", BigDecimal.ONE, START);
+        guard.check(2L, "YAPE", BigDecimal.ONE, START);
+
+        // When
+        guard.check(3L, "YAPE", BigDecimal.ONE, START);
+
+        // Then: el usuario 1 se descartó y empieza de cero; el 3 sigue limitado
+        guard.check(1L, "YAPE", BigDecimal.ONE, START);
+        assertThrows(InvalidPaymentException.class, () -> guard.check(3L, "YAPE", BigDecimal.ONE, START));
+        assertEquals(2, metrics(guard, "user").get("trackedKeys"));
+        assertEquals(2L, metrics(guard, "user").get("evictions"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.techtrend.payment.service;
+
+import com.techtrend.payment.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el lector de ficheros de liquidación mapeados en memoria
+ *
+ * @author TechTrend Team
+ */
+@Slf4j
+class SettlementFileParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Receptor que guarda cada línea como texto para comparar resultados
+     */
+    private static class RecordingHandler implements SettlementFileParser.RecordHandler {
+        final List<String> records = new ArrayList<>();
+        final List<Long> malformed = new ArrayList<>();
+
+        @Override
+        public void onRecord(long lineNumber, long transactionId, String legacyTransactionId, long amountCents,
+                             int currency, int status) {
+            records.add(lineNumber + ":" + transactionId + ":" + legacyTransactionId + ":" + amountCents + ":"
+                    + currency + ":" + status);
+        }
+
+        @Override
+        public void onMalformed(long lineNumber, String line) {
+            malformed.add(lineNumber);
+        }
+    }
+
+    @Test
+    @DisplayName("Debería interpretar montos, monedas y estados y marcar las líneas inválidas")
+    void shouldParseFieldsAndFlagMalformedLines() throws IOException {
+        // Given
+        String id = TransactionIdGenerator.encode(123456789L);
+        Path file = tempDir.resolve("settlement.csv");
+        Files.writeString(file, String.join("\n",
+                id + ",-12.3,USD,DECLINED",
+                id + ",7,PEN,SETTLED,extra,columns",
+                id + ",1.234,PEN,SETTLED",
+                id + ",abc,PEN,SETTLED",
+                id + ",10.00,pen,SETTLED",
+                id + ",10.00,PEN,REFUNDED",
+                id + ",10.",
+                "TXN-LEGACY1,0.99,EUR,SETTLED"));
+        RecordingHandler handler = new RecordingHandler();
+
+        // When
+        long lines = new SettlementFileParser(handler).parse(file);
+
+        // Then
+        int usd = SettlementFileParser.currencyCode("USD");
+        int pen = SettlementFileParser.currencyCode("PEN");
+        int eur = SettlementFileParser.currencyCode("EUR");
+        assertEquals(8, lines);
+        assertEquals(List.of(
+                "1:123456789:null:-1230:" + usd + ":" + SettlementFileParser.DECLINED,
+                "2:123456789:null:700:" + pen + ":" + SettlementFileParser.SETTLED,
+                "8:-1:TXN-LEGACY1:99:" + eur + ":" + SettlementFileParser.SETTLED), handler.records);
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L), handler.malformed);
+    }
+
+    @Test
+    @DisplayName("Debería dar el mismo resultado con ventanas pequeñas que cortan líneas")
+    void shouldHandleLinesSplitAcrossWindows() throws IOException {
+        // Given
+        Path file = tempDir.resolve("windows.csv");
+        StringBuilder content = new StringBuilder("transaction_id,amount,currency,status\r\n");
+        for (int i = 0; i < 1000; i++) {
+            content.append(TransactionIdGenerator.encode(i * 7919L)).append(',').append(i).append('.')
+                    .append(i % 100).append(",PEN,").append(i % 3 == 0 ? "DECLINED" : "SETTLED").append("\r\n");
+        }
+        Files.writeString(file, content);
+        RecordingHandler whole = new RecordingHandler();
+        RecordingHandler windowed = new RecordingHandler();
+
+        // When
+        long wholeLines = new SettlementFileParser(whole).parse(file);
+        long windowedLines = new SettlementFileParser(windowed, 61).parse(file);
+
+        // Then
+        assertEquals(1001, wholeLines);
+        assertEquals(wholeLines, windowedLines);
+        assertEquals(1000, whole.records.size());
+        assertEquals(whole.records, windowed.records);
+        assertTrue(whole.malformed.isEmpty());
+        assertThrows(IOException.class, () -> new SettlementFileParser(new RecordingHandler(), 16).parse(file));
+    }
+
+    /**
+     * Lectura y búsqueda en el índice de un fichero de 5 millones de líneas.
+     * Ejecutar con: mvn test -Dtest=SettlementFileParserTest -Dbenchmarks=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("Benchmark: conciliación de 5 millones de líneas en un hilo")
+    void benchmarkParseAndLookup() throws IOException {
+        int payments = 5_000_000;
+        TransactionIdGenerator generator = new TransactionIdGenerator(3);
+        SettlementReconciliationService.PaymentIndex index = new SettlementReconciliationService.PaymentIndex(payments);
+        int pen = SettlementFileParser.currencyCode("PEN");
+        Path file = tempDir.resolve("benchmark.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write("transaction_id,amount,currency,status,settled_at\n");
+            for (int i = 0; i < payments; i++) {
+                String transactionId = generator.nextTransactionId();
+                long cents = 100 + (i % 100_000);
+                index.add(transactionId, i, cents, pen, Payment.PaymentStatus.COMPLETED, false);
+                writer.write(transactionId + "," + (cents / 100) + "." + String.format("%02d", cents % 100)
+                        + ",PEN,SETTLED,2026-10-17T03:00:00\n");
+            }
+        }
+
+        for (int round = 0; round < 3; round++) {
+            long[] found = {0};
+            SettlementFileParser.RecordHandler handler = new SettlementFileParser.RecordHandler() {
+                @Override
+                public void onRecord(long lineNumber, long transactionId, String legacyTransactionId,
+                                     long amountCents, int currency, int status) {
+                    if (index.find(transactionId, legacyTransactionId) >= 0) {
+                        found[0]++;
+                    }
+                }
+
+                @Override
+                public void onMalformed(long lineNumber, String line) {
+                }
+            };
+            long start = System.nanoTime();
+            long lines = new SettlementFileParser(handler).parse(file);
+            long elapsedNanos = System.nanoTime() - start;
+            log.info("Liquidación: {} líneas ({} MB) en {} ms, {} M líneas/s", lines,
+                    Files.size(file) >> 20, elapsedNanos / 1_000_000,
+                    String.format("%.2f", lines * 1000.0 / elapsedNanos));
+            assertEquals(payments, found[0]);
+        }
+    }
+}
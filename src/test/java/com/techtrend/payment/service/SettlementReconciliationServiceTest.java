@@ -0,0 +1,171 @@
+package com.techtrend.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techtrend.payment.dto.SettlementReconciliationResponse;
+import com.techtrend.payment.model.Payment;
+import com.techtrend.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para la conciliación de liquidaciones de la pasarela
+ *
+ * @author TechTrend Team
+ */
+@ExtendWith(MockitoExtension.class)
+class SettlementReconciliationServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 10, 17, 0, 0);
+
+    @TempDir
+    Path settlementDir;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private SettlementReconciliationService service;
+
+    private final String settled = TransactionIdGenerator.encode(1001L);
+    private final String wrongAmount = TransactionIdGenerator.encode(1002L);
+    private final String stillPending = TransactionIdGenerator.encode(1003L);
+    private final String notSettled = TransactionIdGenerator.encode(1004L);
+    private final String declined = TransactionIdGenerator.encode(1005L);
+    private final String unknown = TransactionIdGenerator.encode(9999L);
+
+    @BeforeEach
+    void setUp() {
+        service = new SettlementReconciliationService(paymentRepository, transactionManager, objectMapper,
+                settlementDir, settlementDir.resolve("reports"));
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, settled, new BigDecimal("150.00"), "PEN", Payment.PaymentStatus.COMPLETED, DAY.plusHours(1)});
+        rows.add(new Object[]{2L, wrongAmount, new BigDecimal("80.50"), "USD", Payment.PaymentStatus.COMPLETED, DAY.plusHours(2)});
+        rows.add(new Object[]{3L, stillPending, new BigDecimal("20.00"), "PEN", Payment.PaymentStatus.PENDING, null});
+        rows.add(new Object[]{4L, notSettled, new BigDecimal("99.99"), null, Payment.PaymentStatus.COMPLETED, DAY.plusHours(3)});
+        rows.add(new Object[]{5L, declined, new BigDecimal("10.00"), "PEN", Payment.PaymentStatus.DEAD_LETTER, DAY.plusHours(4)});
+        rows.add(new Object[]{6L, "TXN-1A2B3C4D", new BigDecimal("5.00"), "PEN", Payment.PaymentStatus.COMPLETED, DAY.minusDays(3)});
+        lenient().when(paymentRepository.count()).thenReturn((long) rows.size());
+        lenient().when(paymentRepository.streamForSettlement()).thenAnswer(invocation -> rows.stream());
+    }
+
+    private Map<String, List<JsonNode>> readReport(SettlementReconciliationResponse summary) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of(summary.getReportFile()))) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines.stream().collect(Collectors.groupingBy(node -> node.get("type").asText()));
+    }
+
+    @Test
+    @DisplayName("Debería informar pagos faltantes, montos y estados distintos, duplicados y líneas inválidas")
+    void shouldReportEveryKindOfMismatch() throws IOException {
+        // Given
+        Files.writeString(settlementDir.resolve("gateway-20261017.csv"), String.join("\r\n",
+                "transaction_id,amount,currency,status,settled_at",
+                settled + ",150.00,PEN,SETTLED,2026-10-17T01:00:00",
+                wrongAmount + ",80.05,USD,SETTLED,2026-10-17T02:00:00",
+                stillPending + ",20,PEN,SETTLED,2026-10-17T02:30:00",
+                declined + ",10.0,PEN,DECLINED,2026-10-17T04:00:00",
+                unknown + ",1.00,PEN,SETTLED,2026-10-17T05:00:00",
+                settled + ",150.00,PEN,SETTLED,2026-10-17T06:00:00",
+                "TXN-1A2B3C4D,5.00,PEN,SETTLED,2026-10-17T07:00:00",
+                "no es una línea de liquidación",
+                ""));
+
+        // When
+        SettlementReconciliationResponse summary = service.reconcile("gateway-20261017.csv", DAY, DAY.plusDays(1));
+
+        // Then
+        assertEquals(9, summary.getLines());
+        assertEquals(6, summary.getIndexedPayments());
+        assertEquals(3, summary.getMatched());
+        assertEquals(1, summary.getAmountMismatches());
+        assertEquals(1, summary.getStatusMismatches());
+        assertEquals(1, summary.getMissingPayments());
+        assertEquals(1, summary.getMissingSettlements());
+        assertEquals(1, summary.getDuplicates());
+        assertEquals(1, summary.getMalformedLines());
+
+        Map<String, List<JsonNode>> report = readReport(summary);
+        JsonNode amount = report.get("AMOUNT_MISMATCH").get(0);
+        assertEquals(wrongAmount, amount.get("transactionId").asText());
+        assertEquals(80.50, amount.get("paymentAmount").asDouble());
+        assertEquals(80.05, amount.get("settledAmount").asDouble());
+        assertEquals("PENDING", report.get("STATUS_MISMATCH").get(0).get("paymentStatus").asText());
+        assertEquals(unknown, report.get("MISSING_PAYMENT").get(0).get("transactionId").asText());
+        assertEquals(4L, report.get("MISSING_SETTLEMENT").get(0).get("paymentId").asLong());
+        assertEquals("PEN", report.get("MISSING_SETTLEMENT").get(0).get("paymentCurrency").asText());
+        assertEquals(7L, report.get("DUPLICATE").get(0).get("lineNumber").asLong());
+        assertEquals("no es una línea de liquidación", report.get("MALFORMED").get(0).get("line").asText());
+    }
+
+    @Test
+    @DisplayName("Debería omitir los pagos sin liquidar cuando no se indica el rango esperado")
+    void shouldSkipMissingSettlements_whenNoRangeIsGiven() throws IOException {
+        // Given
+        Files.writeString(settlementDir.resolve("partial.csv"), settled + ",150.00,PEN,SETTLED\n");
+
+        // When
+        SettlementReconciliationResponse summary = service.reconcile("partial.csv", null, null);
+
+        // Then
+        assertEquals(1, summary.getMatched());
+        assertEquals(0, summary.getMissingSettlements());
+        assertEquals(0, Files.readAllLines(Path.of(summary.getReportFile())).size());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar nombres de fichero fuera del directorio de liquidaciones")
+    void shouldRejectPathTraversal() {
+        assertThrows(IllegalArgumentException.class, () -> service.reconcile("../secret.csv", null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.reconcile("missing.csv", null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.reconcile("partial.csv", DAY, null));
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    @DisplayName("Debería exigir los directorios de liquidación fuera de target/ salvo en el perfil test")
+    void shouldRequireDirectoriesOutsideBuildDirectory() {
+        // Given
+        MockEnvironment production = new MockEnvironment();
+        MockEnvironment test = new MockEnvironment();
+        test.setActiveProfiles("test");
+        String reports = settlementDir.resolve("reports").toString();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> new SettlementReconciliationService(paymentRepository,
+                transactionManager, objectMapper, "", reports, test));
+        assertThrows(IllegalStateException.class, () -> new SettlementReconciliationService(paymentRepository,
+                transactionManager, objectMapper, settlementDir.toString(), "target/settlements/reports", production));
+        assertDoesNotThrow(() -> new SettlementReconciliationService(paymentRepository,
+                transactionManager, objectMapper, "target/settlements", "target/settlements/reports", test));
+        assertDoesNotThrow(() -> new SettlementReconciliationService(paymentRepository,
+                transactionManager, objectMapper, settlementDir.toString(), reports, production));
+    }
+}
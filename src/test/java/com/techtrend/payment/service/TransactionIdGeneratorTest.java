@@ -0,0 +1,216 @@
+package com.techtrend.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para el generador de IDs de transacción
+ * 
+ * @author TechTrend Team
+ */
+@Slf4j
+class TransactionIdGeneratorTest {
+
+    @Test
+    @DisplayName("Debería generar IDs crecientes con prefijo y longitud fija")
+    void shouldGenerateIncreasingFixedLengthIds() {
+        // Given
+        TransactionIdGenerator generator = new TransactionIdGenerator(3);
+
+        // When
+        String previous = generator.nextTransactionId();
+        for (int i = 0; i < 10_000; i++) {
+            String next = generator.nextTransactionId();
+
+            // Then
+            assertTrue(next.startsWith("TXN-"));
+            assertEquals(17, next.length());
+            assertTrue(next.compareTo(previous) > 0, next + " debería ser mayor que " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    @DisplayName("Debería codificar el nodo y continuar la secuencia cuando el reloj no avanza")
+    void shouldEncodeNodeAndKeepSequenceWhenClockStalls() {
+        // Given
+        long now = TransactionIdGenerator.EPOCH_MILLIS + 1_000;
+        TransactionIdGenerator generator = new TransactionIdGenerator(5, () -> now);
+
+        // When
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        // Then
+        int sequenceBits = TransactionIdGenerator.SEQUENCE_BITS;
+        int nodeBits = TransactionIdGenerator.NODE_BITS;
+        assertEquals(1_000, first >>> (nodeBits + sequenceBits));
+        assertEquals(5, (first >>> sequenceBits) & TransactionIdGenerator.MAX_NODE_ID);
+        assertEquals(0, first & ((1 << sequenceBits) - 1));
+        assertEquals(1, second & ((1 << sequenceBits) - 1));
+    }
+
+    @Test
+    @DisplayName("Debería seguir generando IDs únicos cuando el reloj retrocede o la secuencia se agota")
+    void shouldStayUniqueWhenClockGoesBackwardsOrSequenceOverflows() {
+        // Given
+        AtomicLong clock = new AtomicLong(TransactionIdGenerator.EPOCH_MILLIS + 5_000);
+        TransactionIdGenerator generator = new TransactionIdGenerator(1, clock::get);
+        Set<Long> ids = new HashSet<>();
+
+        // When: más IDs que la secuencia de un milisegundo, y luego un reloj atrasado
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(ids.add(generator.nextId()));
+        }
+        long beforeRewind = generator.nextId();
+        clock.addAndGet(-2_000);
+        long afterRewind = generator.nextId();
+
+        // Then
+        assertTrue(afterRewind > beforeRewind);
+    }
+
+    @Test
+    @DisplayName("Debería generar IDs únicos desde varios hilos")
+    void shouldGenerateUniqueIdsAcrossThreads() throws Exception {
+        // Given
+        TransactionIdGenerator generator = new TransactionIdGenerator(0);
+        int threads = 8;
+        int perThread = 20_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextTransactionId());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un node-id fuera de rango")
+    void shouldRejectNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(-1));
+    }
+
+    @Test
+    @DisplayName("Debería exigir un node-id configurado")
+    void shouldRequireConfiguredNodeId() {
+        assertThrows(IllegalStateException.class, () -> new TransactionIdGenerator(""));
+        assertThrows(IllegalStateException.class, () -> new TransactionIdGenerator((String) null));
+        assertThrows(IllegalStateException.class, () -> new TransactionIdGenerator("nodo-1"));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator("1024"));
+        assertEquals(12L, TransactionIdGenerator.requireNodeId(" 12 "));
+    }
+
+    @Test
+    @DisplayName("Debería decodificar los IDs generados y rechazar otros formatos")
+    void shouldDecodeGeneratedIds() {
+        TransactionIdGenerator generator = new TransactionIdGenerator(7);
+        for (int i = 0; i < 1000; i++) {
+            long id = generator.nextId();
+            assertEquals(id, TransactionIdGenerator.decode(TransactionIdGenerator.encode(id)));
+        }
+        assertEquals(Long.MAX_VALUE, TransactionIdGenerator.decode(TransactionIdGenerator.encode(Long.MAX_VALUE)));
+
+        assertEquals(-1, TransactionIdGenerator.decode("TXN-1A2B3C4D"));
+        assertEquals(-1, TransactionIdGenerator.decode("TXN-0C8ZQ5R1T400U"));
+        assertEquals(-1, TransactionIdGenerator.decode("TXN-8000000000000"));
+        assertEquals(-1, TransactionIdGenerator.decode("ABC-0C8ZQ5R1T4000"));
+        assertEquals(-1, TransactionIdGenerator.decode(null));
+    }
+
+    /**
+     * Comparación con el generador anterior (8 caracteres de UUID.randomUUID()).
+     * Ejecutar con: mvn test -Dtest=TransactionIdGeneratorTest -Dbenchmarks=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    @DisplayName("Benchmark: generador Snowflake vs UUID truncado")
+    void benchmarkAgainstTruncatedUuid() throws Exception {
+        TransactionIdGenerator generator = new TransactionIdGenerator(0);
+        Supplier<String> legacy = () -> "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        Supplier<String> snowflake = generator::nextTransactionId;
+
+        for (int threads : new int[]{1, 8}) {
+            // Calentamiento
+            measure(legacy, threads, 200_000);
+            measure(snowflake, threads, 200_000);
+
+            double legacyOps = measure(legacy, threads, 2_000_000);
+            double snowflakeOps = measure(snowflake, threads, 2_000_000);
+            log.info("{} hilo(s): UUID truncado {} ids/s, Snowflake {} ids/s (x{})", threads,
+                    Math.round(legacyOps), Math.round(snowflakeOps), String.format("%.1f", snowflakeOps / legacyOps));
+        }
+
+        // Colisiones del formato anterior con el volumen de un día de alto tráfico
+        Set<String> legacyIds = new HashSet<>();
+        int collisions = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (!legacyIds.add(legacy.get())) {
+                collisions++;
+            }
+        }
+        log.info("UUID truncado: {} colisiones en 200000 IDs", collisions);
+    }
+
+    private static double measure(Supplier<String> supplier, int threads, int totalIds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int perThread = totalIds / threads;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int blackhole = 0;
+                for (int i = 0; i < perThread; i++) {
+                    String id = supplier.get();
+                    blackhole += id.charAt(id.length() - 1);
+                }
+                return blackhole;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return perThread * (double) threads / (elapsed / 1e9);
+    }
+}